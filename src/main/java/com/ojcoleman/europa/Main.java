@@ -1,6 +1,5 @@
 package com.ojcoleman.europa;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
@@ -23,9 +22,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.DumperOptions.FlowStyle;
@@ -47,9 +43,10 @@ import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.DefaultIDFactory;
 import com.ojcoleman.europa.core.EvaluationDescription;
 import com.ojcoleman.europa.core.Evaluator;
+import com.ojcoleman.europa.core.Individual;
 import com.ojcoleman.europa.core.Run;
+import com.ojcoleman.europa.core.Snapshot;
 import com.ojcoleman.europa.util.ArrayUtil;
-import com.thoughtworks.xstream.XStream;
 
 /**
  * Accepts command line arguments and launches a Run. Do something like <code>Java -jar [jarfile]</code> to see
@@ -58,7 +55,7 @@ import com.thoughtworks.xstream.XStream;
  * @author O. J. Coleman
  */
 public class Main {
-	@Parameter(description = "<Configuration file (.json or .yaml extension) or previously saved run (.europa extension)>")
+	@Parameter(description = "<Configuration file (.json or .yaml extension), previously saved run (.europa extension), or output directory of a previous run (to resume from the most recent snapshot in it)>")
 	List<String> configOrSavedRun;
 
 	@Parameter(names = "--printConfig", description = "Prints an example configuration file showing available parameters and default sub-components. May be combined with a custom input configuration file or snapshot to see options for custom components or the configuration of the snapshot.")
@@ -83,7 +80,7 @@ public class Main {
 			
 			boolean firstFileIsEmpty = main.configOrSavedRun == null || main.configOrSavedRun.isEmpty();
 			String firstFile = firstFileIsEmpty ? null : main.configOrSavedRun.get(0);
-			boolean firstFileIsSavedRun = firstFile == null ? false : firstFile.endsWith(".europa");
+			boolean firstFileIsSavedRun = firstFile == null ? false : (firstFile.endsWith(Snapshot.EXTENSION) || Files.isDirectory(Paths.get(firstFile)));
 			boolean firstFileIsConfig = firstFile == null ? false : (firstFile.endsWith(".json") || firstFile.endsWith(".yaml"));
 			
 			if (main.printConfig) {
@@ -118,18 +115,27 @@ public class Main {
 	}
 	
 	private synchronized void launchFromSaved(String configOrSavedRun) throws Exception {
-		ZipFile zipFile = new ZipFile(configOrSavedRun);
-		ZipEntry zipEntry = zipFile.getEntry("europarun.xml");
-		BufferedInputStream is = new BufferedInputStream (zipFile.getInputStream(zipEntry));
-
-		XStream xstream = new XStream();
-		Run run = (Run) xstream.fromXML(is);
-		
-		zipFile.close();
+		Run run = Snapshot.load(getSavedRunPath(configOrSavedRun));
 		
 		run.run();
 	}
 
+	/**
+	 * Returns the path to the given saved run, or the most recent snapshot in the given directory.
+	 */
+	private static Path getSavedRunPath(String savedRun) throws IOException {
+		Path path = Paths.get(savedRun);
+		if (Files.isDirectory(path)) {
+			Path latest = Snapshot.findLatest(path);
+			if (latest == null) {
+				throw new IllegalArgumentException("No saved runs found in " + savedRun);
+			}
+			System.out.println("Resuming from " + latest);
+			return latest;
+		}
+		return path;
+	}
+
 	private synchronized void launchFromConfig(JsonObject config) throws Exception {
 		JsonArray configFilePaths = new JsonArray();
 		for (String confPath : configOrSavedRun) {
@@ -161,7 +167,8 @@ public class Main {
 			evDesc = getEvalDescription(run);
 			
 			if (evDesc.isPerformanceIndicator) {
-				performances[runIndex] = run.getPopulation().getBestPerforming().evaluationData.getPerformanceResults().get(evDesc);
+				Individual<?, ?> bestPerforming = run.getPopulation().getBestPerforming();
+				performances[runIndex] = bestPerforming == null ? 0 : bestPerforming.evaluationData.getPerformanceResults().get(evDesc);
 			}
 			else {
 				performances[runIndex] = run.getPopulation().getFittest().evaluationData.getFitnessResults().get(evDesc);
@@ -180,17 +187,17 @@ public class Main {
 	}
 
 	private void printConfigOptionsFromSaved(String configOrSavedRun) throws Exception {
-		FileInputStream fis = new FileInputStream(configOrSavedRun);
-		ZipInputStream zis = new ZipInputStream(new BufferedInputStream(fis));
-		zis.getNextEntry();
+		Path path = getSavedRunPath(configOrSavedRun);
 		
-		XStream xstream = new XStream();
-		
-		Run run = (Run) xstream.fromXML(zis);
-		
-		zis.close();
-		
-		printConfig(run);
+		// Binary snapshots store the configuration separately, so there's no need to load the entire Run.
+		if (Snapshot.isBinary(path)) {
+			try (Snapshot snapshot = Snapshot.open(path)) {
+				printConfigOptionsFromConfig(snapshot.getConfiguration());
+			}
+		}
+		else {
+			printConfig(Snapshot.load(path));
+		}
 	}
 
 	private void printConfigOptionsFromConfig(JsonObject configObject) throws Exception {
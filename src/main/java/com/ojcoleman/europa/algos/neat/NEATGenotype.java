@@ -47,20 +47,23 @@ public class NEATGenotype extends VectorGeneGenotype<NEATAllele<?>> {
 	@Prototype(description = "The prototype configuration for the NEATSynapseAllele. This is only useful if a custom sub-class of NEATSynapseAllele is to be used.")
 	protected NEATSynapseAllele synapseAllelePrototype;
 
+	// The map views below are derived from the alleles. Mark as transient so XStream does not store them. See
+	// readResolve().
+
 	/**
 	 * A sorted map view of all alleles in this genotype, mapping from NEAT innovation ID ({@link NEATGene#id}) to allele.
 	 */
-	Map<Long, NEATAllele<?>> allAlleles;
+	transient Map<Long, NEATAllele<?>> allAlleles;
 
 	/**
 	 * A map view of the neurons in this genotype, mapping from NEAT innovation ID ({@link NEATGene#id}) to allele.
 	 */
-	SortedMap<Long, NEATNeuronAllele> neurons;
+	transient SortedMap<Long, NEATNeuronAllele> neurons;
 
 	/**
 	 * A map view of the synapses in this genotype, mapping from NEAT innovation ID ({@link NEATGene#id}) to allele.
 	 */
-	SortedMap<Long, NEATSynapseAllele> synapses;
+	transient SortedMap<Long, NEATSynapseAllele> synapses;
 
 	/**
 	 * PrototypeBase constructor. See {@link com.ojcoleman.europa.configurable.PrototypeBase#PrototypeBase(Configuration)}.
@@ -98,6 +101,14 @@ public class NEATGenotype extends VectorGeneGenotype<NEATAllele<?>> {
 		init();
 	}
 
+	@Override
+	protected Object readResolve() {
+		super.readResolve();
+		// Rebuild the map views upon resuming from a save file.
+		init();
+		return this;
+	}
+
 	private void init() {
 		allAlleles = new TreeMap<>();
 		for (NEATAllele<?> allele : alleles) {
@@ -0,0 +1,420 @@
+package com.ojcoleman.europa.algos.neat;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ojcoleman.europa.transcribers.nn.NNPart;
+
+/**
+ * <p>
+ * An immutable compiled representation of the topology of the network encoded by a {@link NEATGenotype}: the order of
+ * the enabled neurons, the source and destination neuron indices of the enabled synapses, and (once known) the depth
+ * of the network. Genotypes that differ only in neuron and synapse parameter values (for example clones that have
+ * only had their weights mutated) share the same structure, so {@link NEATTranscriber} interns structures by
+ * {@link #topologyHash} and re-uses them rather than reconstructing the topology for every individual. The
+ * parameter values for each neuron and synapse are still read from the individual's own alleles.
+ * </p>
+ * <p>
+ * Neurons are ordered input, hidden, output, as prescribed by
+ * {@link com.ojcoleman.europa.transcribers.nn.ParametrisedNeuralNetwork#addNeuron(Map)}. Synapses are ordered by
+ * destination neuron index, in compressed sparse row form: the incoming synapses for neuron <em>n</em> are those with
+ * indices from {@link #incomingStart}[n] (inclusive) to {@link #incomingStart}[n+1] (exclusive).
+ * </p>
+ * <p>
+ * If the structure is created with pruning enabled then hidden neurons that have no path to an output neuron are
+ * removed along with their synapses, and optionally synapses with a weight of zero are treated as disabled (this is
+ * only safe if the weights can not change during the lifetime of the network). Hidden neurons that
+ * can influence the outputs but have no path from an input neuron produce an output that does not depend on the
+ * input; these are counted in {@link #getConstantNeuronCount()}.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class NEATNetworkStructure {
+	/**
+	 * The hash of the topology, see {@link #topologyHash(NEATGenotype, boolean)}.
+	 */
+	public final long topologyHash;
+
+	/**
+	 * Whether the structure was pruned.
+	 */
+	public final boolean pruned;
+
+	/**
+	 * Whether synapses with a weight of zero were treated as disabled.
+	 */
+	public final boolean zeroWeightPruned;
+
+	/**
+	 * The number of input neurons.
+	 */
+	public final int inputCount;
+
+	/**
+	 * The number of output neurons.
+	 */
+	public final int outputCount;
+
+	/**
+	 * The NEAT innovation IDs of the neurons, in the order they should be added to the network.
+	 */
+	final long[] neuronIDs;
+
+	/**
+	 * The NEAT innovation IDs of the synapses, in the order they should be added to the network.
+	 */
+	final long[] synapseIDs;
+
+	/**
+	 * The index (into {@link #neuronIDs}) of the source neuron for each synapse in {@link #synapseIDs}.
+	 */
+	final int[] synapseSource;
+
+	/**
+	 * The index (into {@link #neuronIDs}) of the destination neuron for each synapse in {@link #synapseIDs}.
+	 */
+	final int[] synapseDestination;
+
+	/**
+	 * For each neuron, the index of the first of its incoming synapses in {@link #synapseIDs}. The last element is the
+	 * total number of synapses.
+	 */
+	final int[] incomingStart;
+
+	/**
+	 * The NEAT innovation IDs of the expressed neurons and synapses (prior to any pruning), used to check whether a
+	 * genotype matches this structure. The synapse IDs are in ascending order.
+	 */
+	private final long[] expressedNeuronIDs;
+	private final long[] expressedSynapseIDs;
+
+	// The number of enabled synapses, including those with a weight of zero.
+	private final int enabledSynapseCount;
+
+	// The number of hidden neurons whose output does not depend on the input.
+	private final int constantNeuronCount;
+
+	/**
+	 * The depth of networks with this structure as reported by
+	 * {@link com.ojcoleman.europa.transcribers.nn.ParametrisedNeuralNetwork#getDepth()}, or -1 if not yet known.
+	 */
+	volatile int depth = -1;
+
+	/**
+	 * Create the structure for the network encoded by the given genotype.
+	 *
+	 * @param genotype The genotype to create the structure for.
+	 * @param topologyHash The value of {@link #topologyHash(NEATGenotype, boolean)} for the genotype, with the given
+	 *            value of pruneZeroWeight.
+	 * @param prune Whether to remove neurons that can not influence the output.
+	 * @param pruneZeroWeight Whether to remove synapses with a weight of zero.
+	 */
+	public NEATNetworkStructure(NEATGenotype genotype, long topologyHash, boolean prune, boolean pruneZeroWeight) {
+		this.topologyHash = topologyHash;
+		this.pruned = prune;
+		this.zeroWeightPruned = pruneZeroWeight;
+
+		List<NEATAllele<?>> inputs = genotype.getAllelesOfType(NNPart.NEURON_INPUT);
+		List<NEATAllele<?>> hidden = genotype.getAllelesOfType(NNPart.NEURON_HIDDEN);
+		List<NEATAllele<?>> outputs = genotype.getAllelesOfType(NNPart.NEURON_OUTPUT);
+		inputCount = inputs.size();
+		outputCount = outputs.size();
+
+		int enabledInputCount = countEnabled(inputs);
+		int enabledOutputCount = countEnabled(outputs);
+		int expressedNeuronCount = enabledInputCount + countEnabled(hidden) + enabledOutputCount;
+		expressedNeuronIDs = new long[expressedNeuronCount];
+		Map<Long, Integer> neuronIDtoIndex = new HashMap<>();
+		int index = addEnabled(inputs, neuronIDtoIndex, 0);
+		index = addEnabled(hidden, neuronIDtoIndex, index);
+		addEnabled(outputs, neuronIDtoIndex, index);
+
+		Collection<NEATSynapseAllele> synapses = genotype.getSynapses().values();
+		int expressedSynapseCount = 0;
+		int enabledCount = 0;
+		for (NEATSynapseAllele synapse : synapses) {
+			if (isExpressed(genotype, synapse, false)) {
+				enabledCount++;
+				if (!pruneZeroWeight || !hasZeroWeight(synapse)) {
+					expressedSynapseCount++;
+				}
+			}
+		}
+		enabledSynapseCount = enabledCount;
+
+		expressedSynapseIDs = new long[expressedSynapseCount];
+		int[] source = new int[expressedSynapseCount];
+		int[] destination = new int[expressedSynapseCount];
+		int s = 0;
+		for (NEATSynapseAllele synapse : synapses) {
+			if (isExpressed(genotype, synapse, pruneZeroWeight)) {
+				expressedSynapseIDs[s] = synapse.gene.id;
+				source[s] = neuronIDtoIndex.get(synapse.gene.sourceID);
+				destination[s] = neuronIDtoIndex.get(synapse.gene.destinationID);
+				s++;
+			}
+		}
+
+		// Determine which neurons to keep. Without pruning all expressed neurons are kept.
+		boolean[] keep = new boolean[expressedNeuronCount];
+		int constantCount = 0;
+		if (prune) {
+			int firstOutput = expressedNeuronCount - enabledOutputCount;
+			boolean[] fromInput = reachable(expressedNeuronCount, 0, enabledInputCount, source, destination);
+			boolean[] toOutput = reachable(expressedNeuronCount, firstOutput, expressedNeuronCount, destination, source);
+			for (int n = 0; n < expressedNeuronCount; n++) {
+				boolean isHidden = n >= enabledInputCount && n < firstOutput;
+				keep[n] = !isHidden || toOutput[n];
+				if (isHidden && toOutput[n] && !fromInput[n]) {
+					constantCount++;
+				}
+			}
+		} else {
+			for (int n = 0; n < expressedNeuronCount; n++) {
+				keep[n] = true;
+			}
+		}
+		constantNeuronCount = constantCount;
+
+		// Renumber the kept neurons.
+		int[] newIndex = new int[expressedNeuronCount];
+		int neuronCount = 0;
+		for (int n = 0; n < expressedNeuronCount; n++) {
+			newIndex[n] = keep[n] ? neuronCount++ : -1;
+		}
+		if (neuronCount == expressedNeuronCount) {
+			neuronIDs = expressedNeuronIDs;
+		} else {
+			neuronIDs = new long[neuronCount];
+			for (int n = 0; n < expressedNeuronCount; n++) {
+				if (keep[n]) {
+					neuronIDs[newIndex[n]] = expressedNeuronIDs[n];
+				}
+			}
+		}
+
+		// Order the kept synapses by destination neuron (counting sort, stable with respect to innovation ID).
+		incomingStart = new int[neuronCount + 1];
+		int synapseCount = 0;
+		for (s = 0; s < expressedSynapseCount; s++) {
+			if (keep[source[s]] && keep[destination[s]]) {
+				incomingStart[newIndex[destination[s]] + 1]++;
+				synapseCount++;
+			}
+		}
+		for (int n = 0; n < neuronCount; n++) {
+			incomingStart[n + 1] += incomingStart[n];
+		}
+		int[] next = new int[neuronCount];
+		System.arraycopy(incomingStart, 0, next, 0, neuronCount);
+		synapseIDs = new long[synapseCount];
+		synapseSource = new int[synapseCount];
+		synapseDestination = new int[synapseCount];
+		for (s = 0; s < expressedSynapseCount; s++) {
+			if (keep[source[s]] && keep[destination[s]]) {
+				int i = next[newIndex[destination[s]]]++;
+				synapseIDs[i] = expressedSynapseIDs[s];
+				synapseSource[i] = newIndex[source[s]];
+				synapseDestination[i] = newIndex[destination[s]];
+			}
+		}
+	}
+
+	/**
+	 * Returns the neurons reachable from the neurons with indices in the range [start, end), following the edges
+	 * given by the from and to arrays.
+	 */
+	private static boolean[] reachable(int neuronCount, int start, int end, int[] from, int[] to) {
+		// Create adjacency lists in compressed form.
+		int[] edgeStart = new int[neuronCount + 1];
+		for (int e = 0; e < from.length; e++) {
+			edgeStart[from[e] + 1]++;
+		}
+		for (int n = 0; n < neuronCount; n++) {
+			edgeStart[n + 1] += edgeStart[n];
+		}
+		int[] next = new int[neuronCount];
+		System.arraycopy(edgeStart, 0, next, 0, neuronCount);
+		int[] edgeTo = new int[from.length];
+		for (int e = 0; e < from.length; e++) {
+			edgeTo[next[from[e]]++] = to[e];
+		}
+
+		// Depth-first search.
+		boolean[] reached = new boolean[neuronCount];
+		int[] stack = new int[neuronCount];
+		int stackSize = 0;
+		for (int n = start; n < end; n++) {
+			reached[n] = true;
+			stack[stackSize++] = n;
+		}
+		while (stackSize > 0) {
+			int n = stack[--stackSize];
+			for (int e = edgeStart[n]; e < edgeStart[n + 1]; e++) {
+				if (!reached[edgeTo[e]]) {
+					reached[edgeTo[e]] = true;
+					stack[stackSize++] = edgeTo[e];
+				}
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Returns the number of neurons in networks with this structure.
+	 */
+	public int getNeuronCount() {
+		return neuronIDs.length;
+	}
+
+	/**
+	 * Returns the number of synapses in networks with this structure.
+	 */
+	public int getSynapseCount() {
+		return synapseIDs.length;
+	}
+
+	/**
+	 * Returns the number of enabled neurons in the genotype(s) this structure was created for, prior to any pruning.
+	 */
+	public int getExpressedNeuronCount() {
+		return expressedNeuronIDs.length;
+	}
+
+	/**
+	 * Returns the number of enabled synapses in the genotype this structure was created for, prior to any pruning
+	 * (including the removal of zero-weight synapses).
+	 */
+	public int getExpressedSynapseCount() {
+		return enabledSynapseCount;
+	}
+
+	/**
+	 * Returns the number of hidden neurons which can influence the output but whose output does not depend on the
+	 * input (because there is no path to them from an input neuron). This is only calculated if {@link #pruned} is
+	 * true, otherwise 0 is returned.
+	 */
+	public int getConstantNeuronCount() {
+		return constantNeuronCount;
+	}
+
+	/**
+	 * Returns true iff the topology encoded by the given genotype is the same as this structure.
+	 */
+	public boolean matches(NEATGenotype genotype) {
+		if (genotype.getAllelesOfType(NNPart.NEURON_INPUT).size() != inputCount || genotype.getAllelesOfType(NNPart.NEURON_OUTPUT).size() != outputCount) {
+			return false;
+		}
+
+		int index = matchEnabled(genotype.getAllelesOfType(NNPart.NEURON_INPUT), 0);
+		index = matchEnabled(genotype.getAllelesOfType(NNPart.NEURON_HIDDEN), index);
+		index = matchEnabled(genotype.getAllelesOfType(NNPart.NEURON_OUTPUT), index);
+		if (index != expressedNeuronIDs.length) {
+			return false;
+		}
+
+		int s = 0;
+		for (NEATSynapseAllele synapse : genotype.getSynapses().values()) {
+			if (isExpressed(genotype, synapse, zeroWeightPruned)) {
+				if (s == expressedSynapseIDs.length || expressedSynapseIDs[s] != synapse.gene.id) {
+					return false;
+				}
+				s++;
+			}
+		}
+		return s == expressedSynapseIDs.length;
+	}
+
+	/**
+	 * Computes a hash of the topology encoded by the given genotype, based on the innovation IDs of the enabled neurons
+	 * (in the order they would be added to the network) and the enabled synapses. The source and destination of a
+	 * synapse are fixed by its gene, so genotypes whose enabled neurons and synapses are the same have the same hash.
+	 *
+	 * @param pruneZeroWeight If true then synapses with a weight of zero are treated as disabled.
+	 */
+	public static long topologyHash(NEATGenotype genotype, boolean pruneZeroWeight) {
+		long hash = pruneZeroWeight ? 19 : 17;
+		hash = hashEnabled(genotype.getAllelesOfType(NNPart.NEURON_INPUT), hash);
+		hash = hashEnabled(genotype.getAllelesOfType(NNPart.NEURON_HIDDEN), hash);
+		hash = hashEnabled(genotype.getAllelesOfType(NNPart.NEURON_OUTPUT), hash);
+		hash = mix(hash, -1);
+		for (NEATSynapseAllele synapse : genotype.getSynapses().values()) {
+			if (isExpressed(genotype, synapse, pruneZeroWeight)) {
+				hash = mix(hash, synapse.gene.id);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns true iff the given synapse allele, and the source and destination neurons of the synapse, are enabled,
+	 * and, if excludeZeroWeight is true, the synapse does not have a weight of zero.
+	 */
+	static boolean isExpressed(NEATGenotype genotype, NEATSynapseAllele synapse, boolean excludeZeroWeight) {
+		return synapse.enabled() && genotype.getAllele(synapse.gene.sourceID).enabled() && genotype.getAllele(synapse.gene.destinationID).enabled() && !(excludeZeroWeight && hasZeroWeight(synapse));
+	}
+
+	/**
+	 * Returns true iff the given synapse allele (or its gene) has a "weight" parameter with value zero.
+	 */
+	static boolean hasZeroWeight(NEATSynapseAllele synapse) {
+		if (synapse.vector.metadata.hasLabel("weight")) {
+			return synapse.vector.get("weight") == 0;
+		}
+		if (synapse.gene.vector.metadata.hasLabel("weight")) {
+			return synapse.gene.vector.get("weight") == 0;
+		}
+		return false;
+	}
+
+	private static long mix(long hash, long value) {
+		hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		return hash ^ (hash >>> 32);
+	}
+
+	private static long hashEnabled(List<NEATAllele<?>> neurons, long hash) {
+		for (NEATAllele<?> neuron : neurons) {
+			if (neuron.enabled()) {
+				hash = mix(hash, neuron.gene.id);
+			}
+		}
+		return mix(hash, -1);
+	}
+
+	private static int countEnabled(List<NEATAllele<?>> neurons) {
+		int count = 0;
+		for (NEATAllele<?> neuron : neurons) {
+			if (neuron.enabled()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int addEnabled(List<NEATAllele<?>> neurons, Map<Long, Integer> neuronIDtoIndex, int index) {
+		for (NEATAllele<?> neuron : neurons) {
+			if (neuron.enabled()) {
+				expressedNeuronIDs[index] = neuron.gene.id;
+				neuronIDtoIndex.put(neuron.gene.id, index);
+				index++;
+			}
+		}
+		return index;
+	}
+
+	private int matchEnabled(List<NEATAllele<?>> neurons, int index) {
+		for (NEATAllele<?> neuron : neurons) {
+			if (neuron.enabled()) {
+				if (index >= expressedNeuronIDs.length || expressedNeuronIDs[index] != neuron.gene.id) {
+					// Return an index that can never match the neuron count.
+					return expressedNeuronIDs.length + 1;
+				}
+				index++;
+			}
+		}
+		return index;
+	}
+}
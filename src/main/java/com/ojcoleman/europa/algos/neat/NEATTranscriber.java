@@ -2,17 +2,23 @@ package com.ojcoleman.europa.algos.neat;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.eclipsesource.json.JsonObject;
 import com.ojcoleman.europa.algos.vector.ParametrisedGeneType;
 import com.ojcoleman.europa.algos.vector.Vector;
+import com.ojcoleman.europa.algos.vector.VectorMetadata;
 import com.ojcoleman.europa.configurable.ComponentBase;
+import com.ojcoleman.europa.configurable.ComponentStateLog;
 import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.Observable;
+import com.ojcoleman.europa.configurable.Observer;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.configurable.Prototype;
 import com.ojcoleman.europa.core.Evolver;
@@ -23,6 +29,7 @@ import com.ojcoleman.europa.core.Run;
 import com.ojcoleman.europa.functiontypes.VectorFunction;
 import com.ojcoleman.europa.transcribers.nn.NNInstanceConfig;
 import com.ojcoleman.europa.transcribers.nn.NNPart;
+import com.ojcoleman.europa.transcribers.nn.ParameterBinding;
 import com.ojcoleman.europa.transcribers.nn.ParametrisedNeuralNetwork;
 import com.ojcoleman.europa.transcribers.nn.NeuralNetworkTranscriber;
 import com.ojcoleman.europa.transcribers.nn.ParametrisedNeuronGeneType;
@@ -39,8 +46,57 @@ public class NEATTranscriber extends NeuralNetworkTranscriber<NEATGenotype> {
 	@Prototype(description = "The neural network prototype.", defaultClass = BainNeuralNetwork.class)
 	protected ParametrisedNeuralNetwork neuralNetwork;
 
+	@Parameter(description = "If true then the structure (topology) of the networks is shared between individuals whose genotypes encode the same topology, so that only the parameter values (eg weights and biases) need to be set for each individual.", defaultValue = "true")
+	protected boolean internStructures;
+
+	@Parameter(description = "If true then hidden neurons that have no path to an output neuron (along with their synapses) are removed from the networks when they are transcribed, as are synapses with a weight of zero if the synapse model is not plastic (for plastic synapses a zero weight may change during the lifetime of the network). This does not change the behaviour of the networks but may reduce their size.", defaultValue = "false")
+	protected boolean pruneNetworks;
+
+	// Network structures interned during the current and previous iteration, keyed by topology hash. Mark as transient
+	// so XStream does not store them. See readResolve().
+	private transient ConcurrentHashMap<Long, NEATNetworkStructure> structures;
+	private transient ConcurrentHashMap<Long, NEATNetworkStructure> structuresPrevious;
+
+	// Parameter bindings for the neuron and synapse gene and allele metadata in use. Mark as transient so XStream does
+	// not store them. See readResolve().
+	private transient List<ParameterBinding> neuronBindings;
+	private transient List<ParameterBinding> synapseBindings;
+
+	// Number of times an interned structure was re-used or a new structure created during the current iteration.
+	private transient AtomicInteger structureHits;
+	private transient AtomicInteger structureMisses;
+	// Number of networks whose parameters were set in place, without rebuilding them, during the current iteration.
+	private transient AtomicInteger structureUpdates;
+
+	// Total numbers of neurons and synapses before and after pruning, and the total number of hidden neurons whose
+	// output does not depend on the input, over the transcriptions performed during the current iteration.
+	private transient AtomicLong transcribedCount;
+	private transient AtomicLong expressedNeuronTotal;
+	private transient AtomicLong expressedSynapseTotal;
+	private transient AtomicLong prunedNeuronTotal;
+	private transient AtomicLong prunedSynapseTotal;
+	private transient AtomicLong constantNeuronTotal;
+
 	public NEATTranscriber(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
+
+		initStructures();
+
+		this.getParentComponent(Run.class).addEventListener(new Observer() {
+			@Override
+			public void eventOccurred(Observable observed, Object event, Object state) {
+				if (event == Run.Event.IterationBegin) {
+					// Keep the structures from the previous iteration, which may be used by the offspring of
+					// individuals from that iteration, and forget those from before.
+					structuresPrevious = structures;
+					structures = new ConcurrentHashMap<>();
+					structureHits.set(0);
+					structureMisses.set(0);
+					structureUpdates.set(0);
+					resetPruningStats();
+				}
+			}
+		});
 	}
 
 	/*
@@ -53,47 +109,37 @@ public class NEATTranscriber extends NeuralNetworkTranscriber<NEATGenotype> {
 	public VectorFunction transcribe(NEATGenotype genotype, VectorFunction function) {
 		List<NEATAllele<?>> neuronTypes = genotype.getAllelesOfType(NNPart.NEURON_TYPE, null);
 		List<NEATAllele<?>> synapseTypes = genotype.getAllelesOfType(NNPart.SYNAPSE_TYPE, null);
-		
-		// We add in order of input, hidden and output, as prescribed by ParametrisedNeuralNetwork.addNeuron(Map<String, Double> nnConfig)
-		List<NEATNeuronAllele> neuronAlleles = new ArrayList<>();
-		for (NEATAllele<?> n : genotype.getAllelesOfType(NNPart.NEURON_INPUT)) {
-			neuronAlleles.add((NEATNeuronAllele) n);
-		}
-		for (NEATAllele<?> n : genotype.getAllelesOfType(NNPart.NEURON_HIDDEN)) {
-			neuronAlleles.add((NEATNeuronAllele) n);
-		}
-		for (NEATAllele<?> n : genotype.getAllelesOfType(NNPart.NEURON_OUTPUT)) {
-			neuronAlleles.add((NEATNeuronAllele) n);
-		}
-		
-		Collection<NEATSynapseAllele> synapseAlleles = genotype.getSynapses().values();
-		
-		// Count enabled neurons.
-		int neuronCount = 0;
-		for (NEATNeuronAllele neuronAllele : neuronAlleles) {
-			// If this neuron is enabled (should be expressed).
-			if (neuronAllele.enabled()) {
-				neuronCount++;
-			}
+
+		// Get the structure of the network, which may be shared with other genotypes with the same topology.
+		NEATNetworkStructure structure = getStructure(genotype);
+		if (pruneNetworks) {
+			transcribedCount.incrementAndGet();
+			expressedNeuronTotal.addAndGet(structure.getExpressedNeuronCount());
+			expressedSynapseTotal.addAndGet(structure.getExpressedSynapseCount());
+			prunedNeuronTotal.addAndGet(structure.getNeuronCount());
+			prunedSynapseTotal.addAndGet(structure.getSynapseCount());
+			constantNeuronTotal.addAndGet(structure.getConstantNeuronCount());
 		}
 
-		// Count enabled synapses.
-		int synapseCount = 0;
-		for (NEATSynapseAllele synapseAllele : synapseAlleles) {
-			long sourceID = synapseAllele.gene.sourceID;
-			long destID = synapseAllele.gene.destinationID;
+		// Build the neural network.
+		NNInstanceConfig nnConfig = new NNInstanceConfig(structure.getNeuronCount(), structure.getSynapseCount(), structure.inputCount, structure.outputCount, "NN-" + genotype.id);
 
-			// If this synapse is enabled, and the source and destination neurons are enabled.
-			if (synapseAllele.enabled() && genotype.getAllele(sourceID).enabled() && genotype.getAllele(destID).enabled()) {
-				synapseCount++;
+		// If the given network was last built for the same (interned) structure then just set the parameter values.
+		boolean untyped = (neuronTypes == null || neuronTypes.isEmpty()) && (synapseTypes == null || synapseTypes.isEmpty());
+		if (untyped && function instanceof ParametrisedNeuralNetwork && ((ParametrisedNeuralNetwork) function).beginUpdate(structure, nnConfig)) {
+			if (update((ParametrisedNeuralNetwork) function, genotype, structure)) {
+				structureUpdates.incrementAndGet();
+				return (ParametrisedNeuralNetwork) function;
 			}
 		}
-		
-		// Build the neural network.
-		NNInstanceConfig nnConfig = new NNInstanceConfig(neuronCount, synapseCount, genotype.getAllelesOfType(NNPart.NEURON_INPUT).size(), genotype.getAllelesOfType(NNPart.NEURON_OUTPUT).size(), "NN-" + genotype.id);
 
-		// new BainNeuralNetwork(null, nnConfig);
-		ParametrisedNeuralNetwork nnWrapper = this.neuralNetwork.newInstance(nnConfig);
+		// Re-use the given network if it supports being rebuilt in place, otherwise create a new one.
+		ParametrisedNeuralNetwork nnWrapper;
+		if (function instanceof ParametrisedNeuralNetwork && ((ParametrisedNeuralNetwork) function).rebuild(nnConfig)) {
+			nnWrapper = (ParametrisedNeuralNetwork) function;
+		} else {
+			nnWrapper = this.neuralNetwork.newInstance(nnConfig);
+		}
 
 		// Add neuron types.
 		if (neuronTypes != null) {
@@ -114,65 +160,206 @@ public class NEATTranscriber extends NeuralNetworkTranscriber<NEATGenotype> {
 
 			for (int ref = 0; ref < synapseTypes.size(); ref++) {
 				NEATAllele<?> allele = synapseTypes.get(ref);
-				int index = nnWrapper.addNeuronType(allele.getAllValuesAsMap());
+				int index = nnWrapper.addSynapseType(allele.getAllValuesAsMap());
 				synapseTypeReftoIndex[ref] = index;
 			}
 		}
-		
-		String dbg = "";
+
 		try {
-			// Add neurons.
-			// Map from NEAT innovation ID to neuron index in ParametrisedNeuralNetwork.
-			Map<Long, Integer> neuronIDtoIndex = new HashMap<Long, Integer>();
-			Map<String, Double> neuronParams = new HashMap<String, Double>(); // Re-usable param label, value map.
-			for (NEATNeuronAllele neuronAllele : neuronAlleles) {
-				// If this neuron is enabled (should be expressed).
-				if (neuronAllele.enabled()) {
-					neuronAllele.getAllValuesAsMap(neuronParams);
-					// System.out.println("\n\nneuronParams:\n" + Stringer.toString(neuronParams, 1000, 1));
-					int index = nnWrapper.addNeuron(neuronParams);
-					neuronIDtoIndex.put(neuronAllele.gene.id, index);
+			// Add neurons, in the order given by the structure (input, hidden, output). The parameter values are
+			// transferred directly from the gene and allele vectors via a binding for their metadata.
+			ParameterBinding binding = null;
+			for (long neuronID : structure.neuronIDs) {
+				NEATAllele<?> allele = genotype.getAllele(neuronID);
+				if (binding == null || !binding.isFor(allele.gene.vector.metadata, allele.vector.metadata)) {
+					binding = getBinding(neuronBindings, allele, true);
 				}
+				nnWrapper.addNeuron(binding, allele.gene.vector.getValuesReference(), allele.vector.getValuesReference());
 			}
-			
-			dbg += Stringer.toString(neuronIDtoIndex) + "\n";
-			
-			// Synapses.
-			Map<String, Double> synapseParams = new HashMap<String, Double>(); // Re-usable param label:value map.
-			for (NEATSynapseAllele synapseAllele : synapseAlleles) {
-				long sourceID = synapseAllele.gene.sourceID;
-				long destID = synapseAllele.gene.destinationID;
-				
-				dbg += "\n" + sourceID + " => " + destID;
-	
-				// If this synapse is enabled, and the source and destination neurons are enabled.
-				if (synapseAllele.enabled() && genotype.getAllele(sourceID).enabled() && genotype.getAllele(destID).enabled()) {
-					int srcIdx = neuronIDtoIndex.get(sourceID);
-					int destIdx = neuronIDtoIndex.get(destID);
-					
-					dbg += "  (" + srcIdx + " => " + destIdx + ")\n";
-	
-					synapseAllele.getAllValuesAsMap(synapseParams);
-					// System.out.println("\n\nsynapseParams:\n" + Stringer.toString(synapseParams, 1000, 1));
-					nnWrapper.addSynapse(synapseParams, srcIdx, destIdx);
-				}
-				else {
-					dbg += " disbaled\n";
+
+			// Synapses. The neuron indices given by the structure match the indices returned by addNeuron().
+			binding = null;
+			for (int s = 0; s < structure.getSynapseCount(); s++) {
+				NEATAllele<?> allele = genotype.getAllele(structure.synapseIDs[s]);
+				if (binding == null || !binding.isFor(allele.gene.vector.metadata, allele.vector.metadata)) {
+					binding = getBinding(synapseBindings, allele, false);
 				}
+				nnWrapper.addSynapse(binding, allele.gene.vector.getValuesReference(), allele.vector.getValuesReference(), structure.synapseSource[s], structure.synapseDestination[s]);
+			}
+
+			// If the depth of this topology is already known then the network needn't calculate it.
+			if (structure.depth >= 0) {
+				nnWrapper.setDepth(structure.depth);
 			}
 
 			nnWrapper.finishedBuilding();
+			if (internStructures) {
+				nnWrapper.setStructure(structure);
+			}
+
+			if (structure.depth < 0) {
+				structure.depth = nnWrapper.getDepth();
+			}
 		}
 		catch (Exception ex) {
 			System.out.println(Stringer.toString(genotype, 10));
 			System.out.println(Stringer.toString(nnWrapper, 10));
-			System.out.println(dbg);
 			throw ex;
 		}
 
 		return nnWrapper;
 	}
 
+	/**
+	 * Set the parameter values of the given network, which was last built for the given structure, to those of the
+	 * given genotype, without rebuilding the network (see
+	 * {@link ParametrisedNeuralNetwork#beginUpdate(Object, com.ojcoleman.europa.transcribers.nn.NNInstanceConfig)}).
+	 * Returns false if the network does not support setting some of the values in place, in which case it must be
+	 * rebuilt.
+	 */
+	private boolean update(ParametrisedNeuralNetwork nnWrapper, NEATGenotype genotype, NEATNetworkStructure structure) {
+		ParameterBinding binding = null;
+		for (int n = 0; n < structure.getNeuronCount(); n++) {
+			NEATAllele<?> allele = genotype.getAllele(structure.neuronIDs[n]);
+			if (binding == null || !binding.isFor(allele.gene.vector.metadata, allele.vector.metadata)) {
+				binding = getBinding(neuronBindings, allele, true);
+			}
+			if (!nnWrapper.updateNeuron(n, binding, allele.gene.vector.getValuesReference(), allele.vector.getValuesReference())) {
+				return false;
+			}
+		}
+
+		binding = null;
+		for (int s = 0; s < structure.getSynapseCount(); s++) {
+			NEATAllele<?> allele = genotype.getAllele(structure.synapseIDs[s]);
+			if (binding == null || !binding.isFor(allele.gene.vector.metadata, allele.vector.metadata)) {
+				binding = getBinding(synapseBindings, allele, false);
+			}
+			if (!nnWrapper.updateSynapse(s, binding, allele.gene.vector.getValuesReference(), allele.vector.getValuesReference())) {
+				return false;
+			}
+		}
+
+		nnWrapper.finishedUpdating();
+		return true;
+	}
+
+	/**
+	 * Returns the structure for the network encoded by the given genotype. If {@link #internStructures} is true then a
+	 * structure created for another genotype with the same topology during the current or previous iteration is
+	 * returned if available. If {@link #pruneNetworks} is true then the structure is pruned (see
+	 * {@link NEATNetworkStructure}), excluding zero-weight synapses unless the network has plastic synapses.
+	 */
+	protected NEATNetworkStructure getStructure(NEATGenotype genotype) {
+		boolean pruneZeroWeight = pruneNetworks && !neuralNetwork.hasPlasticSynapses();
+		long hash = NEATNetworkStructure.topologyHash(genotype, pruneZeroWeight);
+
+		if (!internStructures) {
+			return new NEATNetworkStructure(genotype, hash, pruneNetworks, pruneZeroWeight);
+		}
+
+		NEATNetworkStructure structure = structures.get(hash);
+		if (structure == null) {
+			// Try structures from the previous iteration, for example to share with the parent of a clone.
+			structure = structuresPrevious.get(hash);
+			if (structure != null && structure.matches(genotype)) {
+				structures.putIfAbsent(hash, structure);
+			}
+		}
+
+		if (structure != null && structure.matches(genotype)) {
+			structureHits.incrementAndGet();
+			return structure;
+		}
+
+		structureMisses.incrementAndGet();
+		structure = new NEATNetworkStructure(genotype, hash, pruneNetworks, pruneZeroWeight);
+		// Don't replace an existing structure in the (unlikely) event of a hash collision.
+		structures.putIfAbsent(hash, structure);
+		return structure;
+	}
+
+	/**
+	 * Returns the parameter binding for the metadata of the given neuron or synapse allele (and its gene), creating it
+	 * if necessary.
+	 */
+	private ParameterBinding getBinding(List<ParameterBinding> bindings, NEATAllele<?> allele, boolean neuron) {
+		VectorMetadata geneMetadata = allele.gene.vector.metadata;
+		VectorMetadata alleleMetadata = allele.vector.metadata;
+		for (int i = 0; i < bindings.size(); i++) {
+			if (bindings.get(i).isFor(geneMetadata, alleleMetadata)) {
+				return bindings.get(i);
+			}
+		}
+		ParameterBinding binding = neuron ? neuralNetwork.bindNeuronParameters(geneMetadata, alleleMetadata) : neuralNetwork.bindSynapseParameters(geneMetadata, alleleMetadata);
+		bindings.add(binding);
+		return binding;
+	}
+
+	private Object readResolve() {
+		// Create new structure maps upon resuming from a save file.
+		initStructures();
+		return this;
+	}
+
+	private void initStructures() {
+		neuronBindings = new CopyOnWriteArrayList<>();
+		synapseBindings = new CopyOnWriteArrayList<>();
+		structures = new ConcurrentHashMap<>();
+		structuresPrevious = new ConcurrentHashMap<>();
+		structureHits = new AtomicInteger();
+		structureMisses = new AtomicInteger();
+		structureUpdates = new AtomicInteger();
+		resetPruningStats();
+	}
+
+	private void resetPruningStats() {
+		transcribedCount = new AtomicLong();
+		expressedNeuronTotal = new AtomicLong();
+		expressedSynapseTotal = new AtomicLong();
+		prunedNeuronTotal = new AtomicLong();
+		prunedSynapseTotal = new AtomicLong();
+		constantNeuronTotal = new AtomicLong();
+	}
+
+	@Override
+	public List<ComponentStateLog> getState() {
+		List<ComponentStateLog> stats = super.getState();
+
+		if (internStructures) {
+			stats.add(new ComponentStateLog("Transcription", "Structures", "Interned", structures.size()));
+			stats.add(new ComponentStateLog("Transcription", "Structures", "Re-used", structureHits.get()));
+			stats.add(new ComponentStateLog("Transcription", "Structures", "Created", structureMisses.get()));
+			stats.add(new ComponentStateLog("Transcription", "Structures", "Updated in place", structureUpdates.get()));
+		}
+
+		if (pruneNetworks) {
+			long count = Math.max(1, transcribedCount.get());
+			stats.add(new ComponentStateLog("Transcription", "Pruning", "Neurons (avg before)", (double) expressedNeuronTotal.get() / count));
+			stats.add(new ComponentStateLog("Transcription", "Pruning", "Neurons (avg after)", (double) prunedNeuronTotal.get() / count));
+			stats.add(new ComponentStateLog("Transcription", "Pruning", "Neurons removed", percentRemoved(expressedNeuronTotal.get(), prunedNeuronTotal.get()), "%"));
+			stats.add(new ComponentStateLog("Transcription", "Pruning", "Synapses (avg before)", (double) expressedSynapseTotal.get() / count));
+			stats.add(new ComponentStateLog("Transcription", "Pruning", "Synapses (avg after)", (double) prunedSynapseTotal.get() / count));
+			stats.add(new ComponentStateLog("Transcription", "Pruning", "Synapses removed", percentRemoved(expressedSynapseTotal.get(), prunedSynapseTotal.get()), "%"));
+			stats.add(new ComponentStateLog("Transcription", "Pruning", "Constant-output neurons (avg)", (double) constantNeuronTotal.get() / count));
+		}
+
+		return stats;
+	}
+
+	private static double percentRemoved(long before, long after) {
+		return before == 0 ? 0 : 100.0 * (before - after) / before;
+	}
+
+	/**
+	 * Returns the size class of the network given by {@link ParametrisedNeuralNetwork#getSizeClass(int, int)}, based
+	 * on the total number of neuron and synapse genes in the given genotype.
+	 */
+	@Override
+	public int getFunctionSizeClass(NEATGenotype genotype) {
+		return ParametrisedNeuralNetwork.getSizeClass(genotype.getNeurons().size(), genotype.getSynapses().size());
+	}
+
 	@Override
 	public ParametrisedNeuralNetwork getNeuralNetworkPrototype() {
 		return neuralNetwork;
@@ -1,5 +1,6 @@
 package com.ojcoleman.europa.algos.vector;
 
+import java.lang.reflect.Field;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -74,6 +75,25 @@ public class VectorAllele<G extends VectorGene> extends Allele<G> {
 		this.vector = paramVector;
 	}
 
+	// Handle for the final vector field set by restoreVector().
+	private static final Field VECTOR_FIELD = getRestorableField(VectorAllele.class, "vector");
+
+	/**
+	 * Sets the vector of a VectorAllele loaded from a {@link com.ojcoleman.europa.core.Snapshot}, which is created
+	 * without calling a constructor. This must be called before
+	 * {@link #restore(long, com.ojcoleman.europa.configurable.ConfigurableBase)}.
+	 *
+	 * @throws IllegalStateException If this VectorAllele was initialised by a constructor or has already been restored.
+	 * @throws IllegalArgumentException if the Vector is not set as mutable.
+	 */
+	public void restoreVector(Vector vector) {
+		checkRestorable();
+		if (!vector.mutable) {
+			throw new IllegalArgumentException("The Vector for a VectorAllele must be set as mutable.");
+		}
+		restoreField(VECTOR_FIELD, this, vector);
+	}
+
 	/**
 	 * Get the values from this allele and its underlying gene as a map from the vector element labels to their values.
 	 */
@@ -0,0 +1,32 @@
+package com.ojcoleman.europa.configurable;
+
+/**
+ * An {@link Observer} that may receive events on a different thread to the one that fired them, via an
+ * {@link EventDispatcher}. The subject being observed will have moved on by the time the event is received, so the
+ * state for the event is first captured on the firing thread with {@link #snapshotState(Observable, Object, Object)}.
+ *
+ * @author O. J. Coleman
+ */
+public interface AsynchronousObserver extends Observer {
+	/**
+	 * Returns the EventDispatcher via which events should be delivered to this observer, or null if they should be
+	 * delivered synchronously on the thread that fired them.
+	 */
+	public EventDispatcher getEventDispatcher();
+
+	/**
+	 * Returns what to do with events for this observer if the EventDispatcher queue is full.
+	 */
+	public EventDispatcher.OverflowPolicy getOverflowPolicy();
+
+	/**
+	 * Called on the thread firing an event to capture the given state before the event is queued. The returned object
+	 * is passed to {@link #eventOccurred(Observable, Object, Object)} in place of the original state, and should not
+	 * change after this method returns. This method should be quick, as it holds up the thread firing the event.
+	 *
+	 * @param observed The subject (the object being observed).
+	 * @param event The type of change or event.
+	 * @param state The state given when the event was fired, may be null.
+	 */
+	public Object snapshotState(Observable observed, Object event, Object state);
+}
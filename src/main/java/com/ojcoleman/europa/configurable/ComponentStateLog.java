@@ -87,7 +87,16 @@ public class ComponentStateLog implements Comparable<ComponentStateLog> {
 	 * then the individual elements are converted to strings with toString() and separated by commas.
 	 */
 	public String toString() {
-		StringBuilder out = new StringBuilder(category + " - " + (subCategory.equals("") ? "" : subCategory + " - ") + label + ": ");
+		return category + " - " + (subCategory.equals("") ? "" : subCategory + " - ") + label + ": " + getStateString();
+	}
+
+	/**
+	 * Returns a simple string representation of the state and unit of this state log. If the state is an array or an
+	 * instance of Iterable then the individual elements are converted to strings with toString() and separated by
+	 * commas.
+	 */
+	public String getStateString() {
+		StringBuilder out = new StringBuilder();
 		if (state.getClass().isArray()) {
 			for (int i = 0; i < Array.getLength(state); i++) {
 				if (i > 0) {
@@ -188,7 +188,26 @@ public class ConfigurableBase extends Observable implements Stringable {
 		idFactory = configurable.idFactory;
 		singletons = configurable.singletons;
 
-		id = idFactory.getNextID();
+		id = withoutIDs.get() == null ? idFactory.getNextID() : -1;
+	}
+
+	// Set on a thread while it is running a task given to runWithoutIDs().
+	private static final ThreadLocal<Boolean> withoutIDs = new ThreadLocal<>();
+
+	/**
+	 * Runs the given task on the current thread such that copies of ConfigurableBases made by it (for example via
+	 * {@link PrototypeBase#newInstance(Object...)}) are given an ID of -1 rather than taking an ID from the ID factory.
+	 * This is intended for temporary objects created outside of the evolutionary cycle, for example to log information
+	 * about an individual, so that the sequence of IDs allocated in a Run is not changed.
+	 */
+	public static void runWithoutIDs(Runnable task) {
+		Boolean previous = withoutIDs.get();
+		withoutIDs.set(Boolean.TRUE);
+		try {
+			task.run();
+		} finally {
+			withoutIDs.set(previous);
+		}
 	}
 
 	/**
@@ -199,6 +218,66 @@ public class ConfigurableBase extends Observable implements Stringable {
 		id = -1;
 	}
 
+	// Handles for the final fields set by restore().
+	private static final Field ID_FIELD = getRestorableField(ConfigurableBase.class, "id");
+	private static final Field IS_DUMMY_FIELD = getRestorableField(ConfigurableBase.class, "isDummy");
+
+	/**
+	 * Restores the state of a ConfigurableBase that was created without calling a constructor, for example when loading
+	 * a {@link com.ojcoleman.europa.core.Snapshot}. The ID is set to the given value, and the state shared by all
+	 * configurables in a Run (the ID factory, singletons and dummy status) is taken from the given ConfigurableBase.
+	 * Sub-classes that share other state between instances may override this method, calling
+	 * <code>super.restore(id, shared)</code>.
+	 *
+	 * @throws IllegalStateException If this ConfigurableBase was initialised by a constructor or has already been
+	 *             restored.
+	 */
+	public void restore(long id, ConfigurableBase shared) {
+		checkRestorable();
+		restoreField(ID_FIELD, this, id);
+		restoreField(IS_DUMMY_FIELD, this, shared.isDummy);
+		singletons = shared.singletons;
+		idFactory = shared.idFactory;
+	}
+
+	/**
+	 * Checks that this ConfigurableBase was created without calling a constructor and has not yet been restored, see
+	 * {@link #restore(long, ConfigurableBase)}.
+	 *
+	 * @throws IllegalStateException If this ConfigurableBase was initialised by a constructor or has already been
+	 *             restored.
+	 */
+	protected void checkRestorable() {
+		if (idFactory != null) {
+			throw new IllegalStateException("Only a " + getClass().getName() + " that was created without calling a constructor may be restored.");
+		}
+	}
+
+	/**
+	 * Gets a handle for a (final) field declared by the given class, for use with
+	 * {@link #restoreField(Field, Object, Object)}.
+	 */
+	protected static Field getRestorableField(Class<?> type, String name) {
+		try {
+			Field field = type.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (NoSuchFieldException ex) {
+			throw new IllegalStateException("The field " + name + " does not exist in " + type.getName() + ".", ex);
+		}
+	}
+
+	/**
+	 * Sets the value of a (final) field of an object being restored, see {@link #restore(long, ConfigurableBase)}.
+	 */
+	protected static void restoreField(Field field, Object object, Object value) {
+		try {
+			field.set(object, value);
+		} catch (IllegalAccessException ex) {
+			throw new IllegalStateException("Could not restore the field " + field.getName() + " of " + object.getClass().getName() + ".", ex);
+		}
+	}
+
 	/**
 	 * Gets a list containing this class and all its super-classes up to the parent ConfigurableBase. The list is
 	 * ordered from super to this class.
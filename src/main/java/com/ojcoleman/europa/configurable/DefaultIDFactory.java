@@ -13,4 +13,19 @@ public class DefaultIDFactory implements IDFactory {
 	public synchronized long getNextID() {
 		return ++nextID;
 	}
+
+	/**
+	 * Returns the most recently generated ID.
+	 */
+	public synchronized long getLastID() {
+		return nextID;
+	}
+
+	/**
+	 * Set the most recently generated ID, for example when restoring a saved run. The next call to
+	 * {@link #getNextID()} will return the given ID plus one.
+	 */
+	public synchronized void setLastID(long id) {
+		nextID = id;
+	}
 }
@@ -0,0 +1,162 @@
+package com.ojcoleman.europa.configurable;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers events to {@link AsynchronousObserver}s on a single background thread, via a bounded queue, so that the
+ * thread firing the events does not wait for the observers. Events are delivered in the order they were dispatched.
+ * What happens when the queue is full is determined by the {@link OverflowPolicy} of the observer the event is for.
+ *
+ * @author O. J. Coleman
+ */
+public class EventDispatcher implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(EventDispatcher.class);
+
+	/**
+	 * What to do with an event for an {@link AsynchronousObserver} when the queue of the {@link EventDispatcher} is
+	 * full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * Wait until there is space in the queue. No events are lost but the thread firing the event is held up.
+		 */
+		BLOCK,
+		/**
+		 * Discard the event.
+		 */
+		DROP
+	}
+
+	// Placed on the queue to stop the dispatch thread.
+	private static final Delivery STOP = new Delivery(null, null, null, null);
+
+	private final BlockingQueue<Delivery> queue;
+	private final Thread thread;
+	private final AtomicLong droppedCount = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Create and start a new EventDispatcher.
+	 *
+	 * @param name The name of the dispatch thread.
+	 * @param capacity The maximum number of events waiting to be delivered.
+	 */
+	public EventDispatcher(String name, int capacity) {
+		queue = new ArrayBlockingQueue<>(capacity);
+		thread = new Thread(name) {
+			@Override
+			public void run() {
+				deliverEvents();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queue the given event for delivery to the given observer. If this dispatcher has been closed, or this method is
+	 * called from the dispatch thread (by an observer firing events itself), then the event is delivered immediately on
+	 * the calling thread.
+	 *
+	 * @param listener The observer to deliver the event to.
+	 * @param observed The subject that fired the event.
+	 * @param event The event.
+	 * @param state The state for the event, as given by {@link AsynchronousObserver#snapshotState(Observable, Object, Object)}.
+	 * @param policy What to do if the queue is full.
+	 */
+	public void dispatch(Observer listener, Observable observed, Object event, Object state, OverflowPolicy policy) {
+		if (closed || Thread.currentThread() == thread) {
+			listener.eventOccurred(observed, event, state);
+			return;
+		}
+
+		Delivery delivery = new Delivery(listener, observed, event, state);
+		if (policy == OverflowPolicy.DROP) {
+			if (!queue.offer(delivery)) {
+				if (droppedCount.getAndIncrement() == 0) {
+					logger.warn("Event queue is full, dropping events for observers that allow it.");
+				}
+			}
+		} else {
+			try {
+				queue.put(delivery);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events that have been discarded because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Deliver all queued events and stop the dispatch thread. This method blocks until this is complete. Events
+	 * dispatched after this is called are delivered immediately on the calling thread.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			queue.put(STOP);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		closed = true;
+
+		// Deliver any events queued after the dispatch thread stopped.
+		Delivery delivery;
+		while ((delivery = queue.poll()) != null) {
+			deliver(delivery);
+		}
+	}
+
+	private void deliverEvents() {
+		while (true) {
+			Delivery delivery;
+			try {
+				delivery = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (delivery == STOP) {
+				return;
+			}
+			deliver(delivery);
+		}
+	}
+
+	private static void deliver(Delivery delivery) {
+		try {
+			delivery.listener.eventOccurred(delivery.observed, delivery.event, delivery.state);
+		} catch (RuntimeException e) {
+			logger.error("Exception in " + delivery.listener.getClass().getSimpleName() + " handling event " + delivery.event, e);
+		}
+	}
+
+	private static class Delivery {
+		final Observer listener;
+		final Observable observed;
+		final Object event;
+		final Object state;
+
+		Delivery(Observer listener, Observable observed, Object event, Object state) {
+			this.listener = listener;
+			this.observed = observed;
+			this.event = event;
+			this.state = state;
+		}
+	}
+}
@@ -4,7 +4,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Simple implementation of the Subject part of the Observer pattern.
+ * Simple implementation of the Subject part of the Observer pattern. Listeners are notified on the thread firing the
+ * event, unless they are {@link AsynchronousObserver}s that provide an {@link EventDispatcher}.
  * 
  * @see Observer
  * 
@@ -50,7 +51,7 @@ public abstract class Observable {
 			event = Event.Unspecified;
 		}
 		for (Observer listener : listeners) {
-			listener.eventOccurred(this, event, null);
+			notify(listener, event, null);
 		}
 	}
 
@@ -69,7 +70,20 @@ public abstract class Observable {
 			event = Event.Unspecified;
 		}
 		for (Observer listener : listeners) {
-			listener.eventOccurred(this, event, state);
+			notify(listener, event, state);
 		}
 	}
+
+	// Notify the given listener directly, or via its EventDispatcher if it is an AsynchronousObserver that has one.
+	private void notify(Observer listener, Object event, Object state) {
+		if (listener instanceof AsynchronousObserver) {
+			AsynchronousObserver asyncListener = (AsynchronousObserver) listener;
+			EventDispatcher dispatcher = asyncListener.getEventDispatcher();
+			if (dispatcher != null) {
+				dispatcher.dispatch(listener, this, event, asyncListener.snapshotState(this, event, state), asyncListener.getOverflowPolicy());
+				return;
+			}
+		}
+		listener.eventOccurred(this, event, state);
+	}
 }
@@ -132,6 +132,20 @@ public abstract class PrototypeBase extends ConfigurableBase {
 		}
 	}
 
+	/**
+	 * {@inheritDoc} The prototype constructor cache is shared with the given ConfigurableBase if it is a PrototypeBase
+	 * (the cache is keyed by class, so it may be shared between classes).
+	 */
+	@Override
+	public void restore(long id, ConfigurableBase shared) {
+		super.restore(id, shared);
+		if (shared instanceof PrototypeBase && ((PrototypeBase) shared).prototypeConstructors != null) {
+			prototypeConstructors = ((PrototypeBase) shared).prototypeConstructors;
+		} else {
+			prototypeConstructors = new HashMap<>();
+		}
+	}
+
 	/**
 	 * Returns a new instance of this prototype. <strong>Care must be taken to ensure that there is a matching copy
 	 * constructor for this prototype class</strong>, that is, a constructor that accepts an instance of this class
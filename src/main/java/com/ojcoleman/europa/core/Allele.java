@@ -1,5 +1,6 @@
 package com.ojcoleman.europa.core;
 
+import java.lang.reflect.Field;
 import java.util.Map;
 
 import com.eclipsesource.json.JsonObject;
@@ -64,6 +65,20 @@ public class Allele<G extends Gene> extends PrototypeBase {
 		this.gene = gene;
 	}
 
+	// Handle for the final gene field set by restoreGene().
+	private static final Field GENE_FIELD = getRestorableField(Allele.class, "gene");
+
+	/**
+	 * Sets the underlying gene of an Allele loaded from a {@link Snapshot}, which is created without calling a
+	 * constructor. This must be called before {@link #restore(long, com.ojcoleman.europa.configurable.ConfigurableBase)}.
+	 *
+	 * @throws IllegalStateException If this Allele was initialised by a constructor or has already been restored.
+	 */
+	void restoreGene(G gene) {
+		checkRestorable();
+		restoreField(GENE_FIELD, this, gene);
+	}
+
 	/**
 	 * Marks this Allele as belonging to the specified Genotype. This should generally only be called by Genotype (via
 	 * {@link Genotype#addAllele(Allele)}).
@@ -0,0 +1,44 @@
+package com.ojcoleman.europa.core;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Interface for {@link Evaluator}s that can evaluate several {@link Individual}s together, for example by stepping a
+ * simulated environment for each individual in lockstep so that the state of all the environments can be updated in
+ * the same loop. {@link Population#evaluate()} will provide groups of individuals to evaluators implementing this
+ * interface, rather than individuals one at a time, when the population is configured to do so.
+ * </p>
+ * <p>
+ * The results must be the same as those produced by calling {@link Evaluator#evaluate(Individual, Log)} for each
+ * individual separately.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public interface BatchEvaluator {
+	/**
+	 * Returns true iff {@link #evaluateBatch(List, Log)} should be used by this evaluator. Sub-classes of a
+	 * BatchEvaluator that evaluate individuals differently to their super-class, and which don't provide their own
+	 * batch implementation, should return false so that their individuals are evaluated one at a time.
+	 */
+	public boolean isBatchEvaluationSupported();
+
+	/**
+	 * <p>
+	 * Evaluate the given {@link Individual}s. The functions of the individuals have been set via
+	 * {@link Individual#setFunction(Function)}. The Evaluator must call
+	 * {@link EvaluationData#setResult(EvaluationDescription, double)} on the evaluationData of each individual for each
+	 * evaluation type it defines in {@link Evaluator#getEvaluationDescriptions()}.
+	 * </p>
+	 * <p>
+	 * <strong>It is critical that this method is thread-safe (can handle multiple simultaneous calls).</strong>
+	 * </p>
+	 *
+	 * @param individuals The Individuals to evaluate.
+	 * @param log Whether, how and what details to log of the evaluations. If {@link Log#NO_LOG} is given then no logging
+	 *            is required. As a Log records the details for a single evaluation, implementations that support
+	 *            logging should evaluate the individuals one at a time if any log items are specified.
+	 */
+	public void evaluateBatch(List<? extends Individual<?, ?>> individuals, Log log);
+}
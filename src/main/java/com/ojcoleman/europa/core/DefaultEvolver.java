@@ -12,11 +12,14 @@ import java.util.Set;
 import java.util.Map.Entry;
 
 import com.ojcoleman.europa.algos.neat.NEATSpecies;
+import com.ojcoleman.europa.configurable.Component;
 import com.ojcoleman.europa.configurable.ComponentBase;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.core.DefaultEvolver.SpeciesData;
+import com.ojcoleman.europa.surrogates.KNNSurrogate;
 import com.ojcoleman.europa.transcribers.nn.NNPart;
+import com.ojcoleman.europa.util.LatencyRecorder;
 import com.ojcoleman.europa.util.Stringer;
 
 /**
@@ -40,6 +43,12 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 
 	@Parameter(description = "If speciation is used, how many iterations a species may persist without the (overall) fitness of its fittest individual improving. Set to 0 to disable.", defaultValue = "0")
 	protected int speciesMaxStagnantIterations;
+
+	@Component(description = "Optional surrogate model used to pre-screen offspring. If set, and surrogateOversampling is greater than 1, more offspring than required are generated and only those with the highest predicted fitness are added to the population (and so evaluated).", optional = true, defaultClass = KNNSurrogate.class)
+	protected Surrogate<G> surrogate;
+
+	@Parameter(description = "If a surrogate is set, how many times more offspring than required to generate for pre-screening by the surrogate. Note that the offspring are created (and mutated) before they are screened, so the discarded offspring still consume genotype, allele and gene (innovation) IDs; the IDs of the individuals in the population will have correspondingly larger gaps between them.", defaultValue = "3", minimumValue = "1")
+	protected double surrogateOversampling;
 	
 	private final Map<Species<G>, SpeciesData<G>> speciesData = Collections.synchronizedMap(new HashMap<Species<G>, SpeciesData<G>>());
 
@@ -52,6 +61,12 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 
 	@Override
 	public void evolve(final Population<G, ?> population) {
+		// Train the surrogate on the members evaluated in this iteration.
+		if (surrogate != null) {
+			surrogate.update(population.getMembers());
+		}
+		final boolean screenOffspring = surrogate != null && surrogateOversampling > 1 && surrogate.isReady();
+
 		List<Species<G>> parentSpecies = new ArrayList<>(population.getSpecies());
 		// Remove empty species.
 		Iterator<Species<G>> speciesIter = parentSpecies.iterator();
@@ -138,6 +153,9 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 		final List<Individual<G, ?>> toRemove = Collections.synchronizedList(new ArrayList<Individual<G, ?>>());
 		final DefaultEvolver<G> evolver = this;
 		final Random random = this.getParentComponent(Run.class).random;
+		final LatencyRecorder recombineRecorder = this.getParentComponent(Run.class).getPhaseRecorder(Run.PHASE_RECOMBINE);
+		final LatencyRecorder cloneRecorder = this.getParentComponent(Run.class).getPhaseRecorder(Run.PHASE_CLONE);
+		final LatencyRecorder mutateRecorder = this.getParentComponent(Run.class).getPhaseRecorder(Run.PHASE_MUTATE);
 		
 		// Reproduce from each species relative to its percentage of total fitness.
 		this.getParentComponent(Run.class).parallel.foreach(parentSpecies, new Parallel.Operation<Species<G>>() {
@@ -146,10 +164,7 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 				
 				int newSpeciesSize = (int) Math.round(sd.newSizeProportion * population.getDesiredSize());
 				
-				int eliteCount = Math.min(sd.rankedMembers.size(), (int) Math.round(elitismProportion * newSpeciesSize));
-				if (elitismMax != -1 && eliteCount > elitismMax) {
-					eliteCount = elitismMax;
-				}
+				int eliteCount = Math.min(sd.rankedMembers.size(), getEliteCount(newSpeciesSize));
 				
 				if (sd != null) {
 					Individual<G, ?> fittest = sd.rankedMembers.get(0);
@@ -161,13 +176,17 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 					
 					if (numSpeciesOffspring > 0) {
 						// Get parents.
-						int parentCount = Math.max(2, (int) Math.round(species.size() * parentsProportion));
+						int parentCount = getParentCount(species.size());
 						if (parentCount > sd.rankedMembers.size()) {
 							parentCount = sd.rankedMembers.size();
 						}
 						List<Individual<G, ?>> parents = new ArrayList<>(sd.rankedMembers.subList(0, parentCount));
 						
-						for (int offspringIdx = 0; offspringIdx < numSpeciesOffspring; offspringIdx++) {
+						// Generate extra offspring if they are to be pre-screened by the surrogate.
+						int generateCount = screenOffspring ? (int) Math.ceil(numSpeciesOffspring * surrogateOversampling) : numSpeciesOffspring;
+						List<G> speciesOffspring = new ArrayList<>(generateCount);
+						
+						for (int offspringIdx = 0; offspringIdx < generateCount; offspringIdx++) {
 							G newGenotype = null;
 							
 							// Select a recombiner (or cloning) at random, with probability proportional to
@@ -192,20 +211,32 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 								}
 								
 								// Create a new genotype by recombining parent genotypes.
+								long start = System.nanoTime();
 								newGenotype = recombiner.recombine(offspringParentGenotypes);
+								recombineRecorder.recordSince(start);
 							} else {
 								// Create a clone of one of the parents.
 								Individual<G, ?> parent = parents.get(random.nextInt(parents.size()));
 								
+								long start = System.nanoTime();
 								newGenotype = parent.genotype.newInstance();
+								cloneRecorder.recordSince(start);
 							}
 							
 							// Mutate the new genotype as necessary.
+							long start = System.nanoTime();
 							mutateGenotype(newGenotype, false);
+							mutateRecorder.recordSince(start);
 							
-							// Add to list to add to population.
-							newOffspring.add(newGenotype);
+							speciesOffspring.add(newGenotype);
+						}
+						
+						if (screenOffspring) {
+							speciesOffspring = surrogate.select(speciesOffspring, numSpeciesOffspring);
 						}
+						
+						// Add to list to add to population.
+						newOffspring.addAll(speciesOffspring);
 					}
 					
 					// Record non-elites of this species to be removed from population.
@@ -234,8 +265,11 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 
 		// Add mutated clones of random offspring if we don't have enough.
 		while (newOffspring.size() > 0 && newOffspring.size() < targetNewOffspringCount) {
+			long start = System.nanoTime();
 			G newGenotype = newOffspring.get(random.nextInt(newOffspring.size())).newInstance();
+			start = cloneRecorder.recordSince(start);
 			mutateGenotype(newGenotype, false);
+			mutateRecorder.recordSince(start);
 			newOffspring.add(newGenotype);
 		}
 		
@@ -252,6 +286,24 @@ public class DefaultEvolver<G extends Genotype<?>> extends Evolver<G> {
 			}
 		};
 	}
+
+	/**
+	 * Returns the number of parents selected from a Population or Species of the given size.
+	 */
+	public int getParentCount(int size) {
+		return Math.max(2, (int) Math.round(size * parentsProportion));
+	}
+
+	/**
+	 * Returns the number of elites to select for a Population or Species with the given new size.
+	 */
+	public int getEliteCount(int newSize) {
+		int eliteCount = (int) Math.round(elitismProportion * newSize);
+		if (elitismMax != -1 && eliteCount > elitismMax) {
+			eliteCount = elitismMax;
+		}
+		return eliteCount;
+	}
 	
 	
 	static class SpeciesData<G2 extends Genotype<?>> {
@@ -29,4 +29,9 @@ public class DummyEvaluator extends Evaluator {
 	public void evaluate(Individual individual, Log log) {
 	}
 
+	@Override
+	public boolean isFunctionSideEffectFree() {
+		return true;
+	}
+
 }
@@ -6,10 +6,11 @@ import java.util.Map.Entry;
 import com.ojcoleman.europa.util.Stringer;
 
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Container for the result of evaluating an {@link Individual} with an {@link Evaluator}.
+ * Container for the result of evaluating an {@link Individual} with an {@link Evaluator}. Results may be set
+ * concurrently by multiple Evaluators (see {@link Evaluator#isFunctionSideEffectFree()}).
  * 
  * @author O. J. Coleman
  */
@@ -19,12 +20,12 @@ public class EvaluationData {
 	private final Map<EvaluationDescription, Double> allResults;
 
 	public EvaluationData() {
-		fitnessResults = new HashMap<EvaluationDescription, Double>();
-		performanceResults = new HashMap<EvaluationDescription, Double>();
-		allResults = new HashMap<EvaluationDescription, Double>();
+		fitnessResults = new ConcurrentHashMap<EvaluationDescription, Double>();
+		performanceResults = new ConcurrentHashMap<EvaluationDescription, Double>();
+		allResults = new ConcurrentHashMap<EvaluationDescription, Double>();
 	}
 
-	public void setResult(EvaluationDescription key, double result) {
+	public synchronized void setResult(EvaluationDescription key, double result) {
 		if (allResults.containsKey(key)) {
 			throw new IllegalArgumentException("EvaluationData: A result has already been set for " + key.name);
 		}
@@ -104,10 +105,36 @@ public class EvaluationData {
 		return false;
 	}
 
+	/**
+	 * Returns the average of the fitness results, each scaled to the unit range according to
+	 * {@link EvaluationDescription#range} such that 1 is the optimal value. Returns 0 if there are no fitness results.
+	 */
+	public double getScaledFitness() {
+		if (fitnessResults.isEmpty()) {
+			return 0;
+		}
+		double score = 0;
+		for (Entry<EvaluationDescription, Double> result : fitnessResults.entrySet()) {
+			EvaluationDescription desc = result.getKey();
+			double unit = desc.range.translateToUnit(result.getValue());
+			score += desc.optimalValue == desc.range.start ? 1 - unit : unit;
+		}
+		return score / fitnessResults.size();
+	}
+
+	/**
+	 * Removes the result for the given key, if present, so that a new result may be set for it.
+	 */
+	public synchronized void removeResult(EvaluationDescription key) {
+		allResults.remove(key);
+		fitnessResults.remove(key);
+		performanceResults.remove(key);
+	}
+
 	/**
 	 * Removes all evaluation data.
 	 */
-	public void clear() {
+	public synchronized void clear() {
 		allResults.clear();
 		fitnessResults.clear();
 		performanceResults.clear();
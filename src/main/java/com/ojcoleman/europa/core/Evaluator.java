@@ -5,6 +5,7 @@ import java.util.Set;
 import com.ojcoleman.europa.configurable.ComponentBase;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Parameter;
+import com.ojcoleman.europa.util.LatencyRecorder;
 
 /**
  * Base class for classes used to evaluate the fitness of {@link Individual}s in the evolutionary algorithm.
@@ -15,6 +16,10 @@ public abstract class Evaluator extends ComponentBase {
 	@Parameter(description = "A name for the evaluator, used in logging. Default is the evaluators class name.", optional = true)
 	private String name;
 
+	// The recorder for the durations of evaluations performed by this evaluator, see getRecorder(). Mark as transient
+	// so XStream does not store it (timing starts afresh when resuming).
+	private transient volatile LatencyRecorder recorder;
+
 	/**
 	 * Constructor for {@link ComponentBase}.
 	 */
@@ -30,6 +35,14 @@ public abstract class Evaluator extends ComponentBase {
 		return name;
 	}
 
+	// Returns the recorder for the durations of evaluations performed by this evaluator, looking it up in the Run once.
+	LatencyRecorder getRecorder() {
+		if (recorder == null) {
+			recorder = this.getParentComponent(Run.class).getPhaseRecorder(Run.PHASE_EVALUATOR_PREFIX + name);
+		}
+		return recorder;
+	}
+
 	/**
 	 * Get the {@link EvaluationDescription}s that describe the evaluations performed by this evaluator.
 	 */
@@ -50,6 +63,20 @@ public abstract class Evaluator extends ComponentBase {
 	 */
 	public abstract void evaluate(Individual individual, Log log);
 
+	/**
+	 * Returns true iff this Evaluator neither modifies the state of the {@link Function} of the individual being
+	 * evaluated nor uses it in any other way that is unsafe if other Evaluators use it at the same time (most
+	 * stateful functions, such as neural networks, are modified simply by being applied). If
+	 * {@link Population#concurrentEvaluators} is enabled then Evaluators that are side-effect-free share the function
+	 * of an individual, while the others are each given their own copy. This default implementation returns false.
+	 * Note that the Evaluators included with Europa that apply the function (including the target fitness and double
+	 * pole balancing Evaluators) do not override this, as the neural network functions produced by the included
+	 * Transcribers update their neuron and synapse state when applied, so may not be applied by two Evaluators at once.
+	 */
+	public boolean isFunctionSideEffectFree() {
+		return false;
+	}
+
 	/**
 	 * Allows the Evaluator to indicate if the evolutionary run should terminate, usually because a solution has been
 	 * found. This default implementation always returns false.
@@ -2,6 +2,7 @@ package com.ojcoleman.europa.core;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -105,8 +106,45 @@ public abstract class Genotype<A extends Allele<?>> extends PrototypeBase implem
 			this.alleles.add(newAllele);
 		}
 		
+		indexAlleles();
+	}
+
+	// Handles for the final fields set by restore().
+	private static final Field PARENTS_FIELD = getRestorableField(Genotype.class, "parents");
+	private static final Field ALLELES_FIELD = getRestorableField(Genotype.class, "alleles");
+
+	/**
+	 * Sets the parents and alleles of a Genotype loaded from a {@link Snapshot}, which stores them separately from the
+	 * rest of the state of the Genotype, and then calls {@link #readResolve()} so that sub-classes may rebuild any
+	 * state derived from the alleles.
+	 *
+	 * @throws IllegalStateException If the alleles of this Genotype have already been set.
+	 */
+	void restore(List<Genotype<?>> parents, Collection<A> alleles) {
+		if (this.alleles != null) {
+			throw new IllegalStateException("The alleles of this Genotype have already been set.");
+		}
+		restoreField(PARENTS_FIELD, this, Collections.unmodifiableList(parents));
+		restoreField(ALLELES_FIELD, this, alleles);
+		indexAlleles();
+		readResolve();
+	}
+
+	/**
+	 * Called when this Genotype has been loaded from a saved Run, once its alleles have been restored. Sub-classes that
+	 * maintain views of their alleles in transient fields should override this to rebuild them, calling
+	 * <code>super.readResolve()</code>.
+	 */
+	protected Object readResolve() {
+		return this;
+	}
+
+	/**
+	 * (Re)build the index of alleles by gene type from {@link #alleles}.
+	 */
+	private void indexAlleles() {
 		allelesByGeneType = ArrayListMultimap.create();
-		for (A allele : this.alleles) {
+		for (A allele : alleles) {
 			updateAllelesByGeneTypeForAdd(allele);
 		}
 	}
@@ -40,6 +40,10 @@ public class Individual<G extends Genotype<?>, F extends Function<?, ?>> extends
 	 */
 	protected transient F function;
 
+	// Per-thread functions that override function, for when multiple Evaluators evaluate this individual
+	// concurrently with their own copies of the function. Created lazily.
+	private transient volatile ThreadLocal<Function<?, ?>> threadFunction;
+
 	/**
 	 * The Species this Individual is currently associated with.
 	 */
@@ -78,9 +82,41 @@ public class Individual<G extends Genotype<?>, F extends Function<?, ?>> extends
 	 * Returns the function generated (transcribed) from the genotype of this individual.
 	 */
 	public Function<?, ?> getFunction() {
+		ThreadLocal<Function<?, ?>> tf = threadFunction;
+		if (tf != null) {
+			Function<?, ?> f = tf.get();
+			if (f != null) {
+				return f;
+			}
+		}
 		return function;
 	}
 
+	/**
+	 * Sets the function returned by {@link #getFunction()} for the current thread only, overriding the function set
+	 * with {@link #setFunction(Function)}. This is used by the {@link Population} component to evaluate this
+	 * individual with multiple Evaluators concurrently.
+	 */
+	void setThreadFunction(Function<?, ?> function) {
+		if (threadFunction == null) {
+			synchronized (this) {
+				if (threadFunction == null) {
+					threadFunction = new ThreadLocal<>();
+				}
+			}
+		}
+		threadFunction.set(function);
+	}
+
+	/**
+	 * Clears the function set for the current thread with {@link #setThreadFunction(Function)}.
+	 */
+	void clearThreadFunction() {
+		if (threadFunction != null) {
+			threadFunction.remove();
+		}
+	}
+
 	/**
 	 * Sets the function transcribed from the genotype of this individual. This is generally called by the
 	 * {@link Population} component.
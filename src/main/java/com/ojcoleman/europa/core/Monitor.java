@@ -1,26 +1,80 @@
 package com.ojcoleman.europa.core;
 
+import com.ojcoleman.europa.configurable.AsynchronousObserver;
 import com.ojcoleman.europa.configurable.ComponentBase;
 import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.EventDispatcher;
 import com.ojcoleman.europa.configurable.Observable;
-import com.ojcoleman.europa.configurable.Observer;
+import com.ojcoleman.europa.configurable.Parameter;
 
 /**
  * <p>
  * Base class of classes that monitor the state of the evolutionary process.
  * </p>
- * 
+ *
  * <p>
  * Typically an {@link Observable} will call {@link Run#monitor(Observable)} so that it may be monitored.
  * </p>
- * 
+ *
+ * <p>
+ * If {@link #asynchronous} is set then events are delivered to the Monitor on the event dispatch thread of the Run
+ * (see {@link Run#getEventDispatcher()}) rather than holding up the evolutionary cycle. By then the Run will have moved
+ * on and the Individuals, Species and so on will have changed, so a Monitor only supports asynchronous delivery if it
+ * overrides {@link #snapshotState(Observable, Object, Object)} to capture everything it will output (and then relies
+ * only on the captured state), and overrides {@link #supportsAsynchronous()} to return true. Setting
+ * {@link #asynchronous} for other Monitors is an error.
+ * </p>
+ *
  * @author O. J. Coleman
  */
-public abstract class Monitor extends ComponentBase implements Observer {
+public abstract class Monitor extends ComponentBase implements AsynchronousObserver {
+	@Parameter(description = "Whether to receive events on a separate thread rather than holding up the evolutionary cycle. Only supported by some monitors (those that capture what they output when the event is fired), for example OverviewMonitor, SpeciesMonitor and DebugMonitor.", defaultValue = "false")
+	protected boolean asynchronous;
+
+	@Parameter(description = "If asynchronous is set, what to do with events when the event queue of the Run is full: BLOCK to wait for space or DROP to discard them.", defaultValue = "BLOCK")
+	protected EventDispatcher.OverflowPolicy overflowPolicy;
+
+	private Run run;
+
 	/**
 	 * Constructor for {@link ComponentBase}.
 	 */
 	public Monitor(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
+
+		run = this.getParentComponent(Run.class);
+
+		if (asynchronous && !supportsAsynchronous()) {
+			throw new IllegalArgumentException(getClass().getSimpleName() + " does not support receiving events asynchronously, asynchronous must be false.");
+		}
+	}
+
+	/**
+	 * Returns true iff this Monitor captures everything it needs in
+	 * {@link #snapshotState(Observable, Object, Object)}, so that events may be delivered to it asynchronously. This
+	 * implementation returns false.
+	 */
+	protected boolean supportsAsynchronous() {
+		return false;
+	}
+
+	@Override
+	public EventDispatcher getEventDispatcher() {
+		return asynchronous ? run.getEventDispatcher() : null;
+	}
+
+	@Override
+	public EventDispatcher.OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * {@inheritDoc} This implementation returns the given state unchanged. Monitors that support asynchronous delivery
+	 * (see {@link #supportsAsynchronous()}) must override this to capture what they output, for example formatted
+	 * strings or copies of values, rather than references to Individuals, Species or other objects that may change.
+	 */
+	@Override
+	public Object snapshotState(Observable observed, Object event, Object state) {
+		return state;
 	}
-}
\ No newline at end of file
+}
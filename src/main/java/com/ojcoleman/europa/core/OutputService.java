@@ -0,0 +1,294 @@
+package com.ojcoleman.europa.core;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Writes text to files on a single background thread so that {@link Monitor}s do not block the evolutionary cycle on
+ * disk I/O. Writes are placed on a bounded queue; if the queue is full then the caller waits for space, which bounds
+ * the memory used if output is produced faster than it can be written. Each file is kept open with a large buffer
+ * until it is explicitly closed or the service is closed, and the buffers are flushed periodically (see
+ * {@link Run#outputFlushInterval}), so the files stay reasonably up to date for anyone watching them.
+ * </p>
+ * <p>
+ * The text for a file is appended to it if it already exists, unless the file is first truncated with
+ * {@link #truncate(Path)}. Output may optionally be compressed with gzip, in
+ * which case ".gz" is appended to the file names. Each flush of a compressed file completes a compressed block, so
+ * the data written so far may be decompressed while the run continues.
+ * </p>
+ * <p>
+ * The service for a Run is obtained with {@link Run#getOutputService()}.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class OutputService implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(OutputService.class);
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Compression that may be applied to output files.
+	 */
+	public enum Compression {
+		/**
+		 * No compression.
+		 */
+		NONE,
+		/**
+		 * gzip compression.
+		 */
+		GZIP
+	}
+
+	// Placed on the queue to stop the writer thread.
+	private static final Request STOP = new Request(null, null, null, false);
+
+	private final BlockingQueue<Request> queue;
+	private final long flushInterval;
+	private final Compression compression;
+	private final Thread thread;
+
+	// Only accessed by the writer thread.
+	private final Map<Path, Writer> writers = new HashMap<>();
+
+	private volatile boolean closed;
+
+	/**
+	 * Create and start a new OutputService.
+	 *
+	 * @param queueSize The maximum number of pending writes.
+	 * @param flushInterval The maximum time, in milliseconds, that written text may be held in a buffer.
+	 * @param compression The compression to apply to output files.
+	 */
+	public OutputService(int queueSize, long flushInterval, Compression compression) {
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		this.flushInterval = flushInterval;
+		this.compression = compression;
+
+		thread = new Thread("Output") {
+			@Override
+			public void run() {
+				processQueue();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Append the given text to the given file. The file is created if it does not exist.
+	 */
+	public void write(Path file, CharSequence text) {
+		put(new Request(file, text.toString(), null, false));
+	}
+
+	/**
+	 * Append the given text and a line separator to the given file. The file is created if it does not exist.
+	 */
+	public void writeLine(Path file, CharSequence text) {
+		put(new Request(file, text + "\n", null, false));
+	}
+
+	/**
+	 * Close the given file once all pending writes to it have been completed. The file will be reopened (and appended
+	 * to) if it is written to again.
+	 */
+	public void close(Path file) {
+		put(new Request(file, null, null, false));
+	}
+
+	/**
+	 * Truncate the given file, or create it if it does not exist, once all pending writes to it have been completed.
+	 * Subsequent writes are appended to the now empty file.
+	 */
+	public void truncate(Path file) {
+		put(new Request(file, null, null, true));
+	}
+
+	/**
+	 * Wait until all writes made so far have been written and flushed.
+	 */
+	public void flush() {
+		if (closed) {
+			return;
+		}
+		CountDownLatch done = new CountDownLatch(1);
+		put(new Request(null, null, done, false));
+		await(done);
+	}
+
+	/**
+	 * Complete all pending writes, close all files and stop the writer thread. This method blocks until this is
+	 * complete. Further writes are ignored.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			queue.put(STOP);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void put(Request request) {
+		if (closed) {
+			logger.warn("Output service has been closed, ignoring write to " + request.file);
+			return;
+		}
+		try {
+			queue.put(request);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void processQueue() {
+		long lastFlush = System.currentTimeMillis();
+		boolean dirty = false;
+		while (true) {
+			Request request;
+			try {
+				// Wait for more output until the next flush is due.
+				long wait = dirty ? Math.max(0, lastFlush + flushInterval - System.currentTimeMillis()) : Long.MAX_VALUE;
+				request = queue.poll(wait, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				request = STOP;
+			}
+
+			if (request == STOP) {
+				closeAll();
+				return;
+			}
+
+			if (request != null) {
+				if (request.done != null) {
+					flushAll();
+					request.done.countDown();
+				} else if (request.truncate) {
+					closeWriter(request.file);
+					try {
+						openWriter(request.file, true);
+					} catch (IOException e) {
+						logger.error("Could not truncate " + request.file, e);
+					}
+				} else if (request.text == null) {
+					closeWriter(request.file);
+				} else {
+					try {
+						getWriter(request.file).write(request.text);
+						dirty = true;
+					} catch (IOException e) {
+						logger.error("Could not write to " + request.file, e);
+					}
+				}
+			}
+
+			if (dirty && System.currentTimeMillis() - lastFlush >= flushInterval) {
+				flushAll();
+				dirty = false;
+				lastFlush = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private Writer getWriter(Path file) throws IOException {
+		Writer writer = writers.get(file);
+		if (writer == null) {
+			writer = openWriter(file, false);
+		}
+		return writer;
+	}
+
+	private Writer openWriter(Path file, boolean truncate) throws IOException {
+		Path path = compression == Compression.GZIP ? file.resolveSibling(file.getFileName() + ".gz") : file;
+		OutputStream out = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, truncate ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+		if (compression == Compression.GZIP) {
+			// Sync flush so that the output written so far can be decompressed while the file is still open.
+			out = new GZIPOutputStream(out, BUFFER_SIZE, true);
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		writers.put(file, writer);
+		return writer;
+	}
+
+	private void flushAll() {
+		for (Map.Entry<Path, Writer> entry : writers.entrySet()) {
+			try {
+				entry.getValue().flush();
+			} catch (IOException e) {
+				logger.error("Could not write to " + entry.getKey(), e);
+			}
+		}
+	}
+
+	private void closeWriter(Path file) {
+		Writer writer = writers.remove(file);
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				logger.error("Could not close " + file, e);
+			}
+		}
+	}
+
+	private void closeAll() {
+		for (Iterator<Path> itr = writers.keySet().iterator(); itr.hasNext();) {
+			Path file = itr.next();
+			try {
+				writers.get(file).close();
+			} catch (IOException e) {
+				logger.error("Could not close " + file, e);
+			}
+			itr.remove();
+		}
+	}
+
+	private static class Request {
+		final Path file;
+		final String text;
+		final CountDownLatch done;
+		final boolean truncate;
+
+		Request(Path file, String text, CountDownLatch done, boolean truncate) {
+			this.file = file;
+			this.text = text;
+			this.done = done;
+			this.truncate = truncate;
+		}
+	}
+}
@@ -25,6 +25,7 @@ import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Observable;
 import com.ojcoleman.europa.configurable.Observer;
 import com.ojcoleman.europa.configurable.Parameter;
+import com.ojcoleman.europa.util.LatencyRecorder;
 import com.thoughtworks.xstream.XStream;
 
 /**
@@ -35,10 +36,13 @@ public class Parallel extends ComponentBase {
 	private final static Logger logger = LoggerFactory.getLogger(Evolver.class);
 
 	@Parameter(description = "The number of threads to use for parallel operations. If set to 0 or not set then the number of CPU cores is used.", minimumValue = "0", defaultValue = "0")
-	protected int threadCount;
+	protected volatile int threadCount;
 
 	// Mark as transient so XStream does not store it. See readResolve().
 	protected transient ExecutorService executor;
+
+	// The recorder for the durations of tasks, see getTaskRecorder(). Mark as transient so XStream does not store it.
+	private transient volatile LatencyRecorder taskRecorder;
 	
 	
 	public Parallel(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
@@ -62,6 +66,14 @@ public class Parallel extends ComponentBase {
 		});
 	}
 	
+	// Returns the recorder for the durations of tasks, used to determine how busy each thread is.
+	private LatencyRecorder getTaskRecorder() {
+		if (taskRecorder == null) {
+			taskRecorder = this.getParentComponent(Run.class).getPhaseRecorder(Run.PHASE_PARALLEL_TASK);
+		}
+		return taskRecorder;
+	}
+
 	private Object readResolve() {
 		// Create new thread pool upon resuming from a save file.
 		executor = Executors.newFixedThreadPool(threadCount, new DaemonThreadFactory(Parallel.class.getName()));
@@ -69,6 +81,58 @@ public class Parallel extends ComponentBase {
 	}
 	
 	
+	/**
+	 * Returns the number of threads in the pool.
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Set the number of threads to use for parallel operations. This may be called while the Run is executing, and
+	 * takes effect for the next parallel operation.
+	 * 
+	 * @throws IllegalArgumentException If the given count is less than 1.
+	 */
+	public synchronized void setThreadCount(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("The thread count must be at least 1.");
+		}
+		if (executor instanceof ThreadPoolExecutor) {
+			ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+			// The core size may not be larger than the maximum size.
+			if (count > pool.getMaximumPoolSize()) {
+				pool.setMaximumPoolSize(count);
+				pool.setCorePoolSize(count);
+			} else {
+				pool.setCorePoolSize(count);
+				pool.setMaximumPoolSize(count);
+			}
+		}
+		threadCount = count;
+	}
+
+	/**
+	 * Returns the approximate number of threads that are executing tasks.
+	 */
+	public int getActiveThreadCount() {
+		return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getActiveCount() : 0;
+	}
+
+	/**
+	 * Returns the number of tasks waiting to be executed.
+	 */
+	public int getQueuedTaskCount() {
+		return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+	}
+
+	/**
+	 * Returns the approximate total number of tasks that have been executed.
+	 */
+	public long getCompletedTaskCount() {
+		return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getCompletedTaskCount() : 0;
+	}
+
 	/**
 	 * Perform the given {@link Parallel.Operation} on the given elements. Returns when all elements have been
 	 * processed.
@@ -115,7 +179,9 @@ public class Parallel extends ComponentBase {
 			callables.add(new Callable<Void>() {
 				@Override
 				public Void call() {
+					long start = System.nanoTime();
 					operation.perform(elem);
+					getTaskRecorder().recordSince(start);
 					return null;
 				}
 			});
@@ -124,6 +190,78 @@ public class Parallel extends ComponentBase {
 		return callables;
 	}
 
+	/**
+	 * <p>
+	 * Perform the given {@link Parallel.IndexOperation} for each index from 0 (inclusive) to count (exclusive), using up
+	 * to the given number of workers. Returns when all indices have been processed.
+	 * </p>
+	 * <p>
+	 * Unlike {@link #foreach(Collection, Operation)} this method may be called from within an operation already being
+	 * performed by this Parallel, to perform nested parallel operations. The calling thread is always one of the
+	 * workers, and indices are claimed one at a time by the workers, so the operation completes even if no other
+	 * threads in the pool are free to help. Helper tasks that have not started by the time all indices have been
+	 * claimed are cancelled.
+	 * </p>
+	 * 
+	 * @param count The number of indices.
+	 * @param workers The maximum number of workers (including the calling thread). This is limited to the number of
+	 *            threads in the pool.
+	 * @param operation The operation to perform for each index.
+	 */
+	public void forIndices(final int count, int workers, final IndexOperation operation) {
+		workers = Math.min(Math.min(workers, threadCount), count);
+		final AtomicInteger nextIndex = new AtomicInteger();
+
+		List<Future<?>> helpers = new ArrayList<>();
+		for (int w = 1; w < workers; w++) {
+			final int worker = w;
+			helpers.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					LatencyRecorder recorder = getTaskRecorder();
+					int index;
+					while ((index = nextIndex.getAndIncrement()) < count) {
+						long start = System.nanoTime();
+						operation.perform(index, worker);
+						recorder.recordSince(start);
+					}
+				}
+			}));
+		}
+
+		LatencyRecorder recorder = getTaskRecorder();
+		int index;
+		while ((index = nextIndex.getAndIncrement()) < count) {
+			long start = System.nanoTime();
+			operation.perform(index, 0);
+			recorder.recordSince(start);
+		}
+
+		// Wait for helpers that have started to finish.
+		for (Future<?> helper : helpers) {
+			if (!helper.cancel(false)) {
+				try {
+					helper.get();
+				} catch (Exception e) {
+					throw new RuntimeException("Error executing parallel operation.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * An operation to be performed for a single index by {@link Parallel#forIndices(int, int, IndexOperation)}.
+	 */
+	public static interface IndexOperation {
+		/**
+		 * @param index The index to perform the operation for.
+		 * @param worker The worker performing the operation, from 0 (the calling thread) to the number of workers - 1.
+		 *            Operations for the same worker are performed sequentially by a single thread, so per-worker
+		 *            resources may be indexed by this value.
+		 */
+		public void perform(int index, int worker);
+	}
+
 	/**
 	 * An operation to be performed on a single element. The perform method will be invoked for each element in the
 	 * given collection, with the element passed as the parameter.
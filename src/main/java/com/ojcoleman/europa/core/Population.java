@@ -1,8 +1,11 @@
 package com.ojcoleman.europa.core;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -10,11 +13,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +40,7 @@ import com.ojcoleman.europa.configurable.Prototype;
 import com.ojcoleman.europa.rankers.NSGAII;
 import com.ojcoleman.europa.rankers.SimpleRanker;
 import com.ojcoleman.europa.speciators.NoSpeciation;
+import com.ojcoleman.europa.util.FlightRecording;
 import com.ojcoleman.europa.util.Stringer;
 
 /**
@@ -52,6 +57,27 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 	@Parameter(description = "The desired population size.", defaultValue = "100", minimumValue = "1")
 	protected int desiredSize;
 
+	@Parameter(description = "The maximum number of individuals each thread evaluates together, for Evaluators that implement BatchEvaluator (eg by simulating an environment for each individual in lockstep). Groups are made smaller if necessary so that there is at least one group per thread. 0 or 1 disables batch evaluation.", defaultValue = "1", minimumValue = "0")
+	protected int evaluationBatchSize;
+
+	@Parameter(description = "Whether to run the Evaluators for an individual concurrently, as separate tasks, rather than one after the other. This reduces the time to evaluate each individual, which helps when there are fewer individuals to evaluate than threads. Evaluators that are not side-effect-free with respect to the individual's function (see Evaluator.isFunctionSideEffectFree()) are given their own copy of the function. Not used for BatchEvaluators.", defaultValue = "false")
+	protected boolean concurrentEvaluators;
+
+	@Parameter(description = "Whether to abort the evaluation of individuals that provably cannot be selected as parents or elites, for Evaluators that implement RacingEvaluator. This requires that there is only one fitness objective, that the Evolver is a DefaultEvolver and that speciation is not used. The fitness of aborted individuals is an upper bound on their actual fitness.", defaultValue = "false")
+	protected boolean racing;
+
+	@Component(description = "Optional lower fidelity (cheaper) evaluation stages, ordered from lowest to highest fidelity. Each stage is an Evaluator, typically a copy of one of the Run evaluators with a smaller fidelity setting (eg fewer time steps, trials or examples), and must define evaluations with the same names as those defined by the Run evaluators (Evaluators are named after their class by default). Individuals are evaluated by each stage in turn, with only those promoted by a stage (see fidelityPromotionProportion and fidelityPromotionThreshold) evaluated by the next stage, the Run evaluators being the final stage. Individuals that are not promoted keep the results from the last stage they were evaluated by for the current iteration; if they survive to the next iteration (eg as elites) they are then evaluated by the Run evaluators, so that low fidelity results do not persist.", optional = true)
+	protected Evaluator[] fidelityStages;
+
+	@Parameter(description = "The proportion of the individuals evaluated by a fidelity stage that are promoted to the next stage, according to the average of their fitness results (each scaled to [0, 1], with 1 being optimal).", defaultValue = "0.25", minimumValue = "0", maximumValue = "1")
+	protected double fidelityPromotionProportion;
+
+	@Parameter(description = "If greater than 0, individuals evaluated by a fidelity stage whose average scaled fitness (see fidelityPromotionProportion) is at least this value are also promoted to the next stage.", defaultValue = "0", minimumValue = "0", maximumValue = "1")
+	protected double fidelityPromotionThreshold;
+
+	@Parameter(description = "How individuals evaluated at different fidelities are ranked against each other. 'TIERED': individuals evaluated at a higher fidelity are always ranked above those evaluated at a lower fidelity, with the ranking within each fidelity given by the Ranker. 'DIRECT': the results from the different fidelities are treated as equivalent and ranked directly by the Ranker.", defaultValue = "TIERED")
+	protected FidelityMergePolicy fidelityMergePolicy;
+
 	@Prototype(description = "The configuration for the prototype Individual.", defaultClass = Individual.class)
 	protected Individual<G, F> individualPrototype;
 
@@ -82,14 +108,29 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 	 */
 	protected Individual<G, F> bestPerforming;
 
-	// Pool of functions to provide to transcriber in case it can re-use them.
-	private final ConcurrentLinkedDeque<F> functionPool;
+	// Per-thread pools of functions to provide to transcriber in case it can re-use them, bucketed by
+	// Transcriber.getFunctionSizeClass(). Mark as transient so XStream does not store it. See evaluate().
+	private transient ThreadLocal<Map<Integer, ArrayDeque<F>>> functionPool;
+
+	// The highest fidelity stage each member was evaluated at, where fidelityStages.length indicates the Run evaluators.
+	// Created in evaluate() if necessary, as it is not present in save files from before fidelity stages were added.
+	private Map<Individual<G, F>, Integer> fidelityLevels;
+
+	// For each fidelity stage, the evaluation descriptions of the Run evaluators keyed by name, see mapFidelityResults().
+	private transient Map<String, EvaluationDescription> finalEvaluationsByName;
+
+	// The cutoff for racing evaluations in the current call to evaluate(), or null if racing is not used.
+	private transient RacingCutoff racingCutoff;
+	private boolean racingWarned;
 
 	// Final reference to Run and transcriber for use in anonymous runnable class.
 	final Run run;
 	final Transcriber<G, F> transcriber;
 
 	// Used in getState()
+	int[] fidelityStageCounts;
+	int racedCount;
+	int racingAbortedCount;
 	int speciesCount;
 	int avgSpeciesSize;
 	int maxSpeciesSize;
@@ -104,8 +145,6 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 	public Population(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
 
-		functionPool = new ConcurrentLinkedDeque<>();
-
 		species = new LinkedList<>();
 
 		run = this.getParentComponent(Run.class);
@@ -115,6 +154,8 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 
 		// We listen for iteration complete events so we can update age of Species.
 		run.addEventListener(this);
+
+		fidelityStageCounts = new int[fidelityStages.length + 1];
 	}
 
 	/**
@@ -176,7 +217,8 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 
 	/**
 	 * Returns a reference to the best performing individual, or null if no Evaluators define a performance metric. 
-	 * Cleared when {@link #evaluate() is called} and set when
+	 * Only individuals evaluated by the Run evaluators (rather than a lower {@link #fidelityStages}) are considered, so
+	 * this is also null if there are none of these. Cleared when {@link #evaluate() is called} and set when
 	 * {@link #rank()} is called. The performance value used is drawn from the first performance metric defined by the
 	 * first Evaluator in {@link Run#evaluators} which defines a performance metric.
 	 */
@@ -226,7 +268,9 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 	 * evaluation an Individual will be {@link Transcriber#transcribe(Genotype, Function)}d.
 	 * </p>
 	 * <p>
-	 * Individuals are transcribed and evaluated in parallel via {@link Run#parallel}.
+	 * Individuals are transcribed and evaluated in parallel via {@link Run#parallel}. If any of the Evaluators implement
+	 * {@link BatchEvaluator} and {@link #evaluationBatchSize} is greater than 1 then each thread transcribes and
+	 * evaluates groups of up to that many individuals, and the BatchEvaluators are given the whole group at once.
 	 * </p>
 	 * 
 	 * @return true iff any of the Evaluators indicated that the evolutionary run should terminate, false otherwise.
@@ -237,65 +281,533 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 		fittest = null;
 		bestPerforming = null;
 
-		// Evaluate each member.
-		this.getParentComponent(Run.class).parallel.foreach(getMembers(), new Parallel.Operation<Individual<G, F>>() {
-			public void perform(Individual<G, F> individual) {
-				// Don't re-evaluate if already evaluated.
-				if (individual.isEvaluated()) {
-					return;
+		// Create the function pools if necessary (eg upon resuming from a save file).
+		if (functionPool == null) {
+			functionPool = new ThreadLocal<Map<Integer, ArrayDeque<F>>>() {
+				@Override
+				protected Map<Integer, ArrayDeque<F>> initialValue() {
+					return new HashMap<>();
 				}
+			};
+		}
+
+		// Forget the fidelity levels of individuals that are no longer members.
+		if (fidelityLevels == null) {
+			fidelityLevels = new ConcurrentHashMap<>();
+		}
+		fidelityLevels.keySet().retainAll(getMembers());
+
+		// Members that survived from the previous iteration with results from a lower fidelity stage are evaluated by
+		// the Run evaluators, skipping the lower stages, so that their low fidelity results are not kept indefinitely.
+		for (Map.Entry<Individual<G, F>, Integer> level : fidelityLevels.entrySet()) {
+			if (level.getValue() < fidelityStages.length) {
+				level.getKey().evaluationData.clear();
+				level.setValue(fidelityStages.length);
+			}
+		}
+
+		// Apply the lower fidelity evaluation stages, if any, which give final results to those individuals that are
+		// not promoted to the next stage.
+		for (int stage = 0; stage < fidelityStages.length; stage++) {
+			evaluateFidelityStage(stage);
+		}
 
-				F functionExisting = functionPool.pollLast();
+		racingCutoff = createRacingCutoff();
 
-				// Transcribe a function from the genotype. If there's an available function in the function
-				// pool it will be provided (otherwise null is passed).
-				F function = transcriber.transcribe(individual.genotype, functionExisting);
-				individual.setFunction(function);
+		List<Individual<G, F>> unevaluated = new ArrayList<>();
+		for (Individual<G, F> individual : getMembers()) {
+			if (!individual.isEvaluated()) {
+				unevaluated.add(individual);
+				fidelityLevels.put(individual, fidelityStages.length);
+			} else if (!hasResults(individual, run.getEvaluators())) {
+				// Some Evaluators have removed their results, eg to re-evaluate on a new mini-batch of examples.
+				unevaluated.add(individual);
+			}
+		}
+		fidelityStageCounts[fidelityStages.length] = unevaluated.size();
+		evaluate(run.getEvaluators(), unevaluated);
+
+		if (racingCutoff != null) {
+			racingAbortedCount = racingCutoff.getAbortedCount();
+			racingCutoff = null;
+		}
+
+		this.fireEvent(Event.PopulationEvaluated, getMembers());
+
+		// Check if any evaluators think we should terminate.
+		for (Evaluator evaluator : run.getEvaluators()) {
+			if (evaluator.shouldTerminate()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isBatchEvaluator(Evaluator evaluator) {
+		return evaluator instanceof BatchEvaluator && ((BatchEvaluator) evaluator).isBatchEvaluationSupported();
+	}
+
+	/**
+	 * Returns true iff the given individual has a result for every evaluation defined by the given Evaluator.
+	 */
+	private static boolean hasResults(Individual<?, ?> individual, Evaluator evaluator) {
+		Map<EvaluationDescription, Double> results = individual.evaluationData.getResults();
+		for (EvaluationDescription evalDesc : evaluator.getEvaluationDescriptions()) {
+			if (!results.containsKey(evalDesc)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true iff the given individual has a result for every evaluation defined by the given Evaluators.
+	 */
+	private static boolean hasResults(Individual<?, ?> individual, List<Evaluator> evaluators) {
+		for (Evaluator evaluator : evaluators) {
+			if (!hasResults(individual, evaluator)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Transcribe and evaluate the given individuals with the given Evaluators, in parallel via {@link Run#parallel}.
+	 * Each Evaluator is only applied to the individuals that do not already have results for it.
+	 */
+	private void evaluate(final List<Evaluator> evaluators, Collection<Individual<G, F>> individuals) {
+		boolean batch = false;
+		if (evaluationBatchSize > 1) {
+			for (Evaluator evaluator : evaluators) {
+				batch |= isBatchEvaluator(evaluator);
+			}
+		}
 
-				// If we couldn't get a function from the pool, we could probably use more functions in there,
-				// so chuck it in.
-				if (functionExisting == null) {
-					functionPool.add(function);
+		if (batch) {
+			List<Individual<G, F>> toEvaluate = new ArrayList<>(individuals.size());
+			for (Individual<G, F> individual : individuals) {
+				if (!hasResults(individual, evaluators)) {
+					toEvaluate.add(individual);
 				}
+			}
 
-				for (Evaluator evaluator : run.getEvaluators()) {
-					// Allow for thread cancellation.
-					if (Thread.currentThread().isInterrupted()) {
-						return;
+			// Evaluate groups of individuals that haven't already been evaluated, making the groups smaller if
+			// necessary so that every thread gets at least one group.
+			int threadCount = run.parallel.getThreadCount();
+			int batchSize = Math.max(1, Math.min(evaluationBatchSize, (toEvaluate.size() + threadCount - 1) / threadCount));
+			List<List<Individual<G, F>>> batches = new ArrayList<>();
+			for (int i = 0; i < toEvaluate.size(); i += batchSize) {
+				batches.add(toEvaluate.subList(i, Math.min(i + batchSize, toEvaluate.size())));
+			}
+
+			run.parallel.foreach(batches, new Parallel.Operation<List<Individual<G, F>>>() {
+				public void perform(List<Individual<G, F>> individuals) {
+					List<ArrayDeque<F>> pools = new ArrayList<>(individuals.size());
+					for (Individual<G, F> individual : individuals) {
+						pools.add(transcribe(individual));
 					}
 
-					// Perform the evaluation(s) defined by this evaluator.
-					try {
-						evaluator.evaluate(individual, Log.NO_LOG);
+					for (Evaluator evaluator : evaluators) {
+						// Allow for thread cancellation.
+						if (Thread.currentThread().isInterrupted()) {
+							return;
+						}
+
+						if (isBatchEvaluator(evaluator)) {
+							// Only give the evaluator the individuals it has not already evaluated.
+							List<Individual<G, F>> pending = individuals;
+							for (Individual<G, F> individual : individuals) {
+								if (hasResults(individual, evaluator)) {
+									pending = new ArrayList<>(individuals.size());
+									for (Individual<G, F> other : individuals) {
+										if (!hasResults(other, evaluator)) {
+											pending.add(other);
+										}
+									}
+									break;
+								}
+							}
+							if (pending.isEmpty()) {
+								continue;
+							}
+
+							try {
+								long start = System.nanoTime();
+								Object flightEvent = FlightRecording.beginEvaluation();
+								((BatchEvaluator) evaluator).evaluateBatch(pending, Log.NO_LOG);
+								evaluator.getRecorder().record(System.nanoTime() - start, pending.size());
+								if (flightEvent != null) {
+									int genomeSize = 0;
+									for (Individual<G, F> individual : pending) {
+										genomeSize += individual.genotype.getAlleles().size();
+									}
+									FlightRecording.endEvaluation(flightEvent, evaluator.getName(), pending.get(0).genotype.id, genomeSize, pending.size());
+								}
+							}
+							catch (Exception ex) {
+								List<Long> ids = new ArrayList<>(pending.size());
+								for (Individual<G, F> individual : pending) {
+									ids.add(individual.genotype.id);
+								}
+								logger.error("Evaluator " + evaluator.getName() + " failed to evaluate a batch of individuals with genotype IDs " + ids);
+								throw(ex);
+							}
+							for (Individual<G, F> individual : pending) {
+								checkResults(evaluator, individual);
+							}
+						} else {
+							for (Individual<G, F> individual : individuals) {
+								if (!hasResults(individual, evaluator)) {
+									evaluate(evaluator, individual);
+								}
+							}
+						}
+					}
+
+					for (int i = 0; i < individuals.size(); i++) {
+						release(individuals.get(i), pools.get(i));
 					}
-					catch (Exception ex) {
-						System.out.println(Stringer.toString(individual,10));
-						throw(ex);
+				}
+			});
+		} else if (concurrentEvaluators && evaluators.size() > 1) {
+			evaluateConcurrently(evaluators, individuals);
+		} else {
+			// Evaluate each individual.
+			run.parallel.foreach(individuals, new Parallel.Operation<Individual<G, F>>() {
+				public void perform(Individual<G, F> individual) {
+					// Don't re-evaluate if already evaluated.
+					if (hasResults(individual, evaluators)) {
+						return;
 					}
 
-					// Make sure evaluator set a result for each evaluation type it defines.
-					for (EvaluationDescription evalDesc : evaluator.getEvaluationDescriptions()) {
-						if (!individual.evaluationData.getResults().containsKey(evalDesc)) {
-							throw new RuntimeException("The evaluator " + evaluator.getClass().getName() + " did not set a result for the evaluation type \"" + evalDesc.name + "\" that it defines.");
+					ArrayDeque<F> pool = transcribe(individual);
+
+					for (Evaluator evaluator : evaluators) {
+						// Allow for thread cancellation.
+						if (Thread.currentThread().isInterrupted()) {
+							return;
+						}
+
+						if (!hasResults(individual, evaluator)) {
+							evaluate(evaluator, individual);
 						}
 					}
+
+					release(individual, pool);
 				}
+			});
+		}
+	}
 
-				// Remove the function reference from the individual as we might reuse and modify the function instance
-				// for another individual.
-				individual.clearFunction();
+	/**
+	 * Evaluate the given individuals with the given Evaluators, with each Evaluator for each individual performed as a
+	 * separate task. Side-effect-free Evaluators share a function for an individual, while the others are each given
+	 * their own function, transcribed from the genotype.
+	 */
+	private void evaluateConcurrently(final List<Evaluator> evaluators, Collection<Individual<G, F>> individuals) {
+		final List<Individual<G, F>> toEvaluate = new ArrayList<>();
+		for (Individual<G, F> individual : individuals) {
+			if (!hasResults(individual, evaluators)) {
+				toEvaluate.add(individual);
+			}
+		}
+
+		// The shared function for each individual (if any Evaluators are side-effect-free), and the number of
+		// Evaluators yet to finish with each individual.
+		final Map<Individual<G, F>, F> sharedFunctions = new ConcurrentHashMap<>();
+		final Map<Individual<G, F>, AtomicInteger> remaining = new ConcurrentHashMap<>();
+		for (Individual<G, F> individual : toEvaluate) {
+			remaining.put(individual, new AtomicInteger(evaluators.size()));
+		}
+
+		final int evaluatorCount = evaluators.size();
+		run.parallel.forIndices(toEvaluate.size() * evaluatorCount, run.parallel.getThreadCount(), new Parallel.IndexOperation() {
+			@Override
+			public void perform(int index, int worker) {
+				// Allow for thread cancellation.
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+
+				final Individual<G, F> individual = toEvaluate.get(index / evaluatorCount);
+				Evaluator evaluator = evaluators.get(index % evaluatorCount);
+				// Only this task sets the results for this Evaluator, so they can't be set by another task in the meantime.
+				if (!hasResults(individual, evaluator)) {
+					boolean shared = evaluator.isFunctionSideEffectFree();
+
+					F function;
+					if (shared) {
+						function = sharedFunctions.get(individual);
+						if (function == null) {
+							synchronized (individual) {
+								function = sharedFunctions.get(individual);
+								if (function == null) {
+									function = transcribeFunction(individual.genotype);
+									sharedFunctions.put(individual, function);
+								}
+							}
+						}
+					} else {
+						function = transcribeFunction(individual.genotype);
+					}
+
+					individual.setThreadFunction(function);
+					try {
+						evaluate(evaluator, individual);
+					} finally {
+						individual.clearThreadFunction();
+					}
+
+					if (!shared) {
+						releaseFunction(individual.genotype, function);
+					}
+				}
+				if (remaining.get(individual).decrementAndGet() == 0) {
+					F sharedFunction = sharedFunctions.remove(individual);
+					if (sharedFunction != null) {
+						releaseFunction(individual.genotype, sharedFunction);
+					}
+				}
 			}
 		});
+	}
 
-		this.fireEvent(Event.PopulationEvaluated, getMembers());
+	/**
+	 * Evaluate the members that have not yet been evaluated with the given fidelity stage, and promote the best of
+	 * them to the next stage by removing their results. Members already assigned to the Run evaluators (see
+	 * {@link #fidelityLevels}) are skipped. The results of the remaining individuals are mapped to the
+	 * evaluations defined by the Run evaluators, so that they may be ranked with the other members.
+	 */
+	private void evaluateFidelityStage(int stage) {
+		Evaluator stageEvaluator = fidelityStages[stage];
 
-		// Check if any evaluators think we should terminate.
+		final List<Individual<G, F>> candidates = new ArrayList<>();
+		for (Individual<G, F> individual : getMembers()) {
+			if (!individual.isEvaluated() && !fidelityLevels.containsKey(individual)) {
+				candidates.add(individual);
+			}
+		}
+		fidelityStageCounts[stage] = candidates.size();
+		if (candidates.isEmpty()) {
+			return;
+		}
+
+		evaluate(Collections.singletonList(stageEvaluator), candidates);
+
+		// Determine the (average scaled) fitness of each candidate at this stage.
+		final Map<Individual<G, F>, Double> scores = new HashMap<>();
+		for (Individual<G, F> individual : candidates) {
+			scores.put(individual, individual.evaluationData.getScaledFitness());
+		}
+		Collections.sort(candidates, new Comparator<Individual<G, F>>() {
+			@Override
+			public int compare(Individual<G, F> a, Individual<G, F> b) {
+				return Double.compare(scores.get(b), scores.get(a));
+			}
+		});
+
+		int promoteCount = (int) Math.ceil(fidelityPromotionProportion * candidates.size());
+		for (int i = 0; i < candidates.size(); i++) {
+			Individual<G, F> individual = candidates.get(i);
+			boolean promote = i < promoteCount || (fidelityPromotionThreshold > 0 && scores.get(individual) >= fidelityPromotionThreshold);
+			if (promote) {
+				individual.evaluationData.clear();
+			} else {
+				mapFidelityResults(stageEvaluator, individual);
+				fidelityLevels.put(individual, stage);
+			}
+		}
+	}
+
+	/**
+	 * Replace the results set by the given fidelity stage Evaluator with results for the evaluations of the same name
+	 * defined by the Run evaluators.
+	 */
+	private void mapFidelityResults(Evaluator stageEvaluator, Individual<G, F> individual) {
+		if (finalEvaluationsByName == null) {
+			Map<String, EvaluationDescription> byName = new HashMap<>();
+			for (Evaluator evaluator : run.getEvaluators()) {
+				for (EvaluationDescription desc : evaluator.getEvaluationDescriptions()) {
+					byName.put(desc.name, desc);
+				}
+			}
+			finalEvaluationsByName = byName;
+		}
+
+		Map<EvaluationDescription, Double> stageResults = new HashMap<>(individual.evaluationData.getResults());
+		if (stageResults.size() != finalEvaluationsByName.size()) {
+			throw new RuntimeException("The fidelity stage evaluator " + stageEvaluator.getName() + " must define evaluations with the same names as those defined by the Run evaluators " + finalEvaluationsByName.keySet() + ".");
+		}
+		individual.evaluationData.clear();
+		for (Entry<EvaluationDescription, Double> result : stageResults.entrySet()) {
+			EvaluationDescription desc = finalEvaluationsByName.get(result.getKey().name);
+			if (desc == null) {
+				throw new RuntimeException("The fidelity stage evaluator " + stageEvaluator.getName() + " defines the evaluation \"" + result.getKey().name + "\" which is not defined by the Run evaluators " + finalEvaluationsByName.keySet() + ".");
+			}
+			individual.evaluationData.setResult(desc, result.getValue());
+		}
+	}
+
+	/**
+	 * Creates the cutoff to race evaluations against in the current iteration, or returns null if racing is disabled
+	 * or not applicable. The values of members that have already been evaluated (eg elites) are offered to the cutoff.
+	 */
+	private RacingCutoff createRacingCutoff() {
+		racedCount = 0;
+		racingAbortedCount = 0;
+		if (!racing) {
+			return null;
+		}
+
+		RacingEvaluator racer = null;
+		int fitnessObjectiveCount = 0;
 		for (Evaluator evaluator : run.getEvaluators()) {
-			if (evaluator.shouldTerminate()) {
-				return true;
+			for (EvaluationDescription desc : evaluator.getEvaluationDescriptions()) {
+				if (!desc.isPerformanceIndicator) {
+					fitnessObjectiveCount++;
+				}
+			}
+			if (evaluator instanceof RacingEvaluator) {
+				racer = (RacingEvaluator) evaluator;
 			}
 		}
-		return false;
+
+		if (racer == null || fitnessObjectiveCount != 1 || !(evolver instanceof DefaultEvolver) || !(speciator instanceof NoSpeciation)) {
+			if (!racingWarned) {
+				logger.warn("Racing evaluation is enabled but is not applicable: it requires an Evaluator implementing RacingEvaluator, only one fitness objective, a DefaultEvolver and no speciation.");
+				racingWarned = true;
+			}
+			return null;
+		}
+
+		DefaultEvolver<G> defaultEvolver = (DefaultEvolver<G>) evolver;
+		int selectedCount = Math.max(defaultEvolver.getParentCount(size()), defaultEvolver.getEliteCount(getDesiredSize()));
+		RacingCutoff cutoff = new RacingCutoff(racer.getRacedEvaluation(), Math.min(selectedCount, Math.max(1, size())));
+		for (Individual<G, F> individual : getMembers()) {
+			if (individual.evaluationData.getResults().containsKey(cutoff.getEvaluation())) {
+				// Only individuals evaluated at the highest fidelity are comparable.
+				if (getFidelityLevel(individual) == fidelityStages.length) {
+					cutoff.offer(individual.evaluationData.getResult(cutoff.getEvaluation()));
+				}
+			} else {
+				racedCount++;
+			}
+		}
+		return cutoff;
+	}
+
+	/**
+	 * Transcribe a function from the given genotype, re-using a function from the function pool for the current thread
+	 * if available.
+	 */
+	private F transcribeFunction(G genotype) {
+		return transcribeFunction(genotype, getFunctionPool(genotype));
+	}
+
+	/**
+	 * Transcribe a function from the given genotype, re-using a function from the given pool if available. All
+	 * transcriptions performed by the Population are done, and timed, here.
+	 */
+	private F transcribeFunction(G genotype, ArrayDeque<F> pool) {
+		long start = System.nanoTime();
+		Object flightEvent = FlightRecording.beginTranscription();
+		F function = transcriber.transcribe(genotype, pool.pollLast());
+		run.getPhaseRecorder(Run.PHASE_TRANSCRIBE).recordSince(start);
+		if (flightEvent != null) {
+			FlightRecording.endTranscription(flightEvent, genotype.id, genotype.getAlleles().size());
+		}
+		return function;
+	}
+
+	/**
+	 * Return the given function, transcribed from the given genotype, to the function pool for the current thread.
+	 */
+	private void releaseFunction(G genotype, F function) {
+		getFunctionPool(genotype).addLast(function);
+	}
+
+	/**
+	 * Returns the pool of functions for the current thread and the size class of the given genotype. Functions in a
+	 * pool are only ever used by the thread that owns the pool.
+	 */
+	private ArrayDeque<F> getFunctionPool(G genotype) {
+		Map<Integer, ArrayDeque<F>> pools = functionPool.get();
+		Integer sizeClass = transcriber.getFunctionSizeClass(genotype);
+		ArrayDeque<F> pool = pools.get(sizeClass);
+		if (pool == null) {
+			pool = new ArrayDeque<>();
+			pools.put(sizeClass, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * Transcribe a function from the genotype of the given individual and set it as the individual's function. If
+	 * there's an available function in the function pool for the current thread it will be provided to the transcriber
+	 * for re-use. Returns the pool the function should be returned to via {@link #release(Individual, ArrayDeque)}.
+	 */
+	private ArrayDeque<F> transcribe(Individual<G, F> individual) {
+		ArrayDeque<F> pool = getFunctionPool(individual.genotype);
+		individual.setFunction(transcribeFunction(individual.genotype, pool));
+		return pool;
+	}
+
+	/**
+	 * Perform the evaluation(s) defined by the given evaluator on the given individual.
+	 */
+	private void evaluate(Evaluator evaluator, Individual<G, F> individual) {
+		try {
+			long start = System.nanoTime();
+			Object flightEvent = FlightRecording.beginEvaluation();
+			if (racingCutoff != null && evaluator == racingCutoff.getEvaluation().evaluator) {
+				((RacingEvaluator) evaluator).evaluate(individual, Log.NO_LOG, racingCutoff);
+			} else {
+				evaluator.evaluate(individual, Log.NO_LOG);
+			}
+			evaluator.getRecorder().recordSince(start);
+			if (flightEvent != null) {
+				FlightRecording.endEvaluation(flightEvent, evaluator.getName(), individual.genotype.id, individual.genotype.getAlleles().size(), 1);
+			}
+		}
+		catch (Exception ex) {
+			System.out.println(Stringer.toString(individual,10));
+			throw(ex);
+		}
+		checkResults(evaluator, individual);
+
+		if (racingCutoff != null && evaluator == racingCutoff.getEvaluation().evaluator) {
+			racingCutoff.offer(individual.evaluationData.getResult(racingCutoff.getEvaluation()));
+		}
+	}
+
+	/**
+	 * Make sure the given evaluator set a result for each evaluation type it defines.
+	 */
+	private void checkResults(Evaluator evaluator, Individual<G, F> individual) {
+		for (EvaluationDescription evalDesc : evaluator.getEvaluationDescriptions()) {
+			if (!individual.evaluationData.getResults().containsKey(evalDesc)) {
+				throw new RuntimeException("The evaluator " + evaluator.getClass().getName() + " did not set a result for the evaluation type \"" + evalDesc.name + "\" that it defines.");
+			}
+		}
+	}
+
+	/**
+	 * Remove the function reference from the given individual and return the function to the given pool for re-use.
+	 */
+	private void release(Individual<G, F> individual, ArrayDeque<F> pool) {
+		// Remove the function reference from the individual as we might reuse and modify the function instance
+		// for another individual.
+		F function = (F) individual.getFunction();
+		individual.clearFunction();
+		pool.addLast(function);
+	}
+
+	/**
+	 * Returns the Speciator that is used to divide this population into species.
+	 */
+	public Speciator<G, Species<G>> getSpeciator() {
+		return speciator;
 	}
 
 	/**
@@ -313,6 +825,31 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 	public void rank() {
 		ranker.rank(this);
 
+		if (fidelityStages.length > 0 && fidelityMergePolicy == FidelityMergePolicy.TIERED) {
+			// Re-rank so that individuals evaluated at a higher fidelity are ranked above those evaluated at a lower
+			// fidelity, preserving the ranking given by the Ranker within each fidelity, including ties (eg
+			// individuals in the same Pareto front).
+			List<Individual<G, F>> ordered = new ArrayList<>(getMembers());
+			Collections.sort(ordered, new Comparator<Individual<G, F>>() {
+				@Override
+				public int compare(Individual<G, F> a, Individual<G, F> b) {
+					int c = Integer.compare(getFidelityLevel(a), getFidelityLevel(b));
+					return c != 0 ? c : Double.compare(a.getRank(), b.getRank());
+				}
+			});
+			int rank = 0;
+			for (int i = 0; i < ordered.size(); i++) {
+				Individual<G, F> ind = ordered.get(i);
+				if (i > 0) {
+					Individual<G, F> prev = ordered.get(i - 1);
+					if (getFidelityLevel(ind) != getFidelityLevel(prev) || ind.getRank() != prev.getRank()) {
+						rank++;
+					}
+				}
+				ind.setRank(rank);
+			}
+		}
+
 		EvaluationDescription performanceEvDesc = null;
 		for (Evaluator ev : run.getEvaluators()) {
 			for (EvaluationDescription desc : ev.getEvaluationDescriptions()) {
@@ -332,7 +869,9 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 				fittest = ind;
 			}
 
-			if (performanceEvDesc != null && (bestPerforming == null || ind.evaluationData.getResult(performanceEvDesc) > bestPerforming.evaluationData.getResult(performanceEvDesc))) {
+			// The performance of individuals evaluated by a lower fidelity stage is not comparable (and would otherwise
+			// be reported as the performance of the run), so only consider those evaluated by the Run evaluators.
+			if (performanceEvDesc != null && getFidelityLevel(ind) == fidelityStages.length && (bestPerforming == null || ind.evaluationData.getResult(performanceEvDesc) > bestPerforming.evaluationData.getResult(performanceEvDesc))) {
 				bestPerforming = ind;
 			}
 		}
@@ -340,6 +879,15 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 		this.fireEvent(Event.PopulationRanked, getMembers());
 	}
 
+	/**
+	 * Returns the highest fidelity stage the given member was evaluated at, where the length of
+	 * {@link #fidelityStages} indicates the Run evaluators.
+	 */
+	public int getFidelityLevel(Individual<G, ?> individual) {
+		Integer level = fidelityLevels == null ? null : fidelityLevels.get(individual);
+		return level == null ? fidelityStages.length : level;
+	}
+
 	/**
 	 * Speciates this population with {@link Speciator#speciate(Population, List)}. 
 	 * {@link #getSpecies()} may be called subsequently.
@@ -443,6 +991,17 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 		}
 		avgGenotypeSize /= members.size();
 		
+		for (int stage = 0; stage < fidelityStages.length; stage++) {
+			stats.add(new ComponentStateLog("Evaluation", "Fidelity", "Stage " + stage + " evaluations", fidelityStageCounts[stage]));
+		}
+		if (fidelityStages.length > 0) {
+			stats.add(new ComponentStateLog("Evaluation", "Fidelity", "Full evaluations", fidelityStageCounts[fidelityStages.length]));
+		}
+
+		if (racing && racedCount > 0) {
+			stats.add(new ComponentStateLog("Evaluation", "Racing", "Aborted", 100.0 * racingAbortedCount / racedCount, "%"));
+		}
+
 		stats.add(new ComponentStateLog("Genome", "Size", "Minumum", minGenotypeSize));
 		stats.add(new ComponentStateLog("Genome", "Size", "Average", Math.round(avgGenotypeSize)));
 		stats.add(new ComponentStateLog("Genome", "Size", "Maximum", maxGenotypeSize));
@@ -482,4 +1041,20 @@ public abstract class Population<G extends Genotype<?>, F extends Function<?, ?>
 	public enum Event {
 		PopulationGenerated, PopulationEvaluated, PopulationRanked, PopulationSpeciated, PopulationEvolved
 	}
+
+	/**
+	 * How individuals evaluated at different fidelities are ranked against each other.
+	 * 
+	 * @see Population#fidelityStages
+	 */
+	public enum FidelityMergePolicy {
+		/**
+		 * Individuals evaluated at a higher fidelity are always ranked above those evaluated at a lower fidelity.
+		 */
+		TIERED,
+		/**
+		 * Results from all fidelities are ranked directly against each other.
+		 */
+		DIRECT
+	}
 }
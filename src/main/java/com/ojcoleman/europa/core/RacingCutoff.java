@@ -0,0 +1,100 @@
+package com.ojcoleman.europa.core;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Tracks the k-th best value of an evaluation over the individuals evaluated so far in an iteration, where k is the
+ * number of individuals that will be selected (as parents or elites). An individual whose best achievable value is
+ * worse than the k-th best value of the individuals already evaluated cannot be selected, so a
+ * {@link RacingEvaluator} may abort its evaluation.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class RacingCutoff {
+	private final EvaluationDescription evaluation;
+	private final int selectedCount;
+	private final boolean maximise;
+
+	// The best selectedCount values offered so far, with the worst of these at the head.
+	private final PriorityQueue<Double> best;
+
+	// The k-th best value, or NaN if fewer than k values have been offered.
+	private volatile double cutoff = Double.NaN;
+
+	private final AtomicInteger abortedCount = new AtomicInteger();
+
+	/**
+	 * Create a new RacingCutoff.
+	 *
+	 * @param evaluation The evaluation being raced. Whether higher or lower values are better is determined by
+	 *            whether {@link EvaluationDescription#optimalValue} is nearer the end or start of
+	 *            {@link EvaluationDescription#range}.
+	 * @param selectedCount The number of individuals that will be selected.
+	 */
+	public RacingCutoff(EvaluationDescription evaluation, int selectedCount) {
+		if (selectedCount < 1) {
+			throw new IllegalArgumentException("The number of selected individuals must be at least 1.");
+		}
+		this.evaluation = evaluation;
+		this.selectedCount = selectedCount;
+		maximise = Math.abs(evaluation.optimalValue - evaluation.range.end) <= Math.abs(evaluation.optimalValue - evaluation.range.start);
+		best = new PriorityQueue<>(selectedCount + 1, maximise ? null : Collections.<Double> reverseOrder());
+	}
+
+	/**
+	 * Returns the evaluation being raced.
+	 */
+	public EvaluationDescription getEvaluation() {
+		return evaluation;
+	}
+
+	/**
+	 * Record the final value of the raced evaluation for an individual.
+	 */
+	public synchronized void offer(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		best.add(value);
+		if (best.size() > selectedCount) {
+			best.poll();
+		}
+		if (best.size() == selectedCount) {
+			cutoff = best.peek();
+		}
+	}
+
+	/**
+	 * Returns true iff an individual whose best achievable value for the raced evaluation is the given value cannot be
+	 * selected, in which case its evaluation should be aborted.
+	 */
+	public boolean shouldAbort(double bestAchievable) {
+		double c = cutoff;
+		if (Double.isNaN(c) || !(maximise ? bestAchievable < c : bestAchievable > c)) {
+			return false;
+		}
+		abortedCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Returns the current k-th best value, or NaN if fewer than k values have been offered.
+	 */
+	public double getCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * Returns the number of evaluations that have been aborted.
+	 */
+	public int getAbortedCount() {
+		return abortedCount.get();
+	}
+}
@@ -0,0 +1,40 @@
+package com.ojcoleman.europa.core;
+
+/**
+ * <p>
+ * Interface for {@link Evaluator}s whose fitness accumulates monotonically over the course of an evaluation (for
+ * example an error summed over examples, or rewards summed over trials), so that at any point during an evaluation
+ * a bound on the best fitness still achievable by the individual can be calculated. If racing is enabled for the
+ * {@link Population} then evaluation may be aborted once the individual provably cannot be selected, see
+ * {@link RacingCutoff}.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public interface RacingEvaluator {
+	/**
+	 * Returns the (fitness) evaluation whose bound is compared against the cutoff. This must be one of the evaluations
+	 * returned by {@link Evaluator#getEvaluationDescriptions()}.
+	 */
+	public EvaluationDescription getRacedEvaluation();
+
+	/**
+	 * <p>
+	 * Evaluate the given {@link Individual} as for {@link Evaluator#evaluate(Individual, Log)}, periodically passing
+	 * the best value still achievable for {@link #getRacedEvaluation()} to {@link RacingCutoff#shouldAbort(double)},
+	 * and stopping the evaluation if it returns true. If the evaluation is aborted then the result set for
+	 * {@link #getRacedEvaluation()} should be the bound given to {@link RacingCutoff#shouldAbort(double)}, and results
+	 * must still be set for every other evaluation type defined by the Evaluator (these may reflect the partial
+	 * evaluation).
+	 * </p>
+	 * <p>
+	 * <strong>It is critical that this method is thread-safe (can handle multiple simultaneous calls).</strong>
+	 * </p>
+	 *
+	 * @param individual The Individual to evaluate.
+	 * @param log Whether, how and what details to log of the evaluation. Evaluations that are being logged should not
+	 *            be aborted.
+	 * @param cutoff The cutoff to race against, or null to evaluate to completion.
+	 */
+	public void evaluate(Individual individual, Log log, RacingCutoff cutoff);
+}
@@ -1,8 +1,6 @@
 package com.ojcoleman.europa.core;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -20,8 +18,12 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,13 +31,16 @@ import com.ojcoleman.europa.configurable.ComponentBase;
 import com.ojcoleman.europa.configurable.ComponentStateLog;
 import com.ojcoleman.europa.configurable.Configurable;
 import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.EventDispatcher;
+import com.ojcoleman.europa.configurable.IDFactory;
 import com.ojcoleman.europa.configurable.Observable;
 import com.ojcoleman.europa.configurable.Observer;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.monitor.OverviewMonitor;
 import com.ojcoleman.europa.util.DecimalFormatConfigurable;
+import com.ojcoleman.europa.util.FlightRecording;
+import com.ojcoleman.europa.util.LatencyRecorder;
 import com.ojcoleman.europa.util.Stringer;
-import com.thoughtworks.xstream.XStream;
 import com.eclipsesource.json.JsonObject;
 import com.google.common.collect.Table;
 import com.ojcoleman.europa.algos.neat.NEATNeuronAllele;
@@ -86,6 +91,33 @@ public class Run extends ComponentBase {
 	@Parameter(description = "How many iterations/generations to perform before saving the Run state to a file (for later resume or examination). A value <= 0 indicates no saving.", defaultValue = "1000")
 	protected int saveFrequency;
 
+	@Parameter(description = "The format to save the Run state in. BINARY stores the configuration as JSON, the population as packed genome records and the random number generator state and counters explicitly, falling back to XSTREAM if a component can not be stored this way. XSTREAM stores the entire Run as XML.", defaultValue = "BINARY")
+	protected Snapshot.Format snapshotFormat;
+
+	@Parameter(description = "Whether to compress and write snapshots on a background thread. The state of the Run is serialised in memory at the end of the iteration, on the main thread (this is the full serialisation, so it is not much quicker than a synchronous snapshot), and then compressed and written to file while the next iteration proceeds. If the previous snapshot is still being written when the next is due then the Run waits for it to complete.", defaultValue = "true")
+	protected boolean snapshotInBackground;
+
+	@Parameter(description = "How often to save a full snapshot, in number of snapshots. The snapshots in between are delta snapshots which store genome records only for the genotypes that were not in the previous snapshot; loading them requires the preceding snapshots back to the last full snapshot. The rest of the state (individuals, evaluation results, species and component state) is stored in full in every snapshot, so the savings are limited to the genome (allele) data of the genotypes carried over, and are small if most of the population is replaced each iteration. The section sizes of each snapshot are logged at debug level. 1 means every snapshot is a full snapshot. Only applies to the BINARY snapshotFormat.", defaultValue = "1", minimumValue = "1")
+	protected int fullSnapshotFrequency;
+
+	@Parameter(description = "The maximum number of pending writes to output files. Monitors write output files via a background thread; if this many writes are waiting to be written then the Run waits until there is space.", defaultValue = "10000", minimumValue = "1")
+	protected int outputQueueSize;
+
+	@Parameter(description = "The maximum time, in milliseconds, that output written by monitors may be held in a buffer before it is written to file.", defaultValue = "1000", minimumValue = "0")
+	protected long outputFlushInterval;
+
+	@Parameter(description = "The compression to apply to output files written by monitors, NONE or GZIP. If GZIP then \".gz\" is appended to the file names.", defaultValue = "NONE")
+	protected OutputService.Compression outputCompression;
+
+	@Parameter(description = "The maximum number of events waiting to be delivered to asynchronous monitors (see Monitor.asynchronous).", defaultValue = "1024", minimumValue = "1")
+	protected int eventQueueSize;
+
+	@Parameter(description = "Whether to report the duration of each phase of the evolutionary cycle (median, 99th percentile and maximum), the evaluation rate and the percentage of time each worker thread is busy, for example via OverviewMonitor.", defaultValue = "false")
+	protected boolean reportPhaseTimes;
+
+	@Parameter(description = "Whether to register a JMX MBean (see RunMXBean) while the run is executing, so that it may be monitored and controlled with jconsole or another JMX client.", defaultValue = "false")
+	protected boolean registerMBean;
+
 	@Parameter(description = "The default format for printing floating point numbers. Pattern string format is defined by java.text.DecimalFormat.", defaultValue = "0.0000")
 	protected DecimalFormatConfigurable defaultNumberFormat;
 
@@ -138,12 +170,108 @@ public class Run extends ComponentBase {
 	/**
 	 * If set then this Run will stop (exit {@link #mainLoop()} when the current cycle is complete.
 	 */
-	protected boolean stop;
+	protected volatile boolean stop;
+
+	// Set by stop(), which may be called from any thread, so that the main loop fires Event.Stopping. Mark as transient
+	// so XStream does not store it.
+	private transient volatile boolean stopRequested;
 
 	private final List<Evaluator> evaluatorsList;
 
 	// Running average of how long each iteration takes in seconds.
-	private double avgIterationTime;
+	private volatile double avgIterationTime;
+
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for generating the initial population.
+	 */
+	public static final String PHASE_GENERATE = "Generate";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for evaluating the population.
+	 */
+	public static final String PHASE_EVALUATE = "Evaluate";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for transcribing a genotype.
+	 */
+	public static final String PHASE_TRANSCRIBE = "Transcribe";
+	/**
+	 * Prefix of the names of the phases timed by {@link #getPhaseRecorder(String)} for evaluating an individual with
+	 * an Evaluator, followed by the name of the Evaluator.
+	 */
+	public static final String PHASE_EVALUATOR_PREFIX = "Evaluator ";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for ranking the population.
+	 */
+	public static final String PHASE_RANK = "Rank";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for speciating the population.
+	 */
+	public static final String PHASE_SPECIATE = "Speciate";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for evolving the population.
+	 */
+	public static final String PHASE_EVOLVE = "Evolve";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for mutating a genotype.
+	 */
+	public static final String PHASE_MUTATE = "Mutate";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for recombining parent genotypes.
+	 */
+	public static final String PHASE_RECOMBINE = "Recombine";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for cloning a genotype.
+	 */
+	public static final String PHASE_CLONE = "Clone";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for capturing the state of the Run for a snapshot.
+	 */
+	public static final String PHASE_SNAPSHOT_CAPTURE = "Snapshot capture";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for writing a snapshot to file.
+	 */
+	public static final String PHASE_SNAPSHOT_WRITE = "Snapshot write";
+	/**
+	 * Name of the phase timed by {@link #getPhaseRecorder(String)} for tasks performed by {@link Parallel}.
+	 */
+	public static final String PHASE_PARALLEL_TASK = "Parallel task";
+
+	// Recorders for the duration of each phase of the cycle, by phase name. Mark as transient so XStream does not
+	// store them (timing starts afresh when resuming). See readResolve().
+	private transient ConcurrentHashMap<String, LatencyRecorder> phaseRecorders = new ConcurrentHashMap<>();
+
+	// Evaluations per second in the most recent iteration.
+	private transient volatile double evaluationRate;
+
+	// The percentage of the most recent iteration each thread spent performing Parallel tasks, and the total task time
+	// for each thread at the end of the previous iteration.
+	private transient volatile Map<String, Double> workerBusy;
+	private transient Map<String, Long> prevWorkerTotals;
+
+	// Single low-priority thread for writing snapshots, created lazily. Mark as transient so XStream does not store it.
+	private transient ExecutorService snapshotExecutor;
+
+	// The snapshot currently being written in the background, if any.
+	private transient Future<?> pendingSnapshot;
+
+	// Writes output files for monitors, created lazily. Mark as transient so XStream does not store it.
+	private transient OutputService outputService;
+
+	// Delivers events to asynchronous monitors, created lazily. Mark as transient so XStream does not store it.
+	private transient volatile EventDispatcher eventDispatcher;
+
+	// Guards the creation and closing of outputService and eventDispatcher. This Run is not used as the lock as run()
+	// holds the lock on it. Mark as transient so XStream does not store it. See readResolve().
+	private transient Object servicesLock = new Object();
+
+	// The JMX MBean for this Run while it is executing, if registered.
+	private transient RunManagement management;
+
+	// Whether a snapshot has been requested (see requestSnapshot()).
+	private transient volatile boolean snapshotRequested;
+
+	// The chain of snapshots the next delta snapshot continues, if any. Mark as transient so XStream does not store it
+	// (a resumed Run starts a new chain).
+	private transient volatile Snapshot.Chain snapshotChain;
 
 	/**
 	 * Constructor for {@link ComponentBase}.
@@ -176,24 +304,22 @@ public class Run extends ComponentBase {
 		
 		final Run run = this;
 
-		// If we should save the run state periodically.
-		if (saveFrequency > 0) {
-			addEventListener(new Observer() {
-				@Override
-				public void eventOccurred(Observable observed, Object event, Object state) {
-					if (event == Run.Event.IterationComplete) {
-						if (currentIteration > 0 && currentIteration % saveFrequency == 0) {
+		// Save the run state periodically, if enabled, or when requested.
+		addEventListener(new Observer() {
+			@Override
+			public void eventOccurred(Observable observed, Object event, Object state) {
+				if (event == Run.Event.IterationComplete) {
+					if (snapshotRequested || saveFrequency > 0 && currentIteration > 0 && currentIteration % saveFrequency == 0) {
+						snapshotRequested = false;
+						Path path = run.getOutputDirectory().resolve("save-" + run.getCurrentIteration() + Snapshot.EXTENSION);
+						
+						if (snapshotInBackground) {
+							saveSnapshotInBackground(path);
+						} else {
 							run.fireEvent(Run.Event.SnapshotBegin);
 							
-							XStream xstream = new XStream();
 							try {
-								FileOutputStream dest = new FileOutputStream(run.getOutputDirectory() + "/save-" + run.getCurrentIteration() + ".europa");
-								ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(dest));
-								out.putNextEntry(new ZipEntry("europarun.xml"));
-							    
-								xstream.toXML(run, out);
-								
-								out.close();
+								saveSnapshot(path);
 							} catch (IOException e) {
 								logger.error("Could not save Run state to file.", e);
 							}
@@ -202,11 +328,18 @@ public class Run extends ComponentBase {
 						}
 					}
 				}
-			});
-		}
-
+			}
+		});
+		
 		this.fireEvent(Event.Initialised);
 	}
+
+	private Object readResolve() {
+		// Create the objects not stored by XStream upon resuming from a save file.
+		phaseRecorders = new ConcurrentHashMap<>();
+		servicesLock = new Object();
+		return this;
+	}
 	
 	/**
 	 * Execute the run.
@@ -214,7 +347,31 @@ public class Run extends ComponentBase {
 	 * @throws Exception
 	 */
 	public final synchronized void run() throws Exception {
-		mainLoop();
+		if (registerMBean) {
+			management = new RunManagement(this);
+			management.register();
+		}
+		try {
+			mainLoop();
+		} finally {
+			// Shut down even if the run failed: the snapshot, event dispatch and output threads are daemons, so pending
+			// snapshots, events and monitor output would otherwise be lost.
+			try {
+				waitForSnapshot();
+				
+				// Deliver any pending events before closing the output files the monitors may write to.
+				closeEventDispatcher();
+				
+				closeOutputService();
+				
+				parallel.stop();
+			} finally {
+				if (management != null) {
+					management.unregister();
+					management = null;
+				}
+			}
+		}
 	}
 	
 	/**
@@ -228,7 +385,9 @@ public class Run extends ComponentBase {
 		// If this is the first iteration.
 		if (currentIteration == 0) {
 			// Create initial population.
+			long start = System.nanoTime();
 			population.generate();
+			getPhaseRecorder(PHASE_GENERATE).recordSince(start);
 		}
 		else {
 			// Otherwise we must be resuming from a snapshot.
@@ -237,19 +396,32 @@ public class Run extends ComponentBase {
 		}
 
 		double prevTime = System.currentTimeMillis();
+		long prevNanos = System.nanoTime();
 		
 		Individual prevFittest = null;
 
 		// For each iteration/generation...
 		while ((maximumIterations <= 0 || currentIteration < maximumIterations) && !stop) {
+			checkSnapshot();
+			
 			this.fireEvent(Event.IterationBegin, currentIteration);
+			Object generationFlightEvent = FlightRecording.beginGeneration();
 
 			// Evaluate the population (transcribing from genotype to phenotype as necessary).
 			// Return value of true indicates we should terminate.
-			stop |= population.evaluate();
+			long phaseStart = System.nanoTime();
+			long evaluationCount = getEvaluationCount();
+			if (population.evaluate()) {
+				stop = true;
+			}
+			long evaluateNanos = System.nanoTime() - phaseStart;
+			getPhaseRecorder(PHASE_EVALUATE).record(evaluateNanos);
+			evaluationRate = evaluateNanos == 0 ? 0 : (getEvaluationCount() - evaluationCount) * 1e9 / evaluateNanos;
 			
 			// Produce a ranking over the population, if applicable.
+			phaseStart = System.nanoTime();
 			population.rank();
+			getPhaseRecorder(PHASE_RANK).recordSince(phaseStart);
 			
 			/*if (prevFittest != null) {
 				double newFitness = population.getFittest().evaluationData.getFitnessResults().values().iterator().next();
@@ -272,10 +444,21 @@ public class Run extends ComponentBase {
 			// (We still rank and speciate as this info might be useful).
 			if (!stop && (currentIteration+1) < maximumIterations) {
 				// Speciate population if applicable.
+				phaseStart = System.nanoTime();
+				Object flightEvent = FlightRecording.beginSpeciation();
 				population.speciate();
+				phaseStart = getPhaseRecorder(PHASE_SPECIATE).recordSince(phaseStart);
+				if (flightEvent != null) {
+					FlightRecording.endSpeciation(flightEvent, currentIteration, population.getSpecies().size());
+				}
 
 				// Evolve population.
+				flightEvent = FlightRecording.beginReproduction();
 				population.evolve();
+				getPhaseRecorder(PHASE_EVOLVE).recordSince(phaseStart);
+				if (flightEvent != null) {
+					FlightRecording.endReproduction(flightEvent, currentIteration, population.size());
+				}
 			}
 
 			// Time keeping.
@@ -286,13 +469,30 @@ public class Run extends ComponentBase {
 				avgIterationTime = duration;
 			else
 				avgIterationTime = avgIterationTime * 0.9 + duration * 0.1;
+			long currentNanos = System.nanoTime();
+			updateWorkerBusy(currentNanos - prevNanos);
+			prevNanos = currentNanos;
+			
+			if (generationFlightEvent != null) {
+				FlightRecording.endGeneration(generationFlightEvent, currentIteration, population.size(), population.getSpecies().size());
+			}
 			
 			currentIteration++;
 			
+			fireStoppingIfRequested();
+			
 			this.fireEvent(Event.IterationComplete, currentIteration);
+			
+			if (management != null) {
+				management.iterationComplete();
+			}
 		}
 		
-		parallel.stop();
+		fireStoppingIfRequested();
+		
+		waitForSnapshot();
+		
+		this.fireEvent(Event.Finished);
 		
 		//printpop(population);
 	}
@@ -336,6 +536,245 @@ public class Run extends ComponentBase {
 		}
 	}
 
+	/**
+	 * Save a snapshot of this Run to the given path, from which the Run may later be resumed.
+	 * 
+	 * @see #snapshotFormat
+	 * @see Snapshot
+	 */
+	public void saveSnapshot(Path path) throws IOException {
+		try {
+			Snapshot.Capture capture = captureSnapshot(path);
+			long start = System.nanoTime();
+			Object flightEvent = FlightRecording.beginSnapshot();
+			capture.write(path);
+			getPhaseRecorder(PHASE_SNAPSHOT_WRITE).recordSince(start);
+			FlightRecording.endSnapshot(flightEvent, "Write", path.toString());
+		} catch (IOException e) {
+			snapshotChain = null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Capture the state of this Run for a snapshot to be written to the given path, as a delta snapshot if the current
+	 * chain of snapshots is shorter than {@link #fullSnapshotFrequency}.
+	 */
+	private Snapshot.Capture captureSnapshot(Path path) throws IOException {
+		Snapshot.Chain chain = snapshotChain;
+		if (chain != null && chain.getLength() >= fullSnapshotFrequency) {
+			chain = null;
+		}
+		long start = System.nanoTime();
+		Object flightEvent = FlightRecording.beginSnapshot();
+		Snapshot.Capture capture = Snapshot.capture(this, snapshotFormat, chain);
+		getPhaseRecorder(PHASE_SNAPSHOT_CAPTURE).recordSince(start);
+		FlightRecording.endSnapshot(flightEvent, "Capture", path.toString());
+		snapshotChain = capture.getChain(path);
+		return capture;
+	}
+
+	/**
+	 * Save a snapshot of this Run to the given path on a background thread. The state of the Run is serialised in
+	 * memory before this method returns (see {@link Snapshot#capture(Run, Snapshot.Format, Snapshot.Chain)}), and is
+	 * then compressed and written to file on a dedicated low-priority thread; only the compression and writing are
+	 * performed in the background. If a snapshot is still being written then this method first waits for it to
+	 * complete, so that at most one snapshot is held in memory at a time. {@link Event#SnapshotBegin} is fired on the
+	 * calling thread. {@link Event#SnapshotComplete} is fired by the main loop at the beginning of the first iteration
+	 * after the file has been written, or by {@link #waitForSnapshot()}, so that listeners are not called concurrently
+	 * with the main loop.
+	 * 
+	 * @see #saveSnapshot(Path)
+	 */
+	public synchronized void saveSnapshotInBackground(final Path path) {
+		waitForSnapshot();
+		
+		this.fireEvent(Event.SnapshotBegin);
+		
+		final Snapshot.Capture capture;
+		try {
+			capture = captureSnapshot(path);
+		} catch (IOException e) {
+			logger.error("Could not save Run state to file.", e);
+			return;
+		}
+		
+		if (snapshotExecutor == null) {
+			snapshotExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Snapshot");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				}
+			});
+		}
+		
+		pendingSnapshot = snapshotExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					long start = System.nanoTime();
+					Object flightEvent = FlightRecording.beginSnapshot();
+					capture.write(path);
+					getPhaseRecorder(PHASE_SNAPSHOT_WRITE).recordSince(start);
+					FlightRecording.endSnapshot(flightEvent, "Write", path.toString());
+				} catch (IOException e) {
+					// Start a new chain as the next snapshot can't be a delta of this one.
+					snapshotChain = null;
+					logger.error("Could not save Run state to file.", e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Wait for the snapshot being written in the background, if any, to complete, and then fire
+	 * {@link Event#SnapshotComplete}.
+	 */
+	public synchronized void waitForSnapshot() {
+		if (pendingSnapshot != null) {
+			try {
+				pendingSnapshot.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				logger.error("Could not save Run state to file.", e.getCause());
+			}
+			pendingSnapshot = null;
+			this.fireEvent(Event.SnapshotComplete);
+		}
+	}
+
+	// Fire Event.SnapshotComplete if the snapshot being written in the background has completed. Called from the main
+	// loop so that listeners are not called from the snapshot thread.
+	private synchronized void checkSnapshot() {
+		if (pendingSnapshot != null && pendingSnapshot.isDone()) {
+			waitForSnapshot();
+		}
+	}
+
+	/**
+	 * Returns the service via which {@link Monitor}s should write output files, so that writing does not hold up the
+	 * evolutionary cycle.
+	 */
+	public OutputService getOutputService() {
+		// Don't synchronise on this Run as monitors may call this from other threads while run() holds the lock.
+		synchronized (servicesLock) {
+			if (outputService == null) {
+				outputService = new OutputService(outputQueueSize, outputFlushInterval, outputCompression);
+			}
+			return outputService;
+		}
+	}
+
+	// Write all pending output and close the output files.
+	private void closeOutputService() {
+		synchronized (servicesLock) {
+			if (outputService != null) {
+				outputService.close();
+				outputService = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the recorder for the durations, in nanoseconds, of the phase of the evolutionary cycle with the given
+	 * name, creating it if necessary. The standard phases are given by the PHASE_* constants. Components may record the
+	 * durations of their own phases. Recording is cheap and may be performed from any thread.
+	 */
+	public LatencyRecorder getPhaseRecorder(String phase) {
+		LatencyRecorder recorder = phaseRecorders.get(phase);
+		if (recorder == null) {
+			recorder = new LatencyRecorder();
+			LatencyRecorder existing = phaseRecorders.putIfAbsent(phase, recorder);
+			if (existing != null) {
+				recorder = existing;
+			}
+		}
+		return recorder;
+	}
+
+	// Returns the phase recorders created so far, by phase name.
+	Map<String, LatencyRecorder> getPhaseRecorders() {
+		return phaseRecorders;
+	}
+
+	// Returns the exponentially averaged duration of an iteration, in seconds.
+	double getAverageIterationTime() {
+		return avgIterationTime;
+	}
+
+	// Returns the number of evaluations performed per second in the most recent iteration.
+	double getEvaluationRate() {
+		return evaluationRate;
+	}
+
+	// Returns the percentage of the most recent iteration each thread spent performing Parallel tasks, or null if not yet known.
+	Map<String, Double> getWorkerBusy() {
+		return workerBusy;
+	}
+
+	// Returns the total number of evaluations performed by the evaluators so far.
+	private long getEvaluationCount() {
+		long count = 0;
+		for (Evaluator evaluator : evaluators) {
+			count += evaluator.getRecorder().getCount();
+		}
+		return count;
+	}
+
+	// Update the percentage of the given iteration duration each thread spent performing Parallel tasks.
+	private void updateWorkerBusy(long iterationNanos) {
+		Map<String, Long> totals = getPhaseRecorder(PHASE_PARALLEL_TASK).getTotalsByThread();
+		Map<String, Double> busy = new TreeMap<>();
+		for (Map.Entry<String, Long> total : totals.entrySet()) {
+			Long prev = prevWorkerTotals == null ? null : prevWorkerTotals.get(total.getKey());
+			long taskNanos = total.getValue() - (prev == null ? 0 : prev);
+			// Strip the package name from the names of Parallel threads.
+			String thread = total.getKey().substring(total.getKey().lastIndexOf('.') + 1);
+			busy.put(thread, iterationNanos == 0 ? 0 : 100.0 * taskNanos / iterationNanos);
+		}
+		workerBusy = busy;
+		prevWorkerTotals = totals;
+	}
+
+	/**
+	 * Returns the dispatcher via which events are delivered to asynchronous {@link Monitor}s.
+	 */
+	public EventDispatcher getEventDispatcher() {
+		// Don't synchronise on this Run as events may be fired from other threads while run() holds the lock.
+		if (eventDispatcher == null) {
+			synchronized (servicesLock) {
+				if (eventDispatcher == null) {
+					eventDispatcher = new EventDispatcher("Events", eventQueueSize);
+				}
+			}
+		}
+		return eventDispatcher;
+	}
+
+	// Deliver all pending events and stop the event dispatch thread. Events fired after this are delivered
+	// synchronously.
+	private void closeEventDispatcher() {
+		// Don't hold the lock while closing, as monitors handling the remaining events may fire events.
+		EventDispatcher dispatcher = eventDispatcher;
+		if (dispatcher != null) {
+			dispatcher.close();
+			if (dispatcher.getDroppedCount() > 0) {
+				logger.warn(dispatcher.getDroppedCount() + " events were dropped because the event queue was full.");
+			}
+		}
+	}
+
+	/**
+	 * Returns the factory used to generate IDs for the Configurables in this Run.
+	 */
+	IDFactory getIDFactory() {
+		return idFactory;
+	}
+
 	/**
 	 * Get a reference to the Transcriber component.
 	 */
@@ -365,11 +804,28 @@ public class Run extends ComponentBase {
 	}
 
 	/**
-	 * If set then this Run will stop when the current cycle is complete.
+	 * If set then this Run will stop when the current cycle is complete. This may be called from any thread;
+	 * {@link Event#Stopping} is fired from the thread executing the main cycle.
 	 */
 	public void stop() {
 		stop = true;
-		this.fireEvent(Event.Stopping);
+		stopRequested = true;
+	}
+
+	// Fire Event.Stopping if stop() has been called since it was last fired. Called from the main loop.
+	private void fireStoppingIfRequested() {
+		if (stopRequested) {
+			stopRequested = false;
+			this.fireEvent(Event.Stopping);
+		}
+	}
+
+	/**
+	 * Save a snapshot of this Run, in the output directory, when the current cycle is complete. This may be called from
+	 * any thread.
+	 */
+	public void requestSnapshot() {
+		snapshotRequested = true;
 	}
 
 	/**
@@ -536,6 +992,25 @@ public class Run extends ComponentBase {
 		double eta = avgIterationTime * (maximumIterations - currentIteration);
 		stats.add(new ComponentStateLog("General", "Time", "Estimated remaining", eta, "seconds"));
 
+		if (reportPhaseTimes && phaseRecorders != null) {
+			for (Map.Entry<String, LatencyRecorder> phase : new TreeMap<>(phaseRecorders).entrySet()) {
+				LatencyRecorder recorder = phase.getValue();
+				if (recorder.getCount() > 0) {
+					stats.add(new ComponentStateLog("Phase time", phase.getKey(), "p50", recorder.getValueAtPercentile(50) / 1e6, "ms"));
+					stats.add(new ComponentStateLog("Phase time", phase.getKey(), "p99", recorder.getValueAtPercentile(99) / 1e6, "ms"));
+					stats.add(new ComponentStateLog("Phase time", phase.getKey(), "max", recorder.getMax() / 1e6, "ms"));
+				}
+			}
+
+			stats.add(new ComponentStateLog("Throughput", "Evaluations", "Rate", evaluationRate, "per second"));
+
+			if (workerBusy != null) {
+				for (Map.Entry<String, Double> busy : workerBusy.entrySet()) {
+					stats.add(new ComponentStateLog("Throughput", "Busy", busy.getKey(), busy.getValue(), "%"));
+				}
+			}
+		}
+
 		return stats;
 	}
 
@@ -557,10 +1032,18 @@ public class Run extends ComponentBase {
 		IterationComplete,
 
 		/**
-		 * An event type indicating that this Run is set to stop when the current cycle is complete.
+		 * An event type indicating that this Run is set to stop when the current cycle is complete, fired at the end of
+		 * the iteration in which {@link Run#stop()} was called (before {@link #IterationComplete}).
 		 */
 		Stopping,
 
+		/**
+		 * An event type indicating that the main cycle has finished, because the maximum number of iterations has been
+		 * reached or the Run was stopped. Components performing work in the background should complete it before
+		 * returning from handling this event.
+		 */
+		Finished,
+
 		/**
 		 * An event type indicating that this Run and all its sub-Components have finished initialising.
 		 */
@@ -572,7 +1055,9 @@ public class Run extends ComponentBase {
 		SnapshotBegin,
 
 		/**
-		 * An event type indicating that a snapshot of the run has been saved.
+		 * An event type indicating that a snapshot of the run has been saved. If the snapshot was saved in the
+		 * background this is fired from the main loop once writing has completed, see
+		 * {@link Run#saveSnapshotInBackground(Path)}.
 		 */
 		SnapshotComplete,
 		
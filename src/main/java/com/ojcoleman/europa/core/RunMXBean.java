@@ -0,0 +1,112 @@
+package com.ojcoleman.europa.core;
+
+import java.util.Map;
+
+/**
+ * JMX management interface for a {@link Run}, registered with the platform MBean server while the Run is executing if
+ * enabled with {@link Run#registerMBean} (disabled by default), so that the Run may be monitored and controlled with
+ * jconsole, VisualVM or any other JMX client. The object name is <em>com.ojcoleman.europa:type=Run,name=&lt;run name&gt;,index=&lt;run index&gt;</em>.
+ *
+ * @author O. J. Coleman
+ */
+public interface RunMXBean {
+	/**
+	 * Returns the name of the Run.
+	 */
+	public String getName();
+
+	/**
+	 * Returns the current iteration/generation.
+	 */
+	public int getCurrentIteration();
+
+	/**
+	 * Returns the maximum number of iterations/generations, or a value <= 0 if there is no limit.
+	 */
+	public int getMaximumIterations();
+
+	/**
+	 * Returns true iff the Run has been set to stop at the end of the current iteration.
+	 */
+	public boolean isStopping();
+
+	/**
+	 * Returns the exponentially averaged duration of an iteration, in seconds.
+	 */
+	public double getAverageIterationTime();
+
+	/**
+	 * Returns the number of evaluations performed per second in the most recent iteration.
+	 */
+	public double getEvaluationRate();
+
+	/**
+	 * Returns the median, 99th percentile and maximum durations of each phase of the evolutionary cycle, in
+	 * milliseconds. The keys are of the form "&lt;phase&gt; p50".
+	 */
+	public Map<String, Double> getPhaseTimes();
+
+	/**
+	 * Returns the percentage of the most recent iteration each thread spent performing {@link Parallel} tasks, by
+	 * thread name.
+	 */
+	public Map<String, Double> getWorkerBusy();
+
+	/**
+	 * Returns the state data of the Run and all its components (see
+	 * {@link com.ojcoleman.europa.configurable.ComponentBase#getState()}), including the population and species
+	 * statistics, as of the end of the most recent iteration. The state is only collected after it has been requested
+	 * via this method, so the first request returns an empty map.
+	 */
+	public Map<String, String> getState();
+
+	/**
+	 * Returns the amount of memory used by the JVM, in megabytes.
+	 */
+	public long getUsedMemory();
+
+	/**
+	 * Returns the amount of memory available to the JVM, in megabytes.
+	 */
+	public long getTotalMemory();
+
+	/**
+	 * Returns the maximum amount of memory the JVM will attempt to use, in megabytes.
+	 */
+	public long getMaxMemory();
+
+	/**
+	 * Returns the number of threads used by {@link Parallel}.
+	 */
+	public int getThreadCount();
+
+	/**
+	 * Set the number of threads used by {@link Parallel}. This takes effect for the next parallel operation.
+	 */
+	public void setThreadCount(int threadCount);
+
+	/**
+	 * Returns the approximate number of threads of {@link Parallel} that are executing tasks.
+	 */
+	public int getActiveThreadCount();
+
+	/**
+	 * Returns the number of tasks waiting to be executed by {@link Parallel}.
+	 */
+	public int getQueuedTaskCount();
+
+	/**
+	 * Returns the approximate total number of tasks executed by {@link Parallel}.
+	 */
+	public long getCompletedTaskCount();
+
+	/**
+	 * Set the Run to stop at the end of the current iteration.
+	 */
+	public void stop();
+
+	/**
+	 * Save a snapshot of the Run at the end of the current iteration, in the output directory.
+	 */
+	public void snapshot();
+}
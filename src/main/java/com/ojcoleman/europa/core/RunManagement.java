@@ -0,0 +1,192 @@
+package com.ojcoleman.europa.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ojcoleman.europa.configurable.ComponentStateLog;
+import com.ojcoleman.europa.util.LatencyRecorder;
+
+/**
+ * Implementation of {@link RunMXBean}. Values that are safe to read while the Run is executing are read directly; the
+ * component state data, which is not, is collected on the main thread at the end of each iteration once it has been
+ * requested. Operations that change the course of the Run are applied by the Run at the end of the current iteration.
+ *
+ * @author O. J. Coleman
+ */
+class RunManagement implements RunMXBean {
+	private static final Logger logger = LoggerFactory.getLogger(RunManagement.class);
+
+	private final Run run;
+	private ObjectName name;
+
+	// The most recently collected state data, and whether it has been requested since it was collected.
+	private volatile Map<String, String> state = Collections.emptyMap();
+	private volatile boolean stateRequested;
+
+	RunManagement(Run run) {
+		this.run = run;
+	}
+
+	/**
+	 * Register this MBean with the platform MBean server. Failure is logged rather than thrown, as it does not affect
+	 * the Run itself.
+	 */
+	void register() {
+		try {
+			name = new ObjectName("com.ojcoleman.europa:type=Run,name=" + ObjectName.quote(run.getName()) + ",index=" + run.runIndex);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			logger.warn("Could not register the Run MBean.", e);
+			name = null;
+		}
+	}
+
+	/**
+	 * Unregister this MBean from the platform MBean server, if it was registered.
+	 */
+	void unregister() {
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			} catch (JMException e) {
+				logger.warn("Could not unregister the Run MBean.", e);
+			}
+			name = null;
+		}
+	}
+
+	/**
+	 * Called on the main thread by the Run at the end of each iteration.
+	 */
+	void iterationComplete() {
+		if (stateRequested) {
+			stateRequested = false;
+			Map<String, String> newState = new TreeMap<>();
+			for (Map.Entry<String, ComponentStateLog> entry : run.getAllStateData().entries()) {
+				ComponentStateLog log = entry.getValue();
+				newState.put(entry.getKey() + " - " + log.category + " - " + (log.subCategory.equals("") ? "" : log.subCategory + " - ") + log.label, log.getStateString());
+			}
+			state = Collections.unmodifiableMap(newState);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return run.getName();
+	}
+
+	@Override
+	public int getCurrentIteration() {
+		return run.getCurrentIteration();
+	}
+
+	@Override
+	public int getMaximumIterations() {
+		return run.getMaximumIterations();
+	}
+
+	@Override
+	public boolean isStopping() {
+		return run.isStopping();
+	}
+
+	@Override
+	public double getAverageIterationTime() {
+		return run.getAverageIterationTime();
+	}
+
+	@Override
+	public double getEvaluationRate() {
+		return run.getEvaluationRate();
+	}
+
+	@Override
+	public Map<String, Double> getPhaseTimes() {
+		Map<String, Double> times = new TreeMap<>();
+		for (Map.Entry<String, LatencyRecorder> phase : run.getPhaseRecorders().entrySet()) {
+			LatencyRecorder recorder = phase.getValue();
+			if (recorder.getCount() > 0) {
+				times.put(phase.getKey() + " p50", recorder.getValueAtPercentile(50) / 1e6);
+				times.put(phase.getKey() + " p99", recorder.getValueAtPercentile(99) / 1e6);
+				times.put(phase.getKey() + " max", recorder.getMax() / 1e6);
+			}
+		}
+		return times;
+	}
+
+	@Override
+	public Map<String, Double> getWorkerBusy() {
+		Map<String, Double> busy = run.getWorkerBusy();
+		return busy == null ? Collections.<String, Double> emptyMap() : busy;
+	}
+
+	@Override
+	public Map<String, String> getState() {
+		stateRequested = true;
+		return state;
+	}
+
+	@Override
+	public long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		return (runtime.totalMemory() - runtime.freeMemory()) / 1048576;
+	}
+
+	@Override
+	public long getTotalMemory() {
+		return Runtime.getRuntime().totalMemory() / 1048576;
+	}
+
+	@Override
+	public long getMaxMemory() {
+		return Runtime.getRuntime().maxMemory() / 1048576;
+	}
+
+	@Override
+	public int getThreadCount() {
+		return run.getParallel().getThreadCount();
+	}
+
+	@Override
+	public void setThreadCount(int threadCount) {
+		run.getParallel().setThreadCount(threadCount);
+	}
+
+	@Override
+	public int getActiveThreadCount() {
+		return run.getParallel().getActiveThreadCount();
+	}
+
+	@Override
+	public int getQueuedTaskCount() {
+		return run.getParallel().getQueuedTaskCount();
+	}
+
+	@Override
+	public long getCompletedTaskCount() {
+		return run.getParallel().getCompletedTaskCount();
+	}
+
+	@Override
+	public void stop() {
+		run.stop();
+	}
+
+	@Override
+	public void snapshot() {
+		run.requestSnapshot();
+	}
+}
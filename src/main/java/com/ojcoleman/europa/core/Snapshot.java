@@ -0,0 +1,1134 @@
+package com.ojcoleman.europa.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.google.common.io.CountingOutputStream;
+import com.ojcoleman.europa.algos.vector.Vector;
+import com.ojcoleman.europa.algos.vector.VectorAllele;
+import com.ojcoleman.europa.algos.vector.VectorMetadata;
+import com.ojcoleman.europa.configurable.DefaultIDFactory;
+import com.ojcoleman.europa.configurable.IDFactory;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.xml.CompactWriter;
+
+/**
+ * <p>
+ * Reads and writes snapshots of a {@link Run}, from which the Run may be resumed (see
+ * {@link com.ojcoleman.europa.Main}). Two formats are supported, see {@link Format}. The binary format consists of the
+ * following sections, located via a table at the end of the file:
+ * <ul>
+ * <li>The configuration of the Run, stored once as JSON (see
+ * {@link com.ojcoleman.europa.configurable.ComponentBase#getConfiguration(boolean)}).</li>
+ * <li>The state of the Components, serialised with XStream and compressed. {@link Genotype}s are stored in this
+ * section without their alleles or parents, as a reference to a genome record.</li>
+ * <li>Packed genome records, containing the parents and alleles of each Genotype. The values of {@link VectorAllele}s
+ * and any primitive fields declared by Allele sub-classes are stored as raw binary values. The {@link Gene}s and
+ * {@link VectorMetadata} referenced by the alleles are stored once each in the XStream section.</li>
+ * <li>The state of the random number generators, the current iteration and the ID counter, stored explicitly.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Only the parents of a Genotype that are themselves stored in the snapshot are retained, so that the transitive chain
+ * of ancestors is not stored. Sub-classes of Genotype that maintain views of their alleles should mark the fields
+ * holding them as transient and rebuild them in an override of {@link Genotype#readResolve()}, which is called once
+ * the alleles have been restored. If an Allele sub-class declares a non-primitive field then a binary snapshot can
+ * not be written, in which case the XStream format is used instead.
+ * </p>
+ * <p>
+ * An instance of this class is obtained via {@link #open(Path)} and provides lazy access to a binary snapshot: each
+ * section of the file is memory-mapped and only decoded when it is required, for example the configuration may be read
+ * via {@link #getConfiguration()} without loading the population.
+ * </p>
+ * <p>
+ * A binary snapshot may be a delta snapshot, which forms a chain with the snapshots preceding it back to the most
+ * recent full snapshot (see {@link Chain}). A delta snapshot stores genome records only for the Genotypes that were not
+ * stored in the previous snapshot in the chain, along with a reference to that snapshot, and the tables of Genes,
+ * VectorMetadata and allele layouts only ever grow along a chain so that records in earlier snapshots remain valid.
+ * The component state is stored in full (compressed) in every snapshot: this includes every Individual and its
+ * evaluation results, the species and the state of the evolver and other components, so a delta snapshot only saves
+ * the space of the genome records (mostly allele values) of the Genotypes carried over from the previous snapshot.
+ * The sizes of the sections of each snapshot written are logged at debug level. Genotypes are assumed not to change
+ * once they are part of the population. Loading a delta snapshot requires the earlier snapshots in the chain to be
+ * present in the same directory; {@link #main(String[])} rebuilds a full snapshot from a chain.
+ * </p>
+ * <p>
+ * Writing a snapshot is split into two steps: {@link #capture(Run, Format)} serialises the state of the Run into
+ * memory, and {@link Capture#write(Path)} compresses the captured state and writes it to file. This allows the latter
+ * to be performed on a background thread while the Run continues (see {@link Run#saveSnapshotInBackground(Path)}).
+ * Note that capturing is not a cheap copy: it performs the full serialisation of the component graph (via XStream)
+ * and the encoding of the genomes, so it takes a similar time on the calling thread to writing a snapshot
+ * synchronously, less the time to compress and write the file.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class Snapshot implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(Snapshot.class);
+
+	/**
+	 * The file name extension for snapshots.
+	 */
+	public static final String EXTENSION = ".europa";
+
+	/**
+	 * Snapshot formats.
+	 */
+	public static enum Format {
+		/**
+		 * The versioned binary format described in {@link Snapshot}.
+		 */
+		BINARY,
+
+		/**
+		 * The entire Run serialised by XStream to XML and stored in a zip file.
+		 */
+		XSTREAM
+	}
+
+	// "EURS"
+	private static final int MAGIC = 0x45555253;
+	private static final int VERSION = 1;
+
+	private static final int SECTION_CONFIG = 1;
+	private static final int SECTION_GRAPH = 2;
+	private static final int SECTION_GENOMES = 3;
+	private static final int SECTION_STATE = 4;
+	private static final int SECTION_BASE = 5;
+
+	// Genome record kinds: a record stored in this snapshot, or stored in the base snapshot of a delta snapshot.
+	private static final byte RECORD_STORED = 0;
+	private static final byte RECORD_INHERITED = 1;
+
+	// The file name pattern used for snapshots saved periodically by a Run, see findLatest().
+	private static final Pattern SAVE_FILE = Pattern.compile("save-(\\d+)" + Pattern.quote(EXTENSION));
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// The name of the entry in the zip file used for the XStream format.
+	private static final String XSTREAM_ENTRY = "europarun.xml";
+
+	private final Path path;
+	private final FileChannel channel;
+	private final Map<Integer, ByteBuffer> sections;
+
+	// The base snapshot of a delta snapshot, opened lazily.
+	private Snapshot base;
+
+	// Map from genotype ID to the offset of the genome record, and the start of the genome records within the
+	// genome section. Read lazily.
+	private Map<Long, Integer> recordIndex;
+	private int recordsStart;
+
+	private Snapshot(Path path) throws IOException {
+		this.path = path;
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		sections = new HashMap<>();
+		try {
+			readSections();
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads the header and the table of sections, and maps each section. Sections are mapped individually so that
+	 * the file as a whole may be larger than the maximum size of a memory-mapped buffer (2GB).
+	 */
+	private void readSections() throws IOException {
+		long size = channel.size();
+		if (size < 20 || read(0, 8).getInt() != MAGIC) {
+			throw new IOException(path + " is not a binary snapshot.");
+		}
+		ByteBuffer trailer = read(size - 12, 12);
+		long tableOffset = trailer.getLong();
+		if (trailer.getInt() != MAGIC || tableOffset < 8 || tableOffset > size - 16) {
+			throw new IOException(path + " is not a binary snapshot.");
+		}
+		int version = read(4, 4).getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version " + version + " in " + path + ", expected " + VERSION + ".");
+		}
+
+		ByteBuffer table = read(tableOffset, size - 12 - tableOffset);
+		int sectionCount = table.getInt();
+		for (int s = 0; s < sectionCount; s++) {
+			int type = table.getInt();
+			long offset = table.getLong();
+			long length = table.getLong();
+			if (offset < 8 || length < 0 || offset + length > tableOffset) {
+				throw new IOException("The table of sections in the snapshot " + path + " is corrupt.");
+			}
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Section " + type + " of the snapshot " + path + " is larger than 2GB.");
+			}
+			sections.put(type, channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+		}
+	}
+
+	/**
+	 * Reads the given range of the file into a new buffer.
+	 */
+	private ByteBuffer read(long position, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("The table of sections in the snapshot " + path + " is corrupt.");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file in the snapshot " + path + ".");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Open the binary snapshot at the given path. Each section of the file is memory-mapped and decoded when it is
+	 * required.
+	 *
+	 * @throws IOException If the file could not be read or is not a binary snapshot of a supported version.
+	 */
+	public static Snapshot open(Path path) throws IOException {
+		return new Snapshot(path);
+	}
+
+	/**
+	 * Returns true iff the file at the given path is a binary snapshot (rather than an XStream snapshot).
+	 */
+	public static boolean isBinary(Path path) throws IOException {
+		try (InputStream in = Files.newInputStream(path)) {
+			byte[] header = new byte[4];
+			return in.read(header) == 4 && ByteBuffer.wrap(header).getInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Returns the most recent snapshot saved periodically by a Run in the given directory, or null if there are none.
+	 */
+	public static Path findLatest(Path directory) throws IOException {
+		Path latest = null;
+		int latestIteration = -1;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Matcher matcher = SAVE_FILE.matcher(file.getFileName().toString());
+				if (matcher.matches() && Integer.parseInt(matcher.group(1)) > latestIteration) {
+					latestIteration = Integer.parseInt(matcher.group(1));
+					latest = file;
+				}
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * Rebuilds the state of a Run from a chain of snapshots and writes it as a full snapshot. Usage:
+	 * <code>Snapshot &lt;snapshot file, or directory containing snapshots&gt; &lt;output file&gt;</code>. If a directory is
+	 * given then the most recent snapshot in it is used.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: Snapshot <snapshot file, or directory containing snapshots> <output file>");
+			System.exit(-1);
+		}
+		Path input = Paths.get(args[0]);
+		if (Files.isDirectory(input)) {
+			input = findLatest(input);
+			if (input == null) {
+				throw new IllegalArgumentException("No snapshots found in " + args[0]);
+			}
+		}
+		Run run = load(input);
+		capture(run, Format.BINARY, null).write(Paths.get(args[1]));
+		System.out.println("Wrote full snapshot of iteration " + run.getCurrentIteration() + " from " + input + " to " + args[1]);
+	}
+
+	/**
+	 * Load the Run stored in the snapshot at the given path, which may be in either {@link Format}. If the snapshot is
+	 * a delta snapshot then the state is rebuilt from the chain of snapshots it belongs to.
+	 */
+	public static Run load(Path path) throws IOException {
+		if (isBinary(path)) {
+			try (Snapshot snapshot = open(path)) {
+				return snapshot.loadRun();
+			}
+		}
+		try (ZipFile zipFile = new ZipFile(path.toFile())) {
+			ZipEntry zipEntry = zipFile.getEntry(XSTREAM_ENTRY);
+			return (Run) new XStream().fromXML(new BufferedInputStream(zipFile.getInputStream(zipEntry)));
+		}
+	}
+
+	/**
+	 * Write a full snapshot of the given Run to the given path in the given format. This is equivalent to
+	 * <code>capture(run, format, null).write(path)</code>.
+	 */
+	public static void write(Run run, Path path, Format format) throws IOException {
+		capture(run, format, null).write(path);
+	}
+
+	/**
+	 * Capture the state of the given Run in memory in the given format, so that it may be compressed and written to
+	 * file via {@link Capture#write(Path)}, possibly on another thread, while the Run continues. If the binary format is
+	 * requested but can not be used for the Run (see {@link Snapshot}) then the XStream format is used.
+	 * 
+	 * @param chain If not null then a delta snapshot continuing the given chain is captured (if the binary format is
+	 *            used), otherwise a full snapshot is captured. See {@link Capture#getChain(Path)}.
+	 */
+	public static Capture capture(Run run, Format format, Chain chain) throws IOException {
+		if (format == Format.BINARY) {
+			try {
+				return captureBinary(run, chain);
+			} catch (UnsupportedOperationException ex) {
+				logger.warn("Could not capture binary snapshot, using XStream format instead: " + ex.getMessage());
+			}
+		}
+		return captureXStream(run);
+	}
+
+	private static Capture captureXStream(Run run) {
+		final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(xml, StandardCharsets.UTF_8);
+		new XStream().marshal(run, new CompactWriter(writer));
+		try {
+			writer.flush();
+		} catch (IOException ex) {
+			// Can't happen when writing to a ByteArrayOutputStream.
+		}
+		return new Capture(null) {
+			@Override
+			protected void writeTo(Path path) throws IOException {
+				try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+					out.putNextEntry(new ZipEntry(XSTREAM_ENTRY));
+					xml.writeTo(out);
+				}
+			}
+		};
+	}
+
+	private static Capture captureBinary(Run run, final Chain chain) throws IOException {
+		// Configuration.
+		final byte[] config;
+		try {
+			config = run.getConfiguration(false).toString().getBytes(StandardCharsets.UTF_8);
+		} catch (IllegalAccessException ex) {
+			throw new RuntimeException("Could not get configuration of Run.", ex);
+		}
+
+		// Component state, except for the alleles and parents of genotypes. This is compressed when written.
+		final Graph graph = new Graph(chain);
+		final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+		Writer writer = new OutputStreamWriter(xml, StandardCharsets.UTF_8);
+		graph.xstream.marshal(new Contents(run), new CompactWriter(writer));
+		writer.flush();
+
+		// Genome records.
+		final ByteArrayOutputStream genomes = new ByteArrayOutputStream();
+		DataOutputStream genomesOut = new DataOutputStream(genomes);
+		graph.writeGenomes(genomesOut);
+		genomesOut.flush();
+
+		// Random number generators and counters.
+		final ByteArrayOutputStream state = new ByteArrayOutputStream();
+		DataOutputStream stateOut = new DataOutputStream(state);
+		stateOut.writeInt(run.currentIteration);
+		IDFactory idFactory = run.getIDFactory();
+		stateOut.writeBoolean(idFactory instanceof DefaultIDFactory);
+		stateOut.writeLong(idFactory instanceof DefaultIDFactory ? ((DefaultIDFactory) idFactory).getLastID() : 0);
+		stateOut.writeInt(graph.randoms.size());
+		for (Random random : graph.randoms) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+				objectOut.writeObject(random);
+			} catch (NotSerializableException ex) {
+				throw new UnsupportedOperationException("The random number generator " + random.getClass().getName() + " is not serializable.");
+			}
+			stateOut.writeInt(bytes.size());
+			bytes.writeTo(stateOut);
+		}
+		stateOut.flush();
+
+		return new Capture(new Chain(graph, chain)) {
+			@Override
+			protected void writeTo(Path path) throws IOException {
+				try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), BUFFER_SIZE));
+					DataOutputStream data = new DataOutputStream(counter);
+					List<long[]> table = new ArrayList<>();
+
+					data.writeInt(MAGIC);
+					data.writeInt(VERSION);
+
+					long start = counter.getCount();
+					data.write(config);
+					table.add(new long[] { SECTION_CONFIG, start, counter.getCount() - start });
+
+					start = counter.getCount();
+					Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+					DeflaterOutputStream deflaterStream = new DeflaterOutputStream(data, deflater, BUFFER_SIZE);
+					xml.writeTo(deflaterStream);
+					deflaterStream.finish();
+					deflater.end();
+					table.add(new long[] { SECTION_GRAPH, start, counter.getCount() - start });
+
+					start = counter.getCount();
+					genomes.writeTo(data);
+					table.add(new long[] { SECTION_GENOMES, start, counter.getCount() - start });
+
+					start = counter.getCount();
+					state.writeTo(data);
+					table.add(new long[] { SECTION_STATE, start, counter.getCount() - start });
+
+					if (chain != null) {
+						start = counter.getCount();
+						writeString(data, chain.base);
+						table.add(new long[] { SECTION_BASE, start, counter.getCount() - start });
+					}
+
+					long tableOffset = counter.getCount();
+					data.writeInt(table.size());
+					for (long[] entry : table) {
+						data.writeInt((int) entry[0]);
+						data.writeLong(entry[1]);
+						data.writeLong(entry[2]);
+					}
+					data.writeLong(tableOffset);
+					data.writeInt(MAGIC);
+					data.flush();
+
+					if (logger.isDebugEnabled()) {
+						logger.debug("Wrote " + (chain == null ? "full" : "delta") + " snapshot " + path + " of " + counter.getCount() + " bytes: components " + table.get(1)[2] + ", genomes " + table.get(2)[2] + ", state " + table.get(3)[2] + ".");
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * The state of a Run captured in memory by {@link Snapshot#capture(Run, Format)}. Captures are independent of the
+	 * Run they were taken from, so they may be written on another thread while the Run continues.
+	 */
+	public static abstract class Capture {
+		private final Chain chain;
+
+		private Capture(Chain chain) {
+			this.chain = chain;
+		}
+
+		/**
+		 * Returns the chain to provide to {@link Snapshot#capture(Run, Format, Chain)} to capture a delta snapshot
+		 * following this one, given the path this capture is written to. Returns null if this capture can not be
+		 * followed by a delta snapshot, because it is in the XStream format.
+		 */
+		public Chain getChain(Path path) {
+			return chain == null ? null : new Chain(chain, path.getFileName().toString());
+		}
+
+		/**
+		 * Compress and write this capture to the given path. The capture is written to a temporary file which is then
+		 * moved to the given path, so that a partially written snapshot is never left at the given path.
+		 */
+		public void write(Path path) throws IOException {
+			Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+			try {
+				writeTo(temp);
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+
+		/**
+		 * Write this capture to the given path.
+		 */
+		protected abstract void writeTo(Path path) throws IOException;
+	}
+
+	/**
+	 * The state of a chain of snapshots required to capture a delta snapshot following the most recent snapshot in the
+	 * chain: the file name of the most recent snapshot, the IDs of the Genotypes stored in it, and the tables of Genes,
+	 * VectorMetadata and allele layouts used by the chain. Obtained via {@link Capture#getChain(Path)}.
+	 */
+	public static class Chain {
+		private final String base;
+		private final int length;
+		private final Set<Long> genotypeIDs;
+		private final List<Gene> genes;
+		private final List<VectorMetadata> metadata;
+		private final List<AlleleLayout> layouts;
+
+		private Chain(Graph graph, Chain previous) {
+			base = null;
+			length = previous == null ? 1 : previous.length + 1;
+			genotypeIDs = new HashSet<>();
+			for (Genotype<?> genotype : graph.genotypes) {
+				genotypeIDs.add(genotype.id);
+			}
+			genes = new ArrayList<>(graph.genes);
+			metadata = new ArrayList<>(graph.metadata);
+			layouts = new ArrayList<>(graph.layouts);
+		}
+
+		private Chain(Chain chain, String base) {
+			this.base = base;
+			length = chain.length;
+			genotypeIDs = chain.genotypeIDs;
+			genes = chain.genes;
+			metadata = chain.metadata;
+			layouts = chain.layouts;
+		}
+
+		/**
+		 * Returns the number of snapshots in this chain, including the full snapshot it starts with.
+		 */
+		public int getLength() {
+			return length;
+		}
+	}
+
+	/**
+	 * Returns true iff this is a delta snapshot.
+	 */
+	public boolean isDelta() {
+		return sections.containsKey(SECTION_BASE);
+	}
+
+	/**
+	 * Returns the snapshot preceding this delta snapshot in its chain, or null if this is a full snapshot. The returned
+	 * snapshot is closed when this snapshot is closed.
+	 * 
+	 * @throws IOException If the preceding snapshot could not be opened.
+	 */
+	public Snapshot getBase() throws IOException {
+		if (base == null && isDelta()) {
+			Path basePath = path.resolveSibling(readString(getSection(SECTION_BASE)));
+			if (!Files.exists(basePath)) {
+				throw new IOException("The snapshot " + basePath + " preceding the delta snapshot " + path + " is missing.");
+			}
+			base = open(basePath);
+		}
+		return base;
+	}
+
+	/**
+	 * Returns the genome record for the Genotype with the given ID, positioned after the record kind, from this
+	 * snapshot or the chain it belongs to. Returns null if the record was not found.
+	 */
+	private ByteBuffer getRecord(long genotypeID) throws IOException {
+		ByteBuffer genomes = getSection(SECTION_GENOMES);
+		if (recordIndex == null) {
+			readLayouts(genomes);
+			int count = genomes.getInt();
+			recordIndex = new HashMap<>(count * 2);
+			for (int g = 0; g < count; g++) {
+				recordIndex.put(genomes.getLong(), genomes.getInt());
+			}
+			recordsStart = genomes.position();
+		}
+		Integer offset = recordIndex.get(genotypeID);
+		if (offset == null) {
+			return null;
+		}
+		genomes.position(recordsStart + offset);
+		if (genomes.get() == RECORD_INHERITED) {
+			return getBase() == null ? null : getBase().getRecord(genotypeID);
+		}
+		return genomes;
+	}
+
+	/**
+	 * Returns the configuration of the Run stored in this snapshot.
+	 */
+	public JsonObject getConfiguration() {
+		return Json.parse(new InputStreamReader(new ByteBufferInputStream(getSection(SECTION_CONFIG)), StandardCharsets.UTF_8)).asObject();
+	}
+
+	/**
+	 * Returns the iteration the Run stored in this snapshot had completed when it was saved.
+	 */
+	public int getIteration() {
+		return getSection(SECTION_STATE).getInt(0);
+	}
+
+	/**
+	 * Load the Run stored in this snapshot.
+	 */
+	public Run loadRun() throws IOException {
+		Graph graph = new Graph(null);
+
+		ByteBuffer state = getSection(SECTION_STATE);
+		int iteration = state.getInt();
+		boolean hasLastID = state.get() != 0;
+		long lastID = state.getLong();
+		int randomCount = state.getInt();
+		for (int r = 0; r < randomCount; r++) {
+			byte[] bytes = new byte[state.getInt()];
+			state.get(bytes);
+			try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+				graph.randoms.add((Random) objectIn.readObject());
+			} catch (ClassNotFoundException ex) {
+				throw new IOException("Could not load random number generator from " + path, ex);
+			}
+		}
+
+		InputStream graphIn = new InflaterInputStream(new ByteBufferInputStream(getSection(SECTION_GRAPH)), new Inflater(), BUFFER_SIZE);
+		Contents contents = (Contents) graph.xstream.fromXML(new InputStreamReader(graphIn, StandardCharsets.UTF_8));
+
+		graph.readGenomes(this, contents);
+
+		Run run = contents.run;
+		run.currentIteration = iteration;
+		if (hasLastID) {
+			((DefaultIDFactory) run.getIDFactory()).setLastID(lastID);
+		}
+		return run;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		if (base != null) {
+			base.close();
+		}
+	}
+
+	private ByteBuffer getSection(int type) {
+		ByteBuffer section = sections.get(type);
+		if (section == null) {
+			throw new IllegalStateException("The snapshot " + path + " does not contain section " + type + ".");
+		}
+		return section.duplicate();
+	}
+
+	/**
+	 * The root object stored in the XStream section.
+	 */
+	private static class Contents {
+		Run run;
+		List<Gene> genes;
+		List<VectorMetadata> metadata;
+
+		Contents(Run run) {
+			this.run = run;
+		}
+	}
+
+	/**
+	 * The layout of a packed allele record for a specific Allele class.
+	 */
+	private static class AlleleLayout {
+		final Class<?> type;
+		final boolean isVector;
+		final List<Field> fields;
+
+		AlleleLayout(Class<?> type, List<Field> fields) {
+			this.type = type;
+			this.isVector = VectorAllele.class.isAssignableFrom(type);
+			this.fields = fields;
+		}
+	}
+
+	/**
+	 * Holds the state shared between the XStream converters and the genome records when writing or reading a
+	 * snapshot.
+	 */
+	private static class Graph {
+		final XStream xstream;
+		final ReflectionConverter reflectionConverter;
+
+		// Genotypes in the order their records are stored.
+		final List<Genotype<?>> genotypes = new ArrayList<>();
+		final Map<Genotype<?>, Integer> genotypeIndex = new IdentityHashMap<>();
+		final List<Random> randoms = new ArrayList<>();
+
+		// Tables used by the genome records.
+		final List<Gene> genes = new ArrayList<>();
+		final Map<Gene, Integer> geneIndex = new IdentityHashMap<>();
+		final List<VectorMetadata> metadata = new ArrayList<>();
+		final Map<VectorMetadata, Integer> metadataIndex = new IdentityHashMap<>();
+		final List<AlleleLayout> layouts = new ArrayList<>();
+		final Map<Class<?>, Integer> layoutIndex = new HashMap<>();
+
+		// The chain a delta snapshot continues, or null for a full snapshot.
+		final Chain chain;
+
+		Graph(Chain chain) {
+			this.chain = chain;
+			if (chain != null) {
+				for (Gene gene : chain.genes) {
+					geneIndex.put(gene, genes.size());
+					genes.add(gene);
+				}
+				for (VectorMetadata md : chain.metadata) {
+					metadataIndex.put(md, metadata.size());
+					metadata.add(md);
+				}
+				for (AlleleLayout layout : chain.layouts) {
+					layoutIndex.put(layout.type, layouts.size());
+					layouts.add(layout);
+				}
+			}
+
+			xstream = new XStream();
+			xstream.setMode(XStream.ID_REFERENCES);
+			xstream.alias("snapshot", Contents.class);
+			xstream.omitField(Genotype.class, "parents");
+			xstream.omitField(Genotype.class, "alleles");
+			xstream.omitField(Genotype.class, "allelesByGeneType");
+			xstream.omitField(Run.class, "currentIteration");
+			xstream.omitField(DefaultIDFactory.class, "nextID");
+
+			reflectionConverter = new ReflectionConverter(xstream.getMapper(), xstream.getReflectionProvider());
+			xstream.registerConverter(new ContentsConverter(), XStream.PRIORITY_VERY_HIGH);
+			xstream.registerConverter(new GenotypeConverter(), XStream.PRIORITY_VERY_HIGH);
+			xstream.registerConverter(new RandomConverter(), XStream.PRIORITY_VERY_HIGH);
+		}
+
+		/**
+		 * Stores the Run, followed by the Genes and VectorMetadata referenced by the alleles of the Genotypes encountered
+		 * while storing the Run.
+		 */
+		class ContentsConverter implements Converter {
+			@Override
+			public boolean canConvert(Class type) {
+				return type == Contents.class;
+			}
+
+			@Override
+			public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+				Contents contents = (Contents) source;
+
+				writer.startNode("run");
+				context.convertAnother(contents.run);
+				writer.endNode();
+
+				for (Genotype<?> genotype : genotypes) {
+					for (Allele<?> allele : genotype.getAlleles()) {
+						getLayoutIndex(allele.getClass());
+						if (allele.gene != null && !geneIndex.containsKey(allele.gene)) {
+							geneIndex.put(allele.gene, genes.size());
+							genes.add(allele.gene);
+						}
+						if (allele instanceof VectorAllele) {
+							VectorMetadata md = ((VectorAllele<?>) allele).vector.metadata;
+							if (!metadataIndex.containsKey(md)) {
+								metadataIndex.put(md, metadata.size());
+								metadata.add(md);
+							}
+						}
+					}
+				}
+
+				writer.startNode("genes");
+				context.convertAnother(new ArrayList<>(genes));
+				writer.endNode();
+
+				writer.startNode("metadata");
+				context.convertAnother(new ArrayList<>(metadata));
+				writer.endNode();
+			}
+
+			@Override
+			public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+				Contents contents = new Contents(null);
+
+				reader.moveDown();
+				contents.run = (Run) context.convertAnother(contents, Run.class);
+				reader.moveUp();
+
+				reader.moveDown();
+				contents.genes = (List<Gene>) context.convertAnother(contents, ArrayList.class);
+				reader.moveUp();
+
+				reader.moveDown();
+				contents.metadata = (List<VectorMetadata>) context.convertAnother(contents, ArrayList.class);
+				reader.moveUp();
+
+				return contents;
+			}
+		}
+
+		/**
+		 * Stores the fields of a Genotype other than its alleles and parents (which are omitted), along with the index
+		 * of its genome record.
+		 */
+		class GenotypeConverter implements Converter {
+			@Override
+			public boolean canConvert(Class type) {
+				return Genotype.class.isAssignableFrom(type);
+			}
+
+			@Override
+			public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+				Genotype<?> genotype = (Genotype<?>) source;
+				writer.addAttribute("record", Integer.toString(genotypes.size()));
+				genotypeIndex.put(genotype, genotypes.size());
+				genotypes.add(genotype);
+				reflectionConverter.marshal(source, writer, context);
+			}
+
+			@Override
+			public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+				int record = Integer.parseInt(reader.getAttribute("record"));
+				Object genotype = xstream.getReflectionProvider().newInstance(context.getRequiredType());
+				// The alleles are restored from the genome records once the Genes they reference have been read, so
+				// readResolve() is not called here, see restoreGenotype().
+				reflectionConverter.doUnmarshal(genotype, reader, context);
+				while (genotypes.size() <= record) {
+					genotypes.add(null);
+				}
+				genotypes.set(record, (Genotype<?>) genotype);
+				return genotype;
+			}
+		}
+
+		/**
+		 * Stores a reference to a random number generator, the state of which is stored in the state section.
+		 */
+		class RandomConverter implements Converter {
+			@Override
+			public boolean canConvert(Class type) {
+				return Random.class.isAssignableFrom(type);
+			}
+
+			@Override
+			public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+				writer.setValue(Integer.toString(randoms.size()));
+				randoms.add((Random) source);
+			}
+
+			@Override
+			public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+				return randoms.get(Integer.parseInt(reader.getValue()));
+			}
+		}
+
+		private int getLayoutIndex(Class<?> type) {
+			Integer index = layoutIndex.get(type);
+			if (index == null) {
+				List<Field> fields = new ArrayList<>();
+				for (Class<?> c = type; c != Allele.class; c = c.getSuperclass()) {
+					for (Field field : c.getDeclaredFields()) {
+						if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || c == VectorAllele.class && field.getType() == Vector.class) {
+							continue;
+						}
+						if (!field.getType().isPrimitive()) {
+							throw new UnsupportedOperationException("The field " + field.getName() + " in Allele class " + type.getName() + " is not a primitive type.");
+						}
+						field.setAccessible(true);
+						fields.add(field);
+					}
+				}
+				index = layouts.size();
+				layouts.add(new AlleleLayout(type, fields));
+				layoutIndex.put(type, index);
+			}
+			return index;
+		}
+
+		void writeGenomes(DataOutputStream out) throws IOException {
+			out.writeInt(layouts.size());
+			for (AlleleLayout layout : layouts) {
+				writeString(out, layout.type.getName());
+				out.writeInt(layout.fields.size());
+				for (Field field : layout.fields) {
+					writeString(out, field.getDeclaringClass().getName());
+					writeString(out, field.getName());
+				}
+			}
+
+			// The records are written to a buffer first so that the index of record offsets may precede them.
+			ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+			DataOutputStream records = new DataOutputStream(recordBytes);
+			int[] offsets = new int[genotypes.size()];
+			for (int g = 0; g < genotypes.size(); g++) {
+				Genotype<?> genotype = genotypes.get(g);
+				offsets[g] = records.size();
+
+				if (chain != null && chain.genotypeIDs.contains(genotype.id)) {
+					records.writeByte(RECORD_INHERITED);
+					continue;
+				}
+				records.writeByte(RECORD_STORED);
+
+				int parentCount = 0;
+				for (Genotype<?> parent : genotype.parents) {
+					if (genotypeIndex.containsKey(parent)) {
+						parentCount++;
+					}
+				}
+				records.writeInt(parentCount);
+				for (Genotype<?> parent : genotype.parents) {
+					if (genotypeIndex.containsKey(parent)) {
+						records.writeLong(parent.id);
+					}
+				}
+
+				records.writeInt(genotype.alleles.size());
+				for (Allele<?> allele : genotype.alleles) {
+					AlleleLayout layout = layouts.get(layoutIndex.get(allele.getClass()));
+					records.writeInt(layoutIndex.get(allele.getClass()));
+					records.writeLong(allele.id);
+					records.writeInt(allele.gene == null ? -1 : geneIndex.get(allele.gene));
+					records.writeBoolean(allele.getGenotype() == genotype);
+					if (layout.isVector) {
+						Vector vector = ((VectorAllele<?>) allele).vector;
+						records.writeInt(metadataIndex.get(vector.metadata));
+						for (int i = 0; i < vector.size(); i++) {
+							records.writeDouble(vector.get(i));
+						}
+					}
+					try {
+						for (Field field : layout.fields) {
+							writePrimitive(records, field, allele);
+						}
+					} catch (IllegalAccessException ex) {
+						throw new RuntimeException("Could not read field of allele.", ex);
+					}
+				}
+			}
+			records.flush();
+
+			out.writeInt(genotypes.size());
+			for (int g = 0; g < genotypes.size(); g++) {
+				out.writeLong(genotypes.get(g).id);
+				out.writeInt(offsets[g]);
+			}
+			recordBytes.writeTo(out);
+		}
+
+		void readGenomes(Snapshot snapshot, Contents contents) throws IOException {
+			layouts.addAll(readLayouts(snapshot.getSection(SECTION_GENOMES)));
+
+			Map<Long, Genotype<?>> genotypesByID = new HashMap<>();
+			for (Genotype<?> genotype : genotypes) {
+				genotypesByID.put(genotype.id, genotype);
+			}
+
+			try {
+				for (Genotype<?> genotype : genotypes) {
+					ByteBuffer record = snapshot.getRecord(genotype.id);
+					if (record == null) {
+						throw new IOException("The genome record for genotype " + genotype.id + " could not be found in the snapshot " + snapshot.path + " or the chain it belongs to.");
+					}
+					restoreGenotype(record, genotype, contents, genotypesByID);
+				}
+			} catch (ReflectiveOperationException ex) {
+				throw new IOException("Could not restore genotypes.", ex);
+			}
+		}
+
+		private void restoreGenotype(ByteBuffer in, Genotype genotype, Contents contents, Map<Long, Genotype<?>> genotypesByID) throws ReflectiveOperationException {
+			int parentCount = in.getInt();
+			List<Genotype<?>> parents = new ArrayList<>(parentCount);
+			for (int p = 0; p < parentCount; p++) {
+				Genotype<?> parent = genotypesByID.get(in.getLong());
+				if (parent != null) {
+					parents.add(parent);
+				}
+			}
+
+			Collection alleles = genotype.newAlleleCollection();
+			int alleleCount = in.getInt();
+			for (int a = 0; a < alleleCount; a++) {
+				AlleleLayout layout = layouts.get(in.getInt());
+				Allele allele = (Allele) xstream.getReflectionProvider().newInstance(layout.type);
+
+				long id = in.getLong();
+				int gene = in.getInt();
+				allele.restoreGene(gene == -1 ? null : contents.genes.get(gene));
+				boolean belongsToGenotype = in.get() != 0;
+				if (layout.isVector) {
+					VectorMetadata md = contents.metadata.get(in.getInt());
+					double[] values = new double[md.size()];
+					for (int i = 0; i < values.length; i++) {
+						values[i] = in.getDouble();
+					}
+					((VectorAllele) allele).restoreVector(new Vector(md, values, true));
+				}
+				for (Field field : layout.fields) {
+					readPrimitive(in, field, allele);
+				}
+
+				// The configuration state shared by all configurables in a Run is taken from the genotype.
+				allele.restore(id, genotype);
+
+				alleles.add(allele);
+				if (belongsToGenotype) {
+					allele.setGenotype(genotype);
+				}
+			}
+
+			// Also allows the genotype to rebuild any state derived from its alleles, as when loaded by XStream.
+			genotype.restore(parents, alleles);
+		}
+	}
+
+	/**
+	 * Reads the table of allele layouts at the start of the genome section.
+	 */
+	private static List<AlleleLayout> readLayouts(ByteBuffer in) throws IOException {
+		List<AlleleLayout> layouts = new ArrayList<>();
+		int layoutCount = in.getInt();
+		for (int l = 0; l < layoutCount; l++) {
+			String typeName = readString(in);
+			try {
+				Class<?> type = Class.forName(typeName);
+				List<Field> fields = new ArrayList<>();
+				int fieldCount = in.getInt();
+				for (int f = 0; f < fieldCount; f++) {
+					fields.add(getField(Class.forName(readString(in)), readString(in)));
+				}
+				layouts.add(new AlleleLayout(type, fields));
+			} catch (ClassNotFoundException | IllegalStateException ex) {
+				throw new IOException("The snapshot is not compatible with the Allele class " + typeName + ".", ex);
+			}
+		}
+		return layouts;
+	}
+
+	private static void writePrimitive(DataOutputStream out, Field field, Object object) throws IOException, IllegalAccessException {
+		Class<?> type = field.getType();
+		if (type == boolean.class) {
+			out.writeBoolean(field.getBoolean(object));
+		} else if (type == byte.class) {
+			out.writeByte(field.getByte(object));
+		} else if (type == char.class) {
+			out.writeChar(field.getChar(object));
+		} else if (type == short.class) {
+			out.writeShort(field.getShort(object));
+		} else if (type == int.class) {
+			out.writeInt(field.getInt(object));
+		} else if (type == long.class) {
+			out.writeLong(field.getLong(object));
+		} else if (type == float.class) {
+			out.writeFloat(field.getFloat(object));
+		} else {
+			out.writeDouble(field.getDouble(object));
+		}
+	}
+
+	private static void readPrimitive(ByteBuffer in, Field field, Object object) throws IllegalAccessException {
+		Class<?> type = field.getType();
+		if (type == boolean.class) {
+			field.setBoolean(object, in.get() != 0);
+		} else if (type == byte.class) {
+			field.setByte(object, in.get());
+		} else if (type == char.class) {
+			field.setChar(object, in.getChar());
+		} else if (type == short.class) {
+			field.setShort(object, in.getShort());
+		} else if (type == int.class) {
+			field.setInt(object, in.getInt());
+		} else if (type == long.class) {
+			field.setLong(object, in.getLong());
+		} else if (type == float.class) {
+			field.setFloat(object, in.getFloat());
+		} else {
+			field.setDouble(object, in.getDouble());
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static Field getField(Class<?> type, String name) {
+		try {
+			Field field = type.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (NoSuchFieldException ex) {
+			throw new IllegalStateException("The field " + name + " does not exist in " + type.getName() + ".", ex);
+		}
+	}
+
+	/**
+	 * Reads the remaining bytes of a ByteBuffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+}
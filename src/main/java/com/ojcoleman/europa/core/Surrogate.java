@@ -0,0 +1,209 @@
+package com.ojcoleman.europa.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ojcoleman.europa.configurable.ComponentBase;
+import com.ojcoleman.europa.configurable.ComponentStateLog;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.Parameter;
+
+/**
+ * <p>
+ * Base class for surrogate models, which predict the fitness of a {@link Genotype} without evaluating it. A surrogate
+ * may be used by an {@link Evolver} to pre-screen offspring, so that only the most promising offspring are evaluated
+ * (see {@link DefaultEvolver#surrogate}).
+ * </p>
+ * <p>
+ * The model is trained online: each iteration {@link #update(Collection)} is given the evaluated members of the
+ * population. The fitness value predicted is {@link EvaluationData#getScaledFitness()}. The accuracy of the
+ * predictions made via {@link #predict(Genotype)} for the individuals subsequently evaluated is reported in
+ * {@link #getState()}.
+ * </p>
+ * <p>
+ * Predictions are made for complete genotypes, so offspring screened out by {@link #select(List, int)} have already
+ * been created, and have been assigned IDs (as have any new alleles and genes created by mutation). Screening only
+ * avoids the cost of transcribing and evaluating them.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public abstract class Surrogate<G extends Genotype<?>> extends ComponentBase {
+	@Parameter(description = "The minimum number of training samples before predictions are used for pre-screening.", defaultValue = "20", minimumValue = "1")
+	protected int minimumTrainingSize;
+
+	// Predictions made since the last update, keyed by genotype ID.
+	private final Map<Long, Double> predictions = new ConcurrentHashMap<>();
+
+	// Used in getState().
+	private double meanAbsoluteError = Double.NaN;
+	private double rankCorrelation = Double.NaN;
+	private int assessedCount;
+
+	/**
+	 * Constructor for {@link ComponentBase}.
+	 */
+	public Surrogate(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
+		super(parentComponent, componentConfig);
+	}
+
+	/**
+	 * Returns the predicted (scaled) fitness of the given genotype. This method may be called concurrently from
+	 * multiple threads, but not concurrently with {@link #update(Collection)}.
+	 */
+	public double predict(G genotype) {
+		double prediction = estimate(genotype);
+		predictions.put(genotype.id, prediction);
+		return prediction;
+	}
+
+	/**
+	 * Returns the given number of genotypes from the given list with the highest predicted fitness, in order of
+	 * decreasing predicted fitness. This method may be called concurrently from multiple threads, but not concurrently
+	 * with {@link #update(Collection)}.
+	 */
+	public List<G> select(List<G> candidates, int count) {
+		final Map<G, Double> predicted = new HashMap<>();
+		for (G genotype : candidates) {
+			predicted.put(genotype, predict(genotype));
+		}
+		List<G> sorted = new ArrayList<>(candidates);
+		Collections.sort(sorted, new Comparator<G>() {
+			@Override
+			public int compare(G a, G b) {
+				return Double.compare(predicted.get(b), predicted.get(a));
+			}
+		});
+		return new ArrayList<>(sorted.subList(0, Math.min(count, sorted.size())));
+	}
+
+	/**
+	 * Returns true iff the model has been trained on enough samples for its predictions to be used.
+	 */
+	public boolean isReady() {
+		return getTrainingSize() >= minimumTrainingSize;
+	}
+
+	/**
+	 * Assess the accuracy of the predictions made since the last update against the given evaluated individuals, and
+	 * then train the model on them.
+	 */
+	public void update(Collection<? extends Individual<G, ?>> evaluated) {
+		List<G> genotypes = new ArrayList<>(evaluated.size());
+		double[] fitness = new double[evaluated.size()];
+		double[] predicted = new double[evaluated.size()];
+		double[] actual = new double[evaluated.size()];
+		int predictedCount = 0;
+		for (Individual<G, ?> individual : evaluated) {
+			double f = individual.evaluationData.getScaledFitness();
+			fitness[genotypes.size()] = f;
+			genotypes.add(individual.genotype);
+
+			Double p = predictions.get(individual.genotype.id);
+			if (p != null) {
+				predicted[predictedCount] = p;
+				actual[predictedCount] = f;
+				predictedCount++;
+			}
+		}
+		predictions.clear();
+
+		assessedCount = predictedCount;
+		if (predictedCount > 0) {
+			predicted = Arrays.copyOf(predicted, predictedCount);
+			actual = Arrays.copyOf(actual, predictedCount);
+			double error = 0;
+			for (int i = 0; i < predictedCount; i++) {
+				error += Math.abs(predicted[i] - actual[i]);
+			}
+			meanAbsoluteError = error / predictedCount;
+			rankCorrelation = predictedCount > 1 ? correlation(ranks(predicted), ranks(actual)) : Double.NaN;
+		}
+
+		train(genotypes, fitness);
+	}
+
+	/**
+	 * Returns the predicted (scaled) fitness of the given genotype. Implementations must be thread-safe.
+	 */
+	protected abstract double estimate(G genotype);
+
+	/**
+	 * Incrementally train the model on the given genotypes and their (scaled) fitness values.
+	 */
+	protected abstract void train(List<G> genotypes, double[] fitness);
+
+	/**
+	 * Returns the number of samples the model is currently trained on.
+	 */
+	public abstract int getTrainingSize();
+
+	@Override
+	public List<ComponentStateLog> getState() {
+		List<ComponentStateLog> stats = new ArrayList<>();
+		stats.add(new ComponentStateLog("Surrogate", "Training", "Samples", getTrainingSize()));
+		if (assessedCount > 0) {
+			stats.add(new ComponentStateLog("Surrogate", "Accuracy", "Predictions assessed", assessedCount));
+			stats.add(new ComponentStateLog("Surrogate", "Accuracy", "Mean absolute error", meanAbsoluteError));
+			stats.add(new ComponentStateLog("Surrogate", "Accuracy", "Rank correlation", rankCorrelation));
+		}
+		return stats;
+	}
+
+	/**
+	 * Returns the (fractional, for ties) ranks of the given values.
+	 */
+	private static double[] ranks(double[] values) {
+		Integer[] order = new Integer[values.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		final double[] v = values;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(v[a], v[b]);
+			}
+		});
+		double[] ranks = new double[values.length];
+		for (int i = 0; i < order.length;) {
+			int j = i;
+			while (j + 1 < order.length && values[order[j + 1]] == values[order[i]]) {
+				j++;
+			}
+			double rank = (i + j) / 2.0;
+			for (int k = i; k <= j; k++) {
+				ranks[order[k]] = rank;
+			}
+			i = j + 1;
+		}
+		return ranks;
+	}
+
+	/**
+	 * Returns the Pearson correlation coefficient of the given values, or 0 if either has no variance.
+	 */
+	private static double correlation(double[] x, double[] y) {
+		double mx = 0, my = 0;
+		for (int i = 0; i < x.length; i++) {
+			mx += x[i];
+			my += y[i];
+		}
+		mx /= x.length;
+		my /= y.length;
+		double sxy = 0, sxx = 0, syy = 0;
+		for (int i = 0; i < x.length; i++) {
+			sxy += (x[i] - mx) * (y[i] - my);
+			sxx += (x[i] - mx) * (x[i] - mx);
+			syy += (y[i] - my) * (y[i] - my);
+		}
+		return sxx == 0 || syy == 0 ? 0 : sxy / Math.sqrt(sxx * syy);
+	}
+}
@@ -39,13 +39,23 @@ public abstract class Transcriber<G extends Genotype<?>, F extends Function<?, ?
 	 */
 	public abstract F transcribe(G genotype, F function);
 
+	/**
+	 * Returns the size class of the function that would be produced by transcribing the given genotype. Functions
+	 * re-used via {@link #transcribe(Genotype, Function)} are pooled by size class, so that a function provided for
+	 * re-use is generally of a similar size to the one required. Sub-classes that re-use functions whose size varies
+	 * should override this method; the default implementation returns 0 for all genotypes.
+	 */
+	public int getFunctionSizeClass(G genotype) {
+		return 0;
+	}
+
 	/**
 	 * Transcribe the given genotype to a phenotype function, attempting to cast the given genotype and function, if
 	 * provided, to the appropriate type. This is useful when needing to perform a transcription from outside the
 	 * generics-typed hierarchy of components.
 	 */
 	public Function transcribeGeneric(Genotype g, Function f) {
-		return this.transcribe((G) g, null);
+		return this.transcribe((G) g, (F) f);
 	}
 
 	/**
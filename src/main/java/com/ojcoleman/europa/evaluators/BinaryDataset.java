@@ -0,0 +1,429 @@
+package com.ojcoleman.europa.evaluators;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A read-only data set of input and target vectors stored in a compact columnar binary file, which is memory-mapped
+ * rather than read into the heap. Rows are read in blocks via {@link #read(int, int, double[][], double[][])}, so data
+ * sets larger than the heap may be used, and opening a data set is almost instantaneous.
+ * </p>
+ * <p>
+ * A binary data set is created from a CSV file in the format used by {@link CSVTargetFunctionEvaluator} with
+ * {@link #convertCSV(Path, Path)}, or from the command line via {@link #main(String[])}. {@link #openCached(Path)}
+ * maintains a binary "sidecar" file alongside a CSV file, recreating it when the CSV file changes.
+ * </p>
+ * <p>
+ * The file format (all values little-endian) is: the magic number {@link #MAGIC}; the format {@link #VERSION}; the size
+ * and last modified time of the CSV file it was created from (long); the row count (long); the input and target
+ * column counts (int); the label for each column (int byte length followed by UTF-8 bytes); the minimum and maximum
+ * values for each column (double); padding to a multiple of 8 bytes; then the values for each input column followed
+ * by each target column, each column being a contiguous sequence of row count doubles.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class BinaryDataset {
+	private static final Logger logger = LoggerFactory.getLogger(BinaryDataset.class);
+
+	/**
+	 * The magic number at the start of binary data set files ("EUDS").
+	 */
+	public static final int MAGIC = 0x45554453;
+
+	/**
+	 * The current version of the file format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The extension appended to the path of a CSV file to give the path of its sidecar binary file.
+	 */
+	public static final String SIDECAR_EXTENSION = ".dataset";
+
+	private final long sourceSize;
+	private final long sourceModified;
+	private final int rowCount;
+	private final List<String> inputLabels;
+	private final List<String> targetLabels;
+	private final double[] min;
+	private final double[] max;
+
+	// The mapped values for each input and target column.
+	private final DoubleBuffer[] inputColumns;
+	private final DoubleBuffer[] targetColumns;
+
+	private BinaryDataset(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), 1 << 20)).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(header, 0);
+			header.flip();
+
+			if (header.remaining() < 40 || header.getInt() != MAGIC) {
+				throw new IOException(path + " is not a binary data set file.");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException(path + " is a binary data set file of version " + version + ", expected version " + VERSION + ".");
+			}
+			sourceSize = header.getLong();
+			sourceModified = header.getLong();
+			long rows = header.getLong();
+			if (rows > Integer.MAX_VALUE / 8) {
+				throw new IOException("The binary data set " + path + " has too many rows (" + rows + ").");
+			}
+			rowCount = (int) rows;
+			int inputCount = header.getInt();
+			int targetCount = header.getInt();
+			int columnCount = inputCount + targetCount;
+
+			List<String> labels = new ArrayList<>(columnCount);
+			for (int c = 0; c < columnCount; c++) {
+				byte[] label = new byte[header.getInt()];
+				header.get(label);
+				labels.add(new String(label, StandardCharsets.UTF_8));
+			}
+			inputLabels = Collections.unmodifiableList(new ArrayList<>(labels.subList(0, inputCount)));
+			targetLabels = Collections.unmodifiableList(new ArrayList<>(labels.subList(inputCount, columnCount)));
+
+			min = new double[columnCount];
+			max = new double[columnCount];
+			for (int c = 0; c < columnCount; c++) {
+				min[c] = header.getDouble();
+			}
+			for (int c = 0; c < columnCount; c++) {
+				max[c] = header.getDouble();
+			}
+
+			long dataOffset = align(header.position());
+			long columnBytes = (long) rowCount * 8;
+			if (channel.size() < dataOffset + columnBytes * columnCount) {
+				throw new IOException("The binary data set " + path + " is truncated.");
+			}
+
+			inputColumns = new DoubleBuffer[inputCount];
+			targetColumns = new DoubleBuffer[targetCount];
+			for (int c = 0; c < columnCount; c++) {
+				DoubleBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + c * columnBytes, columnBytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+				if (c < inputCount) {
+					inputColumns[c] = column;
+				} else {
+					targetColumns[c - inputCount] = column;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Open the given binary data set file.
+	 *
+	 * @throws IOException If the file could not be read or is not a valid binary data set file.
+	 */
+	public static BinaryDataset open(Path path) throws IOException {
+		return new BinaryDataset(path);
+	}
+
+	/**
+	 * Open the binary sidecar file for the given CSV file (the CSV file path with {@link #SIDECAR_EXTENSION} appended),
+	 * creating it first if it does not exist or was created from a different version of the CSV file.
+	 */
+	public static BinaryDataset openCached(Path csvPath) throws IOException {
+		Path binaryPath = Paths.get(csvPath.toString() + SIDECAR_EXTENSION);
+		if (Files.exists(binaryPath)) {
+			try {
+				BinaryDataset dataset = open(binaryPath);
+				if (dataset.sourceSize == Files.size(csvPath) && dataset.sourceModified == Files.getLastModifiedTime(csvPath).toMillis()) {
+					return dataset;
+				}
+				logger.info("The CSV file " + csvPath + " has changed, recreating binary data set " + binaryPath);
+			} catch (IOException ex) {
+				logger.warn("Could not read binary data set " + binaryPath + ", recreating it. Error was: " + ex.getMessage());
+			}
+		}
+		convertCSV(csvPath, binaryPath);
+		return open(binaryPath);
+	}
+
+	/**
+	 * <p>
+	 * Create a binary data set file from the given CSV file. The input and target values must be in the same row and be
+	 * separated by a blank column, and the first line must be the input and target labels (see
+	 * {@link CSVTargetFunctionEvaluator}).
+	 * </p>
+	 * <p>
+	 * The CSV file is streamed twice (once to count the rows and once to read the values), so the data set need not
+	 * fit in memory. The binary file is written to a temporary file which is then moved to the given path, so a
+	 * partially written file is never left at the given path.
+	 * </p>
+	 *
+	 * @throws IllegalArgumentException If the CSV file is not in the expected format.
+	 */
+	public static void convertCSV(Path csvPath, Path binaryPath) throws IOException {
+		// First pass: get the labels and count the rows.
+		List<String> headers;
+		long rows = 0;
+		try (Reader reader = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8); CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.withHeader())) {
+			headers = new ArrayList<String>(parser.getHeaderMap().keySet());
+			for (Iterator<CSVRecord> records = parser.iterator(); records.hasNext(); records.next()) {
+				rows++;
+			}
+		}
+		if (rows > Integer.MAX_VALUE / 8) {
+			throw new IllegalArgumentException("The CSV file " + csvPath + " has too many rows (" + rows + ").");
+		}
+
+		int inputCount = 0;
+		for (String head : headers) {
+			if (head == null || head.equals("")) {
+				break;
+			}
+			inputCount++;
+		}
+		if (inputCount == headers.size()) {
+			throw new IllegalArgumentException("The input and target values in " + csvPath + " must be separated by an empty column");
+		}
+		int targetCount = headers.size() - inputCount - 1;
+		int columnCount = inputCount + targetCount;
+
+		List<String> labels = new ArrayList<>(headers.subList(0, inputCount));
+		labels.addAll(headers.subList(inputCount + 1, headers.size()));
+
+		// Write header.
+		int headerSize = 40;
+		List<byte[]> labelBytes = new ArrayList<>();
+		for (String label : labels) {
+			byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+			labelBytes.add(bytes);
+			headerSize += 4 + bytes.length;
+		}
+		int minMaxPosition = headerSize;
+		headerSize += columnCount * 16;
+		long dataOffset = align(headerSize);
+		long columnBytes = rows * 8;
+
+		ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putLong(Files.size(csvPath));
+		header.putLong(Files.getLastModifiedTime(csvPath).toMillis());
+		header.putLong(rows);
+		header.putInt(inputCount);
+		header.putInt(targetCount);
+		for (byte[] bytes : labelBytes) {
+			header.putInt(bytes.length);
+			header.put(bytes);
+		}
+
+		double[] min = new double[columnCount];
+		double[] max = new double[columnCount];
+		Arrays.fill(min, Double.MAX_VALUE);
+		Arrays.fill(max, -Double.MAX_VALUE);
+
+		Path tempPath = Paths.get(binaryPath.toString() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			DoubleBuffer[] columns = new DoubleBuffer[columnCount];
+			for (int c = 0; c < columnCount; c++) {
+				columns[c] = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset + c * columnBytes, columnBytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+			}
+
+			// Second pass: read the values into the columns.
+			try (Reader reader = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8); CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.withHeader())) {
+				int row = 0;
+				for (CSVRecord record : parser) {
+					if (row == rows) {
+						throw new IOException("The CSV file " + csvPath + " changed while it was being converted.");
+					}
+					for (int c = 0; c < columnCount; c++) {
+						// Skip the blank separator column.
+						double value = Double.parseDouble(record.get(c < inputCount ? c : c + 1));
+						columns[c].put(row, value);
+						if (value < min[c]) {
+							min[c] = value;
+						}
+						if (value > max[c]) {
+							max[c] = value;
+						}
+					}
+					row++;
+				}
+			}
+
+			header.position(minMaxPosition);
+			for (int c = 0; c < columnCount; c++) {
+				header.putDouble(min[c]);
+			}
+			for (int c = 0; c < columnCount; c++) {
+				header.putDouble(max[c]);
+			}
+			header.position(0);
+			header.limit((int) dataOffset);
+			channel.write(header, 0);
+			channel.force(false);
+		}
+
+		Files.move(tempPath, binaryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Returns the number of rows (examples).
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of input values in each row.
+	 */
+	public int getInputSize() {
+		return inputColumns.length;
+	}
+
+	/**
+	 * Returns the number of target values in each row.
+	 */
+	public int getTargetSize() {
+		return targetColumns.length;
+	}
+
+	/**
+	 * Returns the labels of the input columns.
+	 */
+	public List<String> getInputLabels() {
+		return inputLabels;
+	}
+
+	/**
+	 * Returns the labels of the target columns.
+	 */
+	public List<String> getTargetLabels() {
+		return targetLabels;
+	}
+
+	/**
+	 * Returns the minimum value of each input column.
+	 */
+	public double[] getInputMinimums() {
+		return Arrays.copyOfRange(min, 0, getInputSize());
+	}
+
+	/**
+	 * Returns the maximum value of each input column.
+	 */
+	public double[] getInputMaximums() {
+		return Arrays.copyOfRange(max, 0, getInputSize());
+	}
+
+	/**
+	 * Returns the minimum value of each target column.
+	 */
+	public double[] getTargetMinimums() {
+		return Arrays.copyOfRange(min, getInputSize(), min.length);
+	}
+
+	/**
+	 * Returns the maximum value of each target column.
+	 */
+	public double[] getTargetMaximums() {
+		return Arrays.copyOfRange(max, getInputSize(), max.length);
+	}
+
+	/**
+	 * Read the input and target values for a block of rows into the given arrays, in the form [row][value]. This method
+	 * may be called concurrently from multiple threads.
+	 *
+	 * @param firstRow The first row to read.
+	 * @param count The number of rows to read.
+	 * @param input Array to read the input values into, or null to not read them. Must contain at least count rows.
+	 * @param target Array to read the target values into, or null to not read them. Must contain at least count rows.
+	 */
+	public void read(int firstRow, int count, double[][] input, double[][] target) {
+		if (input != null) {
+			readColumns(inputColumns, firstRow, count, input);
+		}
+		if (target != null) {
+			readColumns(targetColumns, firstRow, count, target);
+		}
+	}
+
+	/**
+	 * Read the input and target values for the given rows into the given arrays, in the form [row][value]. This method
+	 * may be called concurrently from multiple threads.
+	 *
+	 * @param rows The indexes of the rows to read from. Reading is faster if these are in ascending order.
+	 * @param offset The index in rows of the first row to read.
+	 * @param count The number of rows to read.
+	 * @param input Array to read the input values into, or null to not read them. Must contain at least count rows.
+	 * @param target Array to read the target values into, or null to not read them. Must contain at least count rows.
+	 */
+	public void read(int[] rows, int offset, int count, double[][] input, double[][] target) {
+		if (input != null) {
+			readColumns(inputColumns, rows, offset, count, input);
+		}
+		if (target != null) {
+			readColumns(targetColumns, rows, offset, count, target);
+		}
+	}
+
+	private static void readColumns(DoubleBuffer[] columns, int[] rows, int offset, int count, double[][] into) {
+		for (int c = 0; c < columns.length; c++) {
+			DoubleBuffer column = columns[c];
+			for (int r = 0; r < count; r++) {
+				into[r][c] = column.get(rows[offset + r]);
+			}
+		}
+	}
+
+	private static void readColumns(DoubleBuffer[] columns, int firstRow, int count, double[][] into) {
+		for (int c = 0; c < columns.length; c++) {
+			// Absolute get does not modify the buffer, so is safe for concurrent use.
+			DoubleBuffer column = columns[c];
+			for (int r = 0; r < count; r++) {
+				into[r][c] = column.get(firstRow + r);
+			}
+		}
+	}
+
+	/**
+	 * Convert a CSV file to a binary data set file.
+	 *
+	 * @param args The path to the CSV file, and optionally the path of the binary file to create. If the latter is not
+	 *            given then the sidecar path used by {@link #openCached(Path)} is used.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: BinaryDataset <path to CSV file> [<path to binary file>]");
+			System.exit(1);
+		}
+		Path csvPath = Paths.get(args[0]);
+		Path binaryPath = Paths.get(args.length > 1 ? args[1] : args[0] + SIDECAR_EXTENSION);
+		convertCSV(csvPath, binaryPath);
+		BinaryDataset dataset = open(binaryPath);
+		System.out.println("Wrote " + dataset.getRowCount() + " rows with " + dataset.getInputSize() + " inputs and " + dataset.getTargetSize() + " targets to " + binaryPath);
+	}
+}
@@ -1,7 +1,9 @@
 package com.ojcoleman.europa.evaluators;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,13 +25,33 @@ import com.ojcoleman.europa.functiontypes.VectorFunction;
 import com.ojcoleman.europa.util.ArrayUtil;
 
 /**
+ * <p>
+ * Evaluates a {@link VectorFunction} against input and target output examples read from a CSV file.
+ * </p>
+ * <p>
+ * If {@link #useBinaryDataset} is enabled the examples are instead read from a memory-mapped {@link BinaryDataset},
+ * which is created alongside the CSV file the first time it is used (and recreated if the CSV file changes). The
+ * examples are then not held in memory and are presented to the function in blocks of {@link #blockSize} examples,
+ * which allows using data sets larger than the available heap. If the path to the CSV file ends with
+ * {@link BinaryDataset#SIDECAR_EXTENSION} it is assumed to be a binary data set created previously with
+ * {@link BinaryDataset#main(String[])}.
+ * </p>
+ * 
  * @author O. J. Coleman
- *
  */
 public class CSVTargetFunctionEvaluator extends TargetFitnessCalculator {
 	@Parameter(description = "The path to the CSV file containing the input and target target vectors. Input and target pairs must be in the same row and be separated by a blank column. The first line must be the input and target labels.")
 	String pathToCSVFile;
 
+	@Parameter(description = "Whether to read the examples from a memory-mapped binary file created from (and stored alongside) the CSV file, rather than holding them in memory. This allows using data sets larger than the available memory, and the binary file is quick to open on subsequent runs.", defaultValue = "false")
+	protected boolean useBinaryDataset;
+
+	@Parameter(description = "When useBinaryDataset is enabled, the number of examples to read from the binary file and present to the function at once.", defaultValue = "4096", minimumValue = "1")
+	protected int blockSize;
+
+	// The memory-mapped data set, if used. Mark as transient so XStream does not store it. See readResolve().
+	protected transient BinaryDataset dataset;
+
 	double[][] inputRaw;
 	double[][] targetRaw;
 	protected Vector[] input;
@@ -44,6 +66,13 @@ public class CSVTargetFunctionEvaluator extends TargetFitnessCalculator {
 			return;
 		}
 
+		if (isBinaryDataset()) {
+			openDataset();
+			minTargetOutputValue = ArrayUtil.getMinValue(dataset.getTargetMinimums());
+			maxTargetOutputValue = ArrayUtil.getMaxValue(dataset.getTargetMaximums());
+			return;
+		}
+
 		CSVParser parser = CSVParser.parse(Paths.get(pathToCSVFile).toFile(), StandardCharsets.UTF_8, CSVFormat.DEFAULT.withHeader());
 		List<CSVRecord> lines = parser.getRecords();
 		List<String> headers = new ArrayList<String>(parser.getHeaderMap().keySet());
@@ -82,8 +111,8 @@ public class CSVTargetFunctionEvaluator extends TargetFitnessCalculator {
 			}
 			for (int r = inputSize + 1, t = 0; t < outputSize; r++, t++) {
 				targetRaw[line][t] = Double.parseDouble(lines.get(line).get(r));
-				minValuesOutput[t] = Math.min(minValuesOutput[t], inputRaw[line][t]);
-				maxValuesOutput[t] = Math.max(maxValuesOutput[t], inputRaw[line][t]);
+				minValuesOutput[t] = Math.min(minValuesOutput[t], targetRaw[line][t]);
+				maxValuesOutput[t] = Math.max(maxValuesOutput[t], targetRaw[line][t]);
 			}
 		}
 
@@ -105,18 +134,59 @@ public class CSVTargetFunctionEvaluator extends TargetFitnessCalculator {
 		maxTargetOutputValue = ArrayUtil.getMaxValue(maxValuesOutput);
 	}
 
+	private boolean isBinaryDataset() {
+		return useBinaryDataset || pathToCSVFile.endsWith(BinaryDataset.SIDECAR_EXTENSION);
+	}
+
+	private void openDataset() throws IOException {
+		Path path = Paths.get(pathToCSVFile);
+		dataset = pathToCSVFile.endsWith(BinaryDataset.SIDECAR_EXTENSION) ? BinaryDataset.open(path) : BinaryDataset.openCached(path);
+	}
+
+	@Override
+	protected Object readResolve() {
+		super.readResolve();
+		// Re-open the memory-mapped data set upon resuming from a save file.
+		if (pathToCSVFile != null && isBinaryDataset()) {
+			try {
+				openDataset();
+			} catch (IOException e) {
+				throw new RuntimeException("Could not open the binary data set for " + pathToCSVFile, e);
+			}
+		}
+		return this;
+	}
+
 	@Override
 	public void evaluate(Individual individual, Log log) {
+		if (dataset != null) {
+			if (log.specifiesItem("string")) {
+				// Logging requires all the examples and responses, so read them into memory.
+				double[][] allInput = new double[dataset.getRowCount()][dataset.getInputSize()];
+				double[][] allTarget = new double[dataset.getRowCount()][dataset.getTargetSize()];
+				dataset.read(0, dataset.getRowCount(), allInput, allTarget);
+				super.evaluate((Individual<?, VectorFunction>) individual, allInput, allTarget, minTargetOutputValue, maxTargetOutputValue, log);
+			} else {
+				super.evaluate((Individual<?, VectorFunction>) individual, dataset, blockSize, minTargetOutputValue, maxTargetOutputValue);
+			}
+			return;
+		}
 		super.evaluate((Individual<?, VectorFunction>) individual, inputRaw, targetRaw, minTargetOutputValue, maxTargetOutputValue, log);
 	}
 
 	@Override
 	public int getVectorFunctionInputSize() {
+		if (dataset != null) {
+			return dataset.getInputSize();
+		}
 		return input != null && input.length > 0 ? input[0].size() : 0;
 	}
 
 	@Override
 	public int getVectorFunctionOutputSize() {
+		if (dataset != null) {
+			return dataset.getTargetSize();
+		}
 		return target != null && target.length > 0 ? target[0].size() : 0;
 	}
 }
@@ -22,6 +22,8 @@ import com.ojcoleman.europa.core.EvaluationDescription;
 import com.ojcoleman.europa.core.Evaluator;
 import com.ojcoleman.europa.core.Individual;
 import com.ojcoleman.europa.core.Log;
+import com.ojcoleman.europa.core.RacingCutoff;
+import com.ojcoleman.europa.core.RacingEvaluator;
 import com.ojcoleman.europa.core.Run;
 import com.ojcoleman.europa.functiontypes.VectorFunction;
 import com.ojcoleman.europa.util.ArrayUtil;
@@ -40,7 +42,7 @@ import com.ojcoleman.europa.util.Stringer;
  * double T-maze can be specified.
  * </p>
  */
-public class TMaze extends VectorFunctionEvaluator implements Observer {
+public class TMaze extends VectorFunctionEvaluator implements Observer, RacingEvaluator {
 	private static final long serialVersionUID = 1L;
 
 	@Parameter (description="The total number of trials to evaluate an agent over.", defaultValue="100")
@@ -218,6 +220,20 @@ public class TMaze extends VectorFunctionEvaluator implements Observer {
 	
 	@Override
 	public void evaluate(Individual individual, Log log) {
+		evaluate(individual, log, null);
+	}
+
+	@Override
+	public EvaluationDescription getRacedEvaluation() {
+		return fitnessEvalDesc;
+	}
+
+	/**
+	 * {@inheritDoc} After each trial the fitness that would result from receiving the highest reward in every
+	 * remaining trial is compared against the cutoff.
+	 */
+	@Override
+	public void evaluate(Individual individual, Log log, RacingCutoff cutoff) {
 		try {
 			NiceWriter logOutput = null;
 			if (log.specifiesItem("string")) {
@@ -394,6 +410,15 @@ public class TMaze extends VectorFunctionEvaluator implements Observer {
 				}
 				
 				reward += trialReward;
+
+				if (cutoff != null && logOutput == null && trial < trialCount - 1) {
+					double bestReward = reward + (trialCount - trial - 1) * rewardHigh;
+					if (cutoff.shouldAbort((bestReward / trialCount - minPossibleReward) / possibleRewardRange)) {
+						// Report the bound on the reward, and hence fitness.
+						reward = bestReward;
+						break;
+					}
+				}
 			}
 			
 			// Get average reward received.
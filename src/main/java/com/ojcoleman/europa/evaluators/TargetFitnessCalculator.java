@@ -18,11 +18,16 @@ import org.slf4j.LoggerFactory;
 
 import com.ojcoleman.europa.configurable.ComponentBase;
 import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.Observable;
+import com.ojcoleman.europa.configurable.Observer;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.core.EvaluationDescription;
 import com.ojcoleman.europa.core.Evaluator;
 import com.ojcoleman.europa.core.Individual;
 import com.ojcoleman.europa.core.Log;
+import com.ojcoleman.europa.core.Population;
+import com.ojcoleman.europa.core.RacingCutoff;
+import com.ojcoleman.europa.core.RacingEvaluator;
 import com.ojcoleman.europa.core.Run;
 import com.ojcoleman.europa.evaluators.TargetFitnessCalculator.ErrorType;
 import com.ojcoleman.europa.functiontypes.VectorFunction;
@@ -37,7 +42,7 @@ import com.ojcoleman.europa.util.Stringer;
  * 
  * @author O. J. Coleman
  */
-public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator {
+public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator implements RacingEvaluator {
 	private static Logger logger = LoggerFactory.getLogger(TargetFitnessCalculator.class);
 
 	@Parameter(description = "The type of error calculation to perform over the errors (as calculated by errorTypeOutput) for all examples. Valid values are " + "'SAE' (Sum of Absolute Errors), 'SSAE' (Squared Sum of Absolute Errors), 'SSE' (Sum of Squared Errors), 'RSSE' (Root of Sum of Squared Errors), " + "'MAE' (Mean of Absolute Errors), 'SMAE' (Squared Mean of Absolute Errors), 'MSE' (Mean of Squared Errors), 'RMSE' (Root of Mean of Squared Errors). The default is RMSE.", defaultValue = "RMSE")
@@ -58,6 +63,15 @@ public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator {
 	@Parameter(description = "Terminate when the performance reaches this value. 0 to disable.", defaultValue = "0", minimumValue = "0", maximumValue = "1")
 	protected double terminateOnPerformance;
 
+	@Parameter(description = "If greater than 0 then each iteration/generation every individual is evaluated on the same randomly selected subset (mini-batch) of this many examples, rather than on all the examples. A new subset is selected each iteration, so all individuals are re-evaluated each iteration. 0 to always evaluate on all the examples.", defaultValue = "0", minimumValue = "0")
+	protected int miniBatchSize;
+
+	@Parameter(description = "When miniBatchSize is enabled, whether to re-evaluate the fittest and best performing individuals on all the examples after the population has been ranked, so that the reported fitness and performance (and terminateOnPerformance) reflect all the examples.", defaultValue = "true")
+	protected boolean fullyEvaluateFittest;
+
+	@Parameter(description = "When racing evaluation is enabled for the Population, the number of examples to evaluate between checks of whether the evaluation can be aborted (when the examples are held in memory).", defaultValue = "64", minimumValue = "1")
+	protected int racingBlockSize;
+
 	private static boolean outputRangeChecked = false;
 
 	private EvaluationDescription fitnessEvalDesc;
@@ -65,6 +79,39 @@ public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator {
 
 	private boolean terminate = false;
 
+	// Seed for selecting the mini-batch of examples for the current iteration, drawn from Run.random at the beginning
+	// of each iteration so that the mini-batch is reproducible and the same for all individuals.
+	private long miniBatchSeed;
+
+	// The mini-batch of example indexes for the current iteration, created lazily as the total number of examples is
+	// not known until evaluation.
+	private transient volatile int[] miniBatch;
+
+	// Arrays re-used to create the mini-batch each iteration: the shuffled example indexes and the mini-batch itself.
+	private transient int[] exampleOrder;
+	private transient int[] miniBatchBuffer;
+
+	// Set whilst fully evaluating the fittest individuals (which is done from the main thread after ranking, when no
+	// other evaluations are in progress).
+	private transient boolean evaluatingFully;
+
+	// The individuals that have been fully evaluated in the current iteration. Mark as transient so XStream does not
+	// store it, see readResolve().
+	private transient Set<Individual> fullyEvaluated = new HashSet<>();
+
+	// Per-thread buffer for the responses of the function being evaluated, so that a new array is not needed for every
+	// evaluation. Mark as transient so XStream does not store it, it is created lazily.
+	private transient volatile ThreadLocal<double[][]> responseBuffer;
+
+	// Per-thread arrays for the input and target examples in the mini-batch, referring to the rows of the full arrays.
+	private transient volatile ThreadLocal<double[][][]> miniBatchBuffers;
+
+	// Per-thread buffers for the input, target and response blocks when evaluating examples from a BinaryDataset.
+	private transient volatile ThreadLocal<BlockBuffer> blockBuffer;
+
+	// The racing cutoff for the evaluation in progress on each thread, see evaluate(Individual, Log, RacingCutoff).
+	private transient volatile ThreadLocal<RacingCutoff> racingCutoff;
+
 	public TargetFitnessCalculator(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
 		if (errorTypeOutput.rootTotalError() && errorTypeExample.squareErrors()) {
@@ -82,7 +129,122 @@ public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator {
 		fitnessEvalDesc = new EvaluationDescription(getName() + " fitness", this, IntervalDouble.UNIT, 1, false);
 		performanceEvalDesc = new EvaluationDescription(getName() + " performance", this, IntervalDouble.UNIT, 1, true);
 
-		this.getParentComponent(Run.class).monitor(this);
+		final Run run = this.getParentComponent(Run.class);
+		run.monitor(this);
+
+		if (miniBatchSize > 0) {
+			run.addEventListener(new Observer() {
+				@Override
+				public void eventOccurred(Observable observed, Object event, Object state) {
+					if (event == Run.Event.Initialised) {
+						run.getPopulation().addEventListener(new Observer() {
+							@Override
+							public void eventOccurred(Observable observed, Object event, Object state) {
+								if (event == Population.Event.PopulationRanked && fullyEvaluateFittest) {
+									fullyEvaluate(run.getPopulation().getFittest());
+									fullyEvaluate(run.getPopulation().getBestPerforming());
+								}
+							}
+						});
+					} else if (event == Run.Event.IterationBegin) {
+						startMiniBatch(run);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Re-create the state that is not stored in save files upon resuming from one. Sub-classes that define their own
+	 * readResolve() method must call this.
+	 */
+	protected Object readResolve() {
+		fullyEvaluated = new HashSet<>();
+		return this;
+	}
+
+	/**
+	 * Select a new mini-batch seed and remove the results of this evaluator from the current members of the
+	 * population, so that they are all evaluated on the new mini-batch of examples. The results of other Evaluators
+	 * are retained, as Population only applies the Evaluators for which an individual has no results.
+	 */
+	private void startMiniBatch(Run run) {
+		miniBatchSeed = run.random.nextLong();
+		miniBatch = null;
+		fullyEvaluated.clear();
+
+		for (Individual<?, ?> individual : run.getPopulation().getMembers()) {
+			individual.evaluationData.removeResult(fitnessEvalDesc);
+			individual.evaluationData.removeResult(performanceEvalDesc);
+		}
+	}
+
+	/**
+	 * Re-evaluate the given individual on all examples, replacing the results from evaluation on the mini-batch.
+	 */
+	private void fullyEvaluate(Individual individual) {
+		if (individual == null || !fullyEvaluated.add(individual)) {
+			return;
+		}
+		Run run = this.getParentComponent(Run.class);
+		individual.setFunction(run.getTranscriber().transcribeGeneric(individual.genotype, null));
+		individual.evaluationData.removeResult(fitnessEvalDesc);
+		individual.evaluationData.removeResult(performanceEvalDesc);
+		evaluatingFully = true;
+		try {
+			evaluate(individual, Log.NO_LOG);
+		} finally {
+			evaluatingFully = false;
+			individual.clearFunction();
+		}
+	}
+
+	/**
+	 * Returns the sorted indexes of the examples in the mini-batch for the current iteration, or null if all the
+	 * examples should be used for the current evaluation.
+	 * 
+	 * @param exampleCount The total number of examples.
+	 * @param logging Whether the current evaluation is being logged (logged evaluations always use all examples).
+	 */
+	protected int[] getMiniBatch(int exampleCount, boolean logging) {
+		if (miniBatchSize == 0 || miniBatchSize >= exampleCount || logging || evaluatingFully) {
+			return null;
+		}
+		int[] batch = miniBatch;
+		if (batch == null) {
+			synchronized (this) {
+				batch = miniBatch;
+				if (batch == null) {
+					// Partial Fisher-Yates shuffle, seeded so the mini-batch is the same regardless of which thread
+					// creates it.
+					Random random = new Random(miniBatchSeed);
+					int[] indexes = exampleOrder;
+					if (indexes == null || indexes.length != exampleCount) {
+						indexes = new int[exampleCount];
+						exampleOrder = indexes;
+					}
+					for (int i = 0; i < exampleCount; i++) {
+						indexes[i] = i;
+					}
+					for (int i = 0; i < miniBatchSize; i++) {
+						int j = i + random.nextInt(exampleCount - i);
+						int tmp = indexes[i];
+						indexes[i] = indexes[j];
+						indexes[j] = tmp;
+					}
+					batch = miniBatchBuffer;
+					if (batch == null || batch.length != miniBatchSize) {
+						batch = new int[miniBatchSize];
+						miniBatchBuffer = batch;
+					}
+					System.arraycopy(indexes, 0, batch, 0, miniBatchSize);
+					// Sort so that examples are accessed in order, which is faster for memory-mapped data sets.
+					Arrays.sort(batch);
+					miniBatch = batch;
+				}
+			}
+		}
+		return batch;
 	}
 
 	@Override
@@ -93,6 +255,41 @@ public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator {
 		return evalDescs;
 	}
 
+	@Override
+	public EvaluationDescription getRacedEvaluation() {
+		return fitnessEvalDesc;
+	}
+
+	/**
+	 * {@inheritDoc} The fitness may only decrease as the error for each example is added, so the evaluation is aborted
+	 * once the fitness calculated from the error over the examples evaluated so far is below the cutoff.
+	 */
+	@Override
+	public void evaluate(Individual individual, Log log, RacingCutoff cutoff) {
+		if (racingCutoff == null) {
+			synchronized (this) {
+				if (racingCutoff == null) {
+					racingCutoff = new ThreadLocal<>();
+				}
+			}
+		}
+		// Subclasses supply the examples from evaluate(Individual, Log), so make the cutoff available to the evaluate
+		// methods below via the current thread.
+		racingCutoff.set(cutoff);
+		try {
+			evaluate(individual, log);
+		} finally {
+			racingCutoff.remove();
+		}
+	}
+
+	/**
+	 * Returns the racing cutoff for the evaluation in progress on the current thread, or null if none.
+	 */
+	private RacingCutoff getRacingCutoff() {
+		return racingCutoff == null ? null : racingCutoff.get();
+	}
+
 	/**
 	 * Evaluate the given function on the given input and target output pairs. Subclasses should call this from
 	 * {@link Evaluator#evaluate(Individual, Log)}.
@@ -109,12 +306,154 @@ public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator {
 
 		Random random = this.getParentComponent(Run.class).random;
 
-		double[][] responses = function.apply(input);
+		// If logging then the responses are retained by the log, so a new array is required.
+		boolean logging = log.specifiesItem("string");
+
+		int[] batch = getMiniBatch(input.length, logging);
+		if (batch != null) {
+			double[][][] buffers = getMiniBatchBuffers(batch.length);
+			double[][] batchInput = buffers[0];
+			double[][] batchTarget = buffers[1];
+			for (int i = 0; i < batch.length; i++) {
+				batchInput[i] = input[batch[i]];
+				batchTarget[i] = targetOutput[batch[i]];
+			}
+			input = batchInput;
+			targetOutput = batchTarget;
+		}
 
-		double maxError = 0;
 		int exampleCount = input.length;
 		int outputCount = targetOutput[0].length;
 
+		// If racing then the function is applied to blocks of examples in the loop below, so that the evaluation can be
+		// aborted part way through.
+		RacingCutoff cutoff = logging ? null : getRacingCutoff();
+		double[][] responses;
+		if (cutoff != null) {
+			responses = getResponseBuffer(exampleCount, outputCount);
+		} else {
+			responses = logging ? function.apply(input) : function.apply(input, getResponseBuffer(exampleCount, outputCount));
+		}
+
+		double maxError = getMaxError(function, minTargetOutputValue, maxTargetOutputValue, exampleCount, outputCount);
+
+		TargetFitnessCalculatorLog logOutput = null;
+		if (logging) {
+			logOutput = new TargetFitnessCalculatorLog(input, targetOutput, responses, new double[exampleCount], new boolean[exampleCount], maxError, errorTypeOutput, errorTypeExample);
+			log.setLog("string", logOutput);
+		}
+
+		List<Integer> exampleIndexes = new ArrayList<Integer>(exampleCount);
+		for (int i = 0; i < exampleCount; i++)
+			exampleIndexes.add(i);
+		if (logOutput == null) // Keep examples in order when logging.
+			Collections.shuffle(exampleIndexes, random);
+
+		double totalError = 0;
+		int correctCount = 0;
+		double[][] blockInput = null, blockResponses = null;
+		for (int i = 0; i < exampleCount; i++) {
+			if (cutoff != null && i % racingBlockSize == 0) {
+				if (i > 0 && cutoff.shouldAbort(getFitness(totalError, exampleCount, maxError))) {
+					break;
+				}
+				int count = Math.min(racingBlockSize, exampleCount - i);
+				if (blockInput == null || blockInput.length != count) {
+					blockInput = new double[count][];
+					blockResponses = new double[count][];
+				}
+				for (int b = 0; b < count; b++) {
+					blockInput[b] = input[exampleIndexes.get(i + b)];
+					blockResponses[b] = responses[exampleIndexes.get(i + b)];
+				}
+				function.apply(blockInput, blockResponses);
+			}
+
+			int example = exampleIndexes.get(i);
+			double exampleError = getExampleError(responses[example], targetOutput[example]);
+			boolean correct = isCorrect(responses[example], targetOutput[example]);
+
+			if (logOutput != null) {
+				logOutput.error[i] = exampleError;
+				logOutput.correct[i] = correct;
+			}
+
+			totalError += errorTypeExample.squareErrors() ? exampleError * exampleError : exampleError;
+
+			if (correct) {
+				correctCount++;
+			}
+		}
+
+		setResults(individual, totalError, correctCount, exampleCount, maxError, batch == null);
+	}
+
+	/**
+	 * Evaluate the given function on the examples in the given data set. The examples are read from the data set and
+	 * presented to the function in blocks of at most the given number of examples, so that the data set need not be
+	 * held in memory. If {@link #miniBatchSize} is enabled only the examples in the current mini-batch are read and
+	 * presented. If racing, the evaluation is aborted after a block once the individual cannot be selected. Subclasses
+	 * may call this from {@link Evaluator#evaluate(Individual, Log)}. Logging is not
+	 * supported, if logging is required then read the data set into memory and use
+	 * {@link #evaluate(Individual, double[][], double[][], double, double, Log)}.
+	 * 
+	 * @param individual The individual to evaluate.
+	 * @param dataset The data set containing the input and target output examples.
+	 * @param blockSize The maximum number of examples to present to the function at once.
+	 * @param minTargetOutputValue The smallest value that occurs in the target outputs.
+	 * @param maxTargetOutputValue The largest value that occurs in the target outputs.
+	 */
+	public void evaluate(Individual<?, VectorFunction> individual, BinaryDataset dataset, int blockSize, double minTargetOutputValue, double maxTargetOutputValue) {
+		VectorFunction function = (VectorFunction) individual.getFunction();
+
+		int[] batch = getMiniBatch(dataset.getRowCount(), false);
+		int exampleCount = batch != null ? batch.length : dataset.getRowCount();
+		int outputCount = dataset.getTargetSize();
+		blockSize = Math.min(blockSize, exampleCount);
+
+		double maxError = getMaxError(function, minTargetOutputValue, maxTargetOutputValue, exampleCount, outputCount);
+
+		RacingCutoff cutoff = getRacingCutoff();
+
+		BlockBuffer buffer = getBlockBuffer(blockSize, dataset.getInputSize(), outputCount);
+		double totalError = 0;
+		int correctCount = 0;
+		for (int firstExample = 0; firstExample < exampleCount; firstExample += blockSize) {
+			if (cutoff != null && firstExample > 0 && cutoff.shouldAbort(getFitness(totalError, exampleCount, maxError))) {
+				break;
+			}
+
+			int count = Math.min(blockSize, exampleCount - firstExample);
+			if (count < blockSize) {
+				buffer.setPartialSize(count);
+			}
+			double[][] input = count == blockSize ? buffer.input : buffer.partialInput;
+			double[][] target = count == blockSize ? buffer.target : buffer.partialTarget;
+			double[][] responses = count == blockSize ? buffer.response : buffer.partialResponse;
+
+			if (batch != null) {
+				dataset.read(batch, firstExample, count, input, target);
+			} else {
+				dataset.read(firstExample, count, input, target);
+			}
+			function.apply(input, responses);
+
+			for (int example = 0; example < count; example++) {
+				double exampleError = getExampleError(responses[example], target[example]);
+				totalError += errorTypeExample.squareErrors() ? exampleError * exampleError : exampleError;
+				if (isCorrect(responses[example], target[example])) {
+					correctCount++;
+				}
+			}
+		}
+
+		setResults(individual, totalError, correctCount, exampleCount, maxError, batch == null);
+	}
+
+	/**
+	 * Returns the maximum possible total error for the given function over the given number of examples.
+	 */
+	private double getMaxError(VectorFunction function, double minTargetOutputValue, double maxTargetOutputValue, int exampleCount, int outputCount) {
 		double maxResponse = function.getMaximumOutputValue();
 		double minResponse = function.getMinimumOutputValue();
 
@@ -138,85 +477,183 @@ public abstract class TargetFitnessCalculator extends VectorFunctionEvaluator {
 		else if (errorTypeOutput.squareTotalError())
 			maxErrorPerOutput = maxErrorPerOutput * maxErrorPerOutput;
 
-		maxError = errorTypeExample.squareErrors() ? maxErrorPerOutput * maxErrorPerOutput : maxErrorPerOutput;
+		double maxError = errorTypeExample.squareErrors() ? maxErrorPerOutput * maxErrorPerOutput : maxErrorPerOutput;
 		if (errorTypeExample.sumErrors())
 			maxError = exampleCount * maxError;
 		if (errorTypeExample.rootTotalError())
 			maxError = Math.sqrt(maxError);
 		else if (errorTypeExample.squareTotalError())
 			maxError = maxError * maxError;
+		return maxError;
+	}
 
-		TargetFitnessCalculatorLog logOutput = null;
-		if (log.specifiesItem("string")) {
-			logOutput = new TargetFitnessCalculatorLog(input, targetOutput, responses, new double[exampleCount], new boolean[exampleCount], maxError, errorTypeOutput, errorTypeExample);
-			log.setLog("string", logOutput);
+	/**
+	 * Returns the error over all outputs for a single example, as determined by {@link #errorTypeOutput}.
+	 */
+	private double getExampleError(double[] response, double[] targetOutput) {
+		double exampleError = 0;
+		for (int x = 0; x < targetOutput.length; x++) {
+			double diff = Math.abs(response[x] - targetOutput[x]);
+			exampleError += errorTypeOutput.squareErrors() ? diff * diff : diff;
 		}
 
-		List<Integer> exampleIndexes = new ArrayList<Integer>(exampleCount);
-		for (int i = 0; i < exampleCount; i++)
-			exampleIndexes.add(i);
-		if (logOutput == null) // Keep examples in order when logging.
-			Collections.shuffle(exampleIndexes, random);
-
-		double totalError = 0;
-		double percentCorrect = 0;
-		for (int i = 0; i < exampleCount; i++) {
-			int example = exampleIndexes.get(i);
-			double exampleError = 0;
-			boolean correct = true;
-			for (int x = 0; x < targetOutput[example].length; x++) {
-				double diff = Math.abs(responses[example][x] - targetOutput[example][x]);
-				exampleError += errorTypeOutput.squareErrors() ? diff * diff : diff;
-				if (diff > acceptableError)
-					correct = false;
-			}
-
-			if (errorTypeOutput.avgErrors())
-				exampleError /= outputCount;
-			if (errorTypeOutput.rootTotalError())
-				exampleError = Math.sqrt(exampleError);
-			else if (errorTypeOutput.squareTotalError())
-				exampleError = exampleError * exampleError;
-
-			if (logOutput != null) {
-				logOutput.error[i] = exampleError;
-			}
-
-			totalError += errorTypeExample.squareErrors() ? exampleError * exampleError : exampleError;
+		if (errorTypeOutput.avgErrors())
+			exampleError /= targetOutput.length;
+		if (errorTypeOutput.rootTotalError())
+			exampleError = Math.sqrt(exampleError);
+		else if (errorTypeOutput.squareTotalError())
+			exampleError = exampleError * exampleError;
+		return exampleError;
+	}
 
-			if (correct) {
-				percentCorrect++;
-			}
-			if (logOutput != null) {
-				logOutput.correct[i] = correct;
-			}
+	/**
+	 * Returns true iff all outputs for a single example are within {@link #acceptableError} of the target output.
+	 */
+	private boolean isCorrect(double[] response, double[] targetOutput) {
+		for (int x = 0; x < targetOutput.length; x++) {
+			if (Math.abs(response[x] - targetOutput[x]) > acceptableError)
+				return false;
 		}
+		return true;
+	}
 
+	/**
+	 * Returns the total error over all examples, as determined by {@link #errorTypeExample}, given the sum of the
+	 * (possibly squared) example errors.
+	 */
+	private double getTotalError(double summedError, int exampleCount) {
 		if (errorTypeExample.avgErrors())
-			totalError /= exampleCount;
+			summedError /= exampleCount;
 		if (errorTypeExample.rootTotalError())
-			totalError = Math.sqrt(totalError);
+			summedError = Math.sqrt(summedError);
 		else if (errorTypeExample.squareTotalError())
-			totalError = totalError * totalError;
+			summedError = summedError * summedError;
+		return summedError;
+	}
 
-		double proportionalPerformance = 1 - (totalError / maxError);
-		double proportionalFitness = proportionalPerformance;
-		double inverseFitness = 1.0 / (1 + totalError);
-		percentCorrect /= exampleCount;
+	/**
+	 * Returns the fitness given the sum of the (possibly squared) example errors. As the summed error can only
+	 * increase as more examples are evaluated, the value for a partial sum is an upper bound on the final fitness.
+	 */
+	private double getFitness(double summedError, int exampleCount, double maxError) {
+		double totalError = getTotalError(summedError, exampleCount);
+		if (fitnessConversionType.equals("proportional")) {
+			return 1 - (totalError / maxError);
+		}
+		return 1.0 / (1 + totalError);
+	}
 
-		// System.out.println(proportionalFitness);
+	/**
+	 * Calculate the fitness and performance from the summed example errors and set them on the given individual.
+	 * 
+	 * @param allExamples Whether the individual was evaluated on all the examples rather than a mini-batch.
+	 */
+	private void setResults(Individual<?, VectorFunction> individual, double totalError, int correctCount, int exampleCount, double maxError, boolean allExamples) {
+		double fitness = getFitness(totalError, exampleCount, maxError);
+		double proportionalPerformance = 1 - (getTotalError(totalError, exampleCount) / maxError);
+		double percentCorrect = (double) correctCount / exampleCount;
 
-		double fitness = fitnessConversionType.equals("proportional") ? proportionalFitness : inverseFitness;
 		double performance = performanceMetric.equals("proportional") ? proportionalPerformance : percentCorrect;
 
 		individual.evaluationData.setResult(fitnessEvalDesc, fitness);
 		individual.evaluationData.setResult(performanceEvalDesc, performance);
 
-		if (terminateOnPerformance != 0 && performance >= terminateOnPerformance) {
+		// Only terminate on the performance over a mini-batch if individuals are not subsequently evaluated on all the
+		// examples.
+		if (terminateOnPerformance != 0 && performance >= terminateOnPerformance && (allExamples || !fullyEvaluateFittest)) {
 			terminate = true;
 		}
 	}
 
+	/**
+	 * Returns a response array for the current thread with the given dimensions, re-using the previous array if
+	 * possible.
+	 */
+	private double[][] getResponseBuffer(int exampleCount, int outputCount) {
+		if (responseBuffer == null) {
+			synchronized (this) {
+				if (responseBuffer == null) {
+					responseBuffer = new ThreadLocal<>();
+				}
+			}
+		}
+		double[][] buffer = responseBuffer.get();
+		if (buffer == null || buffer.length != exampleCount || buffer[0].length != outputCount) {
+			buffer = new double[exampleCount][outputCount];
+			responseBuffer.set(buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns the arrays for the input and target examples in the mini-batch for the current thread, in the form
+	 * [input|target][example], re-using the previous arrays if possible.
+	 */
+	private double[][][] getMiniBatchBuffers(int batchSize) {
+		if (miniBatchBuffers == null) {
+			synchronized (this) {
+				if (miniBatchBuffers == null) {
+					miniBatchBuffers = new ThreadLocal<>();
+				}
+			}
+		}
+		double[][][] buffers = miniBatchBuffers.get();
+		if (buffers == null || buffers[0].length != batchSize) {
+			buffers = new double[2][batchSize][];
+			miniBatchBuffers.set(buffers);
+		}
+		return buffers;
+	}
+
+	/**
+	 * Returns the block buffers for the current thread with the given dimensions, re-using the previous buffers if
+	 * possible.
+	 */
+	private BlockBuffer getBlockBuffer(int blockSize, int inputCount, int outputCount) {
+		if (blockBuffer == null) {
+			synchronized (this) {
+				if (blockBuffer == null) {
+					blockBuffer = new ThreadLocal<>();
+				}
+			}
+		}
+		BlockBuffer buffer = blockBuffer.get();
+		if (buffer == null || buffer.input.length != blockSize || buffer.input[0].length != inputCount || buffer.target[0].length != outputCount) {
+			buffer = new BlockBuffer(blockSize, inputCount, outputCount);
+			blockBuffer.set(buffer);
+		}
+		return buffer;
+	}
+
+	private static class BlockBuffer {
+		final double[][] input;
+		final double[][] target;
+		final double[][] response;
+
+		// Views of the first rows of the buffers, for a final block smaller than the block size.
+		double[][] partialInput;
+		double[][] partialTarget;
+		double[][] partialResponse;
+
+		BlockBuffer(int blockSize, int inputCount, int outputCount) {
+			input = new double[blockSize][inputCount];
+			target = new double[blockSize][outputCount];
+			response = new double[blockSize][outputCount];
+		}
+
+		/**
+		 * Set the partial buffers to the given number of rows. These are only re-created if the size changes, which
+		 * for a given data set (or mini-batch size) it does not.
+		 */
+		void setPartialSize(int count) {
+			if (partialInput == null || partialInput.length != count) {
+				partialInput = Arrays.copyOf(input, count);
+				partialTarget = Arrays.copyOf(target, count);
+				partialResponse = Arrays.copyOf(response, count);
+			}
+		}
+	}
+
 	public String getFitnessConversionType() {
 		return fitnessConversionType;
 	}
@@ -1,11 +1,13 @@
 package com.ojcoleman.europa.evaluators.dpb;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import com.ojcoleman.europa.configurable.ComponentBase;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Parameter;
+import com.ojcoleman.europa.core.BatchEvaluator;
 import com.ojcoleman.europa.core.EvaluationDescription;
 import com.ojcoleman.europa.core.Individual;
 import com.ojcoleman.europa.core.Log;
@@ -19,8 +21,12 @@ import com.ojcoleman.europa.util.IntervalDouble;
  * In Genetic Programming 1996: Proceedings of the First Annual Conference, pages 81–89, MIT Press, Cambridge, Massachusetts </blockquote>
  * 
  * This code was adapted from SharpNEAT by Colin Green (http://sharpneat.sourceforge.net/).
+ * 
+ * Groups of individuals may be evaluated together via {@link #evaluateBatch(List, Log)}, in which case the simulations
+ * are stepped in lockstep: the state of all the simulations is stored in struct-of-arrays form and updated in the same
+ * loops, and simulations that have failed are masked out.
  */
-public class DoublePoleBalancing extends VectorFunctionEvaluator  {
+public class DoublePoleBalancing extends VectorFunctionEvaluator implements BatchEvaluator {
 	// Some physical model constants.
 	protected static final double Gravity = -9.8;
 	protected static final double MassCart = 1.0;
@@ -56,6 +62,9 @@ public class DoublePoleBalancing extends VectorFunctionEvaluator  {
 	protected double poleAngleThresholdRad;
 	protected boolean shouldTerminate = false;
 	
+	// Per-thread simulation state and buffers. Mark as transient so XStream does not store it, it is created lazily.
+	private transient volatile ThreadLocal<Simulation> simulations;
+	
 	public DoublePoleBalancing(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
 		
@@ -70,17 +79,13 @@ public class DoublePoleBalancing extends VectorFunctionEvaluator  {
 	public void evaluate(Individual individual, Log log) {	
 		VectorFunction substrate = (VectorFunction) individual.getFunction();
 		
-		// [0] - Cart Position (meters).
-		// [1] - Cart velocity (m/s).
-		// [2] - Pole 1 angle (radians)
-		// [3] - Pole 1 angular velocity (radians/sec).
-		// [4] - Pole 2 angle (radians)
-		// [5] - Pole 2 angular velocity (radians/sec).
-		double[] state = new double[6];
+		Simulation simulation = getSimulation();
+		double[] state = simulation.reset();
 		state[2] = Math.toRadians(4); // 4 degrees
 		// Run the pole-balancing simulation.
 		int timestep = 0;
-		double[] input = new double[7];
+		double[] input = simulation.input;
+		double[] output = simulation.output;
 		for (; timestep < maxTimesteps; timestep++) {
 			// Provide state info to the network (normalised to +-1.0). Markovian (With velocity info)
 			// Cart Position is +-trackLengthHalfed
@@ -100,13 +105,13 @@ public class DoublePoleBalancing extends VectorFunctionEvaluator  {
 			
 			
 			// Activate the network.
-			double[] output = substrate.apply(input);
+			substrate.apply(input, output);
 			
 			// Scale output to range [0, 1].
-			output[0] = (output[0] - substrate.getMinimumOutputValue()) / (substrate.getMaximumOutputValue() - substrate.getMinimumOutputValue());
+			double action = (output[0] - substrate.getMinimumOutputValue()) / (substrate.getMaximumOutputValue() - substrate.getMinimumOutputValue());
 
 			// Get network response and calc next timestep state.
-			performAction(state, output[0]);
+			simulation.performAction(action);
 			
 			// Check for failure state. Has the cart run off the ends of the track or has the pole
 			// angle gone beyond the threshold.
@@ -121,27 +126,228 @@ public class DoublePoleBalancing extends VectorFunctionEvaluator  {
 	}
 
 	/**
-	 * Calculates a state update for the next timestep using current model state and a single action from the
-	 * controller. The action is a continuous variable with range [0:1]. 0 -> push left, 1 -> push right.
-	 * 
-	 * @param state Model state.
-	 * @param output Push force.
+	 * Returns the {@link Simulation} for the current thread, creating it if necessary. The simulation state and
+	 * buffers are re-used for every evaluation performed by the thread.
+	 */
+	protected Simulation getSimulation() {
+		if (simulations == null) {
+			synchronized (this) {
+				if (simulations == null) {
+					simulations = new ThreadLocal<>();
+				}
+			}
+		}
+		Simulation simulation = simulations.get();
+		if (simulation == null) {
+			simulation = new Simulation(getVectorFunctionInputSize(), getVectorFunctionOutputSize());
+			simulations.set(simulation);
+		}
+		return simulation;
+	}
+
+	@Override
+	public boolean isBatchEvaluationSupported() {
+		return true;
+	}
+
+	/**
+	 * Evaluate the given individuals by stepping a simulation for each in lockstep. The results are the same as those
+	 * produced by {@link #evaluate(Individual, Log)}. If any log items are specified then the individuals are evaluated
+	 * one at a time with {@link #evaluate(Individual, Log)}.
+	 */
+	@Override
+	public void evaluateBatch(List<? extends Individual<?, ?>> individuals, Log log) {
+		if (!log.getItemLabels().isEmpty()) {
+			for (Individual<?, ?> individual : individuals) {
+				evaluate(individual, log);
+			}
+			return;
+		}
+
+		int count = individuals.size();
+		VectorFunction[] substrates = new VectorFunction[count];
+
+		// The state of each simulation, as for evaluate(Individual, Log), in the form [state variable][simulation].
+		double[][] state = new double[6][count];
+		// Scratch arrays for the RK4 integration, same form as state.
+		double[][] dydx = new double[6][count];
+		double[][] dym = new double[6][count];
+		double[][] dyt = new double[6][count];
+		double[][] yt = new double[6][count];
+
+		double[][] input = new double[count][7];
+		double[][] output = new double[count][1];
+		double[] action = new double[count];
+
+		// The indices of the simulations that have not yet failed.
+		int[] active = new int[count];
+		int activeCount = count;
+		int[] finalTimestep = new int[count];
+
+		for (int k = 0; k < count; k++) {
+			substrates[k] = (VectorFunction) individuals.get(k).getFunction();
+			state[2][k] = Math.toRadians(4); // 4 degrees
+			active[k] = k;
+			// Bias.
+			input[k][6] = 1;
+		}
+
+		// Run the pole-balancing simulations.
+		int timestep = 0;
+		for (; timestep < maxTimesteps && activeCount > 0; timestep++) {
+			for (int a = 0; a < activeCount; a++) {
+				int k = active[a];
+				VectorFunction substrate = substrates[k];
+				// Provide state info to the network (normalised to +-1.0), see evaluate(Individual, Log).
+				input[k][0] = state[0][k] / trackLengthHalf;
+				input[k][1] = state[1][k] / 0.75;
+				input[k][2] = state[2][k] / poleAngleThresholdRad;
+				input[k][3] = state[3][k];
+				input[k][4] = state[4][k] / poleAngleThresholdRad;
+				input[k][5] = state[5][k];
+
+				// Activate the network.
+				substrate.apply(input[k], output[k]);
+
+				// Scale output to range [0, 1].
+				action[k] = (output[k][0] - substrate.getMinimumOutputValue()) / (substrate.getMaximumOutputValue() - substrate.getMinimumOutputValue());
+			}
+
+			// Get network responses and calc next timestep state for all active simulations.
+			for (int i = 0; i < 2; ++i) {
+				for (int a = 0; a < activeCount; a++) {
+					int k = active[a];
+					dydx[0][k] = state[1][k];
+					dydx[2][k] = state[3][k];
+					dydx[4][k] = state[5][k];
+				}
+				step(action, state, dydx, active, activeCount);
+				rk4(action, state, dydx, dym, dyt, yt, active, activeCount);
+			}
+
+			// Check for failure states and mask out failed simulations.
+			int stillActive = 0;
+			for (int a = 0; a < activeCount; a++) {
+				int k = active[a];
+				if ((state[0][k] < -trackLengthHalf) || (state[0][k] > trackLengthHalf) || (state[2][k] > poleAngleThresholdRad) || (state[2][k] < -poleAngleThresholdRad) || (state[4][k] > poleAngleThresholdRad) || (state[4][k] < -poleAngleThresholdRad)) {
+					finalTimestep[k] = timestep;
+				} else {
+					active[stillActive++] = k;
+				}
+			}
+			activeCount = stillActive;
+		}
+
+		for (int a = 0; a < activeCount; a++) {
+			finalTimestep[active[a]] = maxTimesteps;
+			shouldTerminate = true;
+		}
+
+		for (int k = 0; k < count; k++) {
+			individuals.get(k).evaluationData.setResult(fitnessEvalDesc, (double) finalTimestep[k] / maxTimesteps);
+		}
+	}
+
+	/**
+	 * The state of a single double pole balancing simulation, along with preallocated network input and output
+	 * buffers and scratch buffers for the numerical integration, so that no arrays are allocated while a simulation is
+	 * run.
 	 */
-	protected void performAction(double[] state, double output) {
-		int i;
-		double[] dydx = new double[6];
-		for (i = 0; i < 2; ++i) {
-			// Apply action to the simulated cart-pole
-			// Runge-Kutta 4th order integration method
-			dydx[0] = state[1];
-			dydx[2] = state[3];
-			dydx[4] = state[5];
-			step(output, state, dydx);
-			rk4(output, state, dydx);
+	public static class Simulation {
+		/**
+		 * The state of the cart and poles:
+		 * [0] - Cart Position (meters).
+		 * [1] - Cart velocity (m/s).
+		 * [2] - Pole 1 angle (radians).
+		 * [3] - Pole 1 angular velocity (radians/sec).
+		 * [4] - Pole 2 angle (radians).
+		 * [5] - Pole 2 angular velocity (radians/sec).
+		 */
+		public final double[] state = new double[6];
+
+		/**
+		 * Buffer for the input to the network.
+		 */
+		public final double[] input;
+
+		/**
+		 * Buffer for the output of the network.
+		 */
+		public final double[] output;
+
+		// Scratch buffers for the RK4 integration.
+		private final double[] dydx = new double[6];
+		private final double[] dym = new double[6];
+		private final double[] dyt = new double[6];
+		private final double[] yt = new double[6];
+
+		/**
+		 * Create a new Simulation with network input and output buffers of the given sizes.
+		 */
+		public Simulation(int inputSize, int outputSize) {
+			input = new double[inputSize];
+			output = new double[outputSize];
+		}
+
+		/**
+		 * Set the state to zero and return a reference to it.
+		 */
+		public double[] reset() {
+			for (int i = 0; i < 6; i++) {
+				state[i] = 0;
+			}
+			return state;
+		}
+
+		/**
+		 * Calculates a state update for the next timestep using current model state and a single action from the
+		 * controller. The action is a continuous variable with range [0:1]. 0 -> push left, 1 -> push right.
+		 * 
+		 * @param action Push force.
+		 */
+		public void performAction(double action) {
+			double[] y = state;
+			double hh = TimeDelta * 0.5;
+			double h6 = TimeDelta / 6.0;
+			for (int s = 0; s < 2; ++s) {
+				// Apply action to the simulated cart-pole
+				// Runge-Kutta 4th order integration method
+				dydx[0] = y[1];
+				dydx[2] = y[3];
+				dydx[4] = y[5];
+				step(action, y, dydx);
+
+				for (int i = 0; i <= 5; i++) {
+					yt[i] = y[i] + (hh * dydx[i]);
+				}
+				step(action, yt, dyt);
+				dyt[0] = yt[1];
+				dyt[2] = yt[3];
+				dyt[4] = yt[5];
+				for (int i = 0; i <= 5; i++) {
+					yt[i] = y[i] + (hh * dyt[i]);
+				}
+				step(action, yt, dym);
+				dym[0] = yt[1];
+				dym[2] = yt[3];
+				dym[4] = yt[5];
+				for (int i = 0; i <= 5; i++) {
+					yt[i] = y[i] + (TimeDelta * dym[i]);
+					dym[i] = dym[i] + dyt[i];
+				}
+				step(action, yt, dyt);
+				dyt[0] = yt[1];
+				dyt[2] = yt[3];
+				dyt[4] = yt[5];
+
+				for (int i = 0; i <= 5; i++) {
+					y[i] = y[i] + h6 * (dydx[i] + dyt[i] + 2.0 * dym[i]);
+				}
+			}
 		}
 	}
 
-	private void step(double action, double[] st, double[] derivs) {
+	private static void step(double action, double[] st, double[] derivs) {
 		double force, costheta_1, costheta_2, sintheta_1, sintheta_2, gsintheta_1, gsintheta_2, temp_1, temp_2, ml_1, ml_2, fi_1, fi_2, mi_1, mi_2;
 		force = (action - 0.5) * ForceMag * 2;
 		costheta_1 = Math.cos(st[2]);
@@ -163,42 +369,88 @@ public class DoublePoleBalancing extends VectorFunctionEvaluator  {
 		derivs[5] = -0.75 * (derivs[1] * costheta_2 + gsintheta_2 + temp_2) / Length2;
 	}
 
-	private void rk4(double f, double[] y, double[] dydx) {
-		int i;
-		double hh, h6;
-		double[] dym = new double[6];
-		double[] dyt = new double[6];
-		double[] yt = new double[6];
-		hh = TimeDelta * 0.5;
-		h6 = TimeDelta / 6.0;
-		for (i = 0; i <= 5; i++) {
-			yt[i] = y[i] + (hh * dydx[i]);
-		}
-		step(f, yt, dyt);
-		dyt[0] = yt[1];
-		dyt[2] = yt[3];
-		dyt[4] = yt[5];
-		for (i = 0; i <= 5; i++) {
-			yt[i] = y[i] + (hh * dyt[i]);
-		}
-		step(f, yt, dym);
-		dym[0] = yt[1];
-		dym[2] = yt[3];
-		dym[4] = yt[5];
-		for (i = 0; i <= 5; i++) {
-			yt[i] = y[i] + (TimeDelta * dym[i]);
-			dym[i] = dym[i] + dyt[i];
-		}
-		step(f, yt, dyt);
-		dyt[0] = yt[1];
-		dyt[2] = yt[3];
-		dyt[4] = yt[5];
-
-		for (i = 0; i <= 5; i++) {
-			y[i] = y[i] + h6 * (dydx[i] + dyt[i] + 2.0 * dym[i]);
+	/**
+	 * As for {@link #step(double, double[], double[])}, for the active simulations in struct-of-arrays form (see
+	 * {@link #evaluateBatch(List, Log)}).
+	 */
+	private static void step(double[] action, double[][] st, double[][] derivs, int[] active, int activeCount) {
+		double ml_1 = Length1 * MassPole1;
+		double ml_2 = Length2 * MassPole2;
+		for (int a = 0; a < activeCount; a++) {
+			int k = active[a];
+			double force = (action[k] - 0.5) * ForceMag * 2;
+			double costheta_1 = Math.cos(st[2][k]);
+			double sintheta_1 = Math.sin(st[2][k]);
+			double gsintheta_1 = Gravity * sintheta_1;
+			double costheta_2 = Math.cos(st[4][k]);
+			double sintheta_2 = Math.sin(st[4][k]);
+			double gsintheta_2 = Gravity * sintheta_2;
+			double temp_1 = MUP * st[3][k] / ml_1;
+			double temp_2 = MUP * st[5][k] / ml_2;
+			double fi_1 = (ml_1 * st[3][k] * st[3][k] * sintheta_1) + (0.75 * MassPole1 * costheta_1 * (temp_1 + gsintheta_1));
+			double fi_2 = (ml_2 * st[5][k] * st[5][k] * sintheta_2) + (0.75 * MassPole2 * costheta_2 * (temp_2 + gsintheta_2));
+			double mi_1 = MassPole1 * (1 - (0.75 * costheta_1 * costheta_1));
+			double mi_2 = MassPole2 * (1 - (0.75 * costheta_2 * costheta_2));
+			derivs[1][k] = (force + fi_1 + fi_2) / (mi_1 + mi_2 + MassCart);
+			derivs[3][k] = -0.75 * (derivs[1][k] * costheta_1 + gsintheta_1 + temp_1) / Length1;
+			derivs[5][k] = -0.75 * (derivs[1][k] * costheta_2 + gsintheta_2 + temp_2) / Length2;
 		}
 	}
 
+	/**
+	 * As for the RK4 integration in {@link Simulation#performAction(double)}, for the active simulations in
+	 * struct-of-arrays form (see {@link #evaluateBatch(List, Log)}).
+	 */
+	private static void rk4(double[] f, double[][] y, double[][] dydx, double[][] dym, double[][] dyt, double[][] yt, int[] active, int activeCount) {
+		double hh = TimeDelta * 0.5;
+		double h6 = TimeDelta / 6.0;
+		for (int i = 0; i <= 5; i++) {
+			for (int a = 0; a < activeCount; a++) {
+				int k = active[a];
+				yt[i][k] = y[i][k] + (hh * dydx[i][k]);
+			}
+		}
+		step(f, yt, dyt, active, activeCount);
+		for (int a = 0; a < activeCount; a++) {
+			int k = active[a];
+			dyt[0][k] = yt[1][k];
+			dyt[2][k] = yt[3][k];
+			dyt[4][k] = yt[5][k];
+		}
+		for (int i = 0; i <= 5; i++) {
+			for (int a = 0; a < activeCount; a++) {
+				int k = active[a];
+				yt[i][k] = y[i][k] + (hh * dyt[i][k]);
+			}
+		}
+		step(f, yt, dym, active, activeCount);
+		for (int a = 0; a < activeCount; a++) {
+			int k = active[a];
+			dym[0][k] = yt[1][k];
+			dym[2][k] = yt[3][k];
+			dym[4][k] = yt[5][k];
+		}
+		for (int i = 0; i <= 5; i++) {
+			for (int a = 0; a < activeCount; a++) {
+				int k = active[a];
+				yt[i][k] = y[i][k] + (TimeDelta * dym[i][k]);
+				dym[i][k] = dym[i][k] + dyt[i][k];
+			}
+		}
+		step(f, yt, dyt, active, activeCount);
+		for (int a = 0; a < activeCount; a++) {
+			int k = active[a];
+			dyt[0][k] = yt[1][k];
+			dyt[2][k] = yt[3][k];
+			dyt[4][k] = yt[5][k];
+		}
+		for (int i = 0; i <= 5; i++) {
+			for (int a = 0; a < activeCount; a++) {
+				int k = active[a];
+				y[i][k] = y[i][k] + h6 * (dydx[i][k] + dyt[i][k] + 2.0 * dym[i][k]);
+			}
+		}
+	}
 
 	@Override
 	public int getVectorFunctionInputSize() {
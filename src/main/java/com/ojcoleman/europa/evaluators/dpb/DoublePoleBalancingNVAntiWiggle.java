@@ -1,161 +1,244 @@
-package com.ojcoleman.europa.evaluators.dpb;
-
-import java.util.Set;
-
-import com.ojcoleman.europa.configurable.ComponentBase;
-import com.ojcoleman.europa.configurable.Configuration;
-import com.ojcoleman.europa.core.EvaluationDescription;
-import com.ojcoleman.europa.core.Individual;
-import com.ojcoleman.europa.core.Log;
-import com.ojcoleman.europa.functiontypes.VectorFunction;
-import com.ojcoleman.europa.util.IntervalDouble;
-
-/**
- * <p>
- * Implements the non-Markovian double pole balancing task (velocities NOT included in inputs) with the anti-oscillation
- * component as described in: <blockquote> Gruau, F., Whitley, D., and Pyeatt, L. (1996). A comparison between cellular
- * encoding and direct encoding for genetic neural networks. In Genetic Programming 1996: Proceedings of the First
- * Annual Conference, pages 81–89, MIT Press, Cambridge, Massachusetts </blockquote>.
- * </p>
- * 
- * <p>
- * This code was adapted from SharpNEAT by Colin Green (http://sharpneat.sourceforge.net/) and then modified to reflect
- * the fitness function described in the above paper.
- * </p>
- */
-public class DoublePoleBalancingNVAntiWiggle extends DoublePoleBalancing {
-	// For generalisation test.
-	static final double[] _statevals = new double[] { 0.05, 0.25, 0.5, 0.75, 0.95 };
-	static final int _generalisationSteps = 100000;
-	
-	protected EvaluationDescription performanceEvalDesc;
-	
-	/**
-	 * Construct evaluator with default task arguments/variables.
-	 */
-	public DoublePoleBalancingNVAntiWiggle(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
-		super(parentComponent, componentConfig);
-		
-		performanceEvalDesc = new EvaluationDescription(getName() + " generalisation", this, IntervalDouble.UNIT, 1, true);
-	}
-	
-	@Override
-	public void evaluate(Individual individual, Log log) {	
-		VectorFunction substrate = (VectorFunction) individual.getFunction();
-		
-		// [0] - Cart Position (meters).
-		// [1] - Cart velocity (m/s).
-		// [2] - Pole 1 angle (radians)
-		// [3] - Pole 1 angular velocity (radians/sec).
-		// [4] - Pole 2 angle (radians)
-		// [5] - Pole 2 angular velocity (radians/sec).
-		double[] state = new double[6];
-		state[2] = Math.PI / 45.0; //4 degrees
-
-		double[] input = new double[3];
-
-		JiggleBuffer jiggleBuffer1 = new JiggleBuffer(100);
-
-		// Run the pole-balancing simulation.
-		int timestep = _simulate(substrate, state, input, jiggleBuffer1, maxTimesteps);
-
-		double f1 = (double) timestep / maxTimesteps;
-		double f2 = timestep < 100 ? 0 : 0.75 / jiggleBuffer1.getTotal();
-		double fitness = 0.1 * f1 + 0.9 * f2;
-		fitness *= 0.33;
-		double perf = 0;
-
-		// Do generalisation tests if successfully balanced for 1000 time steps.
-		if (timestep == maxTimesteps) {
-			// Continue simulation until 100,000 time steps.
-			timestep += _simulate(substrate, state, input, null, _generalisationSteps - maxTimesteps);
-			
-			fitness += 0.33 * ((double) timestep / _generalisationSteps);
-
-			// If passed 100,000 time step test.
-			if (timestep == _generalisationSteps) {
-				// Test from 625 different initial starting positions.
-				int score = 0;
-				for (int s0c = 0; s0c <= 4; ++s0c) {
-					for (int s1c = 0; s1c <= 4; ++s1c) {
-						for (int s2c = 0; s2c <= 4; ++s2c) {
-							for (int s3c = 0; s3c <= 4; ++s3c) {
-								state[0] = _statevals[s0c] * 4.32 - 2.16;
-								state[1] = _statevals[s1c] * 2.70 - 1.35;
-								state[2] = _statevals[s2c] * 0.12566304 - 0.06283152;
-								/* 0.06283152 = 3.6 degrees */
-								state[3] = _statevals[s3c] * 0.30019504 - 0.15009752;
-								/* 00.15009752 = 8.6 degrees */
-								state[4] = 0.0;
-								state[5] = 0.0;
-
-								substrate.reset();
-								timestep = _simulate(substrate, state, input, null, 1000);
-								if (timestep == 1000) {
-									score++;
-								}
-							}
-						}
-					}
-				}
-				perf = score/625.0;
-				
-				shouldTerminate |= score == 625;
-				
-				fitness += 0.33 * (score / 625.0);
-			}
-		}
-		
-		individual.evaluationData.setResult(fitnessEvalDesc, fitness);
-		individual.evaluationData.setResult(performanceEvalDesc, perf);
-
-		//if (fitnessValues != null) {
-		//	fitnessValues[0] = fitness;
-		//	genotype.setPerformanceValue(perf);
-		//}
-	}
-
-	private int _simulate(VectorFunction substrate, double[] state, double[] input, JiggleBuffer jiggleBuffer1, int simSteps) {
-		for (int timestep = 0; timestep < maxTimesteps; timestep++) {
-			// Provide state info to the network (normalised to +-1.0). Non-Markovian (Without velocity info)
-			// Cart Position is +-trackLengthHalfed
-			input[0] = state[0] / trackLengthHalf;
-			// Pole Angle is +-poleAngleThresholdRad. Values outside of this range stop the simulation.
-			input[1] = state[2] / poleAngleThresholdRad;
-			// Pole Angle is +-poleAngleThresholdRad. Values outside of this range stop the simulation.
-			input[2] = state[4] / poleAngleThresholdRad;
-
-			// Activate the network.
-			double[] output = substrate.apply(input);
-			// Scale output to range [0, 1].
-			output[0] = (output[0] - substrate.getMinimumOutputValue()) / (substrate.getMaximumOutputValue() - substrate.getMinimumOutputValue());
-
-			// Get network response and calc next timestep state.
-			performAction(state, output[0]);
-
-			// Place the latest jiggle value into buffer1.
-			if (jiggleBuffer1 != null) {
-				jiggleBuffer1.enqueue(Math.abs(state[0]) + Math.abs(state[1]) + Math.abs(state[2]) + Math.abs(state[3]));
-			}
-
-			// Check for failure state. Has the cart run off the ends of the track or has the pole
-			// angle gone beyond the threshold.
-			if ((state[0] < -trackLengthHalf) || (state[0] > trackLengthHalf) || (state[2] > poleAngleThresholdRad) || (state[2] < -poleAngleThresholdRad) || (state[4] > poleAngleThresholdRad) || (state[4] < -poleAngleThresholdRad)) {
-				return timestep;
-			}
-		}
-		return simSteps;
-	}
-
-	@Override
-	public int getVectorFunctionInputSize() {
-		return 3;
-	}
-	
-	@Override
-	public Set<EvaluationDescription> getEvaluationDescriptions() {
-		Set<EvaluationDescription> evalDescs = super.getEvaluationDescriptions();
-		evalDescs.add(performanceEvalDesc);
-		return evalDescs;
-	}
-}
+package com.ojcoleman.europa.evaluators.dpb;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ojcoleman.europa.configurable.ComponentBase;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.Parameter;
+import com.ojcoleman.europa.core.EvaluationDescription;
+import com.ojcoleman.europa.core.Individual;
+import com.ojcoleman.europa.core.Log;
+import com.ojcoleman.europa.core.Parallel;
+import com.ojcoleman.europa.core.Run;
+import com.ojcoleman.europa.functiontypes.VectorFunction;
+import com.ojcoleman.europa.util.IntervalDouble;
+
+/**
+ * <p>
+ * Implements the non-Markovian double pole balancing task (velocities NOT included in inputs) with the anti-oscillation
+ * component as described in: <blockquote> Gruau, F., Whitley, D., and Pyeatt, L. (1996). A comparison between cellular
+ * encoding and direct encoding for genetic neural networks. In Genetic Programming 1996: Proceedings of the First
+ * Annual Conference, pages 81–89, MIT Press, Cambridge, Massachusetts </blockquote>.
+ * </p>
+ * 
+ * <p>
+ * This code was adapted from SharpNEAT by Colin Green (http://sharpneat.sourceforge.net/) and then modified to reflect
+ * the fitness function described in the above paper.
+ * </p>
+ */
+public class DoublePoleBalancingNVAntiWiggle extends DoublePoleBalancing {
+	// For generalisation test.
+	static final double[] _statevals = new double[] { 0.05, 0.25, 0.5, 0.75, 0.95 };
+	static final int _generalisationSteps = 100000;
+	static final int _generalisationStarts = 625;
+	static final int _generalisationStartSteps = 1000;
+	
+	@Parameter (description="The maximum number of threads used to run the generalisation test (from 625 starting positions) for a single individual. The threads are drawn from the thread pool used for evaluation, and each thread uses its own copy of the individual's network. 0 means the number of threads in the pool; 1 runs the test serially.", defaultValue="0", minimumValue="0")
+	protected int generalisationThreads;
+	
+	@Parameter (description="If true then the generalisation test is stopped as soon as the network fails to balance the poles from any starting position, since the task can then not be solved by the individual. The generalisation score is then the proportion of all starting positions that precede the first failed trial (all of which succeeded), which is a lower bound on the score the full test would give.", defaultValue="false")
+	protected boolean generalisationEarlyStop;
+	
+	protected EvaluationDescription performanceEvalDesc;
+	
+	private Run run;
+	
+	// Per-thread networks for helper threads in the generalisation test, re-used (rebuilt in place) across tests.
+	// Mark as transient so XStream does not store them, they are created lazily.
+	private transient volatile ThreadLocal<VectorFunction> helperSubstrates;
+	
+	/**
+	 * Construct evaluator with default task arguments/variables.
+	 */
+	public DoublePoleBalancingNVAntiWiggle(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
+		super(parentComponent, componentConfig);
+		
+		performanceEvalDesc = new EvaluationDescription(getName() + " generalisation", this, IntervalDouble.UNIT, 1, true);
+		
+		run = this.getParentComponent(Run.class);
+	}
+	
+	@Override
+	public void evaluate(Individual individual, Log log) {	
+		VectorFunction substrate = (VectorFunction) individual.getFunction();
+		
+		Simulation simulation = getSimulation();
+		double[] state = simulation.reset();
+		state[2] = Math.PI / 45.0; //4 degrees
+
+		JiggleBuffer jiggleBuffer1 = new JiggleBuffer(100);
+
+		// Run the pole-balancing simulation.
+		int timestep = _simulate(substrate, simulation, jiggleBuffer1, maxTimesteps);
+
+		double f1 = (double) timestep / maxTimesteps;
+		double f2 = timestep < 100 ? 0 : 0.75 / jiggleBuffer1.getTotal();
+		double fitness = 0.1 * f1 + 0.9 * f2;
+		fitness *= 0.33;
+		double perf = 0;
+
+		// Do generalisation tests if successfully balanced for 1000 time steps.
+		if (timestep == maxTimesteps) {
+			// Continue simulation until 100,000 time steps.
+			timestep += _simulate(substrate, simulation, null, _generalisationSteps - maxTimesteps);
+			
+			fitness += 0.33 * ((double) timestep / _generalisationSteps);
+
+			// If passed 100,000 time step test.
+			if (timestep == _generalisationSteps) {
+				// Test from 625 different initial starting positions.
+				perf = generalisationTest(individual, substrate);
+				
+				shouldTerminate |= perf == 1;
+				
+				fitness += 0.33 * perf;
+			}
+		}
+		
+		individual.evaluationData.setResult(fitnessEvalDesc, fitness);
+		individual.evaluationData.setResult(performanceEvalDesc, perf);
+
+		//if (fitnessValues != null) {
+		//	fitnessValues[0] = fitness;
+		//	genotype.setPerformanceValue(perf);
+		//}
+	}
+
+	/**
+	 * Returns false: the anti-wiggle and generalisation phases of the evaluation are specific to each individual, so
+	 * individuals are evaluated one at a time (and in parallel) with {@link #evaluate(Individual, Log)}.
+	 */
+	@Override
+	public boolean isBatchEvaluationSupported() {
+		return false;
+	}
+
+	/**
+	 * Test the given network from 625 different initial starting positions, and return the proportion of starting
+	 * positions from which it balanced the poles for 1000 time steps. The trials are split over up to
+	 * {@link #generalisationThreads} threads; the given network is used by the calling thread and other threads
+	 * transcribe their own copy of the individual's network. Trials are started in index order, and if
+	 * {@link #generalisationEarlyStop} is set only trials after the first failed trial are skipped, so the result does
+	 * not depend on the order in which the threads complete trials.
+	 */
+	private double generalisationTest(final Individual individual, VectorFunction substrate) {
+		Parallel parallel = run.getParallel();
+		int workers = generalisationThreads > 0 ? generalisationThreads : parallel.getThreadCount();
+		final VectorFunction[] substrates = new VectorFunction[Math.max(1, workers)];
+		substrates[0] = substrate;
+		
+		final ThreadLocal<VectorFunction> helpers = getHelperSubstrates();
+		
+		final AtomicInteger score = new AtomicInteger();
+		// The index of the first failed trial, or _generalisationStarts if none have failed.
+		final AtomicInteger firstFailure = new AtomicInteger(_generalisationStarts);
+		
+		parallel.forIndices(_generalisationStarts, workers, new Parallel.IndexOperation() {
+			@Override
+			public void perform(int index, int worker) {
+				// If a trial has failed then the task can not be solved, skip later trials if early stop enabled.
+				// Trials are started in index order so all trials before the first failed trial are performed.
+				if (generalisationEarlyStop && index > firstFailure.get()) {
+					return;
+				}
+				
+				VectorFunction workerSubstrate = substrates[worker];
+				if (workerSubstrate == null) {
+					workerSubstrate = (VectorFunction) run.getTranscriber().transcribeGeneric(individual.genotype, helpers.get());
+					helpers.set(workerSubstrate);
+					substrates[worker] = workerSubstrate;
+				}
+				
+				int s0c = index / 125;
+				int s1c = (index / 25) % 5;
+				int s2c = (index / 5) % 5;
+				int s3c = index % 5;
+				
+				Simulation simulation = getSimulation();
+				double[] state = simulation.state;
+				state[0] = _statevals[s0c] * 4.32 - 2.16;
+				state[1] = _statevals[s1c] * 2.70 - 1.35;
+				state[2] = _statevals[s2c] * 0.12566304 - 0.06283152;
+				/* 0.06283152 = 3.6 degrees */
+				state[3] = _statevals[s3c] * 0.30019504 - 0.15009752;
+				/* 00.15009752 = 8.6 degrees */
+				state[4] = 0.0;
+				state[5] = 0.0;
+				
+				workerSubstrate.reset();
+				if (_simulate(workerSubstrate, simulation, null, _generalisationStartSteps) == _generalisationStartSteps) {
+					score.incrementAndGet();
+				} else {
+					int first;
+					while (index < (first = firstFailure.get()) && !firstFailure.compareAndSet(first, index));
+				}
+			}
+		});
+		
+		if (generalisationEarlyStop && firstFailure.get() < _generalisationStarts) {
+			// Stopped early, count only the trials before the first failure, all of which succeeded. This is a
+			// deterministic lower bound on the score the full test would give.
+			return (double) firstFailure.get() / _generalisationStarts;
+		}
+		return (double) score.get() / _generalisationStarts;
+	}
+
+	private ThreadLocal<VectorFunction> getHelperSubstrates() {
+		if (helperSubstrates == null) {
+			synchronized (this) {
+				if (helperSubstrates == null) {
+					helperSubstrates = new ThreadLocal<>();
+				}
+			}
+		}
+		return helperSubstrates;
+	}
+
+	private int _simulate(VectorFunction substrate, Simulation simulation, JiggleBuffer jiggleBuffer1, int simSteps) {
+		double[] state = simulation.state;
+		double[] input = simulation.input;
+		double[] output = simulation.output;
+		for (int timestep = 0; timestep < simSteps; timestep++) {
+			// Provide state info to the network (normalised to +-1.0). Non-Markovian (Without velocity info)
+			// Cart Position is +-trackLengthHalfed
+			input[0] = state[0] / trackLengthHalf;
+			// Pole Angle is +-poleAngleThresholdRad. Values outside of this range stop the simulation.
+			input[1] = state[2] / poleAngleThresholdRad;
+			// Pole Angle is +-poleAngleThresholdRad. Values outside of this range stop the simulation.
+			input[2] = state[4] / poleAngleThresholdRad;
+
+			// Activate the network.
+			substrate.apply(input, output);
+			// Scale output to range [0, 1].
+			double action = (output[0] - substrate.getMinimumOutputValue()) / (substrate.getMaximumOutputValue() - substrate.getMinimumOutputValue());
+
+			// Get network response and calc next timestep state.
+			simulation.performAction(action);
+
+			// Place the latest jiggle value into buffer1.
+			if (jiggleBuffer1 != null) {
+				jiggleBuffer1.enqueue(Math.abs(state[0]) + Math.abs(state[1]) + Math.abs(state[2]) + Math.abs(state[3]));
+			}
+
+			// Check for failure state. Has the cart run off the ends of the track or has the pole
+			// angle gone beyond the threshold.
+			if ((state[0] < -trackLengthHalf) || (state[0] > trackLengthHalf) || (state[2] > poleAngleThresholdRad) || (state[2] < -poleAngleThresholdRad) || (state[4] > poleAngleThresholdRad) || (state[4] < -poleAngleThresholdRad)) {
+				return timestep;
+			}
+		}
+		return simSteps;
+	}
+
+	@Override
+	public int getVectorFunctionInputSize() {
+		return 3;
+	}
+	
+	@Override
+	public Set<EvaluationDescription> getEvaluationDescriptions() {
+		Set<EvaluationDescription> evalDescs = super.getEvaluationDescriptions();
+		evalDescs.add(performanceEvalDesc);
+		return evalDescs;
+	}
+}
@@ -4,33 +4,81 @@ import com.ojcoleman.europa.configurable.ComponentBase;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Observable;
 import com.ojcoleman.europa.core.Monitor;
+import com.ojcoleman.europa.core.Run;
 import com.ojcoleman.europa.util.Stringer;
 
 /**
  * 
- * Implementation of {@link Monitor} that prints out debug information.
+ * Implementation of {@link Monitor} that prints out debug information. If asynchronous, the debug information is
+ * converted to a string when the event is fired and only written on the event dispatch thread.
  * 
  * @see com.ojcoleman.europa.core.Stringable
  * 
  * @author O. J. Coleman
  */
 public class DebugMonitor extends SelectiveMonitor {
+	// Captured state for events that are not selected to be logged.
+	private static final Object NOT_SELECTED = new Object();
+
+	private Run run;
+
 	public DebugMonitor(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
+
+		run = this.getParentComponent(Run.class);
+	}
+
+	@Override
+	protected boolean supportsAsynchronous() {
+		return true;
+	}
+
+	@Override
+	public Object snapshotState(Observable observed, Object event, Object state) {
+		int iteration = run.getCurrentIteration();
+		if (!isSelected(observed, event, iteration)) {
+			return NOT_SELECTED;
+		}
+		return new Line(iteration, toString(observed, event, state));
+	}
+
+	@Override
+	public void eventOccurred(Observable observed, Object event, Object state) {
+		if (state == NOT_SELECTED) {
+			return;
+		}
+		if (state instanceof Line) {
+			Line line = (Line) state;
+			write(observed, event, line.iteration, line.text);
+			return;
+		}
+		super.eventOccurred(observed, event, state);
 	}
 
 	@Override
 	public void log(Observable observed, Object event, Object state) {
+		write(observed, event, state, toString(observed, event, state));
+	}
+
+	private String toString(Observable observed, Object event, Object state) {
 		if (state != null) {
 			String stateStr = Stringer.toString(state, 10, 1);
 			if (stateStr.contains("\n")) {
-				write(observed, event, state, observed.getClass().getSimpleName() + ": " + event + ":\n" + stateStr);
-			} else {
-				write(observed, event, state, observed.getClass().getSimpleName() + ": " + event + ": " + stateStr.trim());
+				return observed.getClass().getSimpleName() + ": " + event + ":\n" + stateStr;
 			}
+			return observed.getClass().getSimpleName() + ": " + event + ": " + stateStr.trim();
+		}
+		return observed.getClass().getSimpleName() + ": " + event;
+	}
+
+	// A line of debug information and the iteration it was captured in.
+	private static class Line {
+		final int iteration;
+		final String text;
 
-		} else {
-			write(observed, event, state, observed.getClass().getSimpleName() + ": " + event);
+		Line(int iteration, String text) {
+			this.iteration = iteration;
+			this.text = text;
 		}
 	}
 }
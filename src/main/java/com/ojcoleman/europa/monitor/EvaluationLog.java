@@ -0,0 +1,555 @@
+package com.ojcoleman.europa.monitor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ojcoleman.europa.core.EvaluationDescription;
+
+/**
+ * <p>
+ * An append-only log containing one fixed-width binary record per evaluated individual, written by
+ * {@link EvaluationLogMonitor}. Each record holds the genotype ID, the IDs of the parent genotypes, the species ID, the
+ * iteration, the genome size (number of alleles) and the fitness and performance results. Together the genotype and
+ * parent IDs record the genealogy of the run.
+ * </p>
+ * <p>
+ * The log is split over segment files of a fixed maximum size, named <em>evaluations-&lt;n&gt;.bin</em>, which are
+ * memory-mapped for writing and reading, so that neither the writer nor the reader keep records on the heap. Each
+ * segment begins with a header:
+ * </p>
+ *
+ * <pre>
+ * int magic, int version, long recordCount, int dataOffset, int recordSize, int parentCount, int objectiveCount,
+ * objectiveCount x (byte isPerformanceIndicator, short nameLength, UTF-8 name)
+ * </pre>
+ * <p>
+ * followed, from dataOffset, by recordCount records:
+ * </p>
+ *
+ * <pre>
+ * long id, long speciesID, int iteration, int genomeSize, parentCount x long parentID, objectiveCount x double result
+ * </pre>
+ * <p>
+ * Unused parent slots hold -1, the species ID is -1 if the individual was not assigned to a species, and missing
+ * results are NaN. The record count is updated after each record is appended, so a log may be read while it is being
+ * written.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class EvaluationLog implements Closeable {
+	static final int MAGIC = 0x45555645; // "EUVE"
+	static final int VERSION = 1;
+
+	private static final int COUNT_OFFSET = 8;
+	private static final int ID_OFFSET = 0;
+	private static final int SPECIES_OFFSET = 8;
+	private static final int ITERATION_OFFSET = 16;
+	private static final int GENOME_SIZE_OFFSET = 20;
+	private static final int PARENTS_OFFSET = 24;
+
+	private static final Pattern SEGMENT_FILE = Pattern.compile("evaluations-(\\d+)\\.bin");
+
+	private final List<MappedByteBuffer> segments;
+	private final List<String> objectiveNames;
+	private final boolean[] isPerformanceIndicator;
+	private final int parentCount;
+	private final int recordSize;
+	private final int dataOffset;
+
+	/**
+	 * Open the log in the given directory (typically the output directory of a run) for reading.
+	 *
+	 * @throws IOException If the directory contains no log segments or a segment could not be read.
+	 */
+	public EvaluationLog(Path directory) throws IOException {
+		Map<Integer, Path> files = new TreeMap<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream) {
+				Matcher m = SEGMENT_FILE.matcher(file.getFileName().toString());
+				if (m.matches()) {
+					files.put(Integer.parseInt(m.group(1)), file);
+				}
+			}
+		}
+		if (files.isEmpty()) {
+			throw new IOException("No evaluation log found in " + directory);
+		}
+
+		segments = new ArrayList<>();
+		for (Path file : files.values()) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				segments.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			}
+		}
+
+		ByteBuffer header = segments.get(0);
+		if (header.getInt(0) != MAGIC) {
+			throw new IOException("Not an evaluation log: " + files.values().iterator().next());
+		}
+		if (header.getInt(4) != VERSION) {
+			throw new IOException("Unsupported evaluation log version: " + header.getInt(4));
+		}
+		header.position(COUNT_OFFSET + 8);
+		dataOffset = header.getInt();
+		recordSize = header.getInt();
+		parentCount = header.getInt();
+		int objectiveCount = header.getInt();
+		List<String> names = new ArrayList<>(objectiveCount);
+		isPerformanceIndicator = new boolean[objectiveCount];
+		for (int o = 0; o < objectiveCount; o++) {
+			isPerformanceIndicator[o] = header.get() != 0;
+			byte[] name = new byte[header.getShort()];
+			header.get(name);
+			names.add(new String(name, StandardCharsets.UTF_8));
+		}
+		objectiveNames = Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * Returns the names of the fitness and performance objectives, in the order their results appear in
+	 * {@link Record#objectives}.
+	 */
+	public List<String> getObjectiveNames() {
+		return objectiveNames;
+	}
+
+	/**
+	 * Returns true iff the objective at the given index is a performance indicator rather than a fitness objective.
+	 */
+	public boolean isPerformanceIndicator(int objective) {
+		return isPerformanceIndicator[objective];
+	}
+
+	/**
+	 * Returns the maximum number of parent IDs stored per record.
+	 */
+	public int getParentCount() {
+		return parentCount;
+	}
+
+	/**
+	 * Returns the total number of records in the log.
+	 */
+	public long getRecordCount() {
+		long count = 0;
+		for (ByteBuffer segment : segments) {
+			count += segment.getLong(COUNT_OFFSET);
+		}
+		return count;
+	}
+
+	/**
+	 * Scan the log in the order the records were written, passing each record matching the given query to the given
+	 * visitor. The conditions of the query are tested against the stored bytes, so a Record is only created for
+	 * matching records.
+	 *
+	 * @param query The conditions records must meet, or null to visit all records.
+	 * @param visitor The visitor to pass matching records to.
+	 * @return The number of records passed to the visitor.
+	 */
+	public long scan(Query query, Visitor visitor) {
+		long matched = 0;
+		int[] objectiveIndices = query == null ? null : query.getObjectiveIndices(this);
+		for (ByteBuffer segment : segments) {
+			long count = segment.getLong(COUNT_OFFSET);
+			for (long r = 0; r < count; r++) {
+				int offset = (int) (dataOffset + r * recordSize);
+				if (query == null || query.matches(this, objectiveIndices, segment, offset)) {
+					matched++;
+					if (!visitor.visit(read(segment, offset))) {
+						return matched;
+					}
+				}
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * Returns the most recent record for the genotype with the given ID, or null if there is none.
+	 */
+	public Record get(long id) {
+		for (int s = segments.size() - 1; s >= 0; s--) {
+			ByteBuffer segment = segments.get(s);
+			for (long r = segment.getLong(COUNT_OFFSET) - 1; r >= 0; r--) {
+				int offset = (int) (dataOffset + r * recordSize);
+				if (segment.getLong(offset + ID_OFFSET) == id) {
+					return read(segment, offset);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the line of descent of the genotype with the given ID, following the first parent of each record back
+	 * until a genotype with no recorded parent is reached. The first element is the record for the given genotype.
+	 * Genotype IDs increase over a run, so the ancestors are found with a single backward pass over the log.
+	 */
+	public List<Record> getLineage(long id) {
+		List<Record> lineage = new ArrayList<>();
+		long seeking = id;
+		for (int s = segments.size() - 1; s >= 0 && seeking != -1; s--) {
+			ByteBuffer segment = segments.get(s);
+			for (long r = segment.getLong(COUNT_OFFSET) - 1; r >= 0 && seeking != -1; r--) {
+				int offset = (int) (dataOffset + r * recordSize);
+				if (segment.getLong(offset + ID_OFFSET) == seeking) {
+					Record record = read(segment, offset);
+					lineage.add(record);
+					seeking = parentCount > 0 ? record.parents[0] : -1;
+				}
+			}
+		}
+		return lineage;
+	}
+
+	private Record read(ByteBuffer segment, int offset) {
+		long[] parents = new long[parentCount];
+		for (int p = 0; p < parentCount; p++) {
+			parents[p] = segment.getLong(offset + PARENTS_OFFSET + p * 8);
+		}
+		double[] objectives = new double[objectiveNames.size()];
+		int objectivesOffset = offset + PARENTS_OFFSET + parentCount * 8;
+		for (int o = 0; o < objectives.length; o++) {
+			objectives[o] = segment.getDouble(objectivesOffset + o * 8);
+		}
+		return new Record(this, segment.getLong(offset + ID_OFFSET), parents, segment.getLong(offset + SPECIES_OFFSET), segment.getInt(offset + ITERATION_OFFSET), segment.getInt(offset + GENOME_SIZE_OFFSET), objectives);
+	}
+
+	@Override
+	public void close() {
+		// Mapped buffers are released when they are garbage collected.
+		segments.clear();
+	}
+
+	/**
+	 * A record of the evaluation of an individual.
+	 */
+	public static class Record {
+		private final EvaluationLog log;
+
+		/**
+		 * The ID of the genotype.
+		 */
+		public final long id;
+
+		/**
+		 * The IDs of the parent genotypes. Unused slots hold -1.
+		 */
+		public final long[] parents;
+
+		/**
+		 * The ID of the species the individual belonged to, or -1 if it did not belong to a species.
+		 */
+		public final long speciesID;
+
+		/**
+		 * The iteration in which the individual was evaluated.
+		 */
+		public final int iteration;
+
+		/**
+		 * The number of alleles in the genotype.
+		 */
+		public final int genomeSize;
+
+		/**
+		 * The fitness and performance results, in the order given by {@link EvaluationLog#getObjectiveNames()}. Missing
+		 * results are NaN.
+		 */
+		public final double[] objectives;
+
+		Record(EvaluationLog log, long id, long[] parents, long speciesID, int iteration, int genomeSize, double[] objectives) {
+			this.log = log;
+			this.id = id;
+			this.parents = parents;
+			this.speciesID = speciesID;
+			this.iteration = iteration;
+			this.genomeSize = genomeSize;
+			this.objectives = objectives;
+		}
+
+		/**
+		 * Returns the result for the objective with the given name.
+		 *
+		 * @throws IllegalArgumentException If the log contains no objective with the given name.
+		 */
+		public double getObjective(String name) {
+			return objectives[log.getObjectiveIndex(name)];
+		}
+
+		@Override
+		public String toString() {
+			return id + " " + Arrays.toString(parents) + " species " + speciesID + " iteration " + iteration + " size " + genomeSize + " " + Arrays.toString(objectives);
+		}
+	}
+
+	int getObjectiveIndex(String name) {
+		int index = objectiveNames.indexOf(name);
+		if (index == -1) {
+			throw new IllegalArgumentException("The evaluation log contains no objective named " + name);
+		}
+		return index;
+	}
+
+	/**
+	 * Receives the records matched by {@link EvaluationLog#scan(Query, Visitor)}.
+	 */
+	public interface Visitor {
+		/**
+		 * Called for each matching record.
+		 *
+		 * @return true to continue the scan, false to stop it.
+		 */
+		public boolean visit(Record record);
+	}
+
+	/**
+	 * A conjunction of conditions on the fields of records. Conditions are added with the methods of this class, which
+	 * return this Query so that they may be chained.
+	 */
+	public static class Query {
+		private int minIteration = Integer.MIN_VALUE;
+		private int maxIteration = Integer.MAX_VALUE;
+		private int minGenomeSize = Integer.MIN_VALUE;
+		private int maxGenomeSize = Integer.MAX_VALUE;
+		private boolean filterSpecies;
+		private long speciesID;
+		private boolean filterParent;
+		private long parentID;
+		private final List<String> objectiveNames = new ArrayList<>();
+		private final List<double[]> objectiveRanges = new ArrayList<>();
+
+		/**
+		 * Only match records for individuals evaluated in the given range of iterations (inclusive).
+		 */
+		public Query iterations(int min, int max) {
+			minIteration = min;
+			maxIteration = max;
+			return this;
+		}
+
+		/**
+		 * Only match records for genotypes with a size (number of alleles) in the given range (inclusive).
+		 */
+		public Query genomeSize(int min, int max) {
+			minGenomeSize = min;
+			maxGenomeSize = max;
+			return this;
+		}
+
+		/**
+		 * Only match records for individuals belonging to the species with the given ID.
+		 */
+		public Query species(long id) {
+			filterSpecies = true;
+			speciesID = id;
+			return this;
+		}
+
+		/**
+		 * Only match records for genotypes with the given parent (the children of the given genotype).
+		 */
+		public Query parent(long id) {
+			filterParent = true;
+			parentID = id;
+			return this;
+		}
+
+		/**
+		 * Only match records whose result for the named objective is in the given range (inclusive). Records with a
+		 * missing (NaN) result do not match.
+		 */
+		public Query objective(String name, double min, double max) {
+			objectiveNames.add(name);
+			objectiveRanges.add(new double[] { min, max });
+			return this;
+		}
+
+		int[] getObjectiveIndices(EvaluationLog log) {
+			int[] indices = new int[objectiveNames.size()];
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = log.getObjectiveIndex(objectiveNames.get(i));
+			}
+			return indices;
+		}
+
+		boolean matches(EvaluationLog log, int[] objectiveIndices, ByteBuffer segment, int offset) {
+			int iteration = segment.getInt(offset + ITERATION_OFFSET);
+			if (iteration < minIteration || iteration > maxIteration) {
+				return false;
+			}
+			int genomeSize = segment.getInt(offset + GENOME_SIZE_OFFSET);
+			if (genomeSize < minGenomeSize || genomeSize > maxGenomeSize) {
+				return false;
+			}
+			if (filterSpecies && segment.getLong(offset + SPECIES_OFFSET) != speciesID) {
+				return false;
+			}
+			if (filterParent) {
+				boolean found = false;
+				for (int p = 0; p < log.parentCount && !found; p++) {
+					found = segment.getLong(offset + PARENTS_OFFSET + p * 8) == parentID;
+				}
+				if (!found) {
+					return false;
+				}
+			}
+			int objectivesOffset = offset + PARENTS_OFFSET + log.parentCount * 8;
+			for (int i = 0; i < objectiveIndices.length; i++) {
+				double value = segment.getDouble(objectivesOffset + objectiveIndices[i] * 8);
+				double[] range = objectiveRanges.get(i);
+				// Comparisons with NaN are false.
+				if (!(value >= range[0] && value <= range[1])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Appends records to a log in a directory. The segment files are created as needed.
+	 */
+	public static class Writer implements Closeable {
+		private final Path directory;
+		private final List<EvaluationDescription> objectives;
+		private final int parentCount;
+		private final long segmentSize;
+		private final int recordSize;
+		private final byte[] header;
+
+		private int segmentIndex;
+		private MappedByteBuffer segment;
+		private long segmentCapacity;
+		private long segmentCount;
+
+		/**
+		 * Create a Writer for a new log.
+		 *
+		 * @param directory The directory to write the segment files to.
+		 * @param objectives The fitness and performance objectives to record the results of.
+		 * @param parentCount The maximum number of parent IDs to record. Further parents are ignored.
+		 * @param segmentSize The size of each segment file, in bytes.
+		 *
+		 * @throws IllegalArgumentException If the segment size is too small to hold at least one record.
+		 */
+		public Writer(Path directory, List<EvaluationDescription> objectives, int parentCount, long segmentSize) {
+			this.directory = directory;
+			this.objectives = new ArrayList<>(objectives);
+			this.parentCount = parentCount;
+			this.segmentSize = segmentSize;
+			recordSize = PARENTS_OFFSET + parentCount * 8 + objectives.size() * 8;
+
+			List<byte[]> names = new ArrayList<>();
+			int namesSize = 0;
+			for (EvaluationDescription desc : objectives) {
+				byte[] name = desc.name.getBytes(StandardCharsets.UTF_8);
+				names.add(name);
+				namesSize += 3 + name.length;
+			}
+			// Align the records to 8 bytes.
+			int dataOffset = (COUNT_OFFSET + 8 + 16 + namesSize + 7) & ~7;
+			ByteBuffer h = ByteBuffer.allocate(dataOffset);
+			h.putInt(MAGIC).putInt(VERSION).putLong(0).putInt(dataOffset).putInt(recordSize).putInt(parentCount).putInt(objectives.size());
+			for (int o = 0; o < objectives.size(); o++) {
+				h.put((byte) (objectives.get(o).isPerformanceIndicator ? 1 : 0)).putShort((short) names.get(o).length).put(names.get(o));
+			}
+			header = h.array();
+
+			if (segmentSize < dataOffset + recordSize) {
+				throw new IllegalArgumentException("The evaluation log segment size must be at least " + (dataOffset + recordSize) + " bytes.");
+			}
+			segmentIndex = -1;
+		}
+
+		/**
+		 * Returns the fitness and performance objectives whose results are recorded.
+		 */
+		public List<EvaluationDescription> getObjectives() {
+			return Collections.unmodifiableList(objectives);
+		}
+
+		/**
+		 * Append a record.
+		 *
+		 * @param id The ID of the genotype.
+		 * @param parents The IDs of the parent genotypes.
+		 * @param speciesID The ID of the species the individual belongs to, or -1 if it does not belong to one.
+		 * @param iteration The iteration in which the individual was evaluated.
+		 * @param genomeSize The number of alleles in the genotype.
+		 * @param results The results for each objective given by {@link #getObjectives()}, NaN for missing results.
+		 *
+		 * @throws IOException If a new segment file could not be created.
+		 */
+		public void append(long id, long[] parents, long speciesID, int iteration, int genomeSize, double[] results) throws IOException {
+			if (segment == null || segmentCount == segmentCapacity) {
+				newSegment();
+			}
+			int offset = header.length + (int) (segmentCount * recordSize);
+			segment.putLong(offset + ID_OFFSET, id);
+			segment.putLong(offset + SPECIES_OFFSET, speciesID);
+			segment.putInt(offset + ITERATION_OFFSET, iteration);
+			segment.putInt(offset + GENOME_SIZE_OFFSET, genomeSize);
+			for (int p = 0; p < parentCount; p++) {
+				segment.putLong(offset + PARENTS_OFFSET + p * 8, p < parents.length ? parents[p] : -1);
+			}
+			int resultsOffset = offset + PARENTS_OFFSET + parentCount * 8;
+			for (int o = 0; o < objectives.size(); o++) {
+				segment.putDouble(resultsOffset + o * 8, results[o]);
+			}
+			// Publish the record by updating the count last.
+			segmentCount++;
+			segment.putLong(COUNT_OFFSET, segmentCount);
+		}
+
+		private void newSegment() throws IOException {
+			flush();
+			segmentIndex++;
+			long size = Math.min(segmentSize, Integer.MAX_VALUE);
+			segmentCapacity = (size - header.length) / recordSize;
+			size = header.length + segmentCapacity * recordSize;
+			Path file = directory.resolve(String.format("evaluations-%05d.bin", segmentIndex));
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+			segment.put(header);
+			segmentCount = 0;
+		}
+
+		/**
+		 * Force the records written so far to the storage device.
+		 */
+		public void flush() {
+			if (segment != null) {
+				segment.force();
+			}
+		}
+
+		/**
+		 * Flush the log. No further records should be appended.
+		 */
+		@Override
+		public void close() {
+			flush();
+			segment = null;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.ojcoleman.europa.monitor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ojcoleman.europa.configurable.ComponentBase;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.Observable;
+import com.ojcoleman.europa.configurable.Parameter;
+import com.ojcoleman.europa.core.EvaluationDescription;
+import com.ojcoleman.europa.core.Evaluator;
+import com.ojcoleman.europa.core.Genotype;
+import com.ojcoleman.europa.core.Individual;
+import com.ojcoleman.europa.core.Monitor;
+import com.ojcoleman.europa.core.Population;
+import com.ojcoleman.europa.core.Run;
+
+/**
+ * Implementation of {@link Monitor} that appends a binary record for every evaluated individual to an
+ * {@link EvaluationLog} in the output directory, for analysis of the whole run (including its genealogy) after or
+ * during the run. See {@link EvaluationLog} for the format and the API for reading the log.
+ *
+ * @author O. J. Coleman
+ */
+public class EvaluationLogMonitor extends Monitor {
+	private final Logger logger = LoggerFactory.getLogger(EvaluationLogMonitor.class);
+
+	@Parameter(description = "The maximum number of parent IDs to record for each individual.", defaultValue = "2", minimumValue = "0")
+	protected int parentCount;
+
+	@Parameter(description = "The size of each log segment file, in megabytes.", defaultValue = "64", minimumValue = "1")
+	protected int segmentSize;
+
+	private Run run;
+
+	// The individuals evaluated in the current iteration, recorded once they have been assigned to species.
+	private transient List<Individual<?, ?>> pending;
+	private transient int pendingIteration;
+
+	// Mark as transient so XStream does not store it. A new log is started in the new output directory when resuming
+	// from a snapshot.
+	private transient EvaluationLog.Writer writer;
+
+	private long lastRecordedID = -1;
+
+	public EvaluationLogMonitor(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
+		super(parentComponent, componentConfig);
+
+		run = this.getParentComponent(Run.class);
+	}
+
+	@Override
+	public void eventOccurred(Observable observed, Object event, Object state) {
+		if (event == Population.Event.PopulationEvaluated) {
+			// Genotype IDs increase over the run, so the individuals evaluated in this iteration are those with an ID
+			// greater than any recorded so far (surviving individuals are not re-evaluated).
+			pending = new ArrayList<>();
+			pendingIteration = run.getCurrentIteration();
+			long maxID = lastRecordedID;
+			for (Individual<?, ?> individual : run.getPopulation().getMembers()) {
+				if (individual.genotype.id > lastRecordedID && individual.isEvaluated()) {
+					pending.add(individual);
+					maxID = Math.max(maxID, individual.genotype.id);
+				}
+			}
+			lastRecordedID = maxID;
+		} else if (event == Population.Event.PopulationSpeciated || event == Run.Event.IterationComplete) {
+			// The population is not speciated in the last iteration, so record any remaining individuals at the end of
+			// the iteration.
+			record();
+
+			if (event == Run.Event.IterationComplete && run.isStopping() && writer != null) {
+				writer.flush();
+			}
+		} else if (event == Run.Event.Finished) {
+			// The run may finish by reaching the maximum number of iterations, without stopping.
+			record();
+			if (writer != null) {
+				writer.close();
+				writer = null;
+			}
+		}
+	}
+
+	private void record() {
+		if (pending == null || pending.isEmpty()) {
+			return;
+		}
+
+		try {
+			if (writer == null) {
+				List<EvaluationDescription> objectives = new ArrayList<>();
+				for (Evaluator evaluator : run.getEvaluators()) {
+					objectives.addAll(evaluator.getEvaluationDescriptions());
+				}
+				writer = new EvaluationLog.Writer(run.getOutputDirectory(), objectives, parentCount, segmentSize * 1024L * 1024L);
+			}
+
+			List<EvaluationDescription> objectives = writer.getObjectives();
+			double[] results = new double[objectives.size()];
+			for (Individual<?, ?> individual : pending) {
+				Genotype<?> genotype = individual.genotype;
+				long[] parents = new long[Math.min(parentCount, genotype.parents.size())];
+				for (int p = 0; p < parents.length; p++) {
+					parents[p] = genotype.parents.get(p).id;
+				}
+
+				Map<EvaluationDescription, Double> evaluationResults = individual.evaluationData.getResults();
+				for (int o = 0; o < results.length; o++) {
+					Double result = evaluationResults.get(objectives.get(o));
+					results[o] = result == null ? Double.NaN : result;
+				}
+
+				writer.append(genotype.id, parents, individual.hasSpecies() ? individual.getSpecies().id : -1, pendingIteration, genotype.getAlleles().size(), results);
+			}
+		} catch (IOException e) {
+			logger.error("Could not write to the evaluation log.", e);
+		}
+		pending = null;
+	}
+}
@@ -1,8 +1,5 @@
 package com.ojcoleman.europa.monitor;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.HashSet;
 import java.util.Map;
@@ -22,6 +19,7 @@ import com.ojcoleman.europa.configurable.Observable;
 import com.ojcoleman.europa.configurable.Observer;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.core.Monitor;
+import com.ojcoleman.europa.core.OutputService;
 import com.ojcoleman.europa.core.Run;
 import com.ojcoleman.europa.util.Stringer;
 
@@ -42,8 +40,8 @@ public abstract class FileOrCLIMonitor extends Monitor {
 	protected String printToFile;
 
 	private String previousFileName;
-	// Mark as transient so XStream does not store it. See readResolve().
-	private transient FileWriter outputFile;
+	// Whether printToFile contains any tokens. Mark as transient so XStream does not store it.
+	private transient Boolean fileNameHasTokens;
 	private Run run;
 
 	public FileOrCLIMonitor(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
@@ -68,37 +66,35 @@ public abstract class FileOrCLIMonitor extends Monitor {
 	 * @see Observer#eventOccurred(Observable, Object, Object)
 	 */
 	protected void write(Observable observed, Object event, Object state, CharSequence s) {
-		if (printToFile != null) {
-			try {
-				String eventName = event.getClass().isEnum() ? event.toString() : "";
-				String newFileName = printToFile.replace("%itr", "" + run.getCurrentIteration()).replace("%observed", observed.getClass().getSimpleName()).replace("%event", eventName);
-				File file = run.getOutputDirectory().resolve(newFileName).toFile();
-				
-				if (previousFileName == null || !previousFileName.equals(newFileName)) {
-					if (outputFile != null) {
-						outputFile.close();
-					}
+		write(observed, event, run.getCurrentIteration(), s);
+	}
 
-					outputFile = new FileWriter(file);
+	/**
+	 * Write the given CharSequence as a new line (for example a String) to the console and/or file according to the
+	 * settings. Asynchronous monitors should use this method, giving the iteration captured when the event was fired,
+	 * as the Run may have moved on to a later iteration by the time the event is handled.
+	 * 
+	 * @param observed The subject (the object being observed). Provided for context, may be ignored.
+	 * @param event An object indicating the type of change or event. Provided for context, may be ignored.
+	 * @param iteration The iteration the event was fired in, used for the %itr token in the file name.
+	 * @param s The character sequence to write.
+	 */
+	protected void write(Observable observed, Object event, int iteration, CharSequence s) {
+		if (printToFile != null) {
+			String newFileName = getFileName(observed, event, iteration);
+			OutputService output = run.getOutputService();
 
-					previousFileName = newFileName;
-				}
-				
-				// If we get here and outputFile is null then it means we're resuming from a snapshot save file.
-				// We reopen the file here rather than in a readObject() method because we need to access 
-				// run.getOutputDirectory() but the run object is not fully initialised when readObject() is called 
-				// on this object.
-				if (outputFile == null) {
-					// (Re)open output file.
-					outputFile = new FileWriter(file, file.exists());
+			if (!newFileName.equals(previousFileName)) {
+				if (previousFileName != null) {
+					output.close(run.getOutputDirectory().resolve(previousFileName));
 				}
-
-				outputFile.append(s);
-				outputFile.append("\n");
-				outputFile.flush();
-			} catch (IOException e) {
-				e.printStackTrace();
+				// Start a new file, replacing any existing file with the same name. When resuming from a snapshot the
+				// file name is unchanged, so output is appended to the existing file.
+				output.truncate(run.getOutputDirectory().resolve(newFileName));
+				previousFileName = newFileName;
 			}
+
+			output.writeLine(run.getOutputDirectory().resolve(newFileName), s);
 		}
 		if (printToConsole) {
 			if (!name.equals("")) {
@@ -107,4 +103,15 @@ public abstract class FileOrCLIMonitor extends Monitor {
 			System.out.println(s);
 		}
 	}
+
+	private String getFileName(Observable observed, Object event, int iteration) {
+		if (fileNameHasTokens == null) {
+			fileNameHasTokens = printToFile.contains("%itr") || printToFile.contains("%observed") || printToFile.contains("%event");
+		}
+		if (!fileNameHasTokens) {
+			return printToFile;
+		}
+		String eventName = event.getClass().isEnum() ? event.toString() : "";
+		return printToFile.replace("%itr", "" + iteration).replace("%observed", observed.getClass().getSimpleName()).replace("%event", eventName);
+	}
 }
@@ -1,46 +1,48 @@
 package com.ojcoleman.europa.monitor;
 
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Formatter;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Locale.Category;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
-
-import com.google.common.collect.Multimap;
-import com.google.common.collect.TreeMultimap;
-import com.ojcoleman.europa.algos.neat.NEATSynapseAllele;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.ojcoleman.europa.configurable.ComponentBase;
-import com.ojcoleman.europa.configurable.ComponentStateLog;
+import com.ojcoleman.europa.configurable.ConfigurableBase;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Observable;
 import com.ojcoleman.europa.configurable.Parameter;
-import com.ojcoleman.europa.core.Allele;
 import com.ojcoleman.europa.core.EvaluationDescription;
 import com.ojcoleman.europa.core.Evaluator;
 import com.ojcoleman.europa.core.Function;
+import com.ojcoleman.europa.core.Genotype;
 import com.ojcoleman.europa.core.Individual;
 import com.ojcoleman.europa.core.Log;
 import com.ojcoleman.europa.core.Monitor;
+import com.ojcoleman.europa.core.OutputService;
 import com.ojcoleman.europa.core.Run;
-import com.ojcoleman.europa.transcribers.nn.NNPart;
-import com.ojcoleman.europa.util.ArrayUtil;
 import com.ojcoleman.europa.util.Stringer;
 
 /**
- * 
- * Implementation of {@link Monitor} that records information about the fittest individual.
- * 
+ *
+ * Implementation of {@link Monitor} that records information about the fittest individual: its genotype, the function
+ * transcribed from it, the evaluation results it was given and the logs produced by re-evaluating it with logging
+ * enabled. When an iteration completes the individual's genotype (which does not change once in the population),
+ * results and rank are captured, and everything else is done on a background thread: the genotype is transcribed into
+ * a new function and evaluated into a separate individual, so the population is not touched, and no IDs are taken from
+ * the Run (see {@link ConfigurableBase#runWithoutIDs(Runnable)}). If the background thread falls behind then only the
+ * most recent pending individual for each kind of log (fittest, best performing) is logged.
+ *
  * @author O. J. Coleman
  */
 public class FittestMonitor extends Monitor {
+	private final Logger logger = LoggerFactory.getLogger(FittestMonitor.class);
+
 	@Parameter(description = "How many iterations between logging the fittest.", defaultValue = "1")
 	protected int period;
 
@@ -50,8 +52,16 @@ public class FittestMonitor extends Monitor {
 	@Parameter(description = "Whether to log the best performing individual (defined by first Evaluator to define a performance metric).", defaultValue = "true")
 	protected boolean logBestPerforming;
 
+	@Parameter(description = "The maximum number of individuals waiting to be logged. If the queue is full the oldest is discarded.", defaultValue = "4", minimumValue = "1")
+	protected int queueSize;
+
 	private Run run;
 
+	// Mark as transient so XStream does not store them. Created lazily.
+	private transient ThreadPoolExecutor executor;
+	// The most recently queued task for each label, used to skip tasks superseded by a newer one.
+	private transient Map<String, LogTask> latestTasks;
+
 	public FittestMonitor(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
 
@@ -67,30 +77,118 @@ public class FittestMonitor extends Monitor {
 			if (logBestPerforming) {
 				Individual<?, ?> bestPerforming = run.getPopulation().getBestPerforming();
 				if (bestPerforming != null) {
-					log(run.getPopulation().getBestPerforming(), "best_performing");
+					log(bestPerforming, "best_performing");
 				}
 			}
+		} else if (event == Run.Event.Finished) {
+			finish();
 		}
 	}
 
+	/**
+	 * Queue the given individual to be logged on the background thread. The genotype of the individual is referenced
+	 * and its evaluation results are copied, the individual is not modified.
+	 */
 	protected void log(Individual<?, ?> ind, String label) {
-		try {
-			FileWriter outputFile = new FileWriter(run.getOutputDirectory().resolve(label + "-" + run.getCurrentIteration() + "-" + ind.id + "-genotype.log").toFile());
-			outputFile.append(Stringer.toString(ind.genotype, 20));
-			outputFile.close();
+		LogTask task = new LogTask(ind, label, run.getCurrentIteration());
+		synchronized (this) {
+			if (executor == null) {
+				latestTasks = new ConcurrentHashMap<>();
+				// queueSize is 0 if restored from a snapshot made before it was added.
+				executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "FittestMonitor");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.DiscardOldestPolicy());
+			}
+		}
+		latestTasks.put(label, task);
+		executor.execute(task);
+	}
+
+	// Wait for pending logging to complete.
+	private synchronized void finish() {
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			executor = null;
+		}
+	}
+
+	// Replace the contents of the given file with the given text.
+	private static void write(OutputService output, Path file, CharSequence text) {
+		output.truncate(file);
+		output.write(file, text);
+		output.close(file);
+	}
 
-			// Transcribe a function from the genotype.
-			Function<?, ?> function = run.getTranscriber().transcribeGeneric(ind.genotype, null);
+	private class LogTask implements Runnable {
+		final Individual<?, ?> prototype;
+		final Genotype<?> genotype;
+		final Map<EvaluationDescription, Double> results;
+		final double rank;
+		final String label;
+		final int iteration;
+
+		LogTask(Individual<?, ?> ind, String label, int iteration) {
+			prototype = ind;
+			genotype = ind.genotype;
+			results = new LinkedHashMap<>(ind.evaluationData.getResults());
+			rank = ind.getRank();
+			this.label = label;
+			this.iteration = iteration;
+		}
+
+		@Override
+		public void run() {
+			// Skip this task if a more recent individual with the same label has been queued.
+			if (latestTasks.get(label) != this) {
+				return;
+			}
+
+			try {
+				ConfigurableBase.runWithoutIDs(new Runnable() {
+					@Override
+					public void run() {
+						log();
+					}
+				});
+			} catch (RuntimeException e) {
+				logger.error("Error logging " + label + " individual.", e);
+			}
+		}
+
+		private void log() {
+			String prefix = label + "-" + iteration + "-" + genotype.id;
+			Path outputDirectory = run.getOutputDirectory();
+			OutputService output = run.getOutputService();
+
+			write(output, outputDirectory.resolve(prefix + "-genotype.log"), Stringer.toString(genotype, 20));
+
+			StringBuilder resultsLog = new StringBuilder();
+			for (Map.Entry<EvaluationDescription, Double> result : results.entrySet()) {
+				EvaluationDescription desc = result.getKey();
+				resultsLog.append(desc.evaluator.getName()).append(" ").append(desc.name).append(desc.isPerformanceIndicator ? " (performance)" : " (fitness)").append(": ").append(result.getValue()).append("\n");
+			}
+			resultsLog.append("rank: ").append(rank).append("\n");
+			write(output, outputDirectory.resolve(prefix + "-evaluation.log"), resultsLog);
+
+			// Transcribe a new function from the genotype, and evaluate it via a separate individual so that the
+			// evaluation results of the individual in the population are not changed.
+			Individual<?, ?> ind = prototype.newInstance(genotype);
+			Function<?, ?> function = run.getTranscriber().transcribeGeneric(genotype, null);
 			ind.setFunction(function);
 
-			outputFile = new FileWriter(run.getOutputDirectory().resolve(label + "-" + run.getCurrentIteration() + "-" + ind.id + "-function.log").toFile());
-			outputFile.append(Stringer.toString(function, 20));
-			outputFile.close();
-			
-			//System.out.println("log 1 : " + ind.id + " : " + Stringer.toString(ind.evaluationData));
+			write(output, outputDirectory.resolve(prefix + "-function.log"), Stringer.toString(function, 20));
 
-			ind.evaluationData.clear();
-			
 			int evalIndex = 0;
 			for (Evaluator evaluator : run.getEvaluators()) {
 				// Allow for thread cancellation.
@@ -103,18 +201,10 @@ public class FittestMonitor extends Monitor {
 				evaluator.evaluate(ind, log);
 
 				if (log.hasItem("string")) {
-					outputFile = new FileWriter(run.getOutputDirectory().resolve(label + "-" + run.getCurrentIteration() + "-" + ind.id + "-evaluation-" + evalIndex + "-" + evaluator.getName() + ".log").toFile());
-					outputFile.append(Stringer.toString(log.getLog("string"), 20));
-					outputFile.close();
+					write(output, outputDirectory.resolve(prefix + "-evaluation-" + evalIndex + "-" + evaluator.getName() + ".log"), Stringer.toString(log.getLog("string"), 20));
 				}
 				evalIndex++;
 			}
-			
-			//System.out.println("log 2 " + ind.id + " : " + Stringer.toString(ind.evaluationData));
-
-
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
 	}
 }
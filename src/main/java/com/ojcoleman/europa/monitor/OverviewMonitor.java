@@ -63,14 +63,40 @@ public class OverviewMonitor extends FileOrCLIMonitor {
 		run = this.getParentComponent(Run.class);
 	}
 
+	@Override
+	protected boolean supportsAsynchronous() {
+		return true;
+	}
+
+	/**
+	 * Captures the current iteration and, if a line is to be printed for the event, the state data of the Run
+	 * (consisting of immutable {@link ComponentStateLog}s), so that the line can be formatted on another thread.
+	 */
+	@Override
+	public Object snapshotState(Observable observed, Object event, Object state) {
+		return capture(event);
+	}
+
+	private Captured capture(Object event) {
+		int iteration = run.getCurrentIteration();
+		Multimap<String, ComponentStateLog> stateData = null;
+		if (event == Run.Event.IterationComplete && iteration % period == 0) {
+			stateData = run.getAllStateData();
+		}
+		return new Captured(iteration, stateData);
+	}
+
 	@Override
 	public void eventOccurred(Observable observed, Object event, Object state) {
+		Captured captured = state instanceof Captured ? (Captured) state : capture(event);
+		int iteration = captured.iteration;
+
 		if (event == Run.Event.SnapshotResume) {
-			write(observed, event, state, "================= Resuming from snapshot =================");
+			write(observed, event, iteration, "================= Resuming from snapshot =================");
 		}
 		
-		if (event == Run.Event.IterationComplete && run.getCurrentIteration() % period == 0) {
-			Multimap<String, ComponentStateLog> stateData = this.getParentComponent(Run.class).getAllStateData();
+		if (captured.stateData != null) {
+			Multimap<String, ComponentStateLog> stateData = captured.stateData;
 
 			// Collate all the logs, organised by category, sub-category and label.
 			// Detect if any new logs have been added or old logs removed or changed widths.
@@ -141,9 +167,9 @@ public class OverviewMonitor extends FileOrCLIMonitor {
 					labelHeader = labelSB.toString();
 				}
 
-				write(observed, event, state, categoryHeader);
-				write(observed, event, state, subCategoryHeader);
-				write(observed, event, state, labelHeader);
+				write(observed, event, iteration, categoryHeader);
+				write(observed, event, iteration, subCategoryHeader);
+				write(observed, event, iteration, labelHeader);
 				linesSinceLastHeader = 0;
 			}
 
@@ -159,7 +185,19 @@ public class OverviewMonitor extends FileOrCLIMonitor {
 			StringBuilder valueSB = new StringBuilder();
 			Formatter valueF = new Formatter(valueSB);
 			valueF.format(stateValuesFormat, values.toArray());
-			write(observed, event, state, valueSB);
+			write(observed, event, iteration, valueSB);
+		}
+	}
+
+	// The iteration and state data of the Run when an event was fired.
+	private static class Captured {
+		final int iteration;
+		// Null if no line is to be printed for the event.
+		final Multimap<String, ComponentStateLog> stateData;
+
+		Captured(int iteration, Multimap<String, ComponentStateLog> stateData) {
+			this.iteration = iteration;
+			this.stateData = stateData;
 		}
 	}
 
@@ -57,11 +57,18 @@ public abstract class SelectiveMonitor extends FileOrCLIMonitor {
 
 	@Override
 	public void eventOccurred(Observable observed, Object event, Object state) {
-		if (run.getCurrentIteration() % iterationPeriod == 0 && (listenTo == null || listenTo.isAssignableFrom(observed.getClass())) && (logEventsSet.isEmpty() || logEventsSet.contains(event.toString().toLowerCase()))) {
+		if (isSelected(observed, event, run.getCurrentIteration())) {
 			log(observed, event, state);
 		}
 	}
 
+	/**
+	 * Returns true iff the given event, fired in the given iteration, should be logged according to the settings.
+	 */
+	protected boolean isSelected(Observable observed, Object event, int iteration) {
+		return iteration % iterationPeriod == 0 && (listenTo == null || listenTo.isAssignableFrom(observed.getClass())) && (logEventsSet.isEmpty() || logEventsSet.contains(event.toString().toLowerCase()));
+	}
+
 	/**
 	 * Called when an event has been selected to be logged.
 	 * 
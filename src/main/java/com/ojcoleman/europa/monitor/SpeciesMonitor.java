@@ -1,7 +1,5 @@
 package com.ojcoleman.europa.monitor;
 
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.HashMap;
@@ -53,36 +51,51 @@ public class SpeciesMonitor extends Monitor {
 		run = this.getParentComponent(Run.class);
 	}
 
+	@Override
+	protected boolean supportsAsynchronous() {
+		return true;
+	}
+
+	/**
+	 * Captures the current size of each species when the population has been speciated.
+	 */
+	@Override
+	public Object snapshotState(Observable observed, Object event, Object state) {
+		return event == Population.Event.PopulationSpeciated ? new CurrentSizes() : null;
+	}
+
 	@Override
 	public void eventOccurred(Observable observed, Object event, Object state) {
 		if (event == Population.Event.PopulationSpeciated) {
-			try {
-				StringBuilder out = new StringBuilder();
-				
-				// Reset all sizes.
-				for (Map.Entry<Long, Integer> ss : speciesSizes.entrySet()) {
-					ss.setValue(0);
-				}
-				
-				// Update/add sizes for current species.
-				for (Species<?> s : run.getPopulation().getSpecies()) {
-					speciesSizes.put(s.id, s.size());
-				}
-				
-				// Print sizes.
-				boolean first = true;
-				for (Integer ss : speciesSizes.values()) {
-					out.append((first ? "" : ", ") + ss);
-					first = false;
-				}
-				
-				out.append("\n");
-				
-				FileWriter outputFile = new FileWriter(run.getOutputDirectory().resolve("species-size.log").toFile(), true);
-				outputFile.append(out);
-				outputFile.close();
-			} catch (IOException e) {
-				e.printStackTrace();
+			CurrentSizes currentSizes = state instanceof CurrentSizes ? (CurrentSizes) state : new CurrentSizes();
+			StringBuilder out = new StringBuilder();
+			
+			// Reset all sizes.
+			for (Map.Entry<Long, Integer> ss : speciesSizes.entrySet()) {
+				ss.setValue(0);
+			}
+			
+			// Update/add sizes for current species.
+			speciesSizes.putAll(currentSizes.sizes);
+			
+			// Print sizes.
+			boolean first = true;
+			for (Integer ss : speciesSizes.values()) {
+				out.append(first ? "" : ", ").append(ss);
+				first = false;
+			}
+			
+			run.getOutputService().writeLine(run.getOutputDirectory().resolve("species-size.log"), out);
+		}
+	}
+
+	// The sizes of the species in the population when it was speciated.
+	private class CurrentSizes {
+		final Map<Long, Integer> sizes = new HashMap<>();
+
+		CurrentSizes() {
+			for (Species<?> s : run.getPopulation().getSpecies()) {
+				sizes.put(s.id, s.size());
 			}
 		}
 	}
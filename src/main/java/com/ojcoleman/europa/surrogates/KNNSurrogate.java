@@ -0,0 +1,146 @@
+package com.ojcoleman.europa.surrogates;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ojcoleman.europa.algos.neat.NEATGenotype;
+import com.ojcoleman.europa.algos.neat.NEATSpeciator;
+import com.ojcoleman.europa.algos.vector.VectorAllele;
+import com.ojcoleman.europa.configurable.ComponentBase;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.Parameter;
+import com.ojcoleman.europa.core.Allele;
+import com.ojcoleman.europa.core.Genotype;
+import com.ojcoleman.europa.core.Run;
+import com.ojcoleman.europa.core.Surrogate;
+
+/**
+ * <p>
+ * A {@link Surrogate} that predicts the fitness of a genotype as the distance-weighted average fitness of the
+ * {@link #k} most similar genotypes in a bounded set of recently evaluated genotypes.
+ * </p>
+ * <p>
+ * If the Population uses a {@link NEATSpeciator} then its compatibility distance is used. Otherwise the distance is
+ * calculated by matching alleles by gene: matching {@link VectorAllele}s contribute their normalised difference and
+ * alleles whose gene is present in only one genotype contribute 1; the sum is divided by the size of the larger
+ * genotype.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class KNNSurrogate<G extends Genotype<?>> extends Surrogate<G> {
+	@Parameter(description = "The number of nearest neighbours to average over.", defaultValue = "5", minimumValue = "1")
+	protected int k;
+
+	@Parameter(description = "The maximum number of training samples to retain. The oldest samples are discarded first.", defaultValue = "500", minimumValue = "1")
+	protected int maximumTrainingSize;
+
+	private final ArrayDeque<Sample<G>> samples = new ArrayDeque<>();
+	private final Set<Long> sampleIDs = new HashSet<>();
+
+	private final Run run;
+
+	/**
+	 * Constructor for {@link ComponentBase}.
+	 */
+	public KNNSurrogate(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
+		super(parentComponent, componentConfig);
+		run = this.getParentComponent(Run.class);
+	}
+
+	@Override
+	protected double estimate(G genotype) {
+		double[] nearestDistance = new double[k];
+		double[] nearestFitness = new double[k];
+		int count = 0;
+		for (Sample<G> sample : samples) {
+			double d = distance(genotype, sample.genotype);
+			if (count < k || d < nearestDistance[count - 1]) {
+				// Insertion into the sorted nearest arrays.
+				int i = count < k ? count++ : count - 1;
+				while (i > 0 && nearestDistance[i - 1] > d) {
+					nearestDistance[i] = nearestDistance[i - 1];
+					nearestFitness[i] = nearestFitness[i - 1];
+					i--;
+				}
+				nearestDistance[i] = d;
+				nearestFitness[i] = sample.fitness;
+			}
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		double weightSum = 0, fitnessSum = 0;
+		for (int i = 0; i < count; i++) {
+			double weight = 1 / (nearestDistance[i] + 1e-6);
+			weightSum += weight;
+			fitnessSum += weight * nearestFitness[i];
+		}
+		return fitnessSum / weightSum;
+	}
+
+	@Override
+	protected void train(List<G> genotypes, double[] fitness) {
+		for (int i = 0; i < genotypes.size(); i++) {
+			// Elites may be present in several iterations.
+			if (sampleIDs.add(genotypes.get(i).id)) {
+				samples.addLast(new Sample<G>(genotypes.get(i), fitness[i]));
+			}
+		}
+		while (samples.size() > maximumTrainingSize) {
+			sampleIDs.remove(samples.removeFirst().genotype.id);
+		}
+	}
+
+	@Override
+	public int getTrainingSize() {
+		return samples.size();
+	}
+
+	/**
+	 * Returns the distance between the given genotypes.
+	 */
+	protected double distance(G g1, G g2) {
+		Object speciator = run.getPopulation().getSpeciator();
+		if (speciator instanceof NEATSpeciator && g1 instanceof NEATGenotype) {
+			return ((NEATSpeciator<?, ?>) speciator).getDistance((NEATGenotype) g1, (NEATGenotype) g2);
+		}
+
+		Map<Long, Allele<?>> g2Alleles = new HashMap<>();
+		for (Allele<?> allele : g2.getAlleles()) {
+			g2Alleles.put(allele.gene.id, allele);
+		}
+		double distance = 0;
+		int matched = 0;
+		for (Allele<?> a1 : g1.getAlleles()) {
+			Allele<?> a2 = g2Alleles.get(a1.gene.id);
+			if (a2 == null) {
+				distance += 1;
+			} else {
+				matched++;
+				if (a1 instanceof VectorAllele && a2 instanceof VectorAllele) {
+					distance += ((VectorAllele<?>) a1).difference((VectorAllele<?>) a2, true);
+				}
+			}
+		}
+		distance += g2Alleles.size() - matched;
+		int size = Math.max(g1.getAlleles().size(), g2Alleles.size());
+		return size == 0 ? 0 : distance / size;
+	}
+
+	private static class Sample<G> {
+		final G genotype;
+		final double fitness;
+
+		Sample(G genotype, double fitness) {
+			this.genotype = genotype;
+			this.fitness = fitness;
+		}
+	}
+}
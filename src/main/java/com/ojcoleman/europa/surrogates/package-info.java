@@ -0,0 +1,4 @@
+/**
+ * Contains various implementations of {@link com.ojcoleman.europa.core.Surrogate}.
+ */
+package com.ojcoleman.europa.surrogates;
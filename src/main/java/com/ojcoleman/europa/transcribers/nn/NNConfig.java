@@ -4,6 +4,7 @@ import com.ojcoleman.europa.configurable.ConfigurableBase;
 import com.ojcoleman.europa.configurable.Configuration;
 
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.ojcoleman.europa.algos.vector.ParametrisedGeneType;
 import com.ojcoleman.europa.configurable.Configurable;
@@ -29,8 +30,30 @@ public class NNConfig<N extends ParametrisedNeuronGeneType, S extends Parametris
 	@Parameter(description = "For recurrent neural networks, the number of simulation steps to perform for each application of the input and reading of the output.", defaultValue = "5")
 	protected int simulationStepsPerStep;
 
+	@Parameter(description = "For recurrent neural networks, if greater than zero then activation is stopped early, before simulationStepsPerStep steps have been performed, when the maximum change in the output of any neuron over a step is less than this value.", defaultValue = "0", minimumValue = "0")
+	protected double convergenceTolerance;
+
+	@Parameter(description = "For recurrent neural networks, when convergenceTolerance is greater than zero, the minimum number of simulation steps to perform for each application of the input before activation may be stopped early.", defaultValue = "2", minimumValue = "1")
+	protected int convergenceMinimumSteps;
+
+	// Counts of the simulation steps performed and skipped (due to convergence) by networks using this configuration
+	// since the counts were last reset (see resetStepCounts()). Mark as transient so XStream does not store them. See readResolve().
+	private transient LongAdder stepsPerformed;
+	private transient LongAdder stepsSaved;
+
 	public NNConfig(Configuration config) throws Exception {
 		super(config);
+		initStepCounters();
+	}
+
+	private Object readResolve() {
+		initStepCounters();
+		return this;
+	}
+
+	private void initStepCounters() {
+		stepsPerformed = new LongAdder();
+		stepsSaved = new LongAdder();
 	}
 
 	/**
@@ -62,11 +85,65 @@ public class NNConfig<N extends ParametrisedNeuronGeneType, S extends Parametris
 		return simulationStepsPerStep;
 	}
 
+	/**
+	 * @return for recurrent neural networks, the tolerance for detecting that the activation of a network has converged,
+	 *         or zero if early stopping on convergence is disabled.
+	 */
+	public double getConvergenceTolerance() {
+		return convergenceTolerance;
+	}
+
+	/**
+	 * @return for recurrent neural networks, the minimum number of simulation steps to perform before activation may be
+	 *         stopped early due to convergence.
+	 */
+	public int getConvergenceMinimumSteps() {
+		return convergenceMinimumSteps;
+	}
+
+	/**
+	 * Record the number of simulation steps performed, and the number skipped due to convergence, for an application of
+	 * input to a network using this configuration. This may be called concurrently from multiple threads.
+	 */
+	public void recordSteps(int performed, int saved) {
+		stepsPerformed.add(performed);
+		if (saved > 0) {
+			stepsSaved.add(saved);
+		}
+	}
+
+	/**
+	 * Reset the counts of simulation steps performed and saved to zero, for example at the beginning of each iteration.
+	 */
+	public void resetStepCounts() {
+		stepsPerformed.reset();
+		stepsSaved.reset();
+	}
+
+	/**
+	 * @return the number of simulation steps performed by recurrent networks using this configuration, as recorded by
+	 *         {@link #recordSteps(int, int)} since {@link #resetStepCounts()} was last called.
+	 */
+	public long getStepsPerformed() {
+		return stepsPerformed.sum();
+	}
+
+	/**
+	 * @return the number of simulation steps skipped due to convergence by recurrent networks using this
+	 *         configuration, as recorded by {@link #recordSteps(int, int)} since {@link #resetStepCounts()} was last
+	 *         called.
+	 */
+	public long getStepsSaved() {
+		return stepsSaved.sum();
+	}
+
 	@Override
 	public void getStringableMap(Map<String, Object> map) {
 		map.put("neuron", neuron);
 		map.put("synapse", synapse);
 		map.put("topology", topology);
 		map.put("simulationStepsPerStep", simulationStepsPerStep);
+		map.put("convergenceTolerance", convergenceTolerance);
+		map.put("convergenceMinimumSteps", convergenceMinimumSteps);
 	}
 }
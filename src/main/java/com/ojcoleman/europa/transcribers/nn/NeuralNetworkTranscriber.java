@@ -1,12 +1,19 @@
 package com.ojcoleman.europa.transcribers.nn;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.eclipsesource.json.JsonObject;
 import com.ojcoleman.europa.algos.vector.VectorFunctionTranscriber;
 import com.ojcoleman.europa.configurable.ComponentBase;
+import com.ojcoleman.europa.configurable.ComponentStateLog;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.configurable.Component;
+import com.ojcoleman.europa.configurable.Observable;
+import com.ojcoleman.europa.configurable.Observer;
 import com.ojcoleman.europa.core.Genotype;
+import com.ojcoleman.europa.core.Run;
 
 /**
  * Base class for transcribers that generate neural networks.
@@ -16,10 +23,41 @@ import com.ojcoleman.europa.core.Genotype;
 public abstract class NeuralNetworkTranscriber<G extends Genotype<?>> extends VectorFunctionTranscriber<G> {
 	public NeuralNetworkTranscriber(ComponentBase parentComponent, Configuration componentConfig) throws Exception {
 		super(parentComponent, componentConfig);
+
+		this.getParentComponent(Run.class).addEventListener(new Observer() {
+			@Override
+			public void eventOccurred(Observable observed, Object event, Object state) {
+				if (event == Run.Event.IterationBegin) {
+					// Report the steps performed and saved in each iteration, like the other transcription stats.
+					getNeuralNetworkPrototype().getConfig().resetStepCounts();
+				}
+			}
+		});
 	}
 
 	/**
 	 * Returns the neural network prototype instance for networks produced by this transcriber.
 	 */
 	public abstract ParametrisedNeuralNetwork getNeuralNetworkPrototype();
+
+	/**
+	 * Reports the number of simulation steps performed and saved during the current iteration by recurrent networks
+	 * that stop activation early on convergence, if enabled (see {@link NNConfig#getConvergenceTolerance()}). Sub-classes overriding this method should
+	 * include the state returned by this implementation.
+	 */
+	@Override
+	public List<ComponentStateLog> getState() {
+		List<ComponentStateLog> stats = new ArrayList<>();
+
+		NNConfig<?, ?> config = getNeuralNetworkPrototype().getConfig();
+		if (config.getTopology() == Topology.RECURRENT && config.getConvergenceTolerance() > 0) {
+			long performed = config.getStepsPerformed();
+			long saved = config.getStepsSaved();
+			stats.add(new ComponentStateLog("Transcription", "Activation", "Steps performed", performed));
+			stats.add(new ComponentStateLog("Transcription", "Activation", "Steps saved", saved));
+			stats.add(new ComponentStateLog("Transcription", "Activation", "Proportion saved", performed + saved == 0 ? 0 : 100.0 * saved / (performed + saved), "%"));
+		}
+
+		return stats;
+	}
 }
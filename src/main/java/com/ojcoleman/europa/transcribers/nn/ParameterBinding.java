@@ -0,0 +1,163 @@
+package com.ojcoleman.europa.transcribers.nn;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ojcoleman.europa.algos.vector.VectorMetadata;
+
+/**
+ * <p>
+ * A compiled mapping from the labelled parameters of a neuron or synapse, as defined by the {@link VectorMetadata} of a
+ * gene and allele, to the parameter "slots" of a {@link ParametrisedNeuralNetwork} implementation. The labels are
+ * resolved once, when the binding is created, so that the parameter values for each neuron or synapse can be
+ * transferred from the gene and allele value arrays to the network without creating a Map or looking up parameters by
+ * label (see {@link ParametrisedNeuralNetwork#addNeuron(ParameterBinding, double[], double[])} and
+ * {@link ParametrisedNeuralNetwork#addSynapse(ParameterBinding, double[], double[], int, int)}).
+ * </p>
+ * <p>
+ * Parameters are indexed by their position in the gene vector followed by their position in the allele vector, in the
+ * same order as {@link com.ojcoleman.europa.algos.vector.VectorAllele#getAllValuesAsMap(Map)}. Parameters whose label
+ * does not correspond to a slot are "unbound", and are typically handled generically by the network implementation.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class ParameterBinding {
+	/**
+	 * The gene metadata this binding was created for.
+	 */
+	public final VectorMetadata geneMetadata;
+
+	/**
+	 * The allele metadata this binding was created for.
+	 */
+	public final VectorMetadata alleleMetadata;
+
+	// The label for each parameter.
+	private final String[] labels;
+
+	// For each slot, the index of the parameter bound to it, or -1.
+	private final int[] slotToParameter;
+
+	// The indices of the parameters which aren't bound to a slot.
+	private final int[] unbound;
+
+	/**
+	 * Create a new ParameterBinding.
+	 *
+	 * @param geneMetadata The metadata for the gene vectors the binding will be used with.
+	 * @param alleleMetadata The metadata for the allele vectors the binding will be used with.
+	 * @param slotLabels The parameter labels for each slot defined by the network implementation.
+	 */
+	public ParameterBinding(VectorMetadata geneMetadata, VectorMetadata alleleMetadata, List<String> slotLabels) {
+		this.geneMetadata = geneMetadata;
+		this.alleleMetadata = alleleMetadata;
+
+		labels = new String[geneMetadata.size() + alleleMetadata.size()];
+		for (int i = 0; i < geneMetadata.size(); i++) {
+			labels[i] = geneMetadata.label(i);
+		}
+		for (int i = 0; i < alleleMetadata.size(); i++) {
+			labels[geneMetadata.size() + i] = alleleMetadata.label(i);
+		}
+
+		slotToParameter = new int[slotLabels.size()];
+		for (int slot = 0; slot < slotToParameter.length; slot++) {
+			slotToParameter[slot] = -1;
+			// If a label appears in both the gene and allele the latter takes precedence, as for getAllValuesAsMap().
+			for (int p = labels.length - 1; p >= 0; p--) {
+				if (labels[p].equals(slotLabels.get(slot))) {
+					slotToParameter[slot] = p;
+					break;
+				}
+			}
+		}
+
+		// A parameter is unbound if its label isn't bound to a slot, whether from the gene or the allele.
+		int unboundCount = 0;
+		for (int p = 0; p < labels.length; p++) {
+			if (!isBound(labels[p])) {
+				unboundCount++;
+			}
+		}
+		unbound = new int[unboundCount];
+		for (int p = 0, u = 0; p < labels.length; p++) {
+			if (!isBound(labels[p])) {
+				unbound[u++] = p;
+			}
+		}
+	}
+
+	private boolean isBound(String label) {
+		for (int slot = 0; slot < slotToParameter.length; slot++) {
+			if (slotToParameter[slot] != -1 && labels[slotToParameter[slot]].equals(label)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true iff this binding was created for the given gene and allele metadata (the same instances).
+	 */
+	public boolean isFor(VectorMetadata geneMetadata, VectorMetadata alleleMetadata) {
+		return this.geneMetadata == geneMetadata && this.alleleMetadata == alleleMetadata;
+	}
+
+	/**
+	 * Returns true iff a parameter is bound to the given slot.
+	 */
+	public boolean hasSlot(int slot) {
+		return slotToParameter[slot] != -1;
+	}
+
+	/**
+	 * Returns the value of the parameter bound to the given slot.
+	 *
+	 * @param slot The slot index.
+	 * @param geneValues The gene vector values.
+	 * @param alleleValues The allele vector values.
+	 * @throws ArrayIndexOutOfBoundsException If no parameter is bound to the given slot (see {@link #hasSlot(int)}).
+	 */
+	public double getSlotValue(int slot, double[] geneValues, double[] alleleValues) {
+		return getValue(slotToParameter[slot], geneValues, alleleValues);
+	}
+
+	/**
+	 * Returns the number of parameters not bound to a slot.
+	 */
+	public int getUnboundCount() {
+		return unbound.length;
+	}
+
+	/**
+	 * Returns the label of the unbound parameter with the given index (from 0 to {@link #getUnboundCount()} - 1).
+	 */
+	public String getUnboundLabel(int index) {
+		return labels[unbound[index]];
+	}
+
+	/**
+	 * Returns the value of the unbound parameter with the given index (from 0 to {@link #getUnboundCount()} - 1).
+	 */
+	public double getUnboundValue(int index, double[] geneValues, double[] alleleValues) {
+		return getValue(unbound[index], geneValues, alleleValues);
+	}
+
+	/**
+	 * Put all the parameter values in the given map, keyed by their labels. The map is emptied first.
+	 *
+	 * @return The given map.
+	 */
+	public Map<String, Double> getAllValuesAsMap(double[] geneValues, double[] alleleValues, Map<String, Double> map) {
+		map.clear();
+		for (int p = 0; p < labels.length; p++) {
+			map.put(labels[p], getValue(p, geneValues, alleleValues));
+		}
+		return map;
+	}
+
+	private double getValue(int parameter, double[] geneValues, double[] alleleValues) {
+		return parameter < geneValues.length ? geneValues[parameter] : alleleValues[parameter - geneValues.length];
+	}
+}
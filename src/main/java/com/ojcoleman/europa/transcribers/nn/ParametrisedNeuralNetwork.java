@@ -1,12 +1,15 @@
 package com.ojcoleman.europa.transcribers.nn;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.ojcoleman.europa.functiontypes.VectorFunction;
 import com.eclipsesource.json.JsonObject;
 import com.ojcoleman.europa.algos.vector.ParametrisedGeneType;
+import com.ojcoleman.europa.algos.vector.VectorMetadata;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.PrototypeBase;
 import com.ojcoleman.europa.core.Stringable;
@@ -25,9 +28,10 @@ import com.ojcoleman.europa.core.Stringable;
  */
 public abstract class ParametrisedNeuralNetwork extends PrototypeBase implements VectorFunction, Stringable {
 	/**
-	 * The instance configuration for the neural network to be built.
+	 * The instance configuration for the neural network to be built. This may be replaced if the network is rebuilt in
+	 * place, see {@link #rebuild(NNInstanceConfig)}.
 	 */
-	public final NNInstanceConfig instanceConfig;
+	protected NNInstanceConfig instanceConfig;
 
 	/**
 	 * The neuron type configurations.
@@ -39,6 +43,9 @@ public abstract class ParametrisedNeuralNetwork extends PrototypeBase implements
 	 */
 	protected List<Map<String, Double>> synapseTypes;
 
+	// The structure this network was last built for, see setStructure(Object).
+	private Object structure;
+
 	/**
 	 * PrototypeBase constructor. See {@link com.ojcoleman.europa.configurable.PrototypeBase#PrototypeBase(Configuration)}.
 	 */
@@ -70,6 +77,145 @@ public abstract class ParametrisedNeuralNetwork extends PrototypeBase implements
 	 */
 	public abstract NNConfig<?, ?> getConfig();
 
+	/**
+	 * Returns true iff the synapse weights of networks with the configuration of this network may change during the
+	 * lifetime of a network (for example via a plasticity rule), so that a synapse with an initial weight of zero may
+	 * still influence the behaviour of the network. The default implementation returns true as this can not be
+	 * determined in general; sub-classes should override this if they can determine that weights are fixed.
+	 */
+	public boolean hasPlasticSynapses() {
+		return true;
+	}
+
+	/**
+	 * @return The instance configuration for the neural network, for example specifying the number of inputs and
+	 *         outputs.
+	 */
+	public NNInstanceConfig getInstanceConfig() {
+		return instanceConfig;
+	}
+
+	/**
+	 * <p>
+	 * Clear this neural network and prepare it to be built again, according to the given instance configuration, via
+	 * {@link #addNeuronType(Map)}, {@link #addSynapseType(Map)}, {@link #addNeuron(Map)},
+	 * {@link #addSynapse(Map, int, int)} and {@link #finishedBuilding()}. This allows a
+	 * {@link com.ojcoleman.europa.core.Transcriber} to re-use a previously built network rather than creating a new
+	 * instance for every transcription. Implementations should re-use their internal structures where the capacity of
+	 * those structures allows, and grow them otherwise.
+	 * </p>
+	 * <p>
+	 * The default implementation does not support rebuilding and returns false. Sub-classes that support it should
+	 * call {@link #resetInstance(NNInstanceConfig)}.
+	 * </p>
+	 * 
+	 * @param instConfig The instance configuration for the rebuilt neural network.
+	 * @return true iff the network was cleared and is ready to be built again, false if rebuilding in place is not
+	 *         supported (in which case a new instance should be created).
+	 */
+	public boolean rebuild(NNInstanceConfig instConfig) {
+		return false;
+	}
+
+	/**
+	 * Set the instance configuration to the given configuration and clear the neuron and synapse types. For use by
+	 * sub-classes implementing {@link #rebuild(NNInstanceConfig)}.
+	 */
+	protected void resetInstance(NNInstanceConfig instConfig) {
+		this.instanceConfig = instConfig;
+		neuronTypes.clear();
+		synapseTypes.clear();
+		structure = null;
+	}
+
+	/**
+	 * Record that this network was built for the given structure (topology), so that the parameters of another network
+	 * with the same structure may be set in this network without rebuilding it, see
+	 * {@link #beginUpdate(Object, NNInstanceConfig)}. The structure is compared by reference and is forgotten when the
+	 * network is rebuilt.
+	 */
+	public void setStructure(Object structure) {
+		this.structure = structure;
+	}
+
+	/**
+	 * Returns the structure given to {@link #setStructure(Object)} since the network was last rebuilt, or null.
+	 */
+	public Object getStructure() {
+		return structure;
+	}
+
+	/**
+	 * <p>
+	 * Prepare to set the parameter values of the neurons and synapses of this network in place, without rebuilding it,
+	 * via {@link #updateNeuron(int, ParameterBinding, double[], double[])} and
+	 * {@link #updateSynapse(int, ParameterBinding, double[], double[])} followed by {@link #finishedUpdating()}. The
+	 * neurons and synapses keep the indices and connections they were given when the network was built. This is only
+	 * possible if the network was last built for the given structure (see {@link #setStructure(Object)}).
+	 * </p>
+	 * <p>
+	 * The default implementation does not support updating and returns false.
+	 * </p>
+	 * 
+	 * @param structure The structure of the network whose parameters will be set.
+	 * @param instConfig The instance configuration for the updated neural network.
+	 * @return true iff the parameters may be updated in place, false if the network must be rebuilt.
+	 */
+	public boolean beginUpdate(Object structure, NNInstanceConfig instConfig) {
+		return false;
+	}
+
+	/**
+	 * Set the parameter values of the neuron with the given index, see {@link #beginUpdate(Object, NNInstanceConfig)}.
+	 * The default implementation returns false.
+	 * 
+	 * @return true iff the values were set, false if they can not be set in place (in which case the network must be
+	 *         rebuilt).
+	 */
+	public boolean updateNeuron(int neuron, ParameterBinding binding, double[] geneValues, double[] alleleValues) {
+		return false;
+	}
+
+	/**
+	 * Set the parameter values of the synapse with the given index, see {@link #beginUpdate(Object, NNInstanceConfig)}.
+	 * The default implementation returns false.
+	 * 
+	 * @return true iff the values were set, false if they can not be set in place (in which case the network must be
+	 *         rebuilt).
+	 */
+	public boolean updateSynapse(int synapse, ParameterBinding binding, double[] geneValues, double[] alleleValues) {
+		return false;
+	}
+
+	/**
+	 * This method should be called by a {@link com.ojcoleman.europa.core.Transcriber} when it has finished updating
+	 * the parameters of the network in place. The default implementation does nothing.
+	 */
+	public void finishedUpdating() {
+	}
+
+	/**
+	 * Returns the capacity that should be allocated to hold the given number of components (neurons or synapses) when
+	 * the internal structures for a network must be grown. The capacity is the smallest power of two that is greater
+	 * than or equal to the given count, so that networks of similar size share the same capacity (see
+	 * {@link #getSizeClass(int, int)}).
+	 */
+	public static int capacityFor(int count) {
+		if (count <= 1) {
+			return 1;
+		}
+		return Integer.highestOneBit(count - 1) << 1;
+	}
+
+	/**
+	 * Returns the size class for a network with the given number of neurons and synapses. Networks in the same size
+	 * class have the same {@link #capacityFor(int)} capacities, and so a network built in one size class can generally
+	 * be rebuilt in place for any network in the same size class.
+	 */
+	public static int getSizeClass(int neuronCount, int synapseCount) {
+		return (Integer.numberOfTrailingZeros(capacityFor(neuronCount)) << 16) | Integer.numberOfTrailingZeros(capacityFor(synapseCount));
+	}
+
 	/**
 	 * Add a neuron type to this neural network.
 	 * 
@@ -116,6 +262,75 @@ public abstract class ParametrisedNeuralNetwork extends PrototypeBase implements
 	 */
 	public abstract void addSynapse(Map<String, Double> config, int source, int dest);
 
+	/**
+	 * Create a binding from the parameters defined by the given gene and allele metadata to the neuron parameter slots
+	 * of this implementation, for use with {@link #addNeuron(ParameterBinding, double[], double[])}. The binding
+	 * depends only on the class of the network and so may be created once (for example on the prototype instance) and
+	 * used with any number of networks. The default implementation defines no slots.
+	 */
+	public ParameterBinding bindNeuronParameters(VectorMetadata geneMetadata, VectorMetadata alleleMetadata) {
+		return new ParameterBinding(geneMetadata, alleleMetadata, Collections.<String> emptyList());
+	}
+
+	/**
+	 * Create a binding from the parameters defined by the given gene and allele metadata to the synapse parameter
+	 * slots of this implementation, for use with {@link #addSynapse(ParameterBinding, double[], double[], int, int)}.
+	 * See {@link #bindNeuronParameters(VectorMetadata, VectorMetadata)}.
+	 */
+	public ParameterBinding bindSynapseParameters(VectorMetadata geneMetadata, VectorMetadata alleleMetadata) {
+		return new ParameterBinding(geneMetadata, alleleMetadata, Collections.<String> emptyList());
+	}
+
+	/**
+	 * Add a neuron to this neural network, with parameter values given by the gene and allele vector values for the
+	 * neuron. Neurons should be added in order of input, hidden and output. The default implementation puts the values
+	 * in a Map and calls {@link #addNeuron(Map)}; sub-classes should override this to transfer the values directly.
+	 * 
+	 * @param binding A binding created by {@link #bindNeuronParameters(VectorMetadata, VectorMetadata)} for the
+	 *            metadata of the given values.
+	 * @param geneValues The gene vector values for the neuron.
+	 * @param alleleValues The allele vector values for the neuron.
+	 * @return The index of the new neuron in this neural network.
+	 */
+	public int addNeuron(ParameterBinding binding, double[] geneValues, double[] alleleValues) {
+		return addNeuron(binding.getAllValuesAsMap(geneValues, alleleValues, new HashMap<String, Double>()));
+	}
+
+	/**
+	 * Add a synapse to this neural network, with parameter values given by the gene and allele vector values for the
+	 * synapse. The default implementation puts the values in a Map and calls {@link #addSynapse(Map, int, int)};
+	 * sub-classes should override this to transfer the values directly.
+	 * 
+	 * @param binding A binding created by {@link #bindSynapseParameters(VectorMetadata, VectorMetadata)} for the
+	 *            metadata of the given values.
+	 * @param geneValues The gene vector values for the synapse.
+	 * @param alleleValues The allele vector values for the synapse.
+	 * @param source The index of the source neuron for the synapse, as returned by {@link #addNeuron(Map)}.
+	 * @param dest The index of the destination neuron for the synapse, as returned by {@link #addNeuron(Map)}.
+	 */
+	public void addSynapse(ParameterBinding binding, double[] geneValues, double[] alleleValues, int source, int dest) {
+		addSynapse(binding.getAllValuesAsMap(geneValues, alleleValues, new HashMap<String, Double>()), source, dest);
+	}
+
+	/**
+	 * Provide the depth of the network being built, as previously reported by {@link #getDepth()} for a network with
+	 * the same topology. This may be called before {@link #finishedBuilding()} so that implementations need not
+	 * calculate the depth themselves. The default implementation does nothing.
+	 * 
+	 * @param depth The depth of the network being built.
+	 */
+	public void setDepth(int depth) {
+	}
+
+	/**
+	 * Returns the depth of this network (the length of the longest path from an input neuron to an output neuron), if
+	 * it is calculated by this implementation for the current topology, otherwise -1. The default implementation
+	 * returns -1.
+	 */
+	public int getDepth() {
+		return -1;
+	}
+
 	/**
 	 * This method should be called by a {@link com.ojcoleman.europa.core.Transcriber} when the neural network is completed (when there will be no
 	 * more calls to {@link #addNeuron} or {@link #addSynapse(Map, int, int)}. Sub-classes may override this method in
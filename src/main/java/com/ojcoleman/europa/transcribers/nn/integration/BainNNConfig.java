@@ -22,13 +22,25 @@ public class BainNNConfig extends NNConfig<BainParametrisedNeuronGeneType, BainP
 	@Parameter(description = "The execution mode of the neuron and synapse model kernels.\nMay be SEQ (single CPU thread),\nJTP (Java Thread Pool), CPU (OpenCL on CPU) or GPU (OpenCL on GPU).", defaultValue = "SEQ")
 	Kernel.EXECUTION_MODE aparapiExecutionMode;
 
+	@Parameter(description = "For feed-forward networks with fixed synapses and stateless neurons (eg sigmoid), the number of examples to propagate through the network simultaneously when a set of examples is applied at once (eg by a target function evaluator). The network is replicated this many times so that each simulation step processes the whole block of examples. Smaller values use less memory; 0 or 1 disables batching.", defaultValue = "32", minimumValue = "0")
+	int batchSize;
+
 	public BainNNConfig(Configuration config) throws Exception {
 		super(config);
 	}
 
+	/**
+	 * @return The number of examples to propagate through feed-forward networks simultaneously, or 0 or 1 if batching is
+	 *         disabled.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
 	@Override
 	public void getStringableMap(Map<String, Object> map) {
 		map.put("simulationResolution", simulationResolution);
 		map.put("aparapiExecutionMode", aparapiExecutionMode);
+		map.put("batchSize", batchSize);
 	}
 }
@@ -19,12 +19,15 @@ import com.ojcoleman.bain.base.ConfigurableComponentCollection;
 import com.ojcoleman.bain.base.NeuronCollection;
 import com.ojcoleman.bain.base.SynapseCollection;
 import com.ojcoleman.bain.neuron.rate.NeuronCollectionWithBias;
+import com.ojcoleman.bain.synapse.rate.FixedSynapseCollection;
+import com.ojcoleman.europa.algos.vector.VectorMetadata;
 import com.ojcoleman.europa.configurable.Configurable;
 import com.ojcoleman.europa.configurable.Configuration;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.configurable.PrototypeBase;
 import com.ojcoleman.europa.functiontypes.VectorFunction;
 import com.ojcoleman.europa.transcribers.nn.NNInstanceConfig;
+import com.ojcoleman.europa.transcribers.nn.ParameterBinding;
 import com.ojcoleman.europa.transcribers.nn.ParametrisedNeuralNetwork;
 import com.ojcoleman.europa.transcribers.nn.Topology;
 import com.ojcoleman.europa.util.ArrayUtil;
@@ -56,6 +59,11 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 	// Index of the first output neuron.
 	private int outputIndex;
 
+	// Record of how many Bain configurations have been used in the neuron and synapse collections during the current
+	// build. When the network is rebuilt in place the existing configurations are re-used before new ones are added.
+	private int usedNeuronConfigCount;
+	private int usedSynapseConfigCount;
+
 	/**
 	 * Mapping from neuronTypes index to Bain NeuronCollection configuration index. This exists because we can't
 	 * guarantee that the neuronType configs will map onto Bain configurations until we've started adding neurons, at
@@ -78,6 +86,31 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 	 */
 	protected Topology topology;
 
+	// Depth provided via setDepth(), or -1 if not provided.
+	private int depthHint = -1;
+
+	// Neuron outputs from the previous simulation step, used to detect convergence of recurrent networks.
+	private double[] previousOutputs;
+
+	// A network containing copies of the network in nn, used to propagate a block of examples at once through
+	// feed-forward networks. See applyBatched(). batchNNCurrent is false if nn has been rebuilt since batchNN was
+	// last populated.
+	private NeuralNetwork batchNN;
+	private int batchNNCopies;
+	private boolean batchNNCurrent;
+
+	// Parameter slots for bindings created by bindNeuronParameters() and bindSynapseParameters().
+	private static final List<String> NEURON_SLOTS = Arrays.asList("bias", "typeReference");
+	private static final List<String> SYNAPSE_SLOTS = Arrays.asList("weight", "typeReference");
+	private static final int SLOT_BIAS = 0;
+	private static final int SLOT_WEIGHT = 0;
+	private static final int SLOT_TYPE_REFERENCE = 1;
+
+	// Neuron models whose output depends only on their input in the current simulation step, so that networks using
+	// them may be applied to blocks of examples at once. See canApplyBatched(). Sub-classes of these are excluded as
+	// they may add state.
+	private static final List<String> STATELESS_NEURON_MODELS = Arrays.asList("com.ojcoleman.bain.neuron.rate.SigmoidNeuronCollection", "com.ojcoleman.bain.neuron.rate.SigmoidBipolarNeuronCollection");
+
 	/**
 	 * PrototypeBase constructor. See {@link com.ojcoleman.europa.configurable.PrototypeBase#PrototypeBase(Configuration)}.
 	 */
@@ -98,28 +131,100 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 
 		config = prototype.config;
 
+		createBainNetwork(instConfig.neuronCount, instConfig.synapseCount);
+
+		outputIndex = instConfig.neuronCount - instConfig.outputCount;
+
+		// stepsPerStep and topology may be changed by setStepsPerStepForNonLayeredFF()
+		stepsPerStep = config.getSimulationStepsPerStep();
+		topology = config.getTopology();
+
+		neuronTypeToBainConfig = new HashMap<>();
+		synapseTypeToBainConfig = new HashMap<>();
+	}
+
+	/**
+	 * Create the Bain neural network with neuron and synapse collections of the given sizes.
+	 */
+	private void createBainNetwork(int neuronCapacity, int synapseCapacity) {
 		NeuronCollection<?> neurons = null;
 		SynapseCollection<?> synapses = null;
 		try {
-			neurons = (NeuronCollection<?>) ComponentCollection.createCollection(config.neuron().getModelClass(), instConfig.neuronCount);
+			neurons = (NeuronCollection<?>) ComponentCollection.createCollection(config.neuron().getModelClass(), neuronCapacity);
 		} catch (Exception e) {
 			throw new RuntimeException("Error creating neurons for Bain neural network.", e);
 		}
 		try {
-			synapses = (SynapseCollection<?>) ComponentCollection.createCollection(config.synapse().getModelClass(), instConfig.synapseCount);
+			synapses = (SynapseCollection<?>) ComponentCollection.createCollection(config.synapse().getModelClass(), synapseCapacity);
 		} catch (Exception e) {
 			throw new RuntimeException("Error creating synapses for Bain neural network.", e);
 		}
 
-		outputIndex = instConfig.neuronCount - instConfig.outputCount;
+		nn = new NeuralNetwork(config.simulationResolution, neurons, synapses, config.aparapiExecutionMode);
+	}
 
-		// stepsPerStep and topology may be changed by setStepsPerStepForNonLayeredFF()
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The existing Bain neuron and synapse collections are re-used if they are large enough, otherwise they are
+	 * replaced with collections whose size is given by {@link #capacityFor(int)}. Any neurons or synapses in the
+	 * collections beyond those required by the given configuration are left unconnected: unused synapses are given a
+	 * weight of zero and connect a spare neuron (one beyond the output neurons) to itself.
+	 * </p>
+	 */
+	@Override
+	public boolean rebuild(NNInstanceConfig instConfig) {
+		int neuronCapacity = nn.getNeurons().getSize();
+		int synapseCapacity = nn.getSynapses().getSize();
+
+		// If there will be unused synapses then we need a spare neuron to park them on.
+		boolean spareSynapses = synapseCapacity > instConfig.synapseCount;
+		if (neuronCapacity < instConfig.neuronCount || synapseCapacity < instConfig.synapseCount || (spareSynapses && neuronCapacity == instConfig.neuronCount)) {
+			neuronCapacity = Math.max(neuronCapacity, capacityFor(instConfig.neuronCount + 1));
+			synapseCapacity = Math.max(synapseCapacity, capacityFor(instConfig.synapseCount));
+			createBainNetwork(neuronCapacity, synapseCapacity);
+		}
+
+		resetInstance(instConfig);
+
+		addedNeuronCount = 0;
+		addedSynapseCount = 0;
+		usedNeuronConfigCount = 0;
+		usedSynapseConfigCount = 0;
+		outputIndex = instConfig.neuronCount - instConfig.outputCount;
 		stepsPerStep = config.getSimulationStepsPerStep();
 		topology = config.getTopology();
+		depthHint = -1;
+		neuronTypeToBainConfig.clear();
+		synapseTypeToBainConfig.clear();
 
-		nn = new NeuralNetwork(config.simulationResolution, neurons, synapses, config.aparapiExecutionMode);
+		// Clear parameters set for the previous network. Components which are not explicitly configured in the new
+		// network use the first configuration, which is reset to the default values in finishedBuilding() if no
+		// configurations are added.
+		NeuronCollection<?> neurons = nn.getNeurons();
+		boolean resetNeuronConfigs = neurons.getConfigurationCount() > 0;
+		for (int n = 0; n < neuronCapacity; n++) {
+			if (neurons instanceof NeuronCollectionWithBias) {
+				((NeuronCollectionWithBias<?>) neurons).setBias(n, 0);
+			}
+			if (resetNeuronConfigs) {
+				neurons.setComponentConfiguration(n, 0);
+			}
+		}
+		SynapseCollection<?> synapses = nn.getSynapses();
+		boolean resetSynapseConfigs = synapses.getConfigurationCount() > 0;
+		for (int s = 0; s < synapseCapacity; s++) {
+			if (resetSynapseConfigs) {
+				synapses.setComponentConfiguration(s, 0);
+			}
+		}
+		int spareNeuron = neuronCapacity - 1;
+		for (int s = instConfig.synapseCount; s < synapseCapacity; s++) {
+			synapses.setPreAndPostNeurons(s, spareNeuron, spareNeuron);
+			synapses.setEfficacy(s, 0);
+		}
 
-		neuronTypeToBainConfig = new HashMap<>();
+		return true;
 	}
 
 	@Override
@@ -127,6 +232,24 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 		return config;
 	}
 
+	/**
+	 * {@inheritDoc} Returns false iff the synapse model is a {@link FixedSynapseCollection}.
+	 */
+	@Override
+	public boolean hasPlasticSynapses() {
+		return !FixedSynapseCollection.class.isAssignableFrom(config.synapse().getModelClass());
+	}
+
+	@Override
+	public ParameterBinding bindNeuronParameters(VectorMetadata geneMetadata, VectorMetadata alleleMetadata) {
+		return new ParameterBinding(geneMetadata, alleleMetadata, NEURON_SLOTS);
+	}
+
+	@Override
+	public ParameterBinding bindSynapseParameters(VectorMetadata geneMetadata, VectorMetadata alleleMetadata) {
+		return new ParameterBinding(geneMetadata, alleleMetadata, SYNAPSE_SLOTS);
+	}
+
 	/**
 	 * Add a neuron to this neural network.
 	 * 
@@ -144,27 +267,52 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 
 		// Set bias first if specified.
 		if (config.containsKey("bias")) {
-			if (nn.getNeurons() instanceof NeuronCollectionWithBias) {
-				((NeuronCollectionWithBias<?>) neurons).setBias(addedNeuronCount, config.get("bias"));
-			} else {
-				logger.warn("bias parameter specified in neuron configuration but neuron class does not extend NeuronCollectionWithBias, bias parameter ignored.");
-			}
+			setBias(neurons, config.get("bias"));
 			config.remove("bias");
 		}
 
-		setComponentConfig(neurons, addedNeuronCount, config, neuronTypes, neuronTypeToBainConfig);
+		int typeIndex = config.containsKey("typeReference") ? getTypeIndex(neurons, config.get("typeReference"), neuronTypes) : -1;
+		setComponentConfig(neurons, addedNeuronCount, typeIndex, config, null, null, null, neuronTypes, neuronTypeToBainConfig);
+
+		addedNeuronCount++;
+
+		return addedNeuronCount - 1;
+	}
+
+	/**
+	 * Add a neuron to this neural network. The "bias" and "typeReference" parameters are bound to slots, other
+	 * parameters are set in a Bain configuration for the neuron.
+	 */
+	@Override
+	public int addNeuron(ParameterBinding binding, double[] geneValues, double[] alleleValues) {
+		NeuronCollection<?> neurons = nn.getNeurons();
+
+		if (binding.hasSlot(SLOT_BIAS)) {
+			setBias(neurons, binding.getSlotValue(SLOT_BIAS, geneValues, alleleValues));
+		}
+
+		int typeIndex = binding.hasSlot(SLOT_TYPE_REFERENCE) ? getTypeIndex(neurons, binding.getSlotValue(SLOT_TYPE_REFERENCE, geneValues, alleleValues), neuronTypes) : -1;
+		setComponentConfig(neurons, addedNeuronCount, typeIndex, null, binding, geneValues, alleleValues, neuronTypes, neuronTypeToBainConfig);
 
 		addedNeuronCount++;
 
 		return addedNeuronCount - 1;
 	}
 
+	private void setBias(NeuronCollection<?> neurons, double bias) {
+		if (neurons instanceof NeuronCollectionWithBias) {
+			((NeuronCollectionWithBias<?>) neurons).setBias(addedNeuronCount, bias);
+		} else {
+			logger.warn("bias parameter specified in neuron configuration but neuron class does not extend NeuronCollectionWithBias, bias parameter ignored.");
+		}
+	}
+
 	/**
 	 * Add a synapse to this neural network.
 	 * 
 	 * @param nnConfig Synapse model-specific configuration parameters, if applicable. This will typically contain at
 	 *            least a "weight" value. If types are used then the nnConfig must contain a value for "typeReference"
-	 *            that will refer to the value returned by {@link #addNeuronType(Map)}.
+	 *            that will refer to the value returned by {@link #addSynapseType(Map)}.
 	 * @param source The index of the source neuron for the synapse, as returned by {@link #addNeuron(Map)}.
 	 * @param dest The index of the destination neuron for the synapse, as returned by {@link #addNeuron(Map)}.
 	 */
@@ -182,54 +330,80 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 			config.remove("weight");
 		}
 
-		setComponentConfig(synapses, addedSynapseCount, config, synapseTypes, synapseTypeToBainConfig);
+		int typeIndex = config.containsKey("typeReference") ? getTypeIndex(synapses, config.get("typeReference"), synapseTypes) : -1;
+		setComponentConfig(synapses, addedSynapseCount, typeIndex, config, null, null, null, synapseTypes, synapseTypeToBainConfig);
 
 		addedSynapseCount++;
 	}
 
+	/**
+	 * Add a synapse to this neural network. The "weight" and "typeReference" parameters are bound to slots, other
+	 * parameters are set in a Bain configuration for the synapse.
+	 */
+	@Override
+	public void addSynapse(ParameterBinding binding, double[] geneValues, double[] alleleValues, int source, int dest) {
+		SynapseCollection<?> synapses = nn.getSynapses();
+
+		synapses.setPreAndPostNeurons(addedSynapseCount, source, dest);
+
+		if (binding.hasSlot(SLOT_WEIGHT)) {
+			synapses.setEfficacy(addedSynapseCount, binding.getSlotValue(SLOT_WEIGHT, geneValues, alleleValues));
+		}
+
+		int typeIndex = binding.hasSlot(SLOT_TYPE_REFERENCE) ? getTypeIndex(synapses, binding.getSlotValue(SLOT_TYPE_REFERENCE, geneValues, alleleValues), synapseTypes) : -1;
+		setComponentConfig(synapses, addedSynapseCount, typeIndex, null, binding, geneValues, alleleValues, synapseTypes, synapseTypeToBainConfig);
+
+		addedSynapseCount++;
+	}
+
+	/**
+	 * Returns the index of the component type given by the value of a "typeReference" parameter.
+	 * 
+	 * @throws IllegalArgumentException If the type reference is out of range.
+	 */
+	private static int getTypeIndex(ConfigurableComponentCollection<?> componentCollection, double typeReference, List<Map<String, Double>> types) {
+		int typeIndex = (int) Math.round(typeReference);
+		if (typeIndex < 0 || typeIndex >= types.size()) {
+			throw new IllegalArgumentException("The typeReference parameter for a configuration for " + componentCollection.getClass().getName() + " is out of range. You probably need to check the minimum and maximum bounds specified for the parameter.");
+		}
+		return typeIndex;
+	}
+
 	/**
 	 * Sets the specified Bain "component" (eg a neuron or synapse) in the specified collection to have the specified
-	 * parameters.
+	 * parameters. The parameters specific to the component are given either by a Map or by a ParameterBinding and
+	 * the associated values.
 	 * 
 	 * @param componentCollection The collection to add the component to.
 	 * @param componentIndex The index of the component in the collection.
-	 * @param nnConfig The configuration parameters.
+	 * @param typeIndex The index of the component type, or -1 if no type is specified.
+	 * @param config The configuration parameters, or null if a binding is given. Any "typeReference" parameter is
+	 *            ignored.
+	 * @param binding The binding for the configuration parameters, or null if a Map is given. Only the unbound
+	 *            parameters are used.
+	 * @param geneValues The gene values for the binding.
+	 * @param alleleValues The allele values for the binding.
 	 * @param types The list of component types (eg {@link #neuronTypes}).
 	 * @param typeToBainConfig Mapping from component type indexes to Bain ConfigurableComponentCollection configuration
 	 *            index (eg {@link #neuronTypeToBainConfig}).
 	 */
-	protected static void setComponentConfig(ConfigurableComponentCollection<?> componentCollection, int componentIndex, Map<String, Double> config, List<Map<String, Double>> types, Map<Integer, Integer> typeToBainConfig) {
-		// TODO not adding configs when it should?
-
-		TreeMap<String, Object> dbg = new TreeMap<>();
-		dbg.put("0compIndex", componentIndex);
-		dbg.put("1config", config);
-
-		// Params specific to each component.
-		Map<String, Double> nonTypeConfig = new HashMap<>(config);
-
+	protected void setComponentConfig(ConfigurableComponentCollection<?> componentCollection, int componentIndex, int typeIndex, Map<String, Double> config, ParameterBinding binding, double[] geneValues, double[] alleleValues, List<Map<String, Double>> types, Map<Integer, Integer> typeToBainConfig) {
 		// Params specific to a type of component.
-		Map<String, Double> typeConfig = null;
+		Map<String, Double> typeConfig = typeIndex != -1 ? types.get(typeIndex) : null;
+		boolean hasTypeConfig = typeConfig != null && !typeConfig.isEmpty();
 
-		// Get the index of the type parameters and the parameter values, if available.
-		int typeIndex = -1;
-		if (config.containsKey("typeReference")) {
-			typeIndex = (int) Math.round(config.get("typeReference"));
-			if (typeIndex < 0 || typeIndex >= types.size()) {
-				throw new IllegalArgumentException("The typeReference parameter for a configuration for " + componentCollection.getClass().getName() + " is out of range. You probably need to check the minimum and maximum bounds specified for the parameter.");
-			}
-			typeConfig = types.get(typeIndex);
+		// The number of params specific to each component.
+		int nonTypeCount;
+		if (binding != null) {
+			nonTypeCount = binding.getUnboundCount();
+		} else {
+			nonTypeCount = config.size() - (config.containsKey("typeReference") ? 1 : 0);
 		}
-		// Remove "typeReference" parameter if present.
-		nonTypeConfig.remove("typeReference");
-
-		dbg.put("2typeConfig", typeConfig);
-		dbg.put("3nonTypeConfig", nonTypeConfig);
 
-		// If a type is specified and there are no more parameters specified in the nonTypeConfig, we can use a Bain
+		// If a type is specified and there are no more parameters specified for the component, we can use a Bain
 		// ComponentConfiguration to encapsulate the type params (which is more efficient than creating a
 		// ComponentConfiguration for every single component).
-		if (typeConfig != null && !typeConfig.isEmpty() && nonTypeConfig.isEmpty()) {
+		if (hasTypeConfig && nonTypeCount == 0) {
 			int bainConfigIndex;
 
 			if (!typeToBainConfig.containsKey(typeIndex)) {
@@ -244,45 +418,140 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 
 			// Set the configuration for this component.
 			componentCollection.setComponentConfiguration(componentIndex, bainConfigIndex);
-		} else {
-			// Collect all the params together.
-			if (typeConfig != null) {
-				nonTypeConfig.putAll(typeConfig);
+		}
+		// If there are any params to set.
+		else if (hasTypeConfig || nonTypeCount > 0) {
+			// Add a new configuration to the component collection with all the params.
+			ComponentConfiguration bainConfig = nextBainConfiguration(componentCollection);
+			if (binding != null) {
+				for (int p = 0; p < nonTypeCount; p++) {
+					bainConfig.setParameterValue(binding.getUnboundLabel(p), binding.getUnboundValue(p, geneValues, alleleValues), true);
+				}
+			} else {
+				for (Map.Entry<String, Double> param : config.entrySet()) {
+					if (!param.getKey().equals("typeReference")) {
+						bainConfig.setParameterValue(param.getKey(), param.getValue(), true);
+					}
+				}
 			}
-
-			dbg.put("4nonTypeConfig", nonTypeConfig);
-
-			// If there are any params to set.
-			if (!nonTypeConfig.isEmpty()) {
-				// Add a new configuration to the component collection.
-				int configIndex = addBainConfiguration(componentCollection, nonTypeConfig);
-				// Set the added component to use it.
-				componentCollection.setComponentConfiguration(componentIndex, configIndex);
+			if (hasTypeConfig) {
+				for (Map.Entry<String, Double> param : typeConfig.entrySet()) {
+					bainConfig.setParameterValue(param.getKey(), param.getValue(), true);
+				}
 			}
-		}
+			int configIndex = commitBainConfiguration(componentCollection, bainConfig);
 
-		dbg.put("9typeToBainConfig", typeToBainConfig);
-
-		// System.out.println(Stringer.toString(dbg));
+			// Set the added component to use it.
+			componentCollection.setComponentConfiguration(componentIndex, configIndex);
+		}
 	}
 
 	/**
 	 * Add a Bain ComponentConfiguration to the given Bain ConfigurableComponentCollection (eg collection of neurons or
-	 * synapses), setting the parameter values for the configuration to those provided.
+	 * synapses), setting the parameter values for the configuration to those provided. If the network is being rebuilt
+	 * in place (see {@link #rebuild(NNInstanceConfig)}) and there is an existing configuration in the collection that
+	 * has not yet been used in the current build then it is re-used instead.
 	 */
-	protected static int addBainConfiguration(ConfigurableComponentCollection<?> componentCollection, Map<String, Double> params) {
-		// Create a new Bain ComponentConfiguration.
-		ComponentConfiguration config = componentCollection.getConfigSingleton().createConfiguration();
+	protected int addBainConfiguration(ConfigurableComponentCollection<?> componentCollection, Map<String, Double> params) {
+		ComponentConfiguration config = nextBainConfiguration(componentCollection);
 		// Set the parameter values for it from the provided params.
 		for (Map.Entry<String, Double> param : params.entrySet()) {
 			config.setParameterValue(param.getKey(), param.getValue(), true);
 		}
+		return commitBainConfiguration(componentCollection, config);
+	}
 
-		// Add the configuration to the collection.
-		componentCollection.addConfiguration(config);
+	/**
+	 * Returns the next configuration to use for the given collection: either an existing configuration that has not yet
+	 * been used in the current build, reset to the default values, or a new configuration. The parameter values should
+	 * be set and then {@link #commitBainConfiguration(ConfigurableComponentCollection, ComponentConfiguration)} called.
+	 */
+	private ComponentConfiguration nextBainConfiguration(ConfigurableComponentCollection<?> componentCollection) {
+		int index = componentCollection == nn.getNeurons() ? usedNeuronConfigCount++ : usedSynapseConfigCount++;
+
+		if (index < componentCollection.getConfigurationCount()) {
+			// Re-use an existing configuration, starting from the default values.
+			ComponentConfiguration config = componentCollection.getConfiguration(index);
+			setDefaultParameterValues(componentCollection, config);
+			return config;
+		}
+
+		// Create a new Bain ComponentConfiguration.
+		return componentCollection.getConfigSingleton().createConfiguration();
+	}
+
+	/**
+	 * Adds the given configuration, obtained from {@link #nextBainConfiguration(ConfigurableComponentCollection)}, to
+	 * the given collection if it is new, and returns the index of the configuration in the collection.
+	 */
+	private int commitBainConfiguration(ConfigurableComponentCollection<?> componentCollection, ComponentConfiguration config) {
+		int index = (componentCollection == nn.getNeurons() ? usedNeuronConfigCount : usedSynapseConfigCount) - 1;
+		if (index == componentCollection.getConfigurationCount()) {
+			// Add the configuration to the collection.
+			componentCollection.addConfiguration(config);
+		}
+		return index;
+	}
+
+	/**
+	 * Set the parameter values of the given configuration to the default values given by the configuration singleton
+	 * for the given collection.
+	 */
+	private static void setDefaultParameterValues(ConfigurableComponentCollection<?> componentCollection, ComponentConfiguration config) {
+		ComponentConfiguration defaults = componentCollection.getConfigSingleton().createConfiguration();
+		String[] names = defaults.getParameterNames();
+		double[] values = defaults.getParameterValues();
+		for (int p = 0; p < names.length; p++) {
+			config.setParameterValue(names[p], values[p], true);
+		}
+	}
 
-		// Return the index of the added configuration.
-		return componentCollection.getConfigurationCount() - 1;
+	/**
+	 * {@inheritDoc} Updating is supported if the network was last built for the given structure without neuron or
+	 * synapse types or parameters other than bias and weight, in which case only the biases and weights are set.
+	 */
+	@Override
+	public boolean beginUpdate(Object structure, NNInstanceConfig instConfig) {
+		if (structure == null || structure != getStructure() || !neuronTypes.isEmpty() || !synapseTypes.isEmpty() || usedNeuronConfigCount > 0 || usedSynapseConfigCount > 0) {
+			return false;
+		}
+		instanceConfig = instConfig;
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc} Returns false if the binding has parameters other than bias.
+	 */
+	@Override
+	public boolean updateNeuron(int neuron, ParameterBinding binding, double[] geneValues, double[] alleleValues) {
+		if (binding.getUnboundCount() > 0 || binding.hasSlot(SLOT_TYPE_REFERENCE)) {
+			return false;
+		}
+		NeuronCollection<?> neurons = nn.getNeurons();
+		if (neurons instanceof NeuronCollectionWithBias) {
+			((NeuronCollectionWithBias<?>) neurons).setBias(neuron, binding.hasSlot(SLOT_BIAS) ? binding.getSlotValue(SLOT_BIAS, geneValues, alleleValues) : 0);
+		}
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc} Returns false if the binding has parameters other than weight.
+	 */
+	@Override
+	public boolean updateSynapse(int synapse, ParameterBinding binding, double[] geneValues, double[] alleleValues) {
+		if (binding.getUnboundCount() > 0 || binding.hasSlot(SLOT_TYPE_REFERENCE)) {
+			return false;
+		}
+		nn.getSynapses().setEfficacy(synapse, binding.hasSlot(SLOT_WEIGHT) ? binding.getSlotValue(SLOT_WEIGHT, geneValues, alleleValues) : 0);
+		return true;
+	}
+
+	@Override
+	public void finishedUpdating() {
+		// Clear any state left over from the previous parameters.
+		nn.reset();
+
+		batchNNCurrent = false;
 	}
 
 	@Override
@@ -290,29 +559,54 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 		setStepsPerStepForNonLayeredFF();
 
 		// Add default configs to the neuron and synapse collections if no other configs added and a default is
-		// available.
+		// available. If the network was rebuilt in place then the first existing config is reset to the defaults.
 		if (nn.getNeurons().getConfigurationCount() == 0) {
 			ComponentConfiguration config = nn.getNeurons().getConfigSingleton();
 			if (config != null) {
 				nn.getNeurons().addConfiguration(config.createConfiguration());
 			}
+		} else if (usedNeuronConfigCount == 0) {
+			setDefaultParameterValues(nn.getNeurons(), nn.getNeurons().getConfiguration(0));
 		}
 		if (nn.getSynapses().getConfigurationCount() == 0) {
 			ComponentConfiguration config = nn.getSynapses().getConfigSingleton();
 			if (config != null) {
 				nn.getSynapses().addConfiguration(config.createConfiguration());
 			}
+		} else if (usedSynapseConfigCount == 0) {
+			setDefaultParameterValues(nn.getSynapses(), nn.getSynapses().getConfiguration(0));
 		}
+
+		// Clear any state left over from a previous build (see rebuild()).
+		nn.reset();
+
+		batchNNCurrent = false;
+	}
+
+	@Override
+	public void setDepth(int depth) {
+		depthHint = depth;
+	}
+
+	@Override
+	public int getDepth() {
+		return topology == Topology.FEED_FORWARD ? stepsPerStep : -1;
 	}
 
 	/**
 	 * (Re)calculates the number of steps required to fully activate a non-layered feed-forward network. If this network
-	 * is not of type {@link Topology#FEED_FORWARD} then this method does nothing and returns immediately.
+	 * is not of type {@link Topology#FEED_FORWARD} then this method does nothing and returns immediately. If the depth
+	 * has been provided via {@link #setDepth(int)} then it is used rather than being calculated.
 	 */
 	public void setStepsPerStepForNonLayeredFF() {
 		if (topology != Topology.FEED_FORWARD)
 			return;
 
+		if (depthHint >= 0) {
+			stepsPerStep = depthHint;
+			return;
+		}
+
 		// To find the longest path from any output node to any input node
 		// create a directed acyclic graph representing the network where
 		// each edge has the opposite direction of the corresponding
@@ -322,7 +616,7 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 		// corresponds to the longest path since the edges have value -1.
 		EdgeWeightedDigraph graph = new EdgeWeightedDigraph(instanceConfig.neuronCount);
 		SynapseCollection<?> synapses = nn.getSynapses();
-		for (int c = 0; c < synapses.getSizePopulated(); c++) {
+		for (int c = 0; c < addedSynapseCount; c++) {
 			graph.addEdge(new DirectedEdge(synapses.getPostNeuron(c), synapses.getPreNeuron(c), -1));
 		}
 		
@@ -394,7 +688,11 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 				System.arraycopy(stimuli, 0, nnOutputs, 0, stimuli.length);
 				nn.getNeurons().setOutputsModified(0, stimuli.length);
 			}
-			nn.run(stepsPerStep);
+			if (topology == Topology.RECURRENT && config.getConvergenceTolerance() > 0) {
+				runUntilConverged(nnOutputs);
+			} else {
+				nn.run(stepsPerStep);
+			}
 		}
 
 		System.arraycopy(nnOutputs, outputIndex, output, 0, instanceConfig.outputCount);
@@ -404,6 +702,39 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 		return output;
 	}
 
+	/**
+	 * Run the network for up to {@link #stepsPerStep} steps, stopping early once at least
+	 * {@link BainNNConfig#getConvergenceMinimumSteps()} steps have been performed and the maximum change in the output
+	 * of any neuron over the last step is less than {@link BainNNConfig#getConvergenceTolerance()}.
+	 */
+	private void runUntilConverged(double[] nnOutputs) {
+		if (previousOutputs == null || previousOutputs.length != nnOutputs.length) {
+			previousOutputs = new double[nnOutputs.length];
+		}
+		int neuronCount = instanceConfig.neuronCount;
+		int minSteps = config.getConvergenceMinimumSteps();
+		double tolerance = config.getConvergenceTolerance();
+
+		int step = 0;
+		while (step < stepsPerStep) {
+			System.arraycopy(nnOutputs, 0, previousOutputs, 0, neuronCount);
+			nn.step();
+			step++;
+
+			if (step >= minSteps) {
+				double maxChange = 0;
+				for (int n = 0; n < neuronCount; n++) {
+					maxChange = Math.max(maxChange, Math.abs(nnOutputs[n] - previousOutputs[n]));
+				}
+				if (maxChange < tolerance) {
+					break;
+				}
+			}
+		}
+
+		config.recordSteps(step, stepsPerStep - step);
+	}
+
 	@Override
 	public double[][] apply(double[][] input) {
 		double[][] output = new double[input.length][instanceConfig.outputCount];
@@ -432,15 +763,169 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 					System.arraycopy(nnOutputs, outputIndex, output[responseIndex], 0, instanceConfig.outputCount);
 				}
 			}
+		} else if (canApplyBatched(stimuliCount)) {
+			applyBatched(input, output);
 		} else {
 			for (int s = 0; s < stimuliCount; s++) {
-				output[s] = apply(input[s]);
+				apply(input[s], output[s]);
 			}
 		}
 
 		return output;
 	}
 
+	/**
+	 * Returns true iff the given number of examples may be propagated through this network in blocks via
+	 * {@link #applyBatched(double[][], double[][])}. This requires a (non-layered) feed-forward network whose synapses
+	 * and neurons have no state that changes with activity (see {@link #hasStatelessNeurons()}), so that the response
+	 * to an example does not depend on the examples applied before it. Otherwise the copy of the network for each
+	 * position in a block would carry state from the example at that position in the previous block, rather than from
+	 * the preceding example as when the examples are applied one at a time.
+	 */
+	private boolean canApplyBatched(int stimuliCount) {
+		return topology == Topology.FEED_FORWARD && config.getBatchSize() > 1 && stimuliCount > 1 && nn.getSynapses() instanceof FixedSynapseCollection && hasStatelessNeurons();
+	}
+
+	/**
+	 * Returns true iff the output of the neurons in this network depends only on their input in the current simulation
+	 * step, so that the network may be applied to blocks of examples at once. This implementation returns true for the
+	 * Bain sigmoid neuron models; sub-classes may override it to allow batching for other stateless neuron models.
+	 */
+	protected boolean hasStatelessNeurons() {
+		return STATELESS_NEURON_MODELS.contains(nn.getNeurons().getClass().getName());
+	}
+
+	/**
+	 * Propagate the given examples through the network in blocks of up to {@link BainNNConfig#getBatchSize()}
+	 * examples. A separate Bain network containing one copy of this network for each example in a block is used, so
+	 * that each simulation step propagates signals for the whole block at once: the synapse and neuron kernels then
+	 * operate on one large (sparse, block-diagonal) network rather than on one small network per example. The block size
+	 * bounds the size of the working set.
+	 */
+	private void applyBatched(double[][] input, double[][] output) {
+		int stimuliCount = input.length;
+		int copies = Math.min(config.getBatchSize(), stimuliCount);
+		updateBatchNetwork(copies);
+
+		double[] batchOutputs = batchNN.getNeurons().getOutputs();
+		int neuronCount = instanceConfig.neuronCount;
+		int outputCount = instanceConfig.outputCount;
+
+		for (int blockStart = 0; blockStart < stimuliCount; blockStart += copies) {
+			int blockSize = Math.min(copies, stimuliCount - blockStart);
+
+			// For non-layered FF networks we have to run the network stepsPerStep times to propagate the signals all
+			// the way through, while making sure the input neurons have the input values maintained each step.
+			for (int step = 0; step < stepsPerStep; step++) {
+				for (int b = 0; b < blockSize; b++) {
+					double[] stimuli = input[blockStart + b];
+					System.arraycopy(stimuli, 0, batchOutputs, b * neuronCount, stimuli.length);
+					batchNN.getNeurons().setOutputsModified(b * neuronCount, stimuli.length);
+				}
+				batchNN.step();
+			}
+
+			for (int b = 0; b < blockSize; b++) {
+				System.arraycopy(batchOutputs, b * neuronCount + outputIndex, output[blockStart + b], 0, outputCount);
+			}
+		}
+	}
+
+	/**
+	 * Ensure {@link #batchNN} contains at least the given number of copies of the current network. The existing batch
+	 * network is re-used if it is large enough.
+	 */
+	private void updateBatchNetwork(int copies) {
+		int neuronCount = instanceConfig.neuronCount;
+		int synapseCount = instanceConfig.synapseCount;
+
+		int neuronCapacity = batchNN == null ? 0 : batchNN.getNeurons().getSize();
+		int synapseCapacity = batchNN == null ? 0 : batchNN.getSynapses().getSize();
+		if (neuronCapacity < copies * neuronCount + 1 || synapseCapacity < copies * synapseCount) {
+			// Allow for a spare neuron to park unused synapses on, as in rebuild().
+			neuronCapacity = Math.max(neuronCapacity, capacityFor(copies * neuronCount + 1));
+			synapseCapacity = Math.max(synapseCapacity, capacityFor(copies * synapseCount));
+			NeuronCollection<?> neurons;
+			SynapseCollection<?> synapses;
+			try {
+				neurons = (NeuronCollection<?>) ComponentCollection.createCollection(config.neuron().getModelClass(), neuronCapacity);
+				synapses = (SynapseCollection<?>) ComponentCollection.createCollection(config.synapse().getModelClass(), synapseCapacity);
+			} catch (Exception e) {
+				throw new RuntimeException("Error creating batch network for Bain neural network.", e);
+			}
+			batchNN = new NeuralNetwork(config.simulationResolution, neurons, synapses, config.aparapiExecutionMode);
+			batchNNCurrent = false;
+		} else if (batchNNCurrent && batchNNCopies == copies) {
+			return;
+		}
+
+		NeuronCollection<?> neurons = nn.getNeurons();
+		NeuronCollection<?> batchNeurons = batchNN.getNeurons();
+		copyConfigurations(neurons, batchNeurons);
+		NeuronCollectionWithBias<?> biasNeurons = neurons instanceof NeuronCollectionWithBias ? (NeuronCollectionWithBias<?>) neurons : null;
+		boolean neuronConfigs = neurons.getConfigurationCount() > 0;
+		for (int b = 0; b < copies; b++) {
+			for (int n = 0; n < neuronCount; n++) {
+				int bn = b * neuronCount + n;
+				if (biasNeurons != null) {
+					((NeuronCollectionWithBias<?>) batchNeurons).setBias(bn, biasNeurons.getBias(n));
+				}
+				if (neuronConfigs) {
+					batchNeurons.setComponentConfiguration(bn, neurons.getComponentConfigurationIndex(n));
+				}
+			}
+		}
+		for (int bn = copies * neuronCount; bn < neuronCapacity; bn++) {
+			if (biasNeurons != null) {
+				((NeuronCollectionWithBias<?>) batchNeurons).setBias(bn, 0);
+			}
+		}
+
+		SynapseCollection<?> synapses = nn.getSynapses();
+		SynapseCollection<?> batchSynapses = batchNN.getSynapses();
+		copyConfigurations(synapses, batchSynapses);
+		boolean synapseConfigs = synapses.getConfigurationCount() > 0;
+		for (int b = 0; b < copies; b++) {
+			for (int s = 0; s < synapseCount; s++) {
+				int bs = b * synapseCount + s;
+				batchSynapses.setPreAndPostNeurons(bs, b * neuronCount + synapses.getPreNeuron(s), b * neuronCount + synapses.getPostNeuron(s));
+				batchSynapses.setEfficacy(bs, synapses.getInitialEfficacy(s));
+				if (synapseConfigs) {
+					batchSynapses.setComponentConfiguration(bs, synapses.getComponentConfigurationIndex(s));
+				}
+			}
+		}
+		int spareNeuron = neuronCapacity - 1;
+		for (int bs = copies * synapseCount; bs < synapseCapacity; bs++) {
+			batchSynapses.setPreAndPostNeurons(bs, spareNeuron, spareNeuron);
+			batchSynapses.setEfficacy(bs, 0);
+		}
+
+		batchNN.reset();
+		batchNNCopies = copies;
+		batchNNCurrent = true;
+	}
+
+	/**
+	 * Set the configurations of the given target collection to copies of those in the given source collection,
+	 * re-using existing configurations in the target collection where possible.
+	 */
+	private static void copyConfigurations(ConfigurableComponentCollection<?> source, ConfigurableComponentCollection<?> target) {
+		for (int c = 0; c < source.getConfigurationCount(); c++) {
+			ComponentConfiguration sourceConfig = source.getConfiguration(c);
+			boolean isNew = c >= target.getConfigurationCount();
+			ComponentConfiguration targetConfig = isNew ? target.getConfigSingleton().createConfiguration() : target.getConfiguration(c);
+			String[] names = sourceConfig.getParameterNames();
+			double[] values = sourceConfig.getParameterValues();
+			for (int p = 0; p < names.length; p++) {
+				targetConfig.setParameterValue(names[p], values[p], true);
+			}
+			if (isNew) {
+				target.addConfiguration(targetConfig);
+			}
+		}
+	}
+
 	@Override
 	public double getMinimumOutputValue() {
 		return nn.getNeurons().getMinimumPossibleOutputValue();
@@ -472,8 +957,8 @@ public class BainNeuralNetwork extends ParametrisedNeuralNetwork {
 	 */
 	@Override
 	public String toString() {
-		int neuronCount = nn.getNeurons().getSize();
-		int synapseCount = nn.getSynapses().getSize();
+		int neuronCount = instanceConfig.neuronCount;
+		int synapseCount = instanceConfig.synapseCount;
 		// int neuronDisabledCount = 0;
 
 		// for (int i = 0; i < neuronCount; i++) {
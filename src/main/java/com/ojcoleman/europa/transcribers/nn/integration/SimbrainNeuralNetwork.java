@@ -54,6 +54,12 @@ public class SimbrainNeuralNetwork extends ParametrisedNeuralNetwork {
 
 	// Index of the first output neuron.
 	private int outputIndex;
+
+	// Depth provided via setDepth(), or -1 if not provided.
+	private int depthHint = -1;
+
+	// Neuron activations from the previous update, used to detect convergence of recurrent networks.
+	private double[] previousActivations;
 	
 	private Table<Class<?>, String, Setter> setterMap;
 	private Table<Class<?>, String, Object> setterFailMap;
@@ -153,8 +159,12 @@ public class SimbrainNeuralNetwork extends ParametrisedNeuralNetwork {
 			network.getNeuron(i).forceSetActivation(input[i]);
 		}
 		
-		for (int s = 0; s < stepsPerStep; s++) {
-			network.update();
+		if (topology == Topology.RECURRENT && config.getConvergenceTolerance() > 0) {
+			updateUntilConverged();
+		} else {
+			for (int s = 0; s < stepsPerStep; s++) {
+				network.update();
+			}
 		}
 		
 		for (int i = 0, n = outputIndex; n < instanceConfig.neuronCount; i++, n++) {
@@ -164,6 +174,41 @@ public class SimbrainNeuralNetwork extends ParametrisedNeuralNetwork {
 		return output;
 	}
 
+	/**
+	 * Update the network up to {@link #stepsPerStep} times, stopping early once at least
+	 * {@link SimbrainNNConfig#getConvergenceMinimumSteps()} updates have been performed and the maximum change in the
+	 * activation of any neuron over the last update is less than {@link SimbrainNNConfig#getConvergenceTolerance()}.
+	 */
+	private void updateUntilConverged() {
+		int neuronCount = instanceConfig.neuronCount;
+		if (previousActivations == null || previousActivations.length < neuronCount) {
+			previousActivations = new double[neuronCount];
+		}
+		int minSteps = config.getConvergenceMinimumSteps();
+		double tolerance = config.getConvergenceTolerance();
+		
+		int step = 0;
+		while (step < stepsPerStep) {
+			for (int n = 0; n < neuronCount; n++) {
+				previousActivations[n] = network.getNeuron(n).getActivation();
+			}
+			network.update();
+			step++;
+			
+			if (step >= minSteps) {
+				double maxChange = 0;
+				for (int n = 0; n < neuronCount; n++) {
+					maxChange = Math.max(maxChange, Math.abs(network.getNeuron(n).getActivation() - previousActivations[n]));
+				}
+				if (maxChange < tolerance) {
+					break;
+				}
+			}
+		}
+		
+		config.recordSteps(step, stepsPerStep - step);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.ojcoleman.europa.functiontypes.VectorFunction#apply(double[][])
 	 */
@@ -197,7 +242,7 @@ public class SimbrainNeuralNetwork extends ParametrisedNeuralNetwork {
 			}
 		} else {
 			for (int s = 0; s < stimuliCount; s++) {
-				output[s] = apply(input[s]);
+				apply(input[s], output[s]);
 			}
 		}
 		
@@ -292,13 +337,29 @@ public class SimbrainNeuralNetwork extends ParametrisedNeuralNetwork {
 		setStepsPerStepForNonLayeredFF();
 	}
 
+	@Override
+	public void setDepth(int depth) {
+		depthHint = depth;
+	}
+
+	@Override
+	public int getDepth() {
+		return topology == Topology.FEED_FORWARD ? stepsPerStep : -1;
+	}
+
 	/**
 	 * (Re)calculates the number of steps required to fully activate a non-layered feed-forward network. If this network
-	 * is not of type {@link Topology#FEED_FORWARD} then this method does nothing and returns immediately.
+	 * is not of type {@link Topology#FEED_FORWARD} then this method does nothing and returns immediately. If the depth
+	 * has been provided via {@link #setDepth(int)} then it is used rather than being calculated.
 	 */
 	public void setStepsPerStepForNonLayeredFF() {
 		if (topology != Topology.FEED_FORWARD)
 			return;
+
+		if (depthHint >= 0) {
+			stepsPerStep = depthHint;
+			return;
+		}
 		
 		Map<Neuron, Integer> neuronIndexMap = new HashMap<>();
 		for (int i = 0; i < network.getNeuronCount(); i++) {
@@ -0,0 +1,182 @@
+package com.ojcoleman.europa.util;
+
+/**
+ * <p>
+ * Emits custom JDK Flight Recorder (JFR) events for the phases of the evolutionary cycle, so that CPU samples, GC
+ * pauses, lock contention and so on in a flight recording may be correlated with generations, evaluations of specific
+ * individuals, speciation, reproduction and snapshots. The events are in the "Europa" category; the settings profile
+ * examples/europa.jfc enables all of them along with the default JDK events, for example
+ * <code>java -XX:StartFlightRecording=settings=examples/europa.jfc,filename=run.jfr -jar europa.jar ...</code>.
+ * </p>
+ * <p>
+ * Timing an operation is done by calling the relevant <em>begin</em> method before the operation and passing the
+ * returned handle to the matching <em>end</em> method after it, along with the details of the operation. If the JFR API
+ * is not available in this JVM, or the event is not enabled in any running recording, then the <em>begin</em> method
+ * returns null and the <em>end</em> method does nothing, so the cost of instrumenting an operation when it is not being
+ * recorded is a couple of field reads.
+ * </p>
+ * <p>
+ * The JFR API (the jdk.jfr package) is available in Java 8u262 and later and in Java 11 and later. All references to it
+ * are confined to a class that is only loaded if it is available, so Europa still runs on JVMs without it. Building
+ * Europa does require a JDK that includes it (see build.gradle), and it must not be compiled with
+ * <code>--release 8</code> as the Java 8 API signature does not include it.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class FlightRecording {
+	/**
+	 * Whether the JFR API is available in this JVM.
+	 */
+	public static final boolean AVAILABLE = isAvailable();
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return FlightRecordingEvents.isAvailable();
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Begin timing a generation (iteration) of the evolutionary cycle.
+	 *
+	 * @return A handle to pass to {@link #endGeneration(Object, int, int, int)}, or null if the event is not being
+	 *         recorded.
+	 */
+	public static Object beginGeneration() {
+		return AVAILABLE ? FlightRecordingEvents.beginGeneration() : null;
+	}
+
+	/**
+	 * End timing a generation, and record the event if it is being recorded.
+	 *
+	 * @param handle The handle returned by {@link #beginGeneration()}.
+	 * @param iteration The iteration/generation.
+	 * @param populationSize The number of members in the population.
+	 * @param speciesCount The number of species in the population.
+	 */
+	public static void endGeneration(Object handle, int iteration, int populationSize, int speciesCount) {
+		if (handle != null) {
+			FlightRecordingEvents.endGeneration(handle, iteration, populationSize, speciesCount);
+		}
+	}
+
+	/**
+	 * Begin timing the transcription of a genotype to a function.
+	 *
+	 * @return A handle to pass to {@link #endTranscription(Object, long, int)}, or null if the event is not being
+	 *         recorded.
+	 */
+	public static Object beginTranscription() {
+		return AVAILABLE ? FlightRecordingEvents.beginTranscription() : null;
+	}
+
+	/**
+	 * End timing the transcription of a genotype, and record the event if it is being recorded.
+	 *
+	 * @param handle The handle returned by {@link #beginTranscription()}.
+	 * @param genotypeID The ID of the genotype.
+	 * @param genomeSize The number of alleles in the genotype.
+	 */
+	public static void endTranscription(Object handle, long genotypeID, int genomeSize) {
+		if (handle != null) {
+			FlightRecordingEvents.endTranscription(handle, genotypeID, genomeSize);
+		}
+	}
+
+	/**
+	 * Begin timing the evaluation of an individual, or a batch of individuals, by an evaluator.
+	 *
+	 * @return A handle to pass to {@link #endEvaluation(Object, String, long, int, int)}, or null if the event is not
+	 *         being recorded.
+	 */
+	public static Object beginEvaluation() {
+		return AVAILABLE ? FlightRecordingEvents.beginEvaluation() : null;
+	}
+
+	/**
+	 * End timing the evaluation of an individual, or a batch of individuals, and record the event if it is being
+	 * recorded.
+	 *
+	 * @param handle The handle returned by {@link #beginEvaluation()}.
+	 * @param evaluator The name of the evaluator.
+	 * @param genotypeID The ID of the genotype of the individual, or of the first individual in the batch.
+	 * @param genomeSize The number of alleles in the genotype of the individual, or the total for the batch.
+	 * @param batchSize The number of individuals evaluated.
+	 */
+	public static void endEvaluation(Object handle, String evaluator, long genotypeID, int genomeSize, int batchSize) {
+		if (handle != null) {
+			FlightRecordingEvents.endEvaluation(handle, evaluator, genotypeID, genomeSize, batchSize);
+		}
+	}
+
+	/**
+	 * Begin timing the speciation of the population.
+	 *
+	 * @return A handle to pass to {@link #endSpeciation(Object, int, int)}, or null if the event is not being recorded.
+	 */
+	public static Object beginSpeciation() {
+		return AVAILABLE ? FlightRecordingEvents.beginSpeciation() : null;
+	}
+
+	/**
+	 * End timing the speciation of the population, and record the event if it is being recorded.
+	 *
+	 * @param handle The handle returned by {@link #beginSpeciation()}.
+	 * @param iteration The iteration/generation.
+	 * @param speciesCount The number of species after speciation.
+	 */
+	public static void endSpeciation(Object handle, int iteration, int speciesCount) {
+		if (handle != null) {
+			FlightRecordingEvents.endSpeciation(handle, iteration, speciesCount);
+		}
+	}
+
+	/**
+	 * Begin timing the production of the next generation of the population.
+	 *
+	 * @return A handle to pass to {@link #endReproduction(Object, int, int)}, or null if the event is not being
+	 *         recorded.
+	 */
+	public static Object beginReproduction() {
+		return AVAILABLE ? FlightRecordingEvents.beginReproduction() : null;
+	}
+
+	/**
+	 * End timing the production of the next generation, and record the event if it is being recorded.
+	 *
+	 * @param handle The handle returned by {@link #beginReproduction()}.
+	 * @param iteration The iteration/generation.
+	 * @param populationSize The number of members in the new population.
+	 */
+	public static void endReproduction(Object handle, int iteration, int populationSize) {
+		if (handle != null) {
+			FlightRecordingEvents.endReproduction(handle, iteration, populationSize);
+		}
+	}
+
+	/**
+	 * Begin timing the capture or writing of a snapshot.
+	 *
+	 * @return A handle to pass to {@link #endSnapshot(Object, String, String)}, or null if the event is not being
+	 *         recorded.
+	 */
+	public static Object beginSnapshot() {
+		return AVAILABLE ? FlightRecordingEvents.beginSnapshot() : null;
+	}
+
+	/**
+	 * End timing the capture or writing of a snapshot, and record the event if it is being recorded.
+	 *
+	 * @param handle The handle returned by {@link #beginSnapshot()}.
+	 * @param phase "Capture" or "Write".
+	 * @param path The path of the snapshot file.
+	 */
+	public static void endSnapshot(Object handle, String phase, String path) {
+		if (handle != null) {
+			FlightRecordingEvents.endSnapshot(handle, phase, path);
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.ojcoleman.europa.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JFR event types emitted via {@link FlightRecording}. This is the only class that refers to the jdk.jfr package,
+ * and is only loaded if {@link FlightRecording#AVAILABLE} is true.
+ *
+ * @author O. J. Coleman
+ */
+class FlightRecordingEvents {
+	// Instances used only to check whether each event type is enabled, without allocating a new event.
+	private static final GenerationEvent GENERATION = new GenerationEvent();
+	private static final TranscriptionEvent TRANSCRIPTION = new TranscriptionEvent();
+	private static final EvaluationEvent EVALUATION = new EvaluationEvent();
+	private static final SpeciationEvent SPECIATION = new SpeciationEvent();
+	private static final ReproductionEvent REPRODUCTION = new ReproductionEvent();
+	private static final SnapshotEvent SNAPSHOT = new SnapshotEvent();
+
+	static boolean isAvailable() {
+		return jdk.jfr.FlightRecorder.isAvailable();
+	}
+
+	static Object beginGeneration() {
+		if (!GENERATION.isEnabled()) {
+			return null;
+		}
+		GenerationEvent event = new GenerationEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endGeneration(Object handle, int iteration, int populationSize, int speciesCount) {
+		GenerationEvent event = (GenerationEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.iteration = iteration;
+			event.populationSize = populationSize;
+			event.speciesCount = speciesCount;
+			event.commit();
+		}
+	}
+
+	static Object beginTranscription() {
+		if (!TRANSCRIPTION.isEnabled()) {
+			return null;
+		}
+		TranscriptionEvent event = new TranscriptionEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endTranscription(Object handle, long genotypeID, int genomeSize) {
+		TranscriptionEvent event = (TranscriptionEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.genotype = genotypeID;
+			event.genomeSize = genomeSize;
+			event.commit();
+		}
+	}
+
+	static Object beginEvaluation() {
+		if (!EVALUATION.isEnabled()) {
+			return null;
+		}
+		EvaluationEvent event = new EvaluationEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endEvaluation(Object handle, String evaluator, long genotypeID, int genomeSize, int batchSize) {
+		EvaluationEvent event = (EvaluationEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.evaluator = evaluator;
+			event.genotype = genotypeID;
+			event.genomeSize = genomeSize;
+			event.batchSize = batchSize;
+			event.commit();
+		}
+	}
+
+	static Object beginSpeciation() {
+		if (!SPECIATION.isEnabled()) {
+			return null;
+		}
+		SpeciationEvent event = new SpeciationEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endSpeciation(Object handle, int iteration, int speciesCount) {
+		SpeciationEvent event = (SpeciationEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.iteration = iteration;
+			event.speciesCount = speciesCount;
+			event.commit();
+		}
+	}
+
+	static Object beginReproduction() {
+		if (!REPRODUCTION.isEnabled()) {
+			return null;
+		}
+		ReproductionEvent event = new ReproductionEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endReproduction(Object handle, int iteration, int populationSize) {
+		ReproductionEvent event = (ReproductionEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.iteration = iteration;
+			event.populationSize = populationSize;
+			event.commit();
+		}
+	}
+
+	static Object beginSnapshot() {
+		if (!SNAPSHOT.isEnabled()) {
+			return null;
+		}
+		SnapshotEvent event = new SnapshotEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endSnapshot(Object handle, String phase, String path) {
+		SnapshotEvent event = (SnapshotEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.phase = phase;
+			event.path = path;
+			event.commit();
+		}
+	}
+
+	@Name("com.ojcoleman.europa.Generation")
+	@Label("Generation")
+	@Category("Europa")
+	@Description("An iteration of the evolutionary cycle: evaluation, ranking, speciation and reproduction.")
+	@StackTrace(false)
+	static class GenerationEvent extends Event {
+		@Label("Iteration")
+		int iteration;
+
+		@Label("Population Size")
+		int populationSize;
+
+		@Label("Species Count")
+		int speciesCount;
+	}
+
+	@Name("com.ojcoleman.europa.Transcription")
+	@Label("Transcription")
+	@Category("Europa")
+	@Description("Transcription of a genotype to a function.")
+	@StackTrace(false)
+	static class TranscriptionEvent extends Event {
+		@Label("Genotype ID")
+		long genotype;
+
+		@Label("Genome Size")
+		@Description("The number of alleles in the genotype.")
+		int genomeSize;
+	}
+
+	@Name("com.ojcoleman.europa.Evaluation")
+	@Label("Evaluation")
+	@Category("Europa")
+	@Description("Evaluation of an individual, or a batch of individuals, by an evaluator.")
+	@StackTrace(false)
+	static class EvaluationEvent extends Event {
+		@Label("Evaluator")
+		String evaluator;
+
+		@Label("Genotype ID")
+		@Description("The ID of the genotype of the individual, or of the first individual in the batch.")
+		long genotype;
+
+		@Label("Genome Size")
+		@Description("The number of alleles in the genotype, or the total for the batch.")
+		int genomeSize;
+
+		@Label("Batch Size")
+		int batchSize;
+	}
+
+	@Name("com.ojcoleman.europa.Speciation")
+	@Label("Speciation")
+	@Category("Europa")
+	@Description("Speciation of the population.")
+	@StackTrace(false)
+	static class SpeciationEvent extends Event {
+		@Label("Iteration")
+		int iteration;
+
+		@Label("Species Count")
+		int speciesCount;
+	}
+
+	@Name("com.ojcoleman.europa.Reproduction")
+	@Label("Reproduction")
+	@Category("Europa")
+	@Description("Production of the next generation of the population by the evolver.")
+	@StackTrace(false)
+	static class ReproductionEvent extends Event {
+		@Label("Iteration")
+		int iteration;
+
+		@Label("Population Size")
+		int populationSize;
+	}
+
+	@Name("com.ojcoleman.europa.Snapshot")
+	@Label("Snapshot")
+	@Category("Europa")
+	@Description("Capture of the state of the Run for a snapshot, or writing of a snapshot to file.")
+	static class SnapshotEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Path")
+		String path;
+	}
+}
@@ -0,0 +1,187 @@
+package com.ojcoleman.europa.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Records the distribution of durations (or any other non-negative long values) with low overhead. Each thread records
+ * into its own histogram, so recording does not require any locking or contended atomic operations. The histograms
+ * of all threads are merged when a statistic is requested.
+ * </p>
+ * <p>
+ * The histograms use log-linear buckets: values less than 32 are recorded exactly, and each power of two above that is
+ * divided into 32 buckets, so reported percentiles are within about 3% of the recorded values, over the whole range of
+ * long values, using a fixed amount of memory per thread.
+ * </p>
+ *
+ * @author O. J. Coleman
+ */
+public class LatencyRecorder {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final List<Shard> shards = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Shard> shard = new ThreadLocal<Shard>() {
+		@Override
+		protected Shard initialValue() {
+			Shard s = new Shard(Thread.currentThread().getName());
+			shards.add(s);
+			return s;
+		}
+	};
+
+	/**
+	 * Record the given value.
+	 */
+	public void record(long value) {
+		shard.get().record(value, 1);
+	}
+
+	/**
+	 * Record the given total value for the given number of operations, for example the time taken to process a batch
+	 * of items. The average value per operation is recorded count times, and the given value is added to the total.
+	 */
+	public void record(long total, int count) {
+		if (count > 0) {
+			shard.get().record(total, count);
+		}
+	}
+
+	/**
+	 * Record the time elapsed since the given start time, as given by {@link System#nanoTime()}.
+	 *
+	 * @return The current time as given by {@link System#nanoTime()}, which may be used as the start time of the next
+	 *         operation to be timed.
+	 */
+	public long recordSince(long startNanos) {
+		long now = System.nanoTime();
+		record(now - startNanos);
+		return now;
+	}
+
+	/**
+	 * Returns the number of values recorded.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (Shard s : shards) {
+			count += s.count;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the sum of the values recorded.
+	 */
+	public long getTotal() {
+		long total = 0;
+		for (Shard s : shards) {
+			total += s.total;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the maximum value recorded, or 0 if no values have been recorded.
+	 */
+	public long getMax() {
+		long max = 0;
+		for (Shard s : shards) {
+			max = Math.max(max, s.max);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the sum of the values recorded by each thread, by thread name.
+	 */
+	public Map<String, Long> getTotalsByThread() {
+		Map<String, Long> totals = new TreeMap<>();
+		for (Shard s : shards) {
+			Long t = totals.get(s.thread);
+			totals.put(s.thread, (t == null ? 0 : t) + s.total);
+		}
+		return totals;
+	}
+
+	/**
+	 * Returns (an approximation of) the value below which the given percentage of recorded values fall, or 0 if no
+	 * values have been recorded.
+	 *
+	 * @param percentile The percentile, in the range [0, 100].
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (Shard s : shards) {
+			for (int b = 0; b < BUCKET_COUNT; b++) {
+				long c = s.counts.get(b);
+				counts[b] += c;
+				count += c;
+			}
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+		long seen = 0;
+		for (int b = 0; b < BUCKET_COUNT; b++) {
+			seen += counts[b];
+			if (seen >= target) {
+				// Don't report a value larger than any actually recorded.
+				return Math.min(getBucketValue(b), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	static int getBucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return value < 0 ? 0 : (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	// Returns the middle of the range of values recorded in the given bucket.
+	static long getBucketValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+		long mantissa = SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS;
+		return (mantissa << shift) + ((1L << shift) >>> 1);
+	}
+
+	// Histogram for a single thread. Only the owning thread writes to it; other threads may read it at any time.
+	private static class Shard {
+		final String thread;
+		final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+		volatile long count;
+		volatile long total;
+		volatile long max;
+
+		Shard(String thread) {
+			this.thread = thread;
+		}
+
+		void record(long total, int count) {
+			long value = total / count;
+			int index = getBucketIndex(value);
+			// There is only one writer so a lazy (ordered) set of the incremented value is sufficient.
+			counts.lazySet(index, counts.get(index) + count);
+			this.count += count;
+			this.total += total;
+			if (value > max) {
+				max = value;
+			}
+		}
+	}
+}
@@ -60,6 +60,7 @@ import com.ojcoleman.europa.configurable.DefaultIDFactory;
 import com.ojcoleman.europa.configurable.Parameter;
 import com.ojcoleman.europa.core.EvaluationDescription;
 import com.ojcoleman.europa.core.Evaluator;
+import com.ojcoleman.europa.core.Individual;
 import com.ojcoleman.europa.core.Run;
 
 /**
@@ -630,7 +631,8 @@ public class ParameterTuner implements Serializable {
 					EvaluationDescription evDesc = getEvalDescription(run, false);
 					
 					if (evDesc.isPerformanceIndicator) {
-						performances[r] = run.getPopulation().getBestPerforming().evaluationData.getPerformanceResults().get(evDesc);
+						Individual<?, ?> bestPerforming = run.getPopulation().getBestPerforming();
+						performances[r] = bestPerforming == null ? 0 : bestPerforming.evaluationData.getPerformanceResults().get(evDesc);
 					}
 					else {
 						performances[r] = run.getPopulation().getFittest().evaluationData.getFitnessResults().get(evDesc);
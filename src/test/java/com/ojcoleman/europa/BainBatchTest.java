@@ -0,0 +1,71 @@
+package com.ojcoleman.europa;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.eclipsesource.json.Json;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.DefaultIDFactory;
+import com.ojcoleman.europa.transcribers.nn.NNInstanceConfig;
+import com.ojcoleman.europa.transcribers.nn.integration.BainNeuralNetwork;
+
+public class BainBatchTest {
+	private static final String CONFIG = "{\"config\":{\"topology\":\"FEED_FORWARD\",\"aparapiExecutionMode\":\"SEQ\",\"batchSize\":4,"
+			+ "\"neuron\":{\"modelClass\":\"com.ojcoleman.bain.neuron.rate.SigmoidNeuronCollection\",\"paramsAllele\":{\"elements\":[{\"min\":-4,\"max\":4,\"label\":\"bias\"}]}},"
+			+ "\"synapse\":{\"modelClass\":\"com.ojcoleman.bain.synapse.rate.FixedSynapseCollection\",\"paramsAllele\":{\"elements\":[{\"min\":-4,\"max\":4,\"label\":\"weight\"}]}}}}";
+
+	/**
+	 * Builds a non-layered feed-forward network with two inputs, two hidden neurons and one output, with a synapse
+	 * from an input directly to the output.
+	 */
+	private static BainNeuralNetwork build() {
+		BainNeuralNetwork prototype = new BainNeuralNetwork(new Configuration(Json.parse(CONFIG).asObject(), false, new DefaultIDFactory()));
+		BainNeuralNetwork nn = prototype.newInstance(new NNInstanceConfig(5, 7, 2, 1, "test"));
+
+		double[] biases = { 0, 0, 0.5, -1, 0.25 };
+		for (double bias : biases) {
+			nn.addNeuron(param("bias", bias));
+		}
+		int[][] synapses = { { 0, 2 }, { 1, 2 }, { 0, 3 }, { 1, 3 }, { 2, 4 }, { 3, 4 }, { 0, 4 } };
+		double[] weights = { 1.5, -2, 0.75, 1, 3, -2.5, 0.5 };
+		for (int s = 0; s < synapses.length; s++) {
+			nn.addSynapse(param("weight", weights[s]), synapses[s][0], synapses[s][1]);
+		}
+		nn.finishedBuilding();
+		return nn;
+	}
+
+	private static Map<String, Double> param(String label, double value) {
+		Map<String, Double> map = new HashMap<>();
+		map.put(label, value);
+		return map;
+	}
+
+	@Test
+	public void batchedMatchesSerial() {
+		Random random = new Random(1);
+		// Not a multiple of the batch size, so the last block is partial.
+		double[][] input = new double[10][2];
+		for (double[] example : input) {
+			example[0] = random.nextDouble() * 2 - 1;
+			example[1] = random.nextDouble() * 2 - 1;
+		}
+
+		BainNeuralNetwork nn = build();
+		double[][] batched = nn.apply(input);
+
+		nn.reset();
+		double[][] serial = new double[input.length][1];
+		for (int s = 0; s < input.length; s++) {
+			nn.apply(input[s], serial[s]);
+		}
+
+		for (int s = 0; s < input.length; s++) {
+			Assert.assertEquals(batched[s][0], serial[s][0], 1e-12, "Output for example " + s);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package com.ojcoleman.europa;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import com.ojcoleman.europa.evaluators.dpb.DoublePoleBalancing.Simulation;
+
+public class DoublePoleBalancingSimulationTest {
+	private static void run(Simulation simulation, int steps) {
+		for (int t = 0; t < steps; t++) {
+			// Simple bang-bang controller so the state stays in a reasonable range.
+			double action = simulation.state[2] > 0 ? 0.6 : 0.4;
+			simulation.performAction(action);
+		}
+	}
+
+	@Test
+	public void performActionDoesNotAllocate() throws Exception {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			throw new SkipException("Thread allocation measurement not supported by this JVM.");
+		}
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+			throw new SkipException("Thread allocation measurement not supported by this JVM.");
+		}
+
+		Simulation simulation = new Simulation(7, 1);
+		simulation.reset()[2] = Math.toRadians(4);
+
+		// Warm up so that the method is compiled.
+		run(simulation, 20000);
+
+		long threadID = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadID);
+		run(simulation, 100000);
+		long allocated = threadBean.getThreadAllocatedBytes(threadID) - before;
+
+		// Previously several arrays were allocated per step, amounting to tens of megabytes over 100000 steps. Allow a
+		// little slack for allocations by the JVM itself.
+		Assert.assertTrue(allocated < 64 * 1024, "Allocated " + allocated + " bytes over 100000 steps.");
+	}
+
+	@Test
+	public void matchesReferenceIntegrator() throws Exception {
+		Simulation simulation = new Simulation(7, 1);
+		double[] state = simulation.reset();
+		state[2] = Math.toRadians(4);
+		double[] reference = state.clone();
+
+		// A fixed but varied sequence of actions, so that all the terms of the dynamics are exercised.
+		Random random = new Random(1);
+		for (int t = 0; t < 2000; t++) {
+			double action = random.nextDouble();
+			simulation.performAction(action);
+			ReferenceIntegrator.performAction(reference, action);
+			for (int i = 0; i < 6; i++) {
+				Assert.assertEquals(state[i], reference[i], 0.0, "State variable " + i + " differs at step " + t);
+			}
+		}
+	}
+
+	@Test
+	public void resetClearsState() throws Exception {
+		Simulation simulation = new Simulation(3, 1);
+		simulation.reset()[2] = Math.toRadians(4);
+		run(simulation, 10);
+		Assert.assertNotEquals(simulation.state[0], 0.0);
+
+		double[] state = simulation.reset();
+		Assert.assertSame(state, simulation.state);
+		for (double v : state) {
+			Assert.assertEquals(v, 0.0);
+		}
+		Assert.assertEquals(simulation.input.length, 3);
+		Assert.assertEquals(simulation.output.length, 1);
+	}
+
+	/**
+	 * The integrator used by DoublePoleBalancing before the simulation state and RK4 buffers were made re-usable,
+	 * which allocated new arrays for every step. Simulation#performAction(double) must give exactly the same
+	 * trajectory.
+	 */
+	private static class ReferenceIntegrator {
+		static final double Gravity = -9.8;
+		static final double MassCart = 1.0;
+		static final double Length1 = 0.5;
+		static final double MassPole1 = 0.1;
+		static final double Length2 = 0.05;
+		static final double MassPole2 = 0.01;
+		static final double ForceMag = 10.0;
+		static final double TimeDelta = 0.01;
+		static final double MUP = 0.000002;
+
+		static void performAction(double[] state, double output) {
+			int i;
+			double[] dydx = new double[6];
+			for (i = 0; i < 2; ++i) {
+				dydx[0] = state[1];
+				dydx[2] = state[3];
+				dydx[4] = state[5];
+				step(output, state, dydx);
+				rk4(output, state, dydx);
+			}
+		}
+
+		static void step(double action, double[] st, double[] derivs) {
+			double force, costheta_1, costheta_2, sintheta_1, sintheta_2, gsintheta_1, gsintheta_2, temp_1, temp_2, ml_1, ml_2, fi_1, fi_2, mi_1, mi_2;
+			force = (action - 0.5) * ForceMag * 2;
+			costheta_1 = Math.cos(st[2]);
+			sintheta_1 = Math.sin(st[2]);
+			gsintheta_1 = Gravity * sintheta_1;
+			costheta_2 = Math.cos(st[4]);
+			sintheta_2 = Math.sin(st[4]);
+			gsintheta_2 = Gravity * sintheta_2;
+			ml_1 = Length1 * MassPole1;
+			ml_2 = Length2 * MassPole2;
+			temp_1 = MUP * st[3] / ml_1;
+			temp_2 = MUP * st[5] / ml_2;
+			fi_1 = (ml_1 * st[3] * st[3] * sintheta_1) + (0.75 * MassPole1 * costheta_1 * (temp_1 + gsintheta_1));
+			fi_2 = (ml_2 * st[5] * st[5] * sintheta_2) + (0.75 * MassPole2 * costheta_2 * (temp_2 + gsintheta_2));
+			mi_1 = MassPole1 * (1 - (0.75 * costheta_1 * costheta_1));
+			mi_2 = MassPole2 * (1 - (0.75 * costheta_2 * costheta_2));
+			derivs[1] = (force + fi_1 + fi_2) / (mi_1 + mi_2 + MassCart);
+			derivs[3] = -0.75 * (derivs[1] * costheta_1 + gsintheta_1 + temp_1) / Length1;
+			derivs[5] = -0.75 * (derivs[1] * costheta_2 + gsintheta_2 + temp_2) / Length2;
+		}
+
+		static void rk4(double f, double[] y, double[] dydx) {
+			int i;
+			double hh, h6;
+			double[] dym = new double[6];
+			double[] dyt = new double[6];
+			double[] yt = new double[6];
+			hh = TimeDelta * 0.5;
+			h6 = TimeDelta / 6.0;
+			for (i = 0; i <= 5; i++) {
+				yt[i] = y[i] + (hh * dydx[i]);
+			}
+			step(f, yt, dyt);
+			dyt[0] = yt[1];
+			dyt[2] = yt[3];
+			dyt[4] = yt[5];
+			for (i = 0; i <= 5; i++) {
+				yt[i] = y[i] + (hh * dyt[i]);
+			}
+			step(f, yt, dym);
+			dym[0] = yt[1];
+			dym[2] = yt[3];
+			dym[4] = yt[5];
+			for (i = 0; i <= 5; i++) {
+				yt[i] = y[i] + (TimeDelta * dym[i]);
+				dym[i] = dym[i] + dyt[i];
+			}
+			step(f, yt, dyt);
+			dyt[0] = yt[1];
+			dyt[2] = yt[3];
+			dyt[4] = yt[5];
+
+			for (i = 0; i <= 5; i++) {
+				y[i] = y[i] + h6 * (dydx[i] + dyt[i] + 2.0 * dym[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.ojcoleman.europa;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ojcoleman.europa.core.EvaluationDescription;
+import com.ojcoleman.europa.monitor.EvaluationLog;
+import com.ojcoleman.europa.util.IntervalDouble;
+
+public class EvaluationLogTest {
+	private Path directory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("europa-evaluations");
+	}
+
+	@AfterMethod
+	public void deleteDirectory() throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Writes a chain of 100 genotypes, each the child of the previous one, with small segments so that the log spans
+	 * several segment files.
+	 */
+	private void write() throws IOException {
+		List<EvaluationDescription> objectives = Arrays.asList(new EvaluationDescription("fitness", null, new IntervalDouble(0, 1), 1, false), new EvaluationDescription("accuracy", null, new IntervalDouble(0, 100), 100, true));
+		EvaluationLog.Writer writer = new EvaluationLog.Writer(directory, objectives, 2, 1024);
+		try {
+			for (int i = 1; i <= 100; i++) {
+				long[] parents = i == 1 ? new long[0] : new long[] { i - 1, 1000 + i, 2000 + i };
+				double accuracy = i % 10 == 0 ? Double.NaN : i;
+				writer.append(i, parents, i % 3 == 0 ? -1 : i % 3, i / 10, i % 7, new double[] { i / 100.0, accuracy });
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		write();
+
+		try (EvaluationLog log = new EvaluationLog(directory)) {
+			Assert.assertEquals(log.getRecordCount(), 100);
+			Assert.assertEquals(log.getObjectiveNames(), Arrays.asList("fitness", "accuracy"));
+			Assert.assertFalse(log.isPerformanceIndicator(0));
+			Assert.assertTrue(log.isPerformanceIndicator(1));
+			Assert.assertEquals(log.getParentCount(), 2);
+
+			EvaluationLog.Record record = log.get(42);
+			Assert.assertEquals(record.id, 42);
+			// Further parents than the log records are dropped.
+			Assert.assertTrue(Arrays.equals(record.parents, new long[] { 41, 1042 }), Arrays.toString(record.parents));
+			Assert.assertEquals(record.speciesID, -1);
+			Assert.assertEquals(record.iteration, 4);
+			Assert.assertEquals(record.genomeSize, 0);
+			Assert.assertEquals(record.getObjective("fitness"), 0.42);
+			Assert.assertEquals(record.getObjective("accuracy"), 42.0);
+
+			record = log.get(1);
+			Assert.assertTrue(Arrays.equals(record.parents, new long[] { -1, -1 }), Arrays.toString(record.parents));
+			Assert.assertTrue(Double.isNaN(log.get(50).getObjective("accuracy")));
+			Assert.assertNull(log.get(101));
+		}
+	}
+
+	@Test
+	public void lineageAndQueries() throws IOException {
+		write();
+
+		try (EvaluationLog log = new EvaluationLog(directory)) {
+			List<EvaluationLog.Record> lineage = log.getLineage(100);
+			Assert.assertEquals(lineage.size(), 100);
+			for (int i = 0; i < lineage.size(); i++) {
+				Assert.assertEquals(lineage.get(i).id, 100 - i);
+			}
+
+			final List<Long> ids = new ArrayList<>();
+			EvaluationLog.Visitor collector = new EvaluationLog.Visitor() {
+				@Override
+				public boolean visit(EvaluationLog.Record record) {
+					ids.add(record.id);
+					return true;
+				}
+			};
+
+			Assert.assertEquals(log.scan(new EvaluationLog.Query().iterations(2, 2).species(1), collector), 3);
+			Assert.assertEquals(ids, Arrays.asList(22L, 25L, 28L));
+
+			// Records with a missing result do not match a condition on it.
+			ids.clear();
+			log.scan(new EvaluationLog.Query().objective("accuracy", 5, 15), collector);
+			Assert.assertEquals(ids, Arrays.asList(5L, 6L, 7L, 8L, 9L, 11L, 12L, 13L, 14L, 15L));
+
+			ids.clear();
+			log.scan(new EvaluationLog.Query().parent(1057), collector);
+			Assert.assertEquals(ids, Arrays.asList(57L));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.ojcoleman.europa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.ojcoleman.europa.algos.vector.VectorMetadata;
+import com.ojcoleman.europa.transcribers.nn.ParameterBinding;
+
+public class ParameterBindingTest {
+	private static VectorMetadata metadata(String... labels) {
+		return new VectorMetadata(Arrays.asList(labels), new double[labels.length], new double[labels.length], new boolean[labels.length]);
+	}
+
+	@Test
+	public void bindsSlotsAcrossGeneAndAllele() throws Exception {
+		VectorMetadata gene = metadata("typeReference", "tau");
+		VectorMetadata allele = metadata("bias");
+		ParameterBinding binding = new ParameterBinding(gene, allele, Arrays.asList("bias", "typeReference", "weight"));
+
+		double[] geneValues = new double[] { 2, 0.5 };
+		double[] alleleValues = new double[] { -1.5 };
+
+		Assert.assertTrue(binding.isFor(gene, allele));
+		Assert.assertFalse(binding.isFor(allele, gene));
+
+		Assert.assertTrue(binding.hasSlot(0));
+		Assert.assertTrue(binding.hasSlot(1));
+		Assert.assertFalse(binding.hasSlot(2));
+		Assert.assertEquals(binding.getSlotValue(0, geneValues, alleleValues), -1.5);
+		Assert.assertEquals(binding.getSlotValue(1, geneValues, alleleValues), 2.0);
+
+		Assert.assertEquals(binding.getUnboundCount(), 1);
+		Assert.assertEquals(binding.getUnboundLabel(0), "tau");
+		Assert.assertEquals(binding.getUnboundValue(0, geneValues, alleleValues), 0.5);
+	}
+
+	@Test
+	public void boundLabelInGeneAndAlleleIsNotUnbound() throws Exception {
+		ParameterBinding binding = new ParameterBinding(metadata("bias", "tau"), metadata("bias"), Arrays.asList("bias"));
+
+		double[] geneValues = new double[] { 1, 0.5 };
+		double[] alleleValues = new double[] { -1.5 };
+
+		// The allele value takes precedence, and neither the gene nor allele "bias" is left unbound.
+		Assert.assertEquals(binding.getSlotValue(0, geneValues, alleleValues), -1.5);
+		Assert.assertEquals(binding.getUnboundCount(), 1);
+		Assert.assertEquals(binding.getUnboundLabel(0), "tau");
+	}
+
+	@Test
+	public void getAllValuesAsMap() throws Exception {
+		ParameterBinding binding = new ParameterBinding(metadata("a"), metadata("b", "c"), Arrays.asList("c"));
+
+		Map<String, Double> map = new HashMap<>();
+		map.put("stale", 1.0);
+		binding.getAllValuesAsMap(new double[] { 1 }, new double[] { 2, 3 }, map);
+
+		Assert.assertEquals(map.size(), 3);
+		Assert.assertEquals(map.get("a"), 1.0);
+		Assert.assertEquals(map.get("b"), 2.0);
+		Assert.assertEquals(map.get("c"), 3.0);
+	}
+}
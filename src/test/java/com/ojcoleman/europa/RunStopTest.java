@@ -0,0 +1,89 @@
+package com.ojcoleman.europa;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.eclipsesource.json.JsonObject;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.DefaultIDFactory;
+import com.ojcoleman.europa.configurable.Observable;
+import com.ojcoleman.europa.configurable.Observer;
+import com.ojcoleman.europa.core.Population;
+import com.ojcoleman.europa.core.Run;
+
+public class RunStopTest {
+	private Path directory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("europa-stop");
+	}
+
+	@AfterMethod
+	public void deleteDirectory() throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * A stop requested from another thread while the population is being evaluated must not be lost when the result of
+	 * the evaluation is applied.
+	 */
+	@Test
+	public void stopDuringEvaluation() throws Exception {
+		JsonObject config = Main.mergeConfigs(Arrays.asList("examples/xor.json"));
+		config.set("name", "stop-test");
+		config.set("outputDirectory", directory.resolve("run").toString());
+		config.set("randomSeed", 1);
+		config.set("maximumIterations", 5);
+		config.set("registerMBean", false);
+		config.set("monitors", new JsonObject());
+
+		final Run run = new Run(null, new Configuration(config, false, new DefaultIDFactory()));
+		run.getPopulation().addEventListener(new Observer() {
+			@Override
+			public void eventOccurred(Observable observed, Object event, Object state) {
+				if (event == Population.Event.PopulationEvaluated && run.getCurrentIteration() == 0) {
+					Thread stopper = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							run.stop();
+						}
+					});
+					stopper.start();
+					try {
+						stopper.join();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}
+		});
+		run.run();
+
+		Assert.assertTrue(run.isStopping());
+		// The run should stop at the end of the first iteration.
+		Assert.assertEquals(run.getCurrentIteration(), 1);
+	}
+}
@@ -0,0 +1,184 @@
+package com.ojcoleman.europa;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.eclipsesource.json.JsonObject;
+import com.ojcoleman.europa.algos.vector.VectorAllele;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.DefaultIDFactory;
+import com.ojcoleman.europa.core.Allele;
+import com.ojcoleman.europa.core.Genotype;
+import com.ojcoleman.europa.core.Individual;
+import com.ojcoleman.europa.core.Run;
+import com.ojcoleman.europa.core.Snapshot;
+
+public class SnapshotTest {
+	private Path directory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("europa-snapshot");
+	}
+
+	@AfterMethod
+	public void deleteDirectory() throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Performs a short NEAT XOR run, saving a snapshot at the end of each iteration.
+	 */
+	private Run run(int fullSnapshotFrequency) throws Exception {
+		JsonObject config = Main.mergeConfigs(Arrays.asList("examples/xor.json"));
+		config.set("name", "snapshot-test");
+		config.set("outputDirectory", directory.resolve("run").toString());
+		config.set("randomSeed", 1);
+		config.set("maximumIterations", 3);
+		config.set("saveFrequency", 1);
+		config.set("snapshotInBackground", false);
+		config.set("fullSnapshotFrequency", fullSnapshotFrequency);
+		config.set("registerMBean", false);
+		config.set("monitors", new JsonObject());
+
+		Run run = new Run(null, new Configuration(config, false, new DefaultIDFactory()));
+		run.run();
+		return run;
+	}
+
+	private Path save(int iteration) {
+		return directory.resolve("run").resolve("save-" + iteration + Snapshot.EXTENSION);
+	}
+
+	@Test
+	public void fullSnapshotRoundTrip() throws Exception {
+		Run run = run(1);
+
+		try (Snapshot snapshot = Snapshot.open(save(3))) {
+			Assert.assertFalse(snapshot.isDelta());
+			Assert.assertEquals(snapshot.getIteration(), 3);
+			Assert.assertEquals(snapshot.getConfiguration().get("name").asString(), "snapshot-test");
+		}
+
+		Run loaded = Snapshot.load(save(3));
+		Assert.assertEquals(loaded.getCurrentIteration(), 3);
+		assertSamePopulation(loaded, run);
+	}
+
+	@Test
+	public void deltaSnapshotChain() throws Exception {
+		Run run = run(3);
+
+		try (Snapshot snapshot = Snapshot.open(save(3))) {
+			Assert.assertTrue(snapshot.isDelta());
+			Assert.assertTrue(snapshot.getBase().isDelta());
+			Assert.assertFalse(snapshot.getBase().getBase().isDelta());
+		}
+
+		Run loaded = Snapshot.load(save(3));
+		Assert.assertEquals(loaded.getCurrentIteration(), 3);
+		assertSamePopulation(loaded, run);
+
+		// A delta snapshot can not be loaded without the snapshots preceding it.
+		Path orphan = Files.createDirectory(directory.resolve("orphan")).resolve(save(3).getFileName());
+		Files.copy(save(3), orphan);
+		try {
+			Snapshot.load(orphan);
+			Assert.fail("Loaded a delta snapshot without its base.");
+		} catch (IOException ex) {
+			Assert.assertTrue(ex.getMessage().contains("missing"), ex.getMessage());
+		}
+	}
+
+	@Test
+	public void resumeFromSnapshot() throws Exception {
+		run(1);
+
+		Run resumed = Snapshot.load(save(2));
+		long maxID = 0;
+		Map<Long, Genotype<?>> restored = getGenotypes(resumed);
+		for (Genotype<?> genotype : restored.values()) {
+			maxID = Math.max(maxID, genotype.id);
+			for (Allele<?> allele : genotype.getAlleles()) {
+				maxID = Math.max(maxID, allele.id);
+			}
+		}
+
+		resumed.run();
+		Assert.assertEquals(resumed.getCurrentIteration(), 3);
+
+		// New genotypes and alleles must not reuse the IDs of those restored from the snapshot.
+		for (Genotype<?> genotype : getGenotypes(resumed).values()) {
+			if (!restored.containsKey(genotype.id)) {
+				Assert.assertTrue(genotype.id > maxID, "Genotype ID " + genotype.id + " reused.");
+			}
+		}
+	}
+
+	private static Map<Long, Genotype<?>> getGenotypes(Run run) {
+		Map<Long, Genotype<?>> genotypes = new HashMap<>();
+		for (Individual<?, ?> individual : run.getPopulation().getMembers()) {
+			genotypes.put(individual.genotype.id, individual.genotype);
+		}
+		return genotypes;
+	}
+
+	private static void assertSamePopulation(Run actual, Run expected) {
+		Map<Long, Genotype<?>> genotypes = getGenotypes(actual);
+		Assert.assertEquals(genotypes.size(), expected.getPopulation().getMembers().size());
+
+		for (Individual<?, ?> individual : expected.getPopulation().getMembers()) {
+			Genotype<?> e = individual.genotype;
+			Genotype<?> a = genotypes.get(e.id);
+			Assert.assertNotNull(a, "Genotype " + e.id + " was not restored.");
+			Assert.assertEquals(a.getClass(), e.getClass());
+
+			// Only parents stored in the snapshot are retained.
+			for (Genotype<?> parent : a.parents) {
+				boolean found = false;
+				for (Genotype<?> p : e.parents) {
+					found |= p.id == parent.id;
+				}
+				Assert.assertTrue(found, "Genotype " + e.id + " has unexpected parent " + parent.id);
+			}
+
+			Assert.assertEquals(a.getAlleles().size(), e.getAlleles().size());
+			Iterator<? extends Allele<?>> actualAlleles = a.getAlleles().iterator();
+			for (Allele<?> ea : e.getAlleles()) {
+				Allele<?> aa = actualAlleles.next();
+				Assert.assertEquals(aa.getClass(), ea.getClass());
+				Assert.assertEquals(aa.id, ea.id);
+				Assert.assertEquals(aa.gene == null ? -1 : aa.gene.id, ea.gene == null ? -1 : ea.gene.id);
+				Assert.assertEquals(aa.getGenotype() == a, ea.getGenotype() == e);
+				if (ea instanceof VectorAllele) {
+					Assert.assertEquals(((VectorAllele<?>) aa).vector.getValues(), ((VectorAllele<?>) ea).vector.getValues());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.ojcoleman.europa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.eclipsesource.json.Json;
+import com.ojcoleman.europa.configurable.ComponentBase;
+import com.ojcoleman.europa.configurable.ComponentStateLog;
+import com.ojcoleman.europa.configurable.Configuration;
+import com.ojcoleman.europa.configurable.DefaultIDFactory;
+import com.ojcoleman.europa.core.Allele;
+import com.ojcoleman.europa.core.Genotype;
+import com.ojcoleman.europa.core.Individual;
+import com.ojcoleman.europa.core.Surrogate;
+import com.ojcoleman.europa.functiontypes.VectorFunction;
+
+public class SurrogateTest {
+	private final DefaultIDFactory idFactory = new DefaultIDFactory();
+
+	private Configuration config(String json) {
+		return new Configuration(Json.parse(json).asObject(), false, idFactory);
+	}
+
+	@Test
+	public void selectKeepsHighestPredictions() throws Exception {
+		FixedSurrogate surrogate = new FixedSurrogate(config("{}"));
+		List<TestGenotype> candidates = new ArrayList<>();
+		double[] predictions = new double[] { 0.3, 0.9, 0.1, 0.7, 0.5 };
+		for (double p : predictions) {
+			TestGenotype genotype = new TestGenotype(config("{}"));
+			surrogate.fitness.put(genotype.id, p);
+			candidates.add(genotype);
+		}
+
+		List<TestGenotype> selected = surrogate.select(candidates, 2);
+		Assert.assertEquals(selected, Arrays.asList(candidates.get(1), candidates.get(3)));
+
+		// Asking for more than there are returns all of them, best first.
+		selected = surrogate.select(candidates, 10);
+		Assert.assertEquals(selected.size(), candidates.size());
+		Assert.assertEquals(selected.get(0), candidates.get(1));
+		Assert.assertEquals(selected.get(4), candidates.get(2));
+	}
+
+	@Test
+	public void updateAssessesPredictionsAndTrains() throws Exception {
+		FixedSurrogate surrogate = new FixedSurrogate(config("{\"minimumTrainingSize\": 3}"));
+		Individual<TestGenotype, VectorFunction> prototype = new Individual<>(config("{}"));
+
+		List<Individual<TestGenotype, VectorFunction>> evaluated = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			TestGenotype genotype = new TestGenotype(config("{}"));
+			surrogate.fitness.put(genotype.id, 0.5);
+			evaluated.add(new Individual<>(prototype, genotype));
+		}
+		Assert.assertFalse(surrogate.isReady());
+
+		// Only the screened offspring (those with predictions) are assessed.
+		surrogate.select(Arrays.asList(evaluated.get(0).genotype), 1);
+		surrogate.update(evaluated);
+		Assert.assertEquals(surrogate.getTrainingSize(), 2);
+		Assert.assertEquals(getState(surrogate, "Predictions assessed"), 1);
+		Assert.assertFalse(surrogate.isReady());
+
+		evaluated.add(new Individual<>(prototype, new TestGenotype(config("{}"))));
+		surrogate.update(evaluated);
+		Assert.assertTrue(surrogate.isReady());
+	}
+
+	private static Object getState(Surrogate<?> surrogate, String label) {
+		for (ComponentStateLog log : surrogate.getState()) {
+			if (log.label.equals(label)) {
+				return log.state;
+			}
+		}
+		return null;
+	}
+
+	public static class TestGenotype extends Genotype<Allele<?>> {
+		public TestGenotype(Configuration config) {
+			super(config);
+		}
+
+		@Override
+		protected Collection<Allele<?>> newAlleleCollection() {
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Predicts a fixed fitness for each genotype, and trains by counting the samples.
+	 */
+	public static class FixedSurrogate extends Surrogate<TestGenotype> {
+		final Map<Long, Double> fitness = new HashMap<>();
+		int trainingSize;
+
+		public FixedSurrogate(Configuration config) throws Exception {
+			super(null, config);
+		}
+
+		@Override
+		protected double estimate(TestGenotype genotype) {
+			return fitness.get(genotype.id);
+		}
+
+		@Override
+		protected void train(List<TestGenotype> genotypes, double[] fitness) {
+			trainingSize += genotypes.size();
+		}
+
+		@Override
+		public int getTrainingSize() {
+			return trainingSize;
+		}
+	}
+}